@@ -0,0 +1,269 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.event.DirectorChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarkChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarksRecalculatedEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.util.TransactionStaleness;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Ограниченный по размеру LRU-кэш полностью заполненных фильмов (с рейтингом, жанрами и режиссерами).
+ * <p>
+ * Кэш хранит неизменяемые снимки фильмов ({@link Film#snapshot()}) и отдает их всем читателям без копирования;
+ * чтобы изменить полученный фильм, вызывающий код должен сначала скопировать его.
+ * Записи разбиты на {@code filmorate.cache.films.stripes} независимых сегментов по идентификатору фильма, каждый со
+ * своей блокировкой и своим порядком вытеснения, поэтому одновременные запросы разных фильмов не ждут друг друга.
+ * Давно не использованный фильм вытесняется в пределах своего сегмента.
+ * Записи удаляются при изменении фильма, его оценок или режиссеров сразу и повторно после завершения транзакции.
+ * Пока транзакция, изменившая фильмы, не завершена, чтение в ней выполняется в обход кэша, чтобы незафиксированные
+ * данные не попали в кэш. Загрузки, начатые до очередной инвалидации, в кэш не сохраняются.
+ */
+@Component
+public class FilmCache {
+
+    private static final String CACHE_NAME = "films";
+    private static final int DEFAULT_STRIPES = 16;
+
+    private final Map<Long, Film>[] stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicLong generation = new AtomicLong();
+
+    public FilmCache(final int maxSize, final MeterRegistry meterRegistry) {
+        this(maxSize, DEFAULT_STRIPES, meterRegistry);
+    }
+
+    /**
+     * @param maxSize     максимальное количество фильмов в кэше.
+     * @param stripeCount количество сегментов; не больше maxSize.
+     */
+    @Autowired
+    @SuppressWarnings("unchecked")
+    public FilmCache(@Value("${filmorate.cache.films.max-size:10000}") final int maxSize,
+                     @Value("${filmorate.cache.films.stripes:" + DEFAULT_STRIPES + "}") final int stripeCount,
+                     final MeterRegistry meterRegistry) {
+        stripes = new Map[Math.max(1, Math.min(stripeCount, maxSize))];
+        for (int i = 0; i < stripes.length; i++) {
+            final int stripeMaxSize = maxSize / stripes.length + (i < maxSize % stripes.length ? 1 : 0);
+            stripes[i] = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Film> eldest) {
+                    if (size() > stripeMaxSize) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                .tags("cache", CACHE_NAME, "result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+                .tags("cache", CACHE_NAME, "result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::sum)
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, FilmCache::size)
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Получение фильма из кэша. При промахе фильм загружается переданной функцией и сохраняется в кэш.
+     *
+     * @param filmId идентификатор фильма.
+     * @param loader функция загрузки фильма из хранилища.
+     * @return неизменяемый снимок фильма.
+     */
+    public Film get(final long filmId, final LongFunction<Film> loader) {
+        if (TransactionStaleness.isStale(this)) {
+            return loader.apply(filmId).snapshot();
+        }
+        final Map<Long, Film> stripe = stripe(filmId);
+        final long loadGeneration;
+        synchronized (stripe) {
+            final Film film = stripe.get(filmId);
+            if (film != null) {
+                hits.increment();
+                return film;
+            }
+            loadGeneration = generation.get();
+        }
+        misses.increment();
+        final Film film = loader.apply(filmId).snapshot();
+        put(film, loadGeneration);
+        return film;
+    }
+
+    /**
+     * Получение нескольких фильмов из кэша. Отсутствующие в кэше фильмы загружаются переданной функцией одним вызовом.
+     *
+     * @param filmIds идентификаторы фильмов.
+     * @param loader  функция загрузки фильмов по множеству идентификаторов.
+     * @return фильмы в порядке переданных идентификаторов; не найденные в хранилище фильмы пропускаются.
+     */
+    public List<Film> getAll(final List<Long> filmIds, final Function<Set<Long>, Collection<Film>> loader) {
+        final Map<Long, Film> found = new HashMap<>();
+        if (TransactionStaleness.isStale(this)) {
+            loader.apply(new HashSet<>(filmIds)).forEach(film -> found.put(film.getId(), film.snapshot()));
+            return inOrder(filmIds, found);
+        }
+        final long loadGeneration = generation.get();
+        for (Long filmId : filmIds) {
+            final Map<Long, Film> stripe = stripe(filmId);
+            synchronized (stripe) {
+                final Film film = stripe.get(filmId);
+                if (film != null) {
+                    found.put(filmId, film);
+                }
+            }
+        }
+        hits.add(found.size());
+        final Set<Long> missingIds = new HashSet<>(filmIds);
+        missingIds.removeAll(found.keySet());
+        if (!missingIds.isEmpty()) {
+            misses.add(missingIds.size());
+            for (Film loaded : loader.apply(missingIds)) {
+                final Film film = loaded.snapshot();
+                found.put(film.getId(), film);
+                put(film, loadGeneration);
+            }
+        }
+        return inOrder(filmIds, found);
+    }
+
+    public void invalidate(final long filmId) {
+        final Map<Long, Film> stripe = stripe(filmId);
+        invalidate(() -> evict(stripe, () -> stripe.remove(filmId)));
+    }
+
+    public void invalidateAll() {
+        invalidate(() -> {
+            for (Map<Long, Film> stripe : stripes) {
+                evict(stripe, stripe::clear);
+            }
+        });
+    }
+
+    public void invalidateIf(final Predicate<Film> predicate) {
+        invalidate(() -> {
+            for (Map<Long, Film> stripe : stripes) {
+                evict(stripe, () -> stripe.values().removeIf(predicate));
+            }
+        });
+    }
+
+    /**
+     * Удаление записей из кэша. Если вызов происходит внутри транзакции, удаление повторяется после ее завершения,
+     * а до завершения транзакция читает фильмы в обход кэша.
+     */
+    private void invalidate(final Runnable eviction) {
+        eviction.run();
+        TransactionStaleness.markStale(this);
+        TransactionStaleness.runAfterCompletion(eviction);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<Long, Film> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @EventListener
+    public void onFilmChanged(final FilmChangedEvent event) {
+        invalidate(event.getFilmId());
+    }
+
+    @EventListener
+    public void onFilmMarkChanged(final FilmMarkChangedEvent event) {
+        invalidate(event.getFilmId());
+    }
+
+    @EventListener
+    public void onFilmMarksRecalculated(final FilmMarksRecalculatedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onDirectorChanged(final DirectorChangedEvent event) {
+        if (event.getOperation() != Operation.ADD) {
+            final long directorId = event.getDirectorId();
+            invalidateIf(film -> film.getDirectors().stream().anyMatch(director -> director.getId() == directorId));
+        }
+    }
+
+    private List<Film> inOrder(final List<Long> filmIds, final Map<Long, Film> films) {
+        return filmIds.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private Map<Long, Film> stripe(final long filmId) {
+        return stripes[Math.floorMod(Long.hashCode(filmId), stripes.length)];
+    }
+
+    /**
+     * Сохранение загруженного фильма, если с начала загрузки не было инвалидаций. Счетчик инвалидаций увеличивается
+     * под блокировкой сегмента, из которого удаляются записи, поэтому проверка и сохранение под той же блокировкой не
+     * вернут в сегмент уже удаленный фильм.
+     */
+    private void put(final Film film, final long loadGeneration) {
+        final Map<Long, Film> stripe = stripe(film.getId());
+        synchronized (stripe) {
+            if (generation.get() == loadGeneration) {
+                stripe.put(film.getId(), film);
+            }
+        }
+    }
+
+    private void evict(final Map<Long, Film> stripe, final Runnable eviction) {
+        synchronized (stripe) {
+            eviction.run();
+            generation.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.event.FriendshipChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.UserChangedEvent;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.recommendation.FriendSuggestions;
+import ru.yandex.practicum.filmorate.util.TransactionStaleness;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Ограниченный по размеру и времени жизни LRU-кэш возможных друзей по пользователю и количеству кандидатов.
+ * <p>
+ * Запись зависит от списков друзей самого пользователя и его друзей, поэтому удаляется, когда меняется дружба
+ * любого из них; удаление пользователя очищает весь кэш. Изменения оценок, от которых зависит схожесть вкуса,
+ * учитываются по истечении времени жизни записи. Как и в {@link RecommendationCache}, инвалидация внутри транзакции
+ * повторяется после ее завершения, а до завершения транзакция получает возможных друзей в обход кэша.
+ */
+@Component
+public class FriendSuggestionCache {
+
+    private static final String CACHE_NAME = "friend-suggestions";
+
+    private final Map<Key, Entry> entries;
+    private final Map<Long, Set<Key>> keysByUser = new HashMap<>();
+    private final long ttlNanos;
+    private final LongSupplier ticker;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private long generation;
+
+    @Autowired
+    public FriendSuggestionCache(@Value("${filmorate.cache.friend-suggestions.max-size:10000}") final int maxSize,
+                                 @Value("${filmorate.cache.friend-suggestions.ttl-ms:600000}") final long ttlMillis,
+                                 final MeterRegistry meterRegistry) {
+        this(maxSize, ttlMillis, meterRegistry, System::nanoTime);
+    }
+
+    FriendSuggestionCache(final int maxSize, final long ttlMillis, final MeterRegistry meterRegistry,
+                          final LongSupplier ticker) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.ticker = ticker;
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    unindex(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                .tags("cache", CACHE_NAME, "result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+                .tags("cache", CACHE_NAME, "result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::sum)
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.invalidations", invalidations, LongAdder::sum)
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, FriendSuggestionCache::size)
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Получение возможных друзей из кэша. При промахе они подбираются переданной функцией и, если результат можно
+     * кэшировать, сохраняются в кэш.
+     *
+     * @param userId идентификатор пользователя.
+     * @param count  максимальное количество кандидатов.
+     * @param loader функция подбора возможных друзей.
+     * @return идентификаторы возможных друзей.
+     */
+    public List<Long> get(final long userId, final int count, final Supplier<FriendSuggestions> loader) {
+        if (TransactionStaleness.isStale(this)) {
+            return loader.get().getUserIds();
+        }
+        final Key key = new Key(userId, count);
+        final long loadGeneration;
+        synchronized (entries) {
+            final Entry entry = entries.get(key);
+            if (entry != null) {
+                if (ticker.getAsLong() - entry.loadedAt < ttlNanos) {
+                    hits.increment();
+                    return entry.userIds;
+                }
+                remove(key);
+            }
+            loadGeneration = generation;
+        }
+        misses.increment();
+        final FriendSuggestions suggestions = loader.get();
+        final List<Long> userIds = List.copyOf(suggestions.getUserIds());
+        if (!suggestions.isCacheable()) {
+            return userIds;
+        }
+        final Entry entry = new Entry(userIds, ticker.getAsLong(), suggestions.getFriendIds());
+        synchronized (entries) {
+            if (generation == loadGeneration) {
+                remove(key);
+                entries.put(key, entry);
+                index(key, entry);
+            }
+        }
+        return userIds;
+    }
+
+    /**
+     * Удаление возможных друзей пользователя и пользователей, у которых он в друзьях.
+     */
+    public void invalidateUser(final long userId) {
+        invalidate(() -> removeAll(keysByUser.get(userId)));
+    }
+
+    public void invalidateAll() {
+        invalidate(() -> {
+            invalidations.add(entries.size());
+            entries.clear();
+            keysByUser.clear();
+        });
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @EventListener
+    public void onFriendshipChanged(final FriendshipChangedEvent event) {
+        invalidateUser(event.getUserId());
+    }
+
+    @EventListener
+    public void onUserChanged(final UserChangedEvent event) {
+        if (event.getOperation() == Operation.REMOVE) {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Удаление записей из кэша. Если вызов происходит внутри транзакции, удаление повторяется после ее завершения,
+     * а до завершения транзакция получает возможных друзей в обход кэша.
+     */
+    private void invalidate(final Runnable eviction) {
+        evict(eviction);
+        TransactionStaleness.markStale(this);
+        TransactionStaleness.runAfterCompletion(() -> evict(eviction));
+    }
+
+    private void evict(final Runnable eviction) {
+        synchronized (entries) {
+            eviction.run();
+            generation++;
+        }
+    }
+
+    private void removeAll(final Set<Key> keys) {
+        if (keys == null) {
+            return;
+        }
+        for (Key key : new ArrayList<>(keys)) {
+            if (remove(key)) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    private boolean remove(final Key key) {
+        final Entry entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        unindex(key, entry);
+        return true;
+    }
+
+    private void index(final Key key, final Entry entry) {
+        keysByUser.computeIfAbsent(key.userId, id -> new HashSet<>()).add(key);
+        for (long friendId : entry.friendIds) {
+            keysByUser.computeIfAbsent(friendId, id -> new HashSet<>()).add(key);
+        }
+    }
+
+    private void unindex(final Key key, final Entry entry) {
+        unindex(key.userId, key);
+        for (long friendId : entry.friendIds) {
+            unindex(friendId, key);
+        }
+    }
+
+    private void unindex(final long userId, final Key key) {
+        final Set<Key> userKeys = keysByUser.get(userId);
+        if (userKeys != null && userKeys.remove(key) && userKeys.isEmpty()) {
+            keysByUser.remove(userId);
+        }
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class Key {
+        private final long userId;
+        private final int count;
+    }
+
+    @RequiredArgsConstructor
+    private static final class Entry {
+        private final List<Long> userIds;
+        private final long loadedAt;
+        private final long[] friendIds;
+    }
+}
@@ -0,0 +1,373 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarkChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarksRecalculatedEvent;
+import ru.yandex.practicum.filmorate.dao.event.UserChangedEvent;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.recommendation.Recommendation;
+import ru.yandex.practicum.filmorate.recommendation.RecommendationStrategy;
+import ru.yandex.practicum.filmorate.util.TransactionStaleness;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Ограниченный по размеру и времени жизни LRU-кэш подобранных рекомендаций по пользователю и способу подбора.
+ * <p>
+ * Запись удаляется, когда меняются оценки самого пользователя или пользователя, по оценкам которого подобраны
+ * рекомендации, а также когда меняется оценка фильма, который оценил этот схожий пользователь. Остальные изменения
+ * (например, появление нового, более схожего пользователя) учитываются по истечении времени жизни записи. Запись,
+ * подобранная по другой версии модели, удаляется и учитывается как инвалидация. Инвалидация внутри транзакции
+ * повторяется после ее завершения, а до завершения транзакция получает рекомендации в обход кэша, как в
+ * {@link FilmCache}.
+ * <p>
+ * Пока рекомендации подбираются, кэш запоминает момент последней инвалидации каждого пользователя и фильма. Подобранные
+ * рекомендации не сохраняются, если после начала подбора изменились оценки самого пользователя, схожего
+ * пользователя или фильмов, по которым они подобраны; инвалидации других записей сохранению не мешают.
+ */
+@Component
+public class RecommendationCache {
+
+    private static final String CACHE_NAME = "recommendations";
+    private static final int MAX_TRACKED_INVALIDATIONS = 10_000;
+
+    private final Map<Key, Entry> entries;
+    private final Map<Long, Set<Key>> keysByUser = new HashMap<>();
+    private final Map<Long, Set<Key>> keysByFilm = new HashMap<>();
+    private final long ttlNanos;
+    private final LongSupplier ticker;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final Map<Long, Long> userInvalidatedAt = new HashMap<>();
+    private final Map<Long, Long> filmInvalidatedAt = new HashMap<>();
+    private long clock;
+    private long allInvalidatedAt;
+    private int loading;
+
+    @Autowired
+    public RecommendationCache(@Value("${filmorate.cache.recommendations.max-size:10000}") final int maxSize,
+                               @Value("${filmorate.cache.recommendations.ttl-ms:600000}") final long ttlMillis,
+                               final MeterRegistry meterRegistry) {
+        this(maxSize, ttlMillis, meterRegistry, System::nanoTime);
+    }
+
+    RecommendationCache(final int maxSize, final long ttlMillis, final MeterRegistry meterRegistry,
+                        final LongSupplier ticker) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.ticker = ticker;
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    unindex(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                .tags("cache", CACHE_NAME, "result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+                .tags("cache", CACHE_NAME, "result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::sum)
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.expirations", expirations, LongAdder::sum)
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.invalidations", invalidations, LongAdder::sum)
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, RecommendationCache::size)
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Получение рекомендаций из кэша. При промахе рекомендации подбираются переданной функцией и сохраняются в кэш.
+     *
+     * @param userId   идентификатор пользователя.
+     * @param strategy способ подбора рекомендаций.
+     * @param version  версия данных, по которым подбираются рекомендации, например, обученной модели; записи
+     *                 другой версии считаются устаревшими.
+     * @param loader   функция подбора рекомендаций.
+     * @return идентификаторы рекомендованных фильмов.
+     */
+    public List<Long> get(final long userId, final RecommendationStrategy strategy, final long version,
+                          final Supplier<Recommendation> loader) {
+        return find(userId, strategy, version, () -> Optional.of(loader.get())).orElseThrow();
+    }
+
+    /**
+     * Получение рекомендаций из кэша. При промахе рекомендации подбираются переданной функцией и сохраняются в кэш,
+     * если функция смогла их подобрать.
+     *
+     * @param userId   идентификатор пользователя.
+     * @param strategy способ подбора рекомендаций.
+     * @param version  версия данных, по которым подбираются рекомендации; записи другой версии считаются
+     *                 устаревшими.
+     * @param loader   функция подбора рекомендаций; пустой результат, если подобрать их этим способом сейчас нельзя.
+     * @return идентификаторы рекомендованных фильмов; пустой результат, если их нет в кэше и функция не смогла их
+     * подобрать.
+     */
+    public Optional<List<Long>> find(final long userId, final RecommendationStrategy strategy, final long version,
+                                     final Supplier<Optional<Recommendation>> loader) {
+        if (TransactionStaleness.isStale(this)) {
+            return loader.get().map(Recommendation::getFilmIds);
+        }
+        final Key key = new Key(userId, strategy);
+        final long loadStartedAt;
+        synchronized (entries) {
+            final Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.version != version) {
+                    invalidations.increment();
+                    remove(key);
+                } else if (ticker.getAsLong() - entry.loadedAt < ttlNanos) {
+                    hits.increment();
+                    return Optional.of(entry.filmIds);
+                } else {
+                    expirations.increment();
+                    remove(key);
+                }
+            }
+            loadStartedAt = clock;
+            loading++;
+        }
+        misses.increment();
+        try {
+            final Optional<Recommendation> loaded = loader.get();
+            if (loaded.isEmpty()) {
+                return Optional.empty();
+            }
+            final Recommendation recommendation = loaded.get();
+            final Entry entry = new Entry(List.copyOf(recommendation.getFilmIds()), version, ticker.getAsLong(),
+                    recommendation.getClosestUserId(), recommendation.getClosestUserFilmIds());
+            synchronized (entries) {
+                if (!isInvalidatedSince(loadStartedAt, key, entry)) {
+                    remove(key);
+                    entries.put(key, entry);
+                    index(key, entry);
+                }
+            }
+            return Optional.of(entry.filmIds);
+        } finally {
+            synchronized (entries) {
+                if (--loading == 0) {
+                    userInvalidatedAt.clear();
+                    filmInvalidatedAt.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Удаление рекомендаций пользователя и рекомендаций, подобранных по оценкам этого пользователя.
+     */
+    public void invalidateUser(final long userId) {
+        invalidate(() -> evictUser(userId));
+    }
+
+    /**
+     * Удаление рекомендаций, подобранных по оценкам пользователей, оценивших фильм.
+     */
+    public void invalidateFilm(final long filmId) {
+        invalidate(() -> evictFilm(filmId));
+    }
+
+    public void invalidateAll() {
+        invalidate(() -> {
+            invalidations.add(entries.size());
+            entries.clear();
+            keysByUser.clear();
+            keysByFilm.clear();
+            allInvalidatedAt = clock;
+        });
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @EventListener
+    public void onFilmMarkChanged(final FilmMarkChangedEvent event) {
+        invalidate(() -> {
+            evictUser(event.getUserId());
+            evictFilm(event.getFilmId());
+        });
+    }
+
+    @EventListener
+    public void onFilmChanged(final FilmChangedEvent event) {
+        if (event.getOperation() == Operation.REMOVE) {
+            invalidateFilm(event.getFilmId());
+        }
+    }
+
+    @EventListener
+    public void onFilmMarksRecalculated(final FilmMarksRecalculatedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onUserChanged(final UserChangedEvent event) {
+        if (event.getOperation() == Operation.REMOVE) {
+            invalidateUser(event.getUserId());
+        }
+    }
+
+    /**
+     * Удаление записей из кэша. Если вызов происходит внутри транзакции, удаление повторяется после ее завершения,
+     * а до завершения транзакция получает рекомендации в обход кэша.
+     */
+    private void invalidate(final Runnable eviction) {
+        evict(eviction);
+        TransactionStaleness.markStale(this);
+        TransactionStaleness.runAfterCompletion(() -> evict(eviction));
+    }
+
+    private void evict(final Runnable eviction) {
+        synchronized (entries) {
+            clock++;
+            eviction.run();
+        }
+    }
+
+    private void evictUser(final long userId) {
+        removeAll(keysByUser.get(userId));
+        track(userInvalidatedAt, userId);
+    }
+
+    private void evictFilm(final long filmId) {
+        removeAll(keysByFilm.get(filmId));
+        track(filmInvalidatedAt, filmId);
+    }
+
+    /**
+     * Запоминание момента инвалидации для рекомендаций, которые подбираются сейчас. Если запомнено слишком много
+     * моментов, все подбираемые рекомендации считаются устаревшими.
+     */
+    private void track(final Map<Long, Long> invalidatedAt, final long id) {
+        if (loading == 0) {
+            return;
+        }
+        if (invalidatedAt.size() >= MAX_TRACKED_INVALIDATIONS) {
+            allInvalidatedAt = clock;
+            userInvalidatedAt.clear();
+            filmInvalidatedAt.clear();
+            return;
+        }
+        invalidatedAt.put(id, clock);
+    }
+
+    private boolean isInvalidatedSince(final long loadStartedAt, final Key key, final Entry entry) {
+        if (allInvalidatedAt > loadStartedAt
+                || userInvalidatedAt.getOrDefault(key.userId, 0L) > loadStartedAt
+                || userInvalidatedAt.getOrDefault(entry.closestUserId, 0L) > loadStartedAt) {
+            return true;
+        }
+        for (int filmId : entry.closestUserFilmIds) {
+            if (filmInvalidatedAt.getOrDefault((long) filmId, 0L) > loadStartedAt) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeAll(final Set<Key> keys) {
+        if (keys == null) {
+            return;
+        }
+        for (Key key : new ArrayList<>(keys)) {
+            if (remove(key)) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    private boolean remove(final Key key) {
+        final Entry entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        unindex(key, entry);
+        return true;
+    }
+
+    private void index(final Key key, final Entry entry) {
+        keysByUser.computeIfAbsent(key.userId, id -> new HashSet<>()).add(key);
+        if (entry.closestUserId != Recommendation.NO_USER) {
+            keysByUser.computeIfAbsent(entry.closestUserId, id -> new HashSet<>()).add(key);
+        }
+        for (int filmId : entry.closestUserFilmIds) {
+            keysByFilm.computeIfAbsent((long) filmId, id -> new HashSet<>()).add(key);
+        }
+    }
+
+    private void unindex(final Key key, final Entry entry) {
+        unindex(keysByUser, key.userId, key);
+        unindex(keysByUser, entry.closestUserId, key);
+        for (int filmId : entry.closestUserFilmIds) {
+            unindex(keysByFilm, filmId, key);
+        }
+    }
+
+    private static void unindex(final Map<Long, Set<Key>> keys, final long id, final Key key) {
+        final Set<Key> idKeys = keys.get(id);
+        if (idKeys != null && idKeys.remove(key) && idKeys.isEmpty()) {
+            keys.remove(id);
+        }
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class Key {
+        private final long userId;
+        private final RecommendationStrategy strategy;
+    }
+
+    @RequiredArgsConstructor
+    private static final class Entry {
+        private final List<Long> filmIds;
+        private final long version;
+        private final long loadedAt;
+        private final long closestUserId;
+        private final int[] closestUserFilmIds;
+    }
+}
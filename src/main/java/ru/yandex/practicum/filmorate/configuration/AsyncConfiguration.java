@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Асинхронные ответы MVC, например потоковая выгрузка фильмов, выполняются на отдельном ограниченном пуле потоков и
+ * прерываются по явно заданному времени ожидания, а не по значениям контейнера по умолчанию.
+ */
+@Configuration
+public class AsyncConfiguration implements WebMvcConfigurer {
+
+    private final long timeoutMillis;
+    private final int poolSize;
+    private final int queueCapacity;
+
+    public AsyncConfiguration(@Value("${filmorate.mvc.async.timeout-ms:300000}") final long timeoutMillis,
+                              @Value("${filmorate.mvc.async.pool-size:8}") final int poolSize,
+                              @Value("${filmorate.mvc.async.queue-capacity:100}") final int queueCapacity) {
+        this.timeoutMillis = timeoutMillis;
+        this.poolSize = poolSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor mvcAsyncExecutor() {
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("mvc-async-");
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(timeoutMillis);
+        configurer.setTaskExecutor(mvcAsyncExecutor());
+    }
+}
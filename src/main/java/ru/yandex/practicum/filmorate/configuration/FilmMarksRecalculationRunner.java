@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.configuration;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+/**
+ * Пересчет агрегированных оценок фильмов при запуске приложения с аргументом --recalculate-film-marks.
+ */
+@Component
+@RequiredArgsConstructor
+public class FilmMarksRecalculationRunner implements ApplicationRunner {
+
+    private static final String RECALCULATE_FILM_MARKS_OPTION = "recalculate-film-marks";
+
+    private final FilmService filmService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (args.containsOption(RECALCULATE_FILM_MARKS_OPTION)) {
+            filmService.recalculateFilmMarks();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.configuration;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Включение фоновых задач, например пересчета схожих пользователей для рекомендаций.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfiguration {
+}
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.configuration;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Учет различных текстов подготавливаемых SQL-запросов.
+ * <p>
+ * H2 кэширует разобранные запросы по тексту отдельно в каждой сессии (параметр QUERY_CACHE_SIZE в строке
+ * подключения) и не сообщает о попаданиях, поэтому здесь измеряется не сам кэш, а то, от чего зависит его
+ * эффективность: сколько различных текстов запросов подготавливает приложение. Текст, который меняется от вызова к
+ * вызову, виден как постоянный рост числа новых текстов. Учет не блокирует подготовку запросов; после
+ * {@link #MAX_TRACKED_TEXTS} различных текстов новые тексты больше не запоминаются и каждая их подготовка
+ * считается новой.
+ */
+@Component
+public class SqlTextMetrics {
+
+    static final int MAX_TRACKED_TEXTS = 10_000;
+
+    private final Set<String> texts = ConcurrentHashMap.newKeySet();
+    private final int maxTrackedTexts;
+    private final LongAdder repeated = new LongAdder();
+    private final LongAdder distinct = new LongAdder();
+
+    @Autowired
+    public SqlTextMetrics(final MeterRegistry meterRegistry) {
+        this(MAX_TRACKED_TEXTS, meterRegistry);
+    }
+
+    SqlTextMetrics(final int maxTrackedTexts, final MeterRegistry meterRegistry) {
+        this.maxTrackedTexts = maxTrackedTexts;
+        FunctionCounter.builder("jdbc.statements.prepared", repeated, LongAdder::sum)
+                .tag("text", "repeated")
+                .register(meterRegistry);
+        FunctionCounter.builder("jdbc.statements.prepared", distinct, LongAdder::sum)
+                .tag("text", "new")
+                .register(meterRegistry);
+        Gauge.builder("jdbc.statements.distinct.texts", this, SqlTextMetrics::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Регистрация подготовки запроса.
+     *
+     * @param sql текст запроса.
+     */
+    public void record(final String sql) {
+        if (texts.contains(sql) || texts.size() < maxTrackedTexts && !texts.add(sql)) {
+            repeated.increment();
+        } else {
+            distinct.increment();
+        }
+    }
+
+    public long getRepeated() {
+        return repeated.sum();
+    }
+
+    public long getDistinct() {
+        return distinct.sum();
+    }
+
+    public int size() {
+        return texts.size();
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.configuration;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Оборачивает источники данных так, чтобы каждая подготовка запроса учитывалась в {@link SqlTextMetrics}.
+ */
+@Component
+@RequiredArgsConstructor
+public class SqlTextMetricsPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<SqlTextMetrics> sqlTextMetrics;
+
+    @Override
+    public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof MeteredDataSource)) {
+            return new MeteredDataSource((DataSource) bean);
+        }
+        return bean;
+    }
+
+    private class MeteredDataSource extends DelegatingDataSource {
+
+        MeteredDataSource(final DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return metered(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(final String username, final String password) throws SQLException {
+            return metered(super.getConnection(username, password));
+        }
+
+        private Connection metered(final Connection connection) {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "prepareStatement":
+                            case "prepareCall":
+                                sqlTextMetrics.getObject().record((String) args[0]);
+                                return invoke(method, connection, args);
+                            default:
+                                return invoke(method, connection, args);
+                        }
+                    });
+        }
+
+        private Object invoke(final Method method, final Connection connection, final Object[] args)
+                throws Throwable {
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
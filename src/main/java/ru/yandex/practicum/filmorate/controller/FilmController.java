@@ -1,8 +1,14 @@
 package ru.yandex.practicum.filmorate.controller;
 
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,6 +20,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.FilmSearchDto;
 import ru.yandex.practicum.filmorate.service.FilmService;
@@ -21,6 +28,8 @@ import ru.yandex.practicum.filmorate.service.FilmService;
 import javax.validation.Valid;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collection;
 
 @RestController
@@ -29,8 +38,12 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class FilmController {
 
+    static final String NEXT_AFTER_HEADER = "X-Next-After";
+
     private final FilmService filmService;
 
+    private final ObjectMapper objectMapper;
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public FilmDto addFilm(@Valid @RequestBody FilmDto filmDto) {
@@ -43,8 +56,44 @@ public class FilmController {
     }
 
     @GetMapping
-    public Collection<FilmDto> getAllFilms() {
-        return filmService.getAllFilms();
+    public ResponseEntity<StreamingResponseBody> getAllFilms(@RequestParam(defaultValue = "0") long after) {
+        final ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        final StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = writer.createGenerator(outputStream)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT)) {
+                generator.writeStartArray();
+                filmService.streamFilms(after, film -> {
+                    try {
+                        writer.writeValue(generator, film);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Получение страницы фильмов по курсору. Если страница заполнена полностью, идентификатор ее последнего фильма
+     * передается в заголовке {@value #NEXT_AFTER_HEADER} как значение параметра after для следующей страницы; на
+     * последней странице заголовка нет.
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<Collection<FilmDto>> getFilms(@RequestParam(defaultValue = "0") long after,
+                                                        @RequestParam @Min(1) @Max(1000) int limit) {
+        final Collection<FilmDto> films = filmService.getFilms(after, limit);
+        if (films.size() < limit) {
+            return ResponseEntity.ok(films);
+        }
+        long nextAfter = after;
+        for (FilmDto film : films) {
+            nextAfter = film.getId();
+        }
+        return ResponseEntity.ok()
+                .header(NEXT_AFTER_HEADER, String.valueOf(nextAfter))
+                .body(films);
     }
 
     @GetMapping("/{id}")
@@ -91,5 +140,11 @@ public class FilmController {
         return filmService.getCommonFilms(userId, friendId);
     }
 
+    @GetMapping("/{id}/similar")
+    public Collection<FilmDto> getSimilarFilms(@PathVariable long id,
+                                               @RequestParam(defaultValue = "10") @Min(1) @Max(1000) int count) {
+        return filmService.getSimilarFilms(id, count);
+    }
+
 }
 
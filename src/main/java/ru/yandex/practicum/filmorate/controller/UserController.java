@@ -3,22 +3,35 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.validation.BindException;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.dto.FeedDto;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.recommendation.RecommendationStrategy;
+import ru.yandex.practicum.filmorate.service.FriendService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import java.util.Collection;
 
 @RestController
 @RequestMapping("/users")
+@Validated
 @RequiredArgsConstructor
 public class UserController {
 
     private final UserService userService;
 
+    private final FriendService friendService;
+
+    private final RecommendationService recommendationService;
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public UserDto addUser(@Valid @RequestBody UserDto userDto) {
@@ -42,22 +55,34 @@ public class UserController {
 
     @PutMapping("/{id}/friends/{friendId}")
     public UserDto addFriend(@PathVariable long id, @PathVariable long friendId) {
-        return userService.addFriend(id, friendId);
+        return friendService.addFriend(id, friendId);
     }
 
     @GetMapping("/{id}/friends")
     public Collection<UserDto> showFriendList(@PathVariable long id) {
-        return userService.showFriendList(id);
+        return friendService.showFriendList(id);
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
     public Collection<UserDto> findCommonFriends(@PathVariable long id, @PathVariable long otherId) {
-        return userService.findCommonFriends(id, otherId);
+        return friendService.findCommonFriends(id, otherId);
+    }
+
+    @GetMapping("/{id}/friends/suggestions")
+    public Collection<UserDto> findFriendSuggestions(@PathVariable long id,
+                                                     @RequestParam(defaultValue = "10") @Min(1) @Max(1000) int count) {
+        return friendService.findFriendSuggestions(id, count);
+    }
+
+    @GetMapping("/{id}/path/{otherId}")
+    public Collection<UserDto> findPath(@PathVariable long id, @PathVariable long otherId,
+                                        @RequestParam(defaultValue = "6") @Min(1) @Max(20) int maxDepth) {
+        return friendService.findPath(id, otherId, maxDepth);
     }
 
     @DeleteMapping("/{id}/friends/{friendId}")
     public void removeFriend(@PathVariable long id, @PathVariable long friendId) {
-        userService.removeFriend(id, friendId);
+        friendService.removeFriend(id, friendId);
     }
 
     @DeleteMapping("/{id}")
@@ -66,8 +91,10 @@ public class UserController {
     }
 
     @GetMapping("/{id}/recommendations")
-    public Collection<FilmDto> showRecommendations(@PathVariable long id) {
-        return userService.showRecommendations(id);
+    public Collection<FilmDto> showRecommendations(@PathVariable long id,
+                                                   @RequestParam(required = false) String strategy)
+            throws BindException {
+        return recommendationService.showRecommendations(id, strategy == null ? null : toStrategy(strategy));
     }
 
     @GetMapping("/{id}/feed")
@@ -75,4 +102,16 @@ public class UserController {
         return userService.getFeed(id);
     }
 
+    /**
+     * @throws BindException если способ подбора не поддерживается, чтобы ответ был 400, как при ошибке валидации.
+     */
+    private static RecommendationStrategy toStrategy(final String strategy) throws BindException {
+        try {
+            return RecommendationStrategy.fromString(strategy);
+        } catch (IllegalArgumentException e) {
+            final BindException bindException = new BindException(strategy, "recommendations");
+            bindException.addError(new FieldError("recommendations", "strategy", e.getMessage()));
+            throw bindException;
+        }
+    }
 }
@@ -1,7 +1,5 @@
 package ru.yandex.practicum.filmorate.dao;
 
-import java.util.Collection;
-
 public interface Dao<T> {
     T add(T t);
 
@@ -9,7 +7,5 @@ public interface Dao<T> {
 
     void update(T t);
 
-    Collection<T> findAll();
-
     T findById(long id);
 }
\ No newline at end of file
@@ -2,7 +2,11 @@ package ru.yandex.practicum.filmorate.dao;
 
 import ru.yandex.practicum.filmorate.model.Director;
 
+import java.util.Collection;
+
 public interface DirectorStorage extends Dao<Director> {
 
+    Collection<Director> findAll();
+
     void addDirectorToFilm(long filmId, long directorId);
 }
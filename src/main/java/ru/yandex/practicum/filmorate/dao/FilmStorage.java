@@ -3,19 +3,57 @@ package ru.yandex.practicum.filmorate.dao;
 import ru.yandex.practicum.filmorate.dto.FilmSearchDto;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.FilmMark;
+import ru.yandex.practicum.filmorate.model.FilmPopularity;
+import ru.yandex.practicum.filmorate.model.FilmSearchDocument;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FilmStorage extends Dao<Film> {
 
-    void addMarkToFilm(long filmId, long userId, Integer mark);
+    /**
+     * Проверка существования фильма без его загрузки.
+     */
+    boolean existsById(long id);
 
-    void removeMarkFromFilm(long filmId, long userId);
+    /**
+     * Проверка существования всех фильмов без их загрузки.
+     */
+    boolean existAll(Collection<Long> ids);
+
+    Collection<Film> findFilmsAfter(long afterId, int limit);
+
+    void streamFilmsAfter(long afterId, Consumer<Film> consumer);
+
+    /**
+     * Установка оценки фильму.
+     *
+     * @return рейтинг фильма после изменения.
+     */
+    double addMarkToFilm(long filmId, long userId, Integer mark);
+
+    /**
+     * Удаление оценки у фильма.
+     *
+     * @return рейтинг фильма после изменения.
+     */
+    double removeMarkFromFilm(long filmId, long userId);
+
+    int recalculateMarkAggregates();
 
     Map<Long, Set<FilmMark>> findUserIdFilmMarks();
 
+    Optional<FilmMark> findFilmMark(long filmId, long userId);
+
+    Collection<FilmMark> findUserFilmMarks(long userId);
+
+    Collection<FilmMark> findFilmMarks(long filmId);
+
+    void streamFilmMarks(Consumer<FilmMark> consumer);
+
     Collection<Film> findFilmsByIds(Set<Long> filmIds);
 
     Collection<Film> searchFilms(FilmSearchDto search);
@@ -25,4 +63,14 @@ public interface FilmStorage extends Dao<Film> {
     Collection<Film> findMostLikedFilms(int count, Integer genreId, Integer year);
 
     Collection<Film> findCommonFilms(long userId, long friendId);
+
+    Collection<Film> findSimilarFilms(long filmId, int count);
+
+    Optional<FilmPopularity> findFilmPopularity(long filmId);
+
+    void streamFilmPopularity(Consumer<FilmPopularity> consumer);
+
+    Optional<FilmSearchDocument> findFilmSearchDocument(long filmId);
+
+    void streamFilmSearchDocuments(Consumer<FilmSearchDocument> consumer);
 }
@@ -6,4 +6,9 @@ public interface FriendshipStorage {
     void remove(long userId, long friendId);
 
     void update(long userId, long friendId, int statusId);
+
+    /**
+     * Проверка, добавил ли пользователь другого пользователя в друзья.
+     */
+    boolean exists(long userId, long friendId);
 }
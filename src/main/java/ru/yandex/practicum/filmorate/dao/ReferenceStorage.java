@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Reference;
+
+import java.util.List;
+
+public interface ReferenceStorage {
+
+    /**
+     * Поиск ссылок на несуществующие сущности.
+     *
+     * @param references ссылки запроса.
+     * @return ссылки на сущности, которых нет в БД, в порядке переданных ссылок.
+     */
+    List<Reference> findAbsent(List<Reference> references);
+
+    /**
+     * Проверка всех ссылок запроса одним обращением к хранилищу.
+     *
+     * @param references ссылки запроса.
+     * @throws NotFoundException для первой ссылки на несуществующую сущность.
+     */
+    default void requireAll(Reference... references) {
+        findAbsent(List.of(references)).stream()
+                .findFirst()
+                .ifPresent(reference -> {
+                    throw new NotFoundException(reference.getNotFoundMessage());
+                });
+    }
+}
@@ -2,14 +2,27 @@ package ru.yandex.practicum.filmorate.dao;
 
 import ru.yandex.practicum.filmorate.model.Review;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ReviewStorage extends Dao<Review> {
+    Collection<Review> findAll();
+
     List<Review> findByFilmIdLimitBy(long filmId, int count);
 
     List<Review> findAllLimitBy(int count);
 
-    void addLikeOrDislikeToReview(long reviewId, long userId, String type);
+    /**
+     * Добавление лайка или дизлайка отзыву.
+     *
+     * @return полезность отзыва после изменения.
+     */
+    long addLikeOrDislikeToReview(long reviewId, long userId, String type);
 
-    void deleteLikeOrDislikeFromReview(final long reviewId, final long userId, final String type);
+    /**
+     * Удаление лайка или дизлайка у отзыва.
+     *
+     * @return полезность отзыва после изменения.
+     */
+    long deleteLikeOrDislikeFromReview(final long reviewId, final long userId, final String type);
 }
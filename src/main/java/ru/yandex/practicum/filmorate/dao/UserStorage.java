@@ -6,6 +6,23 @@ import java.util.Collection;
 
 public interface UserStorage extends Dao<User> {
 
+    Collection<User> findAll();
+
+    /**
+     * Проверка существования пользователя без его загрузки.
+     */
+    boolean existsById(long id);
+
+    /**
+     * Проверка существования всех пользователей без их загрузки.
+     */
+    boolean existAll(Collection<Long> ids);
+
+    /**
+     * Получение пользователей со списками друзей по идентификаторам; не найденные пользователи пропускаются.
+     */
+    Collection<User> findByIds(Collection<Long> ids);
+
     Collection<User> findFriendsByUserId(long userId);
 
     Collection<User> findCommonFriends(long userId, long anotherUserId);
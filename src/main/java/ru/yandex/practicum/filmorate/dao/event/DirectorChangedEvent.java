@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.dao.event;
+
+import lombok.Value;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+/**
+ * Режиссер был добавлен, переименован или удален.
+ */
+@Value
+public class DirectorChangedEvent {
+    long directorId;
+    Operation operation;
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.dao.event;
+
+import lombok.Value;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+/**
+ * Фильм был добавлен, обновлен (включая жанры и режиссеров) или удален.
+ */
+@Value
+public class FilmChangedEvent {
+    long filmId;
+    Operation operation;
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.dao.event;
+
+import lombok.Value;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+/**
+ * Оценка фильма пользователем была добавлена (ADD), перезаписана (UPDATE) или удалена (REMOVE). Значения оценок
+ * могут быть null, если пользователь поставил лайк без оценки.
+ */
+@Value
+public class FilmMarkChangedEvent {
+    long filmId;
+    long userId;
+    Integer mark;
+    Integer previousMark;
+    Operation operation;
+}
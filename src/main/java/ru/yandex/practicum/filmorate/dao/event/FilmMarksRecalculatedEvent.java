@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.dao.event;
+
+import lombok.Value;
+
+/**
+ * Агрегированные оценки всех фильмов были пересчитаны по таблице film_mark.
+ */
+@Value
+public class FilmMarksRecalculatedEvent {
+    int films;
+}
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.dao.event;
+
+import lombok.Value;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+/**
+ * Пользователь добавил другого пользователя в друзья (ADD), изменил статус дружбы (UPDATE) или удалил его из друзей
+ * (REMOVE). Для удаления статус не передается.
+ */
+@Value
+public class FriendshipChangedEvent {
+    long userId;
+    long friendId;
+    Integer statusId;
+    Operation operation;
+}
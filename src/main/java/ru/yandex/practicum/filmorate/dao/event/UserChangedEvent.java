@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.dao.event;
+
+import lombok.Value;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+/**
+ * Пользователь был добавлен, обновлен или удален.
+ */
+@Value
+public class UserChangedEvent {
+    long userId;
+    Operation operation;
+}
@@ -0,0 +1,212 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
+import ru.yandex.practicum.filmorate.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.dto.FilmSearchDto;
+import ru.yandex.practicum.filmorate.index.FilmIdsIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.MarkedFilmsIndex;
+import ru.yandex.practicum.filmorate.index.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.index.SimilarFilmsIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmMark;
+import ru.yandex.practicum.filmorate.model.FilmPopularity;
+import ru.yandex.practicum.filmorate.model.FilmSearchDocument;
+import ru.yandex.practicum.filmorate.model.SearchBy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище фильмов с кэшированием фильмов по идентификатору. Списки популярных фильмов берутся из
+ * {@link PopularFilmsIndex}, результаты поиска - из {@link FilmSearchIndex}, похожие фильмы - из
+ * {@link SimilarFilmsIndex}, общие фильмы пользователей - из {@link MarkedFilmsIndex}, а сами фильмы - из кэша.
+ * Существование фильмов проверяется по {@link FilmIdsIndex}. Остальные запросы передаются в {@link FilmDbStorage}.
+ * Инвалидация кэша происходит по событиям изменения данных, которые публикуют хранилища.
+ */
+@Repository
+@Primary
+@RequiredArgsConstructor
+public class CachingFilmStorage implements FilmStorage {
+
+    private final FilmDbStorage filmDbStorage;
+
+    private final FilmCache filmCache;
+
+    private final PopularFilmsIndex popularFilmsIndex;
+
+    private final FilmSearchIndex filmSearchIndex;
+
+    private final SimilarFilmsIndex similarFilmsIndex;
+
+    private final MarkedFilmsIndex markedFilmsIndex;
+
+    private final FilmIdsIndex filmIdsIndex;
+
+    @Override
+    public Film add(final Film film) {
+        return filmDbStorage.add(film);
+    }
+
+    @Override
+    public void remove(final long id) {
+        filmDbStorage.remove(id);
+    }
+
+    @Override
+    public void update(final Film film) {
+        filmDbStorage.update(film);
+    }
+
+    @Override
+    public Collection<Film> findFilmsAfter(final long afterId, final int limit) {
+        return filmDbStorage.findFilmsAfter(afterId, limit);
+    }
+
+    @Override
+    public void streamFilmsAfter(final long afterId, final Consumer<Film> consumer) {
+        filmDbStorage.streamFilmsAfter(afterId, consumer);
+    }
+
+    @Override
+    public Film findById(final long id) {
+        return filmCache.get(id, filmDbStorage::findById);
+    }
+
+    @Override
+    public boolean existsById(final long id) {
+        return filmIdsIndex.contains(id)
+                .orElseGet(() -> filmDbStorage.existsById(id));
+    }
+
+    @Override
+    public boolean existAll(final Collection<Long> ids) {
+        return filmIdsIndex.findAbsent(ids)
+                .map(List::isEmpty)
+                .orElseGet(() -> filmDbStorage.existAll(ids));
+    }
+
+    @Override
+    public double addMarkToFilm(final long filmId, final long userId, final Integer mark) {
+        return filmDbStorage.addMarkToFilm(filmId, userId, mark);
+    }
+
+    @Override
+    public double removeMarkFromFilm(final long filmId, final long userId) {
+        return filmDbStorage.removeMarkFromFilm(filmId, userId);
+    }
+
+    @Override
+    public int recalculateMarkAggregates() {
+        return filmDbStorage.recalculateMarkAggregates();
+    }
+
+    @Override
+    public Map<Long, Set<FilmMark>> findUserIdFilmMarks() {
+        return filmDbStorage.findUserIdFilmMarks();
+    }
+
+    @Override
+    public Optional<FilmMark> findFilmMark(final long filmId, final long userId) {
+        return filmDbStorage.findFilmMark(filmId, userId);
+    }
+
+    @Override
+    public Collection<FilmMark> findUserFilmMarks(final long userId) {
+        return filmDbStorage.findUserFilmMarks(userId);
+    }
+
+    @Override
+    public Collection<FilmMark> findFilmMarks(final long filmId) {
+        return filmDbStorage.findFilmMarks(filmId);
+    }
+
+    @Override
+    public void streamFilmMarks(final Consumer<FilmMark> consumer) {
+        filmDbStorage.streamFilmMarks(consumer);
+    }
+
+    @Override
+    public Collection<Film> findFilmsByIds(final Set<Long> filmIds) {
+        return filmCache.getAll(new ArrayList<>(filmIds), filmDbStorage::findFilmsByIds);
+    }
+
+    @Override
+    public Collection<Film> searchFilms(final FilmSearchDto search) {
+        final boolean byTitle = search.getBy().contains(String.valueOf(SearchBy.TITLE));
+        final boolean byDirector = search.getBy().contains(String.valueOf(SearchBy.DIRECTOR));
+        if (search.getLimit() == null) {
+            return filmSearchIndex.findFilmIds(search.getQuery(), byTitle, byDirector)
+                    .flatMap(popularFilmsIndex::orderByPopularity)
+                    .<Collection<Film>>map(filmIds -> filmCache.getAll(filmIds, filmDbStorage::findFilmsByIds))
+                    .orElseGet(() -> filmDbStorage.searchFilms(search));
+        }
+        return filmSearchIndex.findMatches(search.getQuery(), byTitle, byDirector)
+                .flatMap(matches -> popularFilmsIndex.findMarkCounts(matches.getFilmIds())
+                        .map(markCounts -> matches.findTop(markCounts, search.getOffset(), search.getLimit())))
+                .<Collection<Film>>map(filmIds -> filmCache.getAll(filmIds, filmDbStorage::findFilmsByIds))
+                .orElseGet(() -> filmDbStorage.searchFilms(search));
+    }
+
+    @Override
+    public Collection<Film> findFilmsFromDirectorOrderBy(final long directorId, final String sortBy) {
+        return filmDbStorage.findFilmsFromDirectorOrderBy(directorId, sortBy);
+    }
+
+    @Override
+    public Collection<Film> findMostLikedFilms(final int count, final Integer genreId, final Integer year) {
+        return popularFilmsIndex.findMostLikedFilmIds(count, genreId, year)
+                .<Collection<Film>>map(filmIds -> filmCache.getAll(filmIds, filmDbStorage::findFilmsByIds))
+                .orElseGet(() -> filmDbStorage.findMostLikedFilms(count, genreId, year));
+    }
+
+    @Override
+    public Collection<Film> findCommonFilms(final long userId, final long friendId) {
+        return markedFilmsIndex.findCommonFilmIds(userId, friendId)
+                .flatMap(popularFilmsIndex::orderByPopularity)
+                .<Collection<Film>>map(filmIds -> filmCache.getAll(filmIds, filmDbStorage::findFilmsByIds))
+                .orElseGet(() -> filmDbStorage.findCommonFilms(userId, friendId));
+    }
+
+    /**
+     * Похожие фильмы из {@link SimilarFilmsIndex}. Запрос большего количества фильмов, чем хранится в списках
+     * индекса, выполняется в БД, чтобы не обрезать результат молча.
+     */
+    @Override
+    public Collection<Film> findSimilarFilms(final long filmId, final int count) {
+        if (count > similarFilmsIndex.getNeighbourCount()) {
+            return filmDbStorage.findSimilarFilms(filmId, count);
+        }
+        return similarFilmsIndex.findSimilarFilmIds(filmId, count)
+                .<Collection<Film>>map(filmIds -> filmCache.getAll(filmIds, filmDbStorage::findFilmsByIds))
+                .orElseGet(() -> filmDbStorage.findSimilarFilms(filmId, count));
+    }
+
+    @Override
+    public Optional<FilmPopularity> findFilmPopularity(final long filmId) {
+        return filmDbStorage.findFilmPopularity(filmId);
+    }
+
+    @Override
+    public void streamFilmPopularity(final Consumer<FilmPopularity> consumer) {
+        filmDbStorage.streamFilmPopularity(consumer);
+    }
+
+    @Override
+    public Optional<FilmSearchDocument> findFilmSearchDocument(final long filmId) {
+        return filmDbStorage.findFilmSearchDocument(filmId);
+    }
+
+    @Override
+    public void streamFilmSearchDocuments(final Consumer<FilmSearchDocument> consumer) {
+        filmDbStorage.streamFilmSearchDocuments(consumer);
+    }
+}
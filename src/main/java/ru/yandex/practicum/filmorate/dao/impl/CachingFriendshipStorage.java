@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.dao.FriendshipStorage;
+import ru.yandex.practicum.filmorate.index.FriendshipGraph;
+
+/**
+ * Хранилище дружбы, которое проверяет наличие друга по {@link FriendshipGraph}. Изменения передаются в
+ * {@link FriendshipDbStorage}, а граф обновляется по событиям, которые оно публикует.
+ */
+@Repository
+@Primary
+@RequiredArgsConstructor
+public class CachingFriendshipStorage implements FriendshipStorage {
+
+    private final FriendshipDbStorage friendshipDbStorage;
+
+    private final FriendshipGraph friendshipGraph;
+
+    @Override
+    public void add(final long userId, final long friendId, final int statusId) {
+        friendshipDbStorage.add(userId, friendId, statusId);
+    }
+
+    @Override
+    public void remove(final long userId, final long friendId) {
+        friendshipDbStorage.remove(userId, friendId);
+    }
+
+    @Override
+    public void update(final long userId, final long friendId, final int statusId) {
+        friendshipDbStorage.update(userId, friendId, statusId);
+    }
+
+    @Override
+    public boolean exists(final long userId, final long friendId) {
+        return friendshipGraph.isFriend(userId, friendId)
+                .orElseGet(() -> friendshipDbStorage.exists(userId, friendId));
+    }
+}
@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.dao.ReferenceStorage;
+import ru.yandex.practicum.filmorate.index.FilmIdsIndex;
+import ru.yandex.practicum.filmorate.index.UserIdsIndex;
+import ru.yandex.practicum.filmorate.model.Reference;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Проверка ссылок, при которой фильмы и пользователи сначала ищутся в {@link FilmIdsIndex} и {@link UserIdsIndex}.
+ * Ответ построенного и актуального множества окончателен в обе стороны; остальные ссылки проверяются в
+ * {@link ReferenceDbStorage} одним запросом, а если на все ссылки ответили множества, запрос к БД не выполняется.
+ */
+@Repository
+@Primary
+@RequiredArgsConstructor
+public class CachingReferenceStorage implements ReferenceStorage {
+
+    private final ReferenceDbStorage referenceDbStorage;
+
+    private final FilmIdsIndex filmIdsIndex;
+
+    private final UserIdsIndex userIdsIndex;
+
+    @Override
+    public List<Reference> findAbsent(final List<Reference> references) {
+        final Map<Reference, Boolean> indexed = new HashMap<>();
+        final List<Reference> unresolved = new ArrayList<>();
+        for (Reference reference : references) {
+            final Optional<Boolean> exists = existsInIndex(reference);
+            if (exists.isPresent()) {
+                indexed.put(reference, exists.get());
+            } else {
+                unresolved.add(reference);
+            }
+        }
+        final Set<Reference> absentInDb = unresolved.isEmpty()
+                ? Set.of() : new HashSet<>(referenceDbStorage.findAbsent(unresolved));
+        return references.stream()
+                .filter(reference -> indexed.containsKey(reference)
+                        ? !indexed.get(reference) : absentInDb.contains(reference))
+                .collect(Collectors.toList());
+    }
+
+    private Optional<Boolean> existsInIndex(final Reference reference) {
+        switch (reference.getType()) {
+            case FILM:
+                return filmIdsIndex.contains(reference.getId());
+            case USER:
+                return userIdsIndex.contains(reference.getId());
+            default:
+                return Optional.empty();
+        }
+    }
+}
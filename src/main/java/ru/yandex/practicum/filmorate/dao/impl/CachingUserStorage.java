@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.dao.UserStorage;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.index.UserIdsIndex;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Хранилище пользователей, которое проверяет существование пользователей по {@link UserIdsIndex}, а друзей и общих
+ * друзей берет из {@link FriendshipGraph}: из БД загружаются только сами пользователи по первичному ключу, без
+ * соединения с таблицей FRIENDSHIP. Остальные запросы и запросы, для которых граф недоступен, передаются в
+ * {@link UserDbStorage}.
+ */
+@Repository
+@Primary
+@RequiredArgsConstructor
+public class CachingUserStorage implements UserStorage {
+
+    private final UserDbStorage userDbStorage;
+
+    private final UserIdsIndex userIdsIndex;
+
+    private final FriendshipGraph friendshipGraph;
+
+    @Override
+    public User add(final User user) {
+        return userDbStorage.add(user);
+    }
+
+    @Override
+    public void remove(final long id) {
+        userDbStorage.remove(id);
+    }
+
+    @Override
+    public void update(final User user) {
+        userDbStorage.update(user);
+    }
+
+    @Override
+    public Collection<User> findAll() {
+        return userDbStorage.findAll();
+    }
+
+    @Override
+    public User findById(final long id) {
+        return findUsersWithFriends(List.of(id))
+                .map(users -> users.stream()
+                        .findFirst()
+                        .orElseThrow(() -> new NotFoundException("Пользователь с id '" + id + "' не найден.")))
+                .orElseGet(() -> userDbStorage.findById(id));
+    }
+
+    @Override
+    public boolean existsById(final long id) {
+        return userIdsIndex.contains(id)
+                .orElseGet(() -> userDbStorage.existsById(id));
+    }
+
+    @Override
+    public boolean existAll(final Collection<Long> ids) {
+        return userIdsIndex.findAbsent(ids)
+                .map(List::isEmpty)
+                .orElseGet(() -> userDbStorage.existAll(ids));
+    }
+
+    @Override
+    public Collection<User> findByIds(final Collection<Long> ids) {
+        return findUsersWithFriends(List.copyOf(ids))
+                .orElseGet(() -> userDbStorage.findByIds(ids));
+    }
+
+    @Override
+    public Collection<User> findFriendsByUserId(final long userId) {
+        return friendshipGraph.findFriendIds(userId)
+                .flatMap(this::findUsersWithFriends)
+                .orElseGet(() -> userDbStorage.findFriendsByUserId(userId));
+    }
+
+    @Override
+    public Collection<User> findCommonFriends(final long userId, final long anotherUserId) {
+        return friendshipGraph.findCommonFriendIds(userId, anotherUserId)
+                .flatMap(this::findUsersWithFriends)
+                .orElseGet(() -> userDbStorage.findCommonFriends(userId, anotherUserId));
+    }
+
+    private Optional<Collection<User>> findUsersWithFriends(final long[] ids) {
+        return findUsersWithFriends(Arrays.stream(ids).boxed().collect(Collectors.toList()));
+    }
+
+    /**
+     * Загрузка пользователей по первичному ключу и заполнение их друзей из графа.
+     *
+     * @return пользователи по возрастанию идентификатора; пустой результат, если граф недоступен.
+     */
+    private Optional<Collection<User>> findUsersWithFriends(final List<Long> ids) {
+        return friendshipGraph.findFriendships(ids).<Collection<User>>map(friendships -> {
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+            final List<User> users = userDbStorage.findUsersByIds(ids);
+            users.forEach(user -> user.getFriends().addAll(friendships.get(user.getId())));
+            return users;
+        });
+    }
+}
@@ -1,14 +1,17 @@
 package ru.yandex.practicum.filmorate.dao.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.dao.DirectorStorage;
+import ru.yandex.practicum.filmorate.dao.event.DirectorChangedEvent;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Operation;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -22,6 +25,8 @@ public class DirectorDbStorage implements DirectorStorage {
 
     private final JdbcTemplate jdbcTemplate;
 
+    private final ApplicationEventPublisher eventPublisher;
+
     @Override
     public Director add(final Director director) {
         final KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -33,6 +38,7 @@ public class DirectorDbStorage implements DirectorStorage {
         }, keyHolder);
 
         director.setId(Objects.requireNonNull(keyHolder.getKey(), "Не удалось добавить директора.").longValue());
+        eventPublisher.publishEvent(new DirectorChangedEvent(director.getId(), Operation.ADD));
 
         return director;
     }
@@ -44,6 +50,7 @@ public class DirectorDbStorage implements DirectorStorage {
         if (update != 1) {
             throw new NotFoundException("Режиссер с id '" + id + "' не найден.");
         }
+        eventPublisher.publishEvent(new DirectorChangedEvent(id, Operation.REMOVE));
     }
 
     @Override
@@ -53,6 +60,7 @@ public class DirectorDbStorage implements DirectorStorage {
         if (update != 1) {
             throw new NotFoundException("Режиссер с id '" + director.getId() + "' не найден.");
         }
+        eventPublisher.publishEvent(new DirectorChangedEvent(director.getId(), Operation.UPDATE));
     }
 
     @Override
@@ -31,7 +31,7 @@ public class EventDbStorage implements EventStorage {
 
     @Override
     public Collection<Feed> getFeed(long id) {
-        final String sql = "SELECT * FROM FEED_EVENTS WHERE USER_ID = ?";
+        final String sql = "SELECT * FROM FEED_EVENTS WHERE USER_ID = ? ORDER BY ID";
         return jdbcTemplate.query(sql, this::extractToFeedList, id);
     }
 
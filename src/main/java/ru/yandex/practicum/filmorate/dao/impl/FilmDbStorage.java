@@ -1,35 +1,74 @@
 package ru.yandex.practicum.filmorate.dao.impl;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarkChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarksRecalculatedEvent;
 import ru.yandex.practicum.filmorate.dto.FilmSearchDto;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.util.Constants;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.stream.Collectors;
-
-import static java.util.function.Function.identity;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 @Repository
-@RequiredArgsConstructor
 @Slf4j
 public class FilmDbStorage implements FilmStorage {
 
+    /**
+     * Запрос, дополняющий отобранные фильмы рейтингом MPA, жанрами и режиссерами. Жанры и режиссеры каждого фильма
+     * собираются в массивы коррелированными подзапросами по индексам внешних ключей, поэтому список фильмов вместе со
+     * всеми связями получается за одно обращение к БД. Вместо первого параметра подставляется запрос, отбирающий
+     * строки из таблицы FILM, вместо второго - порядок сортировки по столбцам этих строк.
+     */
+    private static final String HYDRATED_FILMS_SQL = "SELECT " +
+            "f.ID, f.TITLE, f.DESCRIPTION, f.RELEASE_DATE, f.DURATION, f.MPA_ID, m.RATING_NAME, f.RATING, " +
+            "ARRAY (SELECT ROW (g.ID, g.GENRE_NAME) FROM FILM_GENRE fg JOIN GENRE g ON fg.GENRE_ID = g.ID " +
+            "WHERE fg.FILM_ID = f.ID ORDER BY g.ID) AS genres, " +
+            "ARRAY (SELECT ROW (d.ID, d.DIRECTOR_NAME) FROM FILM_DIRECTOR fd JOIN DIRECTOR d ON fd.DIRECTOR_ID = d.ID " +
+            "WHERE fd.FILM_ID = f.ID ORDER BY d.ID) AS directors " +
+            "FROM (%s) f LEFT JOIN MPA m ON f.MPA_ID = m.ID " +
+            "ORDER BY %s";
+
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    private static final int DEFAULT_ID_CHUNK_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
 
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final int idChunkSize;
+
+    public FilmDbStorage(final JdbcTemplate jdbcTemplate, final ApplicationEventPublisher eventPublisher) {
+        this(jdbcTemplate, eventPublisher, DEFAULT_ID_CHUNK_SIZE);
+    }
+
+    @Autowired
+    public FilmDbStorage(final JdbcTemplate jdbcTemplate, final ApplicationEventPublisher eventPublisher,
+                         @Value("${filmorate.jdbc.id-chunk-size:" + DEFAULT_ID_CHUNK_SIZE + "}") final int idChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.idChunkSize = idChunkSize;
+    }
+
     @Override
     public Film add(final Film film) {
         final KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -48,6 +87,7 @@ public class FilmDbStorage implements FilmStorage {
 
         batchUpdateGenres(film.getId(), film.getGenres());
         batchUpdateDirectors(film.getId(), film.getDirectors());
+        eventPublisher.publishEvent(new FilmChangedEvent(film.getId(), Operation.ADD));
 
         return film;
     }
@@ -59,6 +99,7 @@ public class FilmDbStorage implements FilmStorage {
         if (amount != 1) {
             throw new NotFoundException("Фильм с id '" + id + "' не найден.");
         }
+        eventPublisher.publishEvent(new FilmChangedEvent(id, Operation.REMOVE));
     }
 
     @Override
@@ -74,163 +115,308 @@ public class FilmDbStorage implements FilmStorage {
         batchUpdateGenres(film.getId(), film.getGenres());
         deleteAllDirectorsByFilmId(film.getId());
         batchUpdateDirectors(film.getId(), film.getDirectors());
+        eventPublisher.publishEvent(new FilmChangedEvent(film.getId(), Operation.UPDATE));
     }
 
+    /**
+     * Получение страницы фильмов с идентификатором больше заданного. Фильмы упорядочены по идентификатору, поэтому
+     * идентификатор последнего фильма страницы служит курсором для запроса следующей.
+     */
     @Override
-    public Collection<Film> findAll() {
-        final String sql = "SELECT " +
-                "f.ID, f.TITLE, f.DESCRIPTION, f.RELEASE_DATE, f.DURATION, f.MPA_ID, m.RATING_NAME, CAST (AVG (fm.MARK) AS DECIMAL(3,1)) AS rating " +
-                "FROM " +
-                "FILM f LEFT JOIN MPA m ON f.MPA_ID = m.ID " +
-                "LEFT JOIN film_mark fm on f.id = fm.film_id " +
-                "GROUP BY f.id, m.rating_name";
-
-        Collection<Film> films = jdbcTemplate.query(sql, this::mapToFilm);
-        setGenresForFilms(films);
-        setDirectorsForFilms(films);
-        return films;
+    public Collection<Film> findFilmsAfter(final long afterId, final int limit) {
+        final String sql = "SELECT * FROM FILM WHERE ID > ? ORDER BY ID LIMIT ?";
+        return queryFilms(sql, "f.ID", afterId, limit);
+    }
+
+    /**
+     * Последовательная выгрузка фильмов с идентификатором больше заданного страницами по {@code idChunkSize} фильмов.
+     * Каждая страница читается отдельным запросом по первичному ключу после последнего идентификатора предыдущей, и
+     * фильмы страницы передаются потребителю уже после закрытия запроса, поэтому вне транзакции соединение с БД не
+     * удерживается, пока потребитель обрабатывает фильмы, а в памяти одновременно находится не больше одной страницы.
+     */
+    @Override
+    public void streamFilmsAfter(final long afterId, final Consumer<Film> consumer) {
+        final String sql = "SELECT * FROM FILM WHERE ID > ? ORDER BY ID LIMIT ?";
+        long cursor = afterId;
+        List<Film> page;
+        do {
+            page = queryFilms(sql, "f.ID", cursor, idChunkSize);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                cursor = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == idChunkSize);
     }
 
+    /**
+     * Получение фильма вместе с жанрами и режиссерами за одно обращение к БД. Фильм отбирается по первичному ключу,
+     * жанры и режиссеры - по индексам внешних ключей, поэтому время выполнения не зависит от размера каталога.
+     */
     @Override
     public Film findById(final long filmId) {
-        final String sql = "SELECT " +
-                "f.ID, f.TITLE, f.DESCRIPTION, f.RELEASE_DATE, f.DURATION, f.MPA_ID, m.RATING_NAME, CAST (AVG (fm.MARK) AS DECIMAL(3,1)) AS rating " +
-                "FROM " +
-                "FILM f LEFT JOIN MPA m ON f.MPA_ID = m.ID " +
-                "LEFT JOIN film_mark fm on f.id = fm.film_id " +
-                "GROUP BY f.id, m.rating_name " +
-                "HAVING f.ID = ?";
-
-        try {
-            final Film film = jdbcTemplate.queryForObject(sql, this::mapToFilm, filmId);
-            List<Genre> genres = findAllGenresByFilmId(filmId);
-            List<Director> directors = findAllDirectorsByFilmId(filmId);
-            film.getGenres().addAll(genres);
-            film.getDirectors().addAll(directors);
-            return film;
-        } catch (EmptyResultDataAccessException e) {
+        final String sql = "SELECT * FROM FILM WHERE ID = ?";
+        final List<Film> films = queryFilms(sql, "f.ID", filmId);
+        if (films.isEmpty()) {
             throw new NotFoundException("Фильм с id '" + filmId + "' не найден.");
         }
+        return films.get(0);
     }
 
+    @Override
+    public boolean existsById(final long id) {
+        final String sql = "SELECT EXISTS (SELECT 1 FROM FILM WHERE ID = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
+    }
+
+    /**
+     * Проверка существования всех фильмов запросами по первичному ключу, по {@code idChunkSize} идентификаторов в
+     * запросе.
+     */
+    @Override
+    public boolean existAll(final Collection<Long> ids) {
+        final String sql = "SELECT COUNT(*) FROM FILM WHERE ID = ANY(?)";
+        final Long[] distinctIds = ids.stream().distinct().toArray(Long[]::new);
+        for (int from = 0; from < distinctIds.length; from += idChunkSize) {
+            final Long[] chunk = Arrays.copyOfRange(distinctIds, from,
+                    Math.min(distinctIds.length, from + idChunkSize));
+            final Integer found = jdbcTemplate.queryForObject(sql, Integer.class, (Object) chunk);
+            if (found == null || found != chunk.length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Передача идентификаторов всех фильмов по возрастанию без загрузки самих фильмов.
+     */
+    public void streamIds(final LongConsumer consumer) {
+        jdbcTemplate.query("SELECT ID FROM FILM ORDER BY ID", rs -> {
+            consumer.accept(rs.getLong(1));
+        });
+    }
+
+    /**
+     * Получение самых популярных фильмов. Для каждого сочетания фильтров используется свой текст запроса, чтобы
+     * условия можно было проверить по индексу: без фильтров и по году фильмы читаются из индекса по популярности
+     * уже упорядоченными, по жанру - отбираются по индексу FILM_GENRE (GENRE_ID, FILM_ID).
+     */
     @Override
     public Collection<Film> findMostLikedFilms(final int count, final Integer genreId, final Integer year) {
-        final StringBuilder sql = new StringBuilder(
-                "SELECT f.ID, f.TITLE, f.DESCRIPTION, f.RELEASE_DATE, f.DURATION, f.MPA_ID, m.RATING_NAME, CAST (AVG (fm.MARK) AS DECIMAL(3,1)) AS rating " +
-                        "FROM FILM_GENRE " +
-                        "RIGHT JOIN film f on FILM_GENRE.FILM_ID = f.ID " +
-                        "LEFT JOIN MPA m ON f.MPA_ID = m.ID " +
-                        "LEFT JOIN film_mark fm on f.id = fm.film_id " +
-                        "WHERE YEAR(f.RELEASE_DATE) = COALESCE(?, YEAR(f.RELEASE_DATE)) ");
-        Collection<Film> films;
-        if (genreId != null) {
-            sql.append("AND GENRE_ID = ? GROUP BY f.ID ORDER BY COUNT(fm.USER_ID) DESC LIMIT ?");
-            films = jdbcTemplate.query(sql.toString(), this::mapToFilm, year, genreId, count);
-        } else {
-            sql.append("GROUP BY f.ID ORDER BY COUNT(fm.USER_ID) DESC LIMIT ?");
-            films = jdbcTemplate.query(sql.toString(), this::mapToFilm, year, count);
+        final String orderBy = "f.MARK_COUNT DESC, f.ID";
+        if (genreId == null && year == null) {
+            final String sql = "SELECT * FROM FILM f ORDER BY f.MARK_COUNT DESC, f.ID LIMIT ?";
+            return queryFilms(sql, orderBy, count);
         }
-        setGenresForFilms(films);
-        setDirectorsForFilms(films);
-        return films;
+        if (genreId == null) {
+            final String sql = "SELECT * FROM FILM f WHERE f.RELEASE_YEAR = ? ORDER BY f.MARK_COUNT DESC, f.ID LIMIT ?";
+            return queryFilms(sql, orderBy, year, count);
+        }
+        if (year == null) {
+            final String sql = "SELECT f.* FROM FILM_GENRE fg JOIN FILM f ON f.ID = fg.FILM_ID " +
+                    "WHERE fg.GENRE_ID = ? ORDER BY f.MARK_COUNT DESC, f.ID LIMIT ?";
+            return queryFilms(sql, orderBy, genreId, count);
+        }
+        final String sql = "SELECT f.* FROM FILM_GENRE fg JOIN FILM f ON f.ID = fg.FILM_ID " +
+                "WHERE fg.GENRE_ID = ? AND f.RELEASE_YEAR = ? ORDER BY f.MARK_COUNT DESC, f.ID LIMIT ?";
+        return queryFilms(sql, orderBy, genreId, year, count);
     }
 
     @Override
     public Collection<Film> findFilmsFromDirectorOrderBy(final long directorId, final String sortBy) {
-        final List<Long> filmsByDirectorId = findFilmsByDirectorId(directorId);
-        final String ids = String.join(",", Collections.nCopies(filmsByDirectorId.size(), "?"));
-        final String sql = String.format(
-                "SELECT " +
-                        "f.ID, f.TITLE, f.DESCRIPTION, f.RELEASE_DATE, f.DURATION, f.MPA_ID, m.RATING_NAME, CAST (AVG (fm.MARK) AS DECIMAL(3,1)) AS rating " +
-                        "FROM " +
-                        "FILM f LEFT JOIN MPA m ON f.MPA_ID = m.ID " +
-                        "LEFT JOIN film_mark fm on f.id = fm.film_id " +
-                        "GROUP BY f.id, m.rating_name " +
-                        "HAVING f.id IN (%s) " +
-                        "ORDER BY ", ids);
-        final StringBuilder sb = new StringBuilder();
-        String sqlWithSort = sb.append(sql).append(sortBy).toString();
-        final List<Film> directorFilms = jdbcTemplate.query(sqlWithSort, this::mapToFilm, filmsByDirectorId.toArray());
-        setGenresForFilms(directorFilms);
-        setDirectorsForFilms(directorFilms);
-        return directorFilms;
+        final String sql = "SELECT f.* FROM FILM_DIRECTOR fd JOIN FILM f ON f.ID = fd.FILM_ID WHERE fd.DIRECTOR_ID = ?";
+        return queryFilms(sql, sortBy + ", f.ID", directorId);
     }
 
+    /**
+     * Получение фильмов по списку идентификаторов. Список передается одним параметром-массивом, поэтому текст запроса
+     * не зависит от количества идентификаторов и план запроса переиспользуется. Списки длиннее
+     * filmorate.jdbc.id-chunk-size разбиваются на части, каждая из которых запрашивается отдельно.
+     */
     @Override
-    public Collection<Film> findFilmsByIds(Set<Long> filmIds) {
-        final String ids = String.join(",", Collections.nCopies(filmIds.size(), "?"));
-        final String sql = String.format(
-                "SELECT " +
-                        "f.ID, f.TITLE, f.DESCRIPTION, f.RELEASE_DATE, f.DURATION, f.MPA_ID, m.RATING_NAME, CAST (AVG (fm.MARK) AS DECIMAL(3,1)) AS rating " +
-                        "FROM " +
-                        "FILM f LEFT JOIN MPA m ON f.MPA_ID = m.ID " +
-                        "LEFT JOIN film_mark fm on f.id = fm.film_id " +
-                        "WHERE f.ID IN (%s)" +
-                        "GROUP BY f.id, m.rating_name ", ids);
-
-        Collection<Film> films = jdbcTemplate.query(sql, this::mapToFilm, filmIds.toArray());
-        setDirectorsForFilms(films);
-        setGenresForFilms(films);
+    public Collection<Film> findFilmsByIds(final Set<Long> filmIds) {
+        final String sql = "SELECT * FROM FILM WHERE ID = ANY(?)";
+        final Long[] ids = filmIds.stream().sorted().toArray(Long[]::new);
+        final List<Film> films = new ArrayList<>(ids.length);
+        for (int from = 0; from < ids.length; from += idChunkSize) {
+            final Long[] chunk = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + idChunkSize));
+            films.addAll(queryFilms(sql, "f.ID", (Object) chunk));
+        }
         return films;
     }
 
+    /**
+     * Поиск фильмов по подстроке в названии и в имени режиссера без учета регистра. Текст запроса передается
+     * параметром, символы шаблона LIKE в нем экранируются. Без размера страницы возвращаются все найденные фильмы по
+     * убыванию количества оценок, с размером страницы - страница фильмов по убыванию релевантности
+     * ({@link SearchMatch}).
+     */
     @Override
     public Collection<Film> searchFilms(FilmSearchDto search) {
-        StringBuilder sql = new StringBuilder("SELECT " +
-                "f.ID, f.TITLE, f.DESCRIPTION, f.RELEASE_DATE, f.DURATION, f.MPA_ID, m.RATING_NAME, CAST (AVG (fm.MARK) AS DECIMAL(3,1)) AS rating, d.DIRECTOR_NAME " +
-                "FROM FILM f " +
-                "LEFT JOIN MPA m ON f.MPA_ID = m.ID " +
-                "LEFT JOIN film_mark fm on f.id = fm.film_id " +
-                "left join FILM_DIRECTOR fd on f.id = fd.FILM_ID " +
-                "left join DIRECTOR D on fd.DIRECTOR_ID = D.ID " +
-                "where ");
-
-        if (search.getBy().contains(String.valueOf(SearchBy.TITLE))) {
-            sql.append("f.TITLE ilike '%")
-                    .append(search.getQuery())
-                    .append("%' ");
+        final boolean byTitle = search.getBy().contains(String.valueOf(SearchBy.TITLE));
+        final boolean byDirector = search.getBy().contains(String.valueOf(SearchBy.DIRECTOR));
+        final String query = escapeLikePattern(search.getQuery());
+        final String pattern = "%" + query + "%";
+        final List<String> conditions = new ArrayList<>();
+        final List<Object> args = new ArrayList<>();
+
+        if (byTitle) {
+            conditions.add("f.TITLE ILIKE ?");
+            args.add(pattern);
         }
-        if (search.getBy().size() == 2) {
-            sql.append("OR ");
+        if (byDirector) {
+            conditions.add("EXISTS (SELECT 1 FROM FILM_DIRECTOR fd JOIN DIRECTOR d ON fd.DIRECTOR_ID = d.ID " +
+                    "WHERE fd.FILM_ID = f.ID AND d.DIRECTOR_NAME ILIKE ?)");
+            args.add(pattern);
         }
-        if (search.getBy().contains(String.valueOf(SearchBy.DIRECTOR))) {
-            sql.append("d.DIRECTOR_NAME ilike '%")
-                    .append(search.getQuery())
-                    .append("%' ");
+        final String where = " FROM FILM f WHERE " + String.join(" OR ", conditions);
+        if (search.getLimit() == null) {
+            return queryFilms("SELECT *" + where, "f.MARK_COUNT DESC, f.ID", args.toArray());
         }
-        sql.append("GROUP BY f.id ORDER BY COUNT(fm.USER_ID) DESC");
-        Collection<Film> films = jdbcTemplate.query(sql.toString(), this::mapToFilm);
-        setDirectorsForFilms(films);
-        setGenresForFilms(films);
-        return films;
+
+        final String relevance;
+        if (byTitle) {
+            relevance = String.format("CASE WHEN LOWER(f.TITLE) = LOWER(?) THEN %d WHEN f.TITLE ILIKE ? THEN %d " +
+                            "WHEN f.TITLE ILIKE ? THEN %d ELSE %d END",
+                    SearchMatch.EXACT.getWeight(), SearchMatch.PREFIX.getWeight(),
+                    SearchMatch.SUBSTRING.getWeight(), SearchMatch.DIRECTOR.getWeight());
+            args.addAll(0, List.of(search.getQuery(), query + "%", pattern));
+        } else {
+            relevance = String.valueOf(SearchMatch.DIRECTOR.getWeight());
+        }
+        args.add(search.getLimit());
+        args.add(search.getOffset());
+        final String sql = "SELECT f.*, " + relevance + " + LN(1 + f.MARK_COUNT) AS RELEVANCE" + where +
+                " ORDER BY RELEVANCE DESC, f.ID LIMIT ? OFFSET ?";
+        return queryFilms(sql, "f.RELEVANCE DESC, f.ID", args.toArray());
     }
 
     @Override
     public Collection<Film> findCommonFilms(long userId, long friendId) {
-        final String commonFilmsIdsSql = "SELECT fm1.film_id FROM film_mark fm1, film_mark fm2 " +
-                "WHERE fm1.user_id = ? AND fm2.user_id = ? AND fm1.film_id = fm2.film_id";
-        final String sql = String.format(
-                "SELECT " +
-                        "f.ID, f.TITLE, f.DESCRIPTION, f.RELEASE_DATE, f.DURATION, f.MPA_ID, m.RATING_NAME, CAST (AVG (fm.MARK) AS DECIMAL(3,1)) AS rating " +
-                        "FROM " +
-                        "FILM f LEFT JOIN MPA m ON f.MPA_ID = m.ID " +
-                        "LEFT JOIN film_mark fm on f.id = fm.film_id " +
-                        "GROUP BY f.id, m.rating_name " +
-                        "HAVING f.id IN (%s) " +
-                        "ORDER BY COUNT(fm.USER_ID) DESC", commonFilmsIdsSql);
-        return jdbcTemplate.query(sql, this::mapToFilm, userId, friendId);
+        final String sql = "SELECT * FROM FILM WHERE ID IN (" +
+                "SELECT fm1.film_id FROM film_mark fm1, film_mark fm2 " +
+                "WHERE fm1.user_id = ? AND fm2.user_id = ? AND fm1.film_id = fm2.film_id)";
+        return queryFilms(sql, "f.MARK_COUNT DESC, f.ID", userId, friendId);
+    }
+
+    /**
+     * Получение фильмов, похожих на переданный, по косинусной мере сходства векторов оценок: сумма произведений
+     * оценок пользователей, оценивших оба фильма, деленная на произведение норм векторов оценок фильмов. Лайк без
+     * оценки учитывается с весом {@link Constants#UNRATED_LIKE_WEIGHT}. Рассматриваются только фильмы, у которых
+     * есть общие с переданным оценившие пользователи.
+     */
+    @Override
+    public Collection<Film> findSimilarFilms(final long filmId, final int count) {
+        final String weight = "COALESCE(%s.MARK, " + Constants.UNRATED_LIKE_WEIGHT + ")";
+        final String norm = "SQRT(CAST((SELECT SUM(" + String.format(weight, "n") + " * " + String.format(weight, "n") +
+                ") FROM FILM_MARK n WHERE n.FILM_ID = %s) AS DOUBLE))";
+        final String sql = "SELECT f.*, CAST(d.DOT AS DOUBLE) / (" + String.format(norm, "?") + " * " +
+                String.format(norm, "f.ID") + ") AS SIMILARITY " +
+                "FROM (SELECT fm2.FILM_ID, SUM(" + String.format(weight, "fm1") + " * " + String.format(weight, "fm2") +
+                ") AS DOT FROM FILM_MARK fm1 JOIN FILM_MARK fm2 ON fm2.USER_ID = fm1.USER_ID " +
+                "WHERE fm1.FILM_ID = ? AND fm2.FILM_ID <> fm1.FILM_ID GROUP BY fm2.FILM_ID) d " +
+                "JOIN FILM f ON f.ID = d.FILM_ID ORDER BY SIMILARITY DESC, f.ID LIMIT ?";
+        return queryFilms(sql, "f.SIMILARITY DESC, f.ID", filmId, filmId, count);
     }
 
+    /**
+     * Получение года выпуска, количества оценок и жанров фильма по первичному ключу.
+     */
     @Override
-    public void addMarkToFilm(final long filmId, final long userId, final Integer mark) {
-        final String sql = "MERGE INTO film_mark (film_id, user_id, mark) VALUES (?, ?, ?)";
-        jdbcTemplate.update(sql, filmId, userId, mark);
+    public Optional<FilmPopularity> findFilmPopularity(final long filmId) {
+        final String sql = "SELECT f.ID, f.RELEASE_YEAR, f.MARK_COUNT, " +
+                "ARRAY (SELECT fg.GENRE_ID FROM FILM_GENRE fg WHERE fg.FILM_ID = f.ID ORDER BY fg.GENRE_ID) AS genre_ids " +
+                "FROM FILM f WHERE f.ID = ?";
+        return jdbcTemplate.query(sql, this::mapToFilmPopularity, filmId).stream().findFirst();
     }
 
+    /**
+     * Выгрузка данных о популярности всех фильмов. Количество оценок считается заново по таблице FILM_MARK за один
+     * проход по ней, а не берется из агрегата в таблице FILM.
+     */
     @Override
-    public void removeMarkFromFilm(long filmId, long userId) {
-        final String sql = "DELETE FROM film_mark WHERE film_id = ? AND user_id = ?";
-        jdbcTemplate.update(sql, filmId, userId);
+    public void streamFilmPopularity(final Consumer<FilmPopularity> consumer) {
+        final String sql = "SELECT f.ID, f.RELEASE_YEAR, COALESCE(fm.marks, 0) AS mark_count, " +
+                "ARRAY (SELECT fg.GENRE_ID FROM FILM_GENRE fg WHERE fg.FILM_ID = f.ID ORDER BY fg.GENRE_ID) AS genre_ids " +
+                "FROM FILM f " +
+                "LEFT JOIN (SELECT FILM_ID, COUNT(*) AS marks FROM FILM_MARK GROUP BY FILM_ID) fm ON fm.FILM_ID = f.ID";
+        jdbcTemplate.query(con -> {
+            PreparedStatement stmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            return stmt;
+        }, (RowCallbackHandler) rs -> consumer.accept(mapToFilmPopularity(rs, rs.getRow())));
+    }
+
+    /**
+     * Получение названия и режиссеров фильма по первичному ключу.
+     */
+    @Override
+    public Optional<FilmSearchDocument> findFilmSearchDocument(final long filmId) {
+        final String sql = "SELECT f.ID, f.TITLE, " +
+                "ARRAY (SELECT fd.DIRECTOR_ID FROM FILM_DIRECTOR fd WHERE fd.FILM_ID = f.ID ORDER BY fd.DIRECTOR_ID) " +
+                "AS director_ids FROM FILM f WHERE f.ID = ?";
+        return jdbcTemplate.query(sql, this::mapToFilmSearchDocument, filmId).stream().findFirst();
+    }
+
+    /**
+     * Выгрузка названий и режиссеров всех фильмов.
+     */
+    @Override
+    public void streamFilmSearchDocuments(final Consumer<FilmSearchDocument> consumer) {
+        final String sql = "SELECT f.ID, f.TITLE, " +
+                "ARRAY (SELECT fd.DIRECTOR_ID FROM FILM_DIRECTOR fd WHERE fd.FILM_ID = f.ID ORDER BY fd.DIRECTOR_ID) " +
+                "AS director_ids FROM FILM f";
+        jdbcTemplate.query(con -> {
+            PreparedStatement stmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            return stmt;
+        }, (RowCallbackHandler) rs -> consumer.accept(mapToFilmSearchDocument(rs, rs.getRow())));
+    }
+
+    /**
+     * Установка оценки. Рейтинг фильма после изменения возвращает тот же запрос, который обновляет агрегаты оценок.
+     */
+    @Override
+    public double addMarkToFilm(final long filmId, final long userId, final Integer mark) {
+        final String sql = "SELECT mark FROM OLD TABLE (MERGE INTO film_mark (film_id, user_id, mark) VALUES (?, ?, ?))";
+        final List<Integer> previousMarks = jdbcTemplate.query(sql, this::mapToMark, filmId, userId, mark);
+        if (previousMarks.isEmpty()) {
+            final double rating = updateMarkAggregate(filmId, 1, markValue(mark), ratedCount(mark));
+            eventPublisher.publishEvent(new FilmMarkChangedEvent(filmId, userId, mark, null, Operation.ADD));
+            return rating;
+        }
+        final Integer previousMark = previousMarks.get(0);
+        final double rating = updateMarkAggregate(filmId, 0, markValue(mark) - markValue(previousMark),
+                ratedCount(mark) - ratedCount(previousMark));
+        eventPublisher.publishEvent(new FilmMarkChangedEvent(filmId, userId, mark, previousMark, Operation.UPDATE));
+        return rating;
+    }
+
+    /**
+     * Удаление оценки. Если оценки не было, рейтинг читается отдельным запросом.
+     */
+    @Override
+    public double removeMarkFromFilm(long filmId, long userId) {
+        final String sql = "SELECT mark FROM OLD TABLE (DELETE FROM film_mark WHERE film_id = ? AND user_id = ?)";
+        final List<Integer> removedMarks = jdbcTemplate.query(sql, this::mapToMark, filmId, userId);
+        if (removedMarks.isEmpty()) {
+            final String ratingSql = "SELECT rating FROM film WHERE id = ?";
+            return jdbcTemplate.queryForObject(ratingSql, this::mapToRating, filmId);
+        }
+        final Integer removedMark = removedMarks.get(0);
+        final double rating = updateMarkAggregate(filmId, -1, -markValue(removedMark), -ratedCount(removedMark));
+        eventPublisher.publishEvent(new FilmMarkChangedEvent(filmId, userId, null, removedMark, Operation.REMOVE));
+        return rating;
+    }
+
+    @Override
+    public int recalculateMarkAggregates() {
+        final String sql = "UPDATE film f SET (mark_count, rated_count, mark_sum) = " +
+                "(SELECT COUNT(fm.user_id), COUNT(fm.mark), COALESCE(SUM(fm.mark), 0) FROM film_mark fm " +
+                "WHERE fm.film_id = f.id)";
+        final int films = jdbcTemplate.update(sql);
+        eventPublisher.publishEvent(new FilmMarksRecalculatedEvent(films));
+        return films;
     }
 
     public Map<Long, Set<FilmMark>> findUserIdFilmMarks() {
@@ -238,23 +424,73 @@ public class FilmDbStorage implements FilmStorage {
         return jdbcTemplate.query(filmsIdsSql, this::extractToUserIdFilmMarks);
     }
 
-    private void setGenresForFilms(Collection<Film> films) {
-        Map<Long, Film> filmMap = films.stream()
-                .collect(Collectors.toMap(Film::getId, identity()));
-        Map<Long, List<Genre>> filmIdGenreMap = findGenresInIdList(filmMap.keySet());
-        filmIdGenreMap.forEach((id, genres) -> filmMap.get(id).getGenres().addAll(genres));
+    /**
+     * Получение оценки фильма пользователем.
+     */
+    @Override
+    public Optional<FilmMark> findFilmMark(final long filmId, final long userId) {
+        final String sql = "SELECT user_id, film_id, mark FROM film_mark WHERE film_id = ? AND user_id = ?";
+        return jdbcTemplate.query(sql, this::mapToFilmMark, filmId, userId).stream().findFirst();
+    }
+
+    /**
+     * Получение оценок пользователя, упорядоченных по идентификатору фильма.
+     */
+    @Override
+    public Collection<FilmMark> findUserFilmMarks(final long userId) {
+        final String sql = "SELECT user_id, film_id, mark FROM film_mark WHERE user_id = ? ORDER BY film_id";
+        return jdbcTemplate.query(sql, this::mapToFilmMark, userId);
+    }
+
+    /**
+     * Получение оценок фильма, упорядоченных по идентификатору пользователя.
+     */
+    @Override
+    public Collection<FilmMark> findFilmMarks(final long filmId) {
+        final String sql = "SELECT user_id, film_id, mark FROM film_mark WHERE film_id = ? ORDER BY user_id";
+        return jdbcTemplate.query(sql, this::mapToFilmMark, filmId);
+    }
+
+    /**
+     * Выгрузка всех оценок, упорядоченных по пользователю и фильму, за один проход по индексу FILM_MARK_USER_IDX.
+     */
+    @Override
+    public void streamFilmMarks(final Consumer<FilmMark> consumer) {
+        final String sql = "SELECT user_id, film_id, mark FROM film_mark ORDER BY user_id, film_id";
+        jdbcTemplate.query(con -> {
+            PreparedStatement stmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            return stmt;
+        }, (RowCallbackHandler) rs -> consumer.accept(mapToFilmMark(rs, rs.getRow())));
+    }
+
+    private List<Film> queryFilms(final String filmsSql, final String orderBy, final Object... args) {
+        return jdbcTemplate.query(String.format(HYDRATED_FILMS_SQL, filmsSql, orderBy), this::mapToFilm, args);
+    }
+
+    private double updateMarkAggregate(final long filmId, final int markCountDelta, final int markSumDelta,
+                                       final int ratedCountDelta) {
+        final String sql = "SELECT rating FROM FINAL TABLE (UPDATE film SET mark_count = mark_count + ?, " +
+                "mark_sum = mark_sum + ?, rated_count = rated_count + ? WHERE id = ?)";
+        return jdbcTemplate.queryForObject(sql, this::mapToRating, markCountDelta, markSumDelta, ratedCountDelta,
+                filmId);
     }
 
-    private void setDirectorsForFilms(Collection<Film> films) {
-        Map<Long, Film> filmMap = films.stream()
-                .collect(Collectors.toMap(Film::getId, identity()));
-        Map<Long, List<Director>> filmIdDirectorMap = findDirectorsInIdList(filmMap.keySet());
-        filmIdDirectorMap.forEach((id, directors) -> filmMap.get(id).getDirectors().addAll(directors));
+    private double mapToRating(final ResultSet rs, final int rowNum) throws SQLException {
+        return rs.getDouble("rating");
+    }
+
+    private int markValue(final Integer mark) {
+        return mark == null ? 0 : mark;
+    }
+
+    private int ratedCount(final Integer mark) {
+        return mark == null ? 0 : 1;
     }
 
     private void batchUpdateGenres(final long filmId, final Set<Genre> genres) {
         final List<Genre> genreList = new ArrayList<>(genres);
-        final String sql = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
+        final String sql = "MERGE INTO film_genre (film_id, genre_id) KEY (film_id, genre_id) VALUES (?, ?)";
         jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
             @Override
             public void setValues(PreparedStatement ps, int i) throws SQLException {
@@ -271,7 +507,7 @@ public class FilmDbStorage implements FilmStorage {
 
     private void batchUpdateDirectors(final long filmId, final Set<Director> directors) {
         final List<Director> directorList = new ArrayList<>(directors);
-        final String sql = "INSERT INTO film_director (film_id, director_id) VALUES (?, ?)";
+        final String sql = "MERGE INTO film_director (film_id, director_id) KEY (film_id, director_id) VALUES (?, ?)";
         jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
             @Override
             public void setValues(PreparedStatement ps, int i) throws SQLException {
@@ -296,41 +532,6 @@ public class FilmDbStorage implements FilmStorage {
         jdbcTemplate.update(sql, filmId);
     }
 
-    private Map<Long, List<Genre>> findGenresInIdList(Set<Long> filmIds) {
-        final String ids = String.join(",", Collections.nCopies(filmIds.size(), "?"));
-        final String sql = String.format(
-                "SELECT fg.film_id, fg.genre_id, g.genre_name FROM film_genre fg JOIN genre g ON fg.genre_id = g.id" +
-                        " WHERE fg.film_id IN (%s)", ids);
-
-        return jdbcTemplate.query(sql, this::extractToFilmIdGenreMap, filmIds.toArray());
-    }
-
-    private Map<Long, List<Director>> findDirectorsInIdList(final Set<Long> filmIds) {
-        final String ids = String.join(",", Collections.nCopies(filmIds.size(), "?"));
-        final String sql = String.format(
-                "SELECT fd.film_id, fd.director_id, d.director_name FROM film_director fd JOIN director d ON fd.director_id = d.id" +
-                        " WHERE fd.film_id IN (%s)", ids);
-
-        return jdbcTemplate.query(sql, this::extractToFilmIdDirectorMap, filmIds.toArray());
-    }
-
-    private List<Genre> findAllGenresByFilmId(final long filmId) {
-        final String sql = "SELECT fg.genre_id, g.genre_name FROM film_genre fg JOIN genre g ON fg.genre_id = g.id" +
-                " WHERE film_id = ?";
-        return jdbcTemplate.query(sql, this::mapRowToGenre, filmId);
-    }
-
-    private List<Director> findAllDirectorsByFilmId(long filmId) {
-        final String sql = "SELECT fd.film_id, fd.director_id, d.director_name FROM film_director fd JOIN director d ON fd.director_id = d.id" +
-                " WHERE fd.film_id = ?";
-        return jdbcTemplate.query(sql, this::mapToDirector, filmId);
-    }
-
-    private List<Long> findFilmsByDirectorId(final long directorId) {
-        final String sql = "SELECT film_id FROM film_director WHERE director_id = ?";
-        return jdbcTemplate.queryForList(sql, Long.class, directorId);
-    }
-
     private Film mapToFilm(ResultSet rs, int rowNum) throws SQLException {
         Film film = Film.builder()
                 .id(rs.getLong("id"))
@@ -341,50 +542,55 @@ public class FilmDbStorage implements FilmStorage {
                 .mpa(new Mpa(rs.getInt("mpa_id"), rs.getString("rating_name")))
                 .build();
         film.setRating(rs.getDouble("rating"));
+        for (Object row : (Object[]) rs.getArray("genres").getArray()) {
+            final ResultSet genre = (ResultSet) row;
+            genre.next();
+            film.getGenres().add(new Genre(genre.getInt(1), genre.getString(2)));
+        }
+        for (Object row : (Object[]) rs.getArray("directors").getArray()) {
+            final ResultSet director = (ResultSet) row;
+            director.next();
+            film.getDirectors().add(Director.builder()
+                    .id(director.getLong(1))
+                    .name(director.getString(2))
+                    .build());
+        }
         return film;
     }
 
-    private Map<Long, List<Genre>> extractToFilmIdGenreMap(ResultSet rs) throws SQLException, DataAccessException {
-        final Map<Long, List<Genre>> filmIdGenreMap = new HashMap<>();
-        while (rs.next()) {
-            final Long filmId = rs.getLong(1);
-            List<Genre> genres = filmIdGenreMap.get(filmId);
-            if (genres == null) {
-                genres = new ArrayList<>();
-            }
-            final Genre genre = new Genre(rs.getInt("genre_id"), rs.getString("genre_name"));
-            genres.add(genre);
-            filmIdGenreMap.put(filmId, genres);
+    private FilmPopularity mapToFilmPopularity(ResultSet rs, int rowNum) throws SQLException {
+        final Set<Integer> genreIds = new LinkedHashSet<>();
+        for (Object genreId : (Object[]) rs.getArray("genre_ids").getArray()) {
+            genreIds.add(((Number) genreId).intValue());
         }
-        return filmIdGenreMap;
+        return new FilmPopularity(rs.getLong("id"), rs.getInt("release_year"), rs.getInt("mark_count"),
+                Collections.unmodifiableSet(genreIds));
     }
 
-    private Map<Long, List<Director>> extractToFilmIdDirectorMap(ResultSet rs) throws SQLException, DataAccessException {
-        final Map<Long, List<Director>> filmIdDirectorMap = new HashMap<>();
-        while (rs.next()) {
-            final Long filmId = rs.getLong(1);
-            List<Director> directors = filmIdDirectorMap.get(filmId);
-            if (directors == null) {
-                directors = new ArrayList<>();
-            }
-            final Director director = Director.builder()
-                    .id(rs.getLong("director_id"))
-                    .name(rs.getString("director_name"))
-                    .build();
-            directors.add(director);
-            filmIdDirectorMap.put(filmId, directors);
+    private FilmSearchDocument mapToFilmSearchDocument(ResultSet rs, int rowNum) throws SQLException {
+        final Set<Long> directorIds = new LinkedHashSet<>();
+        for (Object directorId : (Object[]) rs.getArray("director_ids").getArray()) {
+            directorIds.add(((Number) directorId).longValue());
         }
-        return filmIdDirectorMap;
+        return new FilmSearchDocument(rs.getLong("id"), rs.getString("title"),
+                Collections.unmodifiableSet(directorIds));
+    }
+
+    private String escapeLikePattern(final String query) {
+        return query.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
     }
 
-    private Genre mapRowToGenre(ResultSet rs, int rowNum) throws SQLException {
-        return new Genre(rs.getInt("genre_id"), rs.getString("genre_name"));
+    private Integer mapToMark(ResultSet rs, int rowNum) throws SQLException {
+        return rs.getObject("mark", Integer.class);
     }
 
-    private Director mapToDirector(ResultSet rs, int i) throws SQLException {
-        return Director.builder()
-                .id(rs.getLong("director_id"))
-                .name(rs.getString("director_name"))
+    private FilmMark mapToFilmMark(ResultSet rs, int rowNum) throws SQLException {
+        return FilmMark.builder()
+                .userId(rs.getLong("user_id"))
+                .filmId(rs.getLong("film_id"))
+                .mark(rs.getInt("mark"))
                 .build();
     }
 
@@ -396,12 +602,7 @@ public class FilmDbStorage implements FilmStorage {
             if (filmMarks == null) {
                 filmMarks = new LinkedHashSet<>();
             }
-            FilmMark filmMark = FilmMark.builder()
-                    .userId(userId)
-                    .filmId(rs.getLong("film_id"))
-                    .mark(rs.getInt("mark"))
-                    .build();
-            filmMarks.add(filmMark);
+            filmMarks.add(mapToFilmMark(rs, rs.getRow()));
             userFilmMarks.put(userId, filmMarks);
         }
         return userFilmMarks;
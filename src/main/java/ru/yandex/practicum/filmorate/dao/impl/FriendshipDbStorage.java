@@ -1,22 +1,41 @@
 package ru.yandex.practicum.filmorate.dao.impl;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.dao.FriendshipStorage;
+import ru.yandex.practicum.filmorate.dao.event.FriendshipChangedEvent;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+import java.util.HashMap;
+import java.util.Map;
 
 @Repository
-@RequiredArgsConstructor
 @Slf4j
 public class FriendshipDbStorage implements FriendshipStorage {
 
     private final JdbcTemplate jdbcTemplate;
 
+    private final ApplicationEventPublisher eventPublisher;
+
+    public FriendshipDbStorage(final JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, event -> {
+        });
+    }
+
+    @Autowired
+    public FriendshipDbStorage(final JdbcTemplate jdbcTemplate, final ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
     @Override
     public void add(long userId, long friendId, int statusId) {
         final String sql = "INSERT INTO friendship (user_id, friend_id, friendship_status_id) VALUES (?, ?, ?)";
         jdbcTemplate.update(sql, userId, friendId, statusId);
+        eventPublisher.publishEvent(new FriendshipChangedEvent(userId, friendId, statusId, Operation.ADD));
     }
 
     @Override
@@ -25,12 +44,67 @@ public class FriendshipDbStorage implements FriendshipStorage {
         final int rows = jdbcTemplate.update(sql, userId, friendId);
         if (rows != 1) {
             log.info("Удаление из друзей не было произведено, так как {} не был в списке друзей у {}", friendId, userId);
+            return;
         }
+        eventPublisher.publishEvent(new FriendshipChangedEvent(userId, friendId, null, Operation.REMOVE));
     }
 
     @Override
     public void update(long userId, long friendId, int statusId) {
         final String sql = "UPDATE friendship SET friendship_status_id = ? WHERE user_id = ? AND friend_id = ?";
-        jdbcTemplate.update(sql, statusId, userId, friendId);
+        if (jdbcTemplate.update(sql, statusId, userId, friendId) == 1) {
+            eventPublisher.publishEvent(new FriendshipChangedEvent(userId, friendId, statusId, Operation.UPDATE));
+        }
+    }
+
+    @Override
+    public boolean exists(final long userId, final long friendId) {
+        final String sql = "SELECT EXISTS (SELECT 1 FROM friendship WHERE user_id = ? AND friend_id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, userId, friendId));
+    }
+
+    /**
+     * Подсчет общих друзей с друзьями друзей пользователя, которые еще не у него в друзьях.
+     *
+     * @return количество друзей пользователя, добавивших кандидата в друзья, по идентификатору кандидата.
+     */
+    public Map<Long, Integer> countMutualFriends(final long userId) {
+        final String sql = "SELECT f2.friend_id, COUNT(*) FROM friendship f1 " +
+                "JOIN friendship f2 ON f2.user_id = f1.friend_id " +
+                "WHERE f1.user_id = ? AND f2.friend_id <> ? AND NOT EXISTS " +
+                "(SELECT 1 FROM friendship f3 WHERE f3.user_id = ? AND f3.friend_id = f2.friend_id) " +
+                "GROUP BY f2.friend_id";
+        final Map<Long, Integer> counts = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            counts.put(rs.getLong(1), rs.getInt(2));
+        }, userId, userId, userId);
+        return counts;
+    }
+
+    /**
+     * Передача всех записей о дружбе, упорядоченных по пользователю и другу, без создания объектов на каждую запись.
+     */
+    public void streamFriendships(final FriendshipConsumer consumer) {
+        final String sql = "SELECT user_id, friend_id, friendship_status_id FROM friendship " +
+                "ORDER BY user_id, friend_id";
+        jdbcTemplate.query(sql, rs -> {
+            consumer.accept(rs.getLong(1), rs.getLong(2), rs.getInt(3));
+        });
+    }
+
+    /**
+     * Передача записей о дружбе одного пользователя, упорядоченных по другу.
+     */
+    public void streamFriendships(final long userId, final FriendshipConsumer consumer) {
+        final String sql = "SELECT user_id, friend_id, friendship_status_id FROM friendship WHERE user_id = ? " +
+                "ORDER BY friend_id";
+        jdbcTemplate.query(sql, rs -> {
+            consumer.accept(rs.getLong(1), rs.getLong(2), rs.getInt(3));
+        }, userId);
+    }
+
+    @FunctionalInterface
+    public interface FriendshipConsumer {
+        void accept(long userId, long friendId, int statusId);
     }
 }
@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.dao.ReferenceStorage;
+import ru.yandex.practicum.filmorate.model.Reference;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Проверка всех ссылок запроса одним запросом к БД: для каждой ссылки в строке результата возвращается отдельный
+ * столбец с признаком существования сущности, который H2 вычисляет по первичному ключу таблицы.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReferenceDbStorage implements ReferenceStorage {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Reference> findAbsent(final List<Reference> references) {
+        if (references.isEmpty()) {
+            return List.of();
+        }
+        final String sql = references.stream()
+                .map(reference -> "EXISTS (SELECT 1 FROM " + reference.getType().getTable() + " WHERE ID = ?)")
+                .collect(Collectors.joining(", ", "SELECT ", ""));
+        final Object[] args = references.stream().map(Reference::getId).toArray();
+        return jdbcTemplate.query(sql, rs -> {
+            final List<Reference> absent = new ArrayList<>();
+            rs.next();
+            for (int i = 0; i < references.size(); i++) {
+                if (!rs.getBoolean(i + 1)) {
+                    absent.add(references.get(i));
+                }
+            }
+            return absent;
+        }, args);
+    }
+}
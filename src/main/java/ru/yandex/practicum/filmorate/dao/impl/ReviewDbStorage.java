@@ -52,11 +52,24 @@ public class ReviewDbStorage implements ReviewStorage {
         }
     }
 
+    /**
+     * Обновление текста и оценки отзыва. Поля useful, userId и filmId переданного отзыва заполняются значениями из
+     * БД тем же запросом, поэтому после обновления отзыв не нужно загружать заново.
+     */
     @Override
     public void update(final Review review) {
-        final String sql = "UPDATE review SET review_content = ?, is_positive = ? WHERE id = ?";
-        final int update = jdbcTemplate.update(sql, review.getContent(), review.isPositive(), review.getReviewId());
-        if (update != 1) {
+        final String sql = "SELECT useful, user_id, film_id FROM FINAL TABLE " +
+                "(UPDATE review SET review_content = ?, is_positive = ? WHERE id = ?)";
+        final boolean updated = Boolean.TRUE.equals(jdbcTemplate.query(sql, rs -> {
+            if (!rs.next()) {
+                return false;
+            }
+            review.setUseful(rs.getLong("useful"));
+            review.setUserId(rs.getLong("user_id"));
+            review.setFilmId(rs.getLong("film_id"));
+            return true;
+        }, review.getContent(), review.isPositive(), review.getReviewId()));
+        if (!updated) {
             throw new NotFoundException("Отзыв с id '" + review.getReviewId() + "' не найден.");
         }
     }
@@ -79,10 +92,16 @@ public class ReviewDbStorage implements ReviewStorage {
         }
     }
 
+    /**
+     * Самые полезные отзывы к фильму читаются по порядку из индекса REVIEW_FILM_USEFUL_IDX без сортировки. H2 не
+     * выбирает этот индекс сам вместо индекса внешнего ключа и пропускает сортировку, только если порядок совпадает
+     * с индексом с первого столбца, поэтому индекс указан явно, а порядок начинается с film_id.
+     */
     @Override
     public List<Review> findByFilmIdLimitBy(final long filmId, final int count) {
         final String sql = "SELECT id, review_content, is_positive, useful, user_id, film_id " +
-                "FROM review WHERE film_id = ? ORDER BY useful DESC, id LIMIT ?";
+                "FROM review USE INDEX (review_film_useful_idx) WHERE film_id = ? " +
+                "ORDER BY film_id, useful DESC, id LIMIT ?";
         return jdbcTemplate.query(sql, this::mapReview, filmId, count);
     }
 
@@ -94,29 +113,24 @@ public class ReviewDbStorage implements ReviewStorage {
     }
 
     @Override
-    public void addLikeOrDislikeToReview(final long id, final long userId, final String type) {
+    public long addLikeOrDislikeToReview(final long id, final long userId, final String type) {
         addLikeOrDislike(id, userId, type);
-        String sql;
-        if (ReviewLike.LIKE.name().equals(type)) {
-            sql = "UPDATE review SET useful = useful + 1 WHERE id = ?";
-        } else {
-            sql = "UPDATE review SET useful = useful - 1 WHERE id = ?";
-        }
-        jdbcTemplate.update(sql, id);
+        return changeUseful(id, ReviewLike.LIKE.name().equals(type) ? 1 : -1);
     }
 
     @Override
-    public void deleteLikeOrDislikeFromReview(final long reviewId, final long userId, final String type) {
+    public long deleteLikeOrDislikeFromReview(final long reviewId, final long userId, final String type) {
         int update = deleteLikeOrDislike(reviewId, userId, type);
-        String changeUseful;
         if (update == 1) {
-            if (ReviewLike.LIKE.name().equals(type)) {
-                changeUseful = "UPDATE review SET useful = useful - 1 WHERE id = ?";
-            } else {
-                changeUseful = "UPDATE review SET useful = useful + 1 WHERE id = ?";
-            }
-            jdbcTemplate.update(changeUseful, reviewId);
+            return changeUseful(reviewId, ReviewLike.LIKE.name().equals(type) ? -1 : 1);
         }
+        final String sql = "SELECT useful FROM review WHERE id = ?";
+        return jdbcTemplate.queryForObject(sql, Long.class, reviewId);
+    }
+
+    private long changeUseful(final long reviewId, final int delta) {
+        final String sql = "SELECT useful FROM FINAL TABLE (UPDATE review SET useful = useful + ? WHERE id = ?)";
+        return jdbcTemplate.queryForObject(sql, Long.class, delta, reviewId);
     }
 
     private void addLikeOrDislike(final long reviewId, final long userId, final String type) {
@@ -1,13 +1,15 @@
 package ru.yandex.practicum.filmorate.dao.impl;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.dao.UserStorage;
+import ru.yandex.practicum.filmorate.dao.event.UserChangedEvent;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.*;
 
@@ -16,14 +18,27 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.LongConsumer;
 
 @Repository
-@RequiredArgsConstructor
 @Slf4j
 public class UserDbStorage implements UserStorage {
 
     private final JdbcTemplate jdbcTemplate;
 
+    private final ApplicationEventPublisher eventPublisher;
+
+    public UserDbStorage(final JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, event -> {
+        });
+    }
+
+    @Autowired
+    public UserDbStorage(final JdbcTemplate jdbcTemplate, final ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
     @Override
     public User add(final User user) {
         final KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -38,6 +53,7 @@ public class UserDbStorage implements UserStorage {
         }, keyHolder);
 
         user.setId(Objects.requireNonNull(keyHolder.getKey(), "Не удалось добавить пользователя").longValue());
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId(), Operation.ADD));
         return user;
     }
 
@@ -48,6 +64,7 @@ public class UserDbStorage implements UserStorage {
         if (result != 1) {
             throw new NotFoundException("Пользователь с id '" + id + "' не найден.");
         }
+        eventPublisher.publishEvent(new UserChangedEvent(id, Operation.REMOVE));
     }
 
     @Override
@@ -63,6 +80,7 @@ public class UserDbStorage implements UserStorage {
         if (result != 1) {
             throw new NotFoundException("Пользователь с id '" + user.getId() + "' не найден.");
         }
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId(), Operation.UPDATE));
     }
 
     @Override
@@ -87,6 +105,64 @@ public class UserDbStorage implements UserStorage {
         return user;
     }
 
+    @Override
+    public boolean existsById(final long id) {
+        final String sql = "SELECT EXISTS (SELECT 1 FROM filmorate_user WHERE id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
+    }
+
+    /**
+     * Проверка существования всех пользователей одним запросом по первичному ключу.
+     */
+    @Override
+    public boolean existAll(final Collection<Long> ids) {
+        final Long[] distinctIds = ids.stream().distinct().toArray(Long[]::new);
+        if (distinctIds.length == 0) {
+            return true;
+        }
+        final String sql = "SELECT COUNT(*) FROM filmorate_user WHERE id = ANY(?)";
+        final Integer found = jdbcTemplate.queryForObject(sql, Integer.class, (Object) distinctIds);
+        return found != null && found == distinctIds.length;
+    }
+
+    /**
+     * Передача идентификаторов всех пользователей по возрастанию без загрузки самих пользователей.
+     */
+    public void streamIds(final LongConsumer consumer) {
+        jdbcTemplate.query("SELECT id FROM filmorate_user ORDER BY id", rs -> {
+            consumer.accept(rs.getLong(1));
+        });
+    }
+
+    /**
+     * Получение пользователей по идентификаторам без списков друзей.
+     *
+     * @return пользователи по возрастанию идентификатора; не найденные пользователи пропускаются.
+     */
+    public List<User> findUsersByIds(final Collection<Long> ids) {
+        final String sql = "SELECT id, email, login, nickname, birthday FROM filmorate_user " +
+                "WHERE id = ANY(?) ORDER BY id";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> User.builder()
+                .id(rs.getLong("id"))
+                .email(rs.getString("email"))
+                .login(rs.getString("login"))
+                .name(rs.getString("nickname"))
+                .birthday(rs.getDate("birthday").toLocalDate())
+                .build(), (Object) ids.toArray(Long[]::new));
+    }
+
+    @Override
+    public Collection<User> findByIds(final Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        final String sql = "SELECT fu.ID, fu.EMAIL, fu.LOGIN, fu.NICKNAME, fu.BIRTHDAY, " +
+                "f.FRIEND_ID, f.FRIENDSHIP_STATUS_ID, fs.STATUS_NAME " +
+                "FROM FILMORATE_USER fu LEFT JOIN FRIENDSHIP f ON fu.ID = f.USER_ID " +
+                "LEFT JOIN FRIENDSHIP_STATUS fs ON f.FRIENDSHIP_STATUS_ID = fs.ID WHERE fu.ID = ANY(?)";
+        return jdbcTemplate.query(sql, this::extractToUserList, (Object) ids.toArray(Long[]::new));
+    }
+
     @Override
     public Collection<User> findFriendsByUserId(final long userId) {
         final String friendsIdsSql = "SELECT friend_id FROM friendship WHERE user_id = ?";
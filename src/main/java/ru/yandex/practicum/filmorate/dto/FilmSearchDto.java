@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -25,9 +27,24 @@ public class FilmSearchDto {
     @NotNull(message = "Необходимо указать текст для поиска")
     private String query;
 
+    /**
+     * Количество фильмов на странице. Если не указано, возвращаются все найденные фильмы по убыванию популярности,
+     * иначе - страница фильмов по убыванию релевантности.
+     */
+    @Min(value = 1, message = "Количество фильмов на странице должно быть не меньше 1")
+    @Max(value = 1000, message = "Количество фильмов на странице должно быть не больше 1000")
+    private Integer limit;
+
+    @Min(value = 0, message = "Смещение не может быть отрицательным")
+    private Integer offset;
+
     public List<String> getBy() {
         return by.stream()
                 .map(String::toLowerCase)
                 .collect(Collectors.toList());
     }
+
+    public int getOffset() {
+        return offset == null ? 0 : offset;
+    }
 }
@@ -1,17 +0,0 @@
-package ru.yandex.practicum.filmorate.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-@Builder
-public class RecommendationsCurrentParams {
-
-    private int diff;
-    private int numberOfMatches;
-    private int numberOfLikedFilms;
-}
@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.exception;
+
+public class TimeLimitExceededException extends RuntimeException {
+    public TimeLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Идентификаторы существующих фильмов.
+ */
+@Component
+public class FilmIdsIndex extends IdsIndex {
+
+    private final FilmDbStorage filmDbStorage;
+
+    public FilmIdsIndex(final FilmDbStorage filmDbStorage) {
+        this.filmDbStorage = filmDbStorage;
+    }
+
+    @EventListener(classes = FilmChangedEvent.class)
+    public void onFilmsChanging() {
+        markChanging();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmChanged(final FilmChangedEvent event) {
+        apply(event.getFilmId(), event.getOperation());
+    }
+
+    @Override
+    protected void streamIds(final LongConsumer consumer) {
+        filmDbStorage.streamIds(consumer);
+    }
+}
@@ -0,0 +1,427 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dao.DirectorStorage;
+import ru.yandex.practicum.filmorate.dao.event.DirectorChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.FilmSearchDocument;
+import ru.yandex.practicum.filmorate.model.SearchMatch;
+import ru.yandex.practicum.filmorate.util.TransactionStaleness;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Поисковый индекс фильмов по подстроке в названии и в имени режиссера без учета регистра.
+ * <p>
+ * Названия фильмов и имена режиссеров разбиваются на граммы - все подстроки из одного, двух и трех символов. Для
+ * каждой граммы хранится отсортированный массив идентификаторов фильмов (или режиссеров), в тексте которых она
+ * встречается. Для запроса из трех и более символов пересекаются массивы всех его триграмм, а найденные кандидаты
+ * проверяются на вхождение запроса целиком. Запрос из одного или двух символов сам является граммой, поэтому его
+ * результат - готовый массив этой граммы.
+ * <p>
+ * При старте приложения индекс строится по таблицам FILM, FILM_DIRECTOR и DIRECTOR. Дальше после фиксации каждой
+ * транзакции, изменившей фильм или режиссера, их данные перечитываются из БД под блокировкой. Пока транзакция,
+ * изменившая фильмы или режиссеров, не завершена, индекс для нее считается неактуальным.
+ */
+@Component
+@Slf4j
+public class FilmSearchIndex implements SmartInitializingSingleton {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final FilmDbStorage filmDbStorage;
+
+    private final DirectorStorage directorStorage;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, String> titles = new HashMap<>();
+    private final Map<Integer, int[]> filmDirectors = new HashMap<>();
+    private final Map<Integer, String> directorNames = new HashMap<>();
+    private final Map<Integer, PostingList> directorFilms = new HashMap<>();
+    private final Map<String, PostingList> titleGrams = new HashMap<>();
+    private final Map<String, PostingList> directorGrams = new HashMap<>();
+    private volatile boolean ready;
+
+    public FilmSearchIndex(final FilmDbStorage filmDbStorage, final DirectorStorage directorStorage) {
+        this.filmDbStorage = filmDbStorage;
+        this.directorStorage = directorStorage;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Поиск фильмов по подстроке.
+     *
+     * @param query      текст для поиска.
+     * @param byTitle    искать в названиях фильмов.
+     * @param byDirector искать в именах режиссеров.
+     * @return отсортированные по возрастанию идентификаторы найденных фильмов; пустой результат, если индекс не
+     * построен, занят перестроением или не учитывает изменения текущей транзакции.
+     */
+    public Optional<int[]> findFilmIds(final String query, final boolean byTitle, final boolean byDirector) {
+        return findMatches(query, byTitle, byDirector).map(FilmSearchMatches::getFilmIds);
+    }
+
+    /**
+     * Поиск фильмов по подстроке с определением качества совпадения: точное совпадение названия, начало названия,
+     * часть названия или имя режиссера. Если запрос совпадает и с названием, и с режиссером, учитывается лучшее
+     * совпадение.
+     *
+     * @param query      текст для поиска.
+     * @param byTitle    искать в названиях фильмов.
+     * @param byDirector искать в именах режиссеров.
+     * @return найденные фильмы; пустой результат, если индекс не построен, занят перестроением или не учитывает
+     * изменения текущей транзакции.
+     */
+    public Optional<FilmSearchMatches> findMatches(final String query, final boolean byTitle,
+                                                   final boolean byDirector) {
+        final Lock readLock = TransactionStaleness.tryReadLock(this, ready, lock);
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        try {
+            final String normalizedQuery = normalize(query);
+            final int[] titleFilmIds = byTitle ? match(titleGrams, titles, normalizedQuery) : EMPTY;
+            final int[] directorFilmIds = byDirector
+                    ? findDirectorFilmIds(match(directorGrams, directorNames, normalizedQuery))
+                    : EMPTY;
+            final int[] filmIds = union(titleFilmIds, directorFilmIds);
+            final SearchMatch[] matches = new SearchMatch[filmIds.length];
+            int titleIndex = 0;
+            for (int i = 0; i < filmIds.length; i++) {
+                if (titleIndex < titleFilmIds.length && titleFilmIds[titleIndex] == filmIds[i]) {
+                    matches[i] = titleMatch(titles.get(filmIds[i]), normalizedQuery);
+                    titleIndex++;
+                } else {
+                    matches[i] = SearchMatch.DIRECTOR;
+                }
+            }
+            return Optional.of(new FilmSearchMatches(filmIds, matches));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Перестроение индекса по данным БД.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            titles.clear();
+            filmDirectors.clear();
+            directorNames.clear();
+            directorFilms.clear();
+            titleGrams.clear();
+            directorGrams.clear();
+            directorStorage.findAll().forEach(this::addDirector);
+            filmDbStorage.streamFilmSearchDocuments(this::addFilm);
+            ready = true;
+            log.info("Поисковый индекс фильмов построен, фильмов: {}, грамм: {}.", titles.size(), titleGrams.size());
+        } catch (RuntimeException e) {
+            ready = false;
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Перечитывание названия и режиссеров фильма из БД.
+     *
+     * @param filmId идентификатор фильма.
+     */
+    public void refreshFilm(final long filmId) {
+        lock.writeLock().lock();
+        try {
+            removeFilm(Math.toIntExact(filmId));
+            filmDbStorage.findFilmSearchDocument(filmId).ifPresent(this::addFilm);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Перечитывание имени режиссера из БД. Если режиссер удален, он удаляется из индекса вместе со связями с
+     * фильмами.
+     *
+     * @param directorId идентификатор режиссера.
+     */
+    public void refreshDirector(final long directorId) {
+        lock.writeLock().lock();
+        try {
+            final int id = Math.toIntExact(directorId);
+            remove(directorGrams, directorNames.remove(id), id);
+            try {
+                addDirector(directorStorage.findById(directorId));
+            } catch (NotFoundException e) {
+                directorFilms.remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return titles.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(classes = {FilmChangedEvent.class, DirectorChangedEvent.class})
+    public void onSearchDataChanging() {
+        TransactionStaleness.markStale(this);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmChanged(final FilmChangedEvent event) {
+        refreshFilm(event.getFilmId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDirectorChanged(final DirectorChangedEvent event) {
+        refreshDirector(event.getDirectorId());
+    }
+
+    private void addFilm(final FilmSearchDocument film) {
+        final int filmId = Math.toIntExact(film.getFilmId());
+        final String title = normalize(film.getTitle());
+        titles.put(filmId, title);
+        add(titleGrams, title, filmId);
+        final int[] directorIds = film.getDirectorIds().stream().mapToInt(Math::toIntExact).toArray();
+        filmDirectors.put(filmId, directorIds);
+        for (int directorId : directorIds) {
+            directorFilms.computeIfAbsent(directorId, id -> new PostingList()).add(filmId);
+        }
+    }
+
+    private void removeFilm(final int filmId) {
+        remove(titleGrams, titles.remove(filmId), filmId);
+        final int[] directorIds = filmDirectors.remove(filmId);
+        if (directorIds != null) {
+            for (int directorId : directorIds) {
+                final PostingList films = directorFilms.get(directorId);
+                if (films != null && films.remove(filmId)) {
+                    directorFilms.remove(directorId);
+                }
+            }
+        }
+    }
+
+    private void addDirector(final Director director) {
+        final int directorId = Math.toIntExact(director.getId());
+        final String name = normalize(director.getName());
+        directorNames.put(directorId, name);
+        add(directorGrams, name, directorId);
+    }
+
+    private void add(final Map<String, PostingList> grams, final String text, final int id) {
+        for (String gram : grams(text)) {
+            grams.computeIfAbsent(gram, g -> new PostingList()).add(id);
+        }
+    }
+
+    private void remove(final Map<String, PostingList> grams, final String text, final int id) {
+        if (text == null) {
+            return;
+        }
+        for (String gram : grams(text)) {
+            final PostingList postings = grams.get(gram);
+            if (postings != null && postings.remove(id)) {
+                grams.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Поиск идентификаторов, текст которых содержит запрос.
+     */
+    private int[] match(final Map<String, PostingList> grams, final Map<Integer, String> texts, final String query) {
+        if (query.isEmpty()) {
+            return texts.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+        if (query.length() < GRAM_LENGTH) {
+            final PostingList postings = grams.get(query);
+            return postings == null ? EMPTY : postings.toArray();
+        }
+        final List<PostingList> postings = trigrams(query).stream()
+                .map(grams::get)
+                .collect(Collectors.toList());
+        if (postings.contains(null)) {
+            return EMPTY;
+        }
+        postings.sort(Comparator.comparingInt(list -> list.size));
+        final int[] candidates = postings.get(0).toArray();
+        int size = candidates.length;
+        for (PostingList list : postings.subList(1, postings.size())) {
+            size = list.retainAll(candidates, size);
+        }
+        return verify(texts, query, candidates, size);
+    }
+
+    private int[] verify(final Map<Integer, String> texts, final String query, final int[] candidates, final int size) {
+        int matched = 0;
+        for (int i = 0; i < size; i++) {
+            if (texts.get(candidates[i]).contains(query)) {
+                candidates[matched++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(candidates, matched);
+    }
+
+    private int[] findDirectorFilmIds(final int[] directorIds) {
+        return distinctSorted(Arrays.stream(directorIds)
+                .mapToObj(directorFilms::get)
+                .filter(Objects::nonNull)
+                .flatMapToInt(PostingList::stream)
+                .toArray());
+    }
+
+    private static SearchMatch titleMatch(final String title, final String query) {
+        if (title.equals(query)) {
+            return SearchMatch.EXACT;
+        }
+        return title.startsWith(query) ? SearchMatch.PREFIX : SearchMatch.SUBSTRING;
+    }
+
+    /**
+     * Все различные подстроки текста длиной от одного до трех символов.
+     */
+    private static Set<String> grams(final String text) {
+        final Set<String> grams = new HashSet<>();
+        for (int i = 0; i < text.length(); i++) {
+            for (int length = 1; length <= GRAM_LENGTH && i + length <= text.length(); length++) {
+                grams.add(text.substring(i, i + length));
+            }
+        }
+        return grams;
+    }
+
+    private static Set<String> trigrams(final String text) {
+        final Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    private static String normalize(final String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static int[] distinctSorted(final int[] ids) {
+        return Arrays.stream(ids).sorted().distinct().toArray();
+    }
+
+    private static int[] union(final int[] first, final int[] second) {
+        final int[] result = new int[first.length + second.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < first.length || j < second.length) {
+            final int next;
+            if (j == second.length || (i < first.length && first[i] <= second[j])) {
+                next = first[i++];
+            } else {
+                next = second[j++];
+            }
+            if (size == 0 || result[size - 1] != next) {
+                result[size++] = next;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Отсортированный по возрастанию массив идентификаторов без повторов.
+     */
+    private static final class PostingList {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(final int id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                final int position = Arrays.binarySearch(ids, 0, size, id);
+                if (position >= 0) {
+                    return;
+                }
+                insert(-position - 1, id);
+            } else {
+                insert(size, id);
+            }
+        }
+
+        /**
+         * @return true, если после удаления массив пуст.
+         */
+        boolean remove(final int id) {
+            final int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+                size--;
+            }
+            return size == 0;
+        }
+
+        /**
+         * Оставляет в начале массива кандидатов только идентификаторы, присутствующие в этом списке.
+         *
+         * @return количество оставшихся кандидатов.
+         */
+        int retainAll(final int[] candidates, final int candidatesSize) {
+            int retained = 0;
+            for (int i = 0; i < candidatesSize; i++) {
+                if (Arrays.binarySearch(ids, 0, size, candidates[i]) >= 0) {
+                    candidates[retained++] = candidates[i];
+                }
+            }
+            return retained;
+        }
+
+        IntStream stream() {
+            return Arrays.stream(ids, 0, size);
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+
+        private void insert(final int position, final int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.Value;
+import ru.yandex.practicum.filmorate.model.SearchMatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Найденные по поисковому индексу фильмы: отсортированные по возрастанию идентификаторы и качество совпадения
+ * каждого фильма с запросом.
+ */
+@Value
+public class FilmSearchMatches {
+    int[] filmIds;
+    SearchMatch[] matches;
+
+    /**
+     * Выбор страницы самых релевантных фильмов. В куче хранятся только offset + limit лучших фильмов, поэтому
+     * сортировать все найденные фильмы не требуется.
+     *
+     * @param markCounts количество оценок каждого фильма или -1, если фильм не найден в списках популярных фильмов.
+     * @param offset     количество пропускаемых фильмов.
+     * @param limit      количество фильмов на странице.
+     * @return идентификаторы фильмов страницы по убыванию релевантности, а при равенстве - по возрастанию
+     * идентификатора.
+     */
+    public List<Long> findTop(final int[] markCounts, final int offset, final int limit) {
+        final int size = (int) Math.min((long) offset + limit, filmIds.length);
+        if (size <= offset) {
+            return Collections.emptyList();
+        }
+        final double[] relevance = new double[filmIds.length];
+        for (int i = 0; i < filmIds.length; i++) {
+            relevance[i] = matches[i].relevance(markCounts[i]);
+        }
+        final Comparator<Integer> worstFirst = Comparator.<Integer>comparingDouble(i -> relevance[i])
+                .thenComparing(i -> filmIds[i], Comparator.reverseOrder());
+        final PriorityQueue<Integer> top = new PriorityQueue<>(size + 1, worstFirst);
+        for (int i = 0; i < filmIds.length; i++) {
+            if (markCounts[i] < 0) {
+                continue;
+            }
+            if (top.size() < size) {
+                top.add(i);
+            } else if (worstFirst.compare(i, top.peek()) > 0) {
+                top.poll();
+                top.add(i);
+            }
+        }
+        final List<Long> ordered = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            ordered.add((long) filmIds[top.poll()]);
+        }
+        Collections.reverse(ordered);
+        return ordered.size() <= offset ? Collections.emptyList() : ordered.subList(offset, ordered.size());
+    }
+}
@@ -0,0 +1,532 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dao.event.FriendshipChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.UserChangedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.FriendshipDbStorage;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.FriendshipStatus;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.util.TransactionStaleness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Граф дружбы пользователей в памяти в сжатом построчном формате (CSR): отсортированные идентификаторы пользователей,
+ * у которых есть друзья, смещения их строк и один общий массив идентификаторов друзей со статусами дружбы. Друзья
+ * каждого пользователя хранятся по возрастанию идентификатора, поэтому проверка дружбы - двоичный поиск, а общие
+ * друзья - слияние двух отсортированных строк без обращения к БД.
+ * <p>
+ * Изменения после построения не перестраивают массивы: измененная строка целиком копируется в небольшой буфер
+ * изменений, который при чтении имеет приоритет над основными массивами. Когда в буфере набирается больше
+ * {@code filmorate.friends.delta-max-size} строк, он сливается с основными массивами. Удаление пользователя убирает
+ * его строку и все ссылки на него тем же слиянием.
+ * <p>
+ * При старте приложения граф строится по таблице FRIENDSHIP, дальше после фиксации каждой транзакции, изменившей
+ * дружбу, строка пользователя перечитывается из БД под блокировкой записи. Поэтому граф не расходится с таблицей,
+ * даже если события о фиксации нескольких транзакций приходят не в том порядке, в котором транзакции изменили
+ * строку. Пока транзакция, изменившая дружбу или пользователей, не завершена, граф для нее считается неактуальным.
+ * <p>
+ * Для поиска цепочек друзей граф отдает снимок {@link FriendshipPaths} со связями в обе стороны, который строится
+ * при первом запросе и становится неактуальным при любом изменении графа. Под блокировкой чтения запоминаются только
+ * ссылки на основные массивы и копия буфера изменений, а сам снимок строится уже без блокировки, поэтому его
+ * построение не задерживает изменение дружбы. Построение занимает время запроса, поэтому
+ * {@link FriendshipPathFinder} учитывает его в ограничении времени поиска.
+ */
+@Component
+@Slf4j
+public class FriendshipGraph implements SmartInitializingSingleton {
+
+    private static final int DEFAULT_DELTA_MAX_SIZE = 1024;
+
+    private final FriendshipDbStorage friendshipDbStorage;
+    private final int deltaMaxSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long[] userIds = new long[0];
+    private int[] offsets = new int[1];
+    private long[] friendIds = new long[0];
+    private byte[] statusIds = new byte[0];
+    private final Map<Long, Row> delta = new HashMap<>();
+    private final Object pathsMonitor = new Object();
+    private volatile long version;
+    private volatile VersionedPaths paths;
+    private volatile boolean ready;
+
+    public FriendshipGraph(final FriendshipDbStorage friendshipDbStorage) {
+        this(friendshipDbStorage, DEFAULT_DELTA_MAX_SIZE);
+    }
+
+    /**
+     * @param deltaMaxSize количество измененных строк, после которого буфер изменений сливается с основными массивами.
+     */
+    @Autowired
+    public FriendshipGraph(final FriendshipDbStorage friendshipDbStorage,
+                           @Value("${filmorate.friends.delta-max-size:" + DEFAULT_DELTA_MAX_SIZE + "}")
+                           final int deltaMaxSize) {
+        this.friendshipDbStorage = friendshipDbStorage;
+        this.deltaMaxSize = deltaMaxSize;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Получение друзей пользователя.
+     *
+     * @param userId идентификатор пользователя.
+     * @return идентификаторы друзей по возрастанию; пустой результат, если граф не построен, занят изменением или не
+     * учитывает изменения текущей транзакции.
+     */
+    public Optional<long[]> findFriendIds(final long userId) {
+        final Lock readLock = tryReadLock();
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        try {
+            final Row row = row(userId);
+            return Optional.of(Arrays.copyOfRange(row.friendIds, row.from, row.to));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Получение общих друзей двух пользователей слиянием их отсортированных строк.
+     *
+     * @return идентификаторы общих друзей по возрастанию; пустой результат, если граф недоступен.
+     */
+    public Optional<long[]> findCommonFriendIds(final long userId, final long otherUserId) {
+        final Lock readLock = tryReadLock();
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        try {
+            final Row row = row(userId);
+            final Row otherRow = row(otherUserId);
+            final long[] common = new long[Math.min(row.size(), otherRow.size())];
+            int size = 0;
+            int i = row.from;
+            int j = otherRow.from;
+            while (i < row.to && j < otherRow.to) {
+                final long friendId = row.friendIds[i];
+                final long otherFriendId = otherRow.friendIds[j];
+                if (friendId < otherFriendId) {
+                    i++;
+                } else if (friendId > otherFriendId) {
+                    j++;
+                } else {
+                    common[size++] = friendId;
+                    i++;
+                    j++;
+                }
+            }
+            return Optional.of(size == common.length ? common : Arrays.copyOf(common, size));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Проверка, добавил ли пользователь другого пользователя в друзья, двоичным поиском по строке пользователя.
+     *
+     * @return пустой результат, если граф недоступен.
+     */
+    public Optional<Boolean> isFriend(final long userId, final long friendId) {
+        final Lock readLock = tryReadLock();
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        try {
+            final Row row = row(userId);
+            return Optional.of(Arrays.binarySearch(row.friendIds, row.from, row.to, friendId) >= 0);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Подсчет общих друзей с друзьями друзей пользователя: для каждого пользователя, которого добавил в друзья
+     * кто-то из друзей пользователя, считается, сколько друзей пользователя его добавили. Сам пользователь и его
+     * друзья в результат не попадают.
+     *
+     * @return счетчики общих друзей по кандидатам; пустой результат, если граф недоступен.
+     */
+    public Optional<MutualFriendCounts> countMutualFriends(final long userId) {
+        final Lock readLock = tryReadLock();
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        try {
+            final Row row = row(userId);
+            final MutualFriendCounts counts = new MutualFriendCounts(row.size() * 8);
+            for (int i = row.from; i < row.to; i++) {
+                final Row friendRow = row(row.friendIds[i]);
+                for (int j = friendRow.from; j < friendRow.to; j++) {
+                    final long candidateId = friendRow.friendIds[j];
+                    if (candidateId != userId
+                            && Arrays.binarySearch(row.friendIds, row.from, row.to, candidateId) < 0) {
+                        counts.increment(candidateId);
+                    }
+                }
+            }
+            return Optional.of(counts);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Получение списков друзей нескольких пользователей со статусами дружбы.
+     *
+     * @param ids идентификаторы пользователей.
+     * @return списки друзей по возрастанию идентификатора друга для каждого переданного пользователя; пустой
+     * результат, если граф недоступен.
+     */
+    public Optional<Map<Long, List<Friendship>>> findFriendships(final Collection<Long> ids) {
+        final Lock readLock = tryReadLock();
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        try {
+            final Map<Long, List<Friendship>> friendships = new HashMap<>();
+            for (Long id : ids) {
+                final Row row = row(id);
+                final List<Friendship> friends = new ArrayList<>(row.size());
+                for (int i = row.from; i < row.to; i++) {
+                    final FriendshipStatus status = FriendshipStatus.fromId(row.statusIds[i]);
+                    friends.add(new Friendship(row.friendIds[i], status.getStatus()));
+                }
+                friendships.put(id, friends);
+            }
+            return Optional.of(friendships);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Получение снимка графа для поиска цепочек друзей. Снимок строится по графу при первом запросе после
+     * изменения и используется, пока граф не изменится. Одновременные запросы ждут один и тот же снимок, а не строят
+     * каждый свой. Снимок строится без блокировки графа по состоянию на момент запроса, поэтому изменения дружбы
+     * во время построения не ждут его окончания и попадут в следующий снимок.
+     *
+     * @return снимок графа; пустой результат, если граф недоступен.
+     */
+    public Optional<FriendshipPaths> findPaths() {
+        final Lock readLock = tryReadLock();
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        final long pathsVersion;
+        final PathsSource source;
+        try {
+            pathsVersion = version;
+            final VersionedPaths current = paths;
+            if (current != null && current.version == pathsVersion) {
+                return Optional.of(current.paths);
+            }
+            source = new PathsSource(userIds, offsets, friendIds, new HashMap<>(delta));
+        } finally {
+            readLock.unlock();
+        }
+        synchronized (pathsMonitor) {
+            final VersionedPaths current = paths;
+            if (current != null && current.version >= pathsVersion) {
+                return Optional.of(current.paths);
+            }
+            final FriendshipPaths built = source.build();
+            paths = new VersionedPaths(pathsVersion, built);
+            return Optional.of(built);
+        }
+    }
+
+    /**
+     * Перестроение графа по данным БД.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            final Builder builder = new Builder(friendIds.length);
+            friendshipDbStorage.streamFriendships(builder::add);
+            builder.build();
+            version++;
+            ready = true;
+            log.info("Граф дружбы построен, пользователей с друзьями: {}, связей: {}.", userIds.length,
+                    friendIds.length);
+        } catch (RuntimeException e) {
+            ready = false;
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return количество связей дружбы.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int size = friendIds.length;
+            for (Map.Entry<Long, Row> entry : delta.entrySet()) {
+                size += entry.getValue().size() - csrRow(entry.getKey()).size();
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(classes = {FriendshipChangedEvent.class, UserChangedEvent.class})
+    public void onFriendshipsChanging() {
+        TransactionStaleness.markStale(this);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriendshipChanged(final FriendshipChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            version++;
+            putDelta(event.getUserId(), readRow(event.getUserId()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(final UserChangedEvent event) {
+        if (event.getOperation() != Operation.REMOVE) {
+            return;
+        }
+        final long removedId = event.getUserId();
+        lock.writeLock().lock();
+        try {
+            version++;
+            compact(id -> id != removedId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Lock tryReadLock() {
+        return TransactionStaleness.tryReadLock(this, ready, lock);
+    }
+
+    /**
+     * Чтение строки пользователя из таблицы FRIENDSHIP.
+     */
+    private Row readRow(final long userId) {
+        final List<Long> rowFriendIds = new ArrayList<>();
+        final List<Integer> rowStatusIds = new ArrayList<>();
+        friendshipDbStorage.streamFriendships(userId, (id, friendId, statusId) -> {
+            rowFriendIds.add(friendId);
+            rowStatusIds.add(statusId);
+        });
+        final long[] friends = new long[rowFriendIds.size()];
+        final byte[] statuses = new byte[rowFriendIds.size()];
+        for (int i = 0; i < friends.length; i++) {
+            friends[i] = rowFriendIds.get(i);
+            statuses[i] = rowStatusIds.get(i).byteValue();
+        }
+        return new Row(friends, statuses, 0, friends.length);
+    }
+
+    private Row row(final long userId) {
+        final Row changed = delta.get(userId);
+        return changed != null ? changed : csrRow(userId);
+    }
+
+    private Row csrRow(final long userId) {
+        final int index = Arrays.binarySearch(userIds, userId);
+        if (index < 0) {
+            return Row.EMPTY;
+        }
+        return new Row(friendIds, statusIds, offsets[index], offsets[index + 1]);
+    }
+
+    private void putDelta(final long userId, final Row row) {
+        delta.put(userId, row);
+        if (delta.size() > deltaMaxSize) {
+            compact(id -> true);
+        }
+    }
+
+    /**
+     * Слияние буфера изменений с основными массивами. Пользователи, не прошедшие фильтр, удаляются вместе со всеми
+     * ссылками на них.
+     */
+    private void compact(final LongPredicate keep) {
+        final Builder builder = new Builder(friendIds.length + delta.size());
+        for (long userId : rowUserIds()) {
+            if (!keep.test(userId)) {
+                continue;
+            }
+            final Row row = row(userId);
+            for (int k = row.from; k < row.to; k++) {
+                if (keep.test(row.friendIds[k])) {
+                    builder.add(userId, row.friendIds[k], row.statusIds[k]);
+                }
+            }
+        }
+        delta.clear();
+        builder.build();
+    }
+
+    /**
+     * @return идентификаторы пользователей, у которых есть строка в основных массивах или в буфере изменений, по
+     * возрастанию.
+     */
+    private long[] rowUserIds() {
+        final long[] changedIds = delta.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        final long[] ids = new long[userIds.length + changedIds.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < userIds.length || j < changedIds.length) {
+            if (j == changedIds.length || i < userIds.length && userIds[i] < changedIds[j]) {
+                ids[size++] = userIds[i++];
+            } else {
+                if (i < userIds.length && userIds[i] == changedIds[j]) {
+                    i++;
+                }
+                ids[size++] = changedIds[j++];
+            }
+        }
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Строка графа: друзья одного пользователя в диапазоне [from, to) массивов. Строки неизменяемы.
+     */
+    private static final class Row {
+        private static final Row EMPTY = new Row(new long[0], new byte[0], 0, 0);
+
+        private final long[] friendIds;
+        private final byte[] statusIds;
+        private final int from;
+        private final int to;
+
+        private Row(final long[] friendIds, final byte[] statusIds, final int from, final int to) {
+            this.friendIds = friendIds;
+            this.statusIds = statusIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        private int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * Снимок для поиска цепочек друзей вместе с версией графа, по которой он построен.
+     */
+    private static final class VersionedPaths {
+        private final long version;
+        private final FriendshipPaths paths;
+
+        private VersionedPaths(final long version, final FriendshipPaths paths) {
+            this.version = version;
+            this.paths = paths;
+        }
+    }
+
+    /**
+     * Состояние графа для построения снимка без блокировки: основные массивы после построения не изменяются, а
+     * заменяются целиком, поэтому достаточно ссылок на них и копии буфера изменений.
+     */
+    private static final class PathsSource {
+        private final long[] userIds;
+        private final int[] offsets;
+        private final long[] friendIds;
+        private final Map<Long, Row> delta;
+
+        private PathsSource(final long[] userIds, final int[] offsets, final long[] friendIds,
+                            final Map<Long, Row> delta) {
+            this.userIds = userIds;
+            this.offsets = offsets;
+            this.friendIds = friendIds;
+            this.delta = delta;
+        }
+
+        private FriendshipPaths build() {
+            final FriendshipPaths.Builder builder = new FriendshipPaths.Builder();
+            for (int i = 0; i < userIds.length; i++) {
+                if (delta.containsKey(userIds[i])) {
+                    continue;
+                }
+                for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                    builder.add(userIds[i], friendIds[j]);
+                }
+            }
+            delta.forEach((userId, row) -> {
+                for (int j = row.from; j < row.to; j++) {
+                    builder.add(userId, row.friendIds[j]);
+                }
+            });
+            return builder.build();
+        }
+    }
+
+    /**
+     * Построение массивов графа по связям, упорядоченным по пользователю и другу.
+     */
+    private final class Builder {
+        private long[] builtUserIds = new long[16];
+        private int[] builtOffsets = new int[17];
+        private long[] builtFriendIds;
+        private byte[] builtStatusIds;
+        private int rows;
+        private int edges;
+
+        private Builder(final int expectedEdges) {
+            builtFriendIds = new long[Math.max(16, expectedEdges)];
+            builtStatusIds = new byte[builtFriendIds.length];
+        }
+
+        private void add(final long userId, final long friendId, final int statusId) {
+            if (rows == 0 || builtUserIds[rows - 1] != userId) {
+                if (rows == builtUserIds.length) {
+                    builtUserIds = Arrays.copyOf(builtUserIds, rows * 2);
+                    builtOffsets = Arrays.copyOf(builtOffsets, rows * 2 + 1);
+                }
+                builtUserIds[rows] = userId;
+                builtOffsets[rows++] = edges;
+            }
+            if (edges == builtFriendIds.length) {
+                builtFriendIds = Arrays.copyOf(builtFriendIds, edges * 2);
+                builtStatusIds = Arrays.copyOf(builtStatusIds, edges * 2);
+            }
+            builtFriendIds[edges] = friendId;
+            builtStatusIds[edges++] = (byte) statusId;
+        }
+
+        private void build() {
+            builtOffsets[rows] = edges;
+            userIds = Arrays.copyOf(builtUserIds, rows);
+            offsets = Arrays.copyOf(builtOffsets, rows + 1);
+            friendIds = Arrays.copyOf(builtFriendIds, edges);
+            statusIds = Arrays.copyOf(builtStatusIds, edges);
+            delta.clear();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.impl.FriendshipDbStorage;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Поиск кратчайшей цепочки друзей между двумя пользователями по снимку {@link FriendshipPaths} из
+ * {@link FriendshipGraph}. Поиск ограничен длиной цепочки и временем {@code filmorate.friends.path.time-budget-ms}
+ * с начала запроса, в которое входит и построение снимка после изменения графа. Если граф недоступен, снимок
+ * строится по таблице FRIENDSHIP одним проходом, без загрузки пользователей.
+ */
+@Component
+@Slf4j
+public class FriendshipPathFinder {
+
+    private static final long DEFAULT_TIME_BUDGET_MS = 200;
+
+    private final FriendshipGraph friendshipGraph;
+    private final FriendshipDbStorage friendshipDbStorage;
+    private final long timeBudgetNanos;
+    private final LongSupplier ticker;
+
+    public FriendshipPathFinder(final FriendshipGraph friendshipGraph, final FriendshipDbStorage friendshipDbStorage) {
+        this(friendshipGraph, friendshipDbStorage, DEFAULT_TIME_BUDGET_MS);
+    }
+
+    /**
+     * @param timeBudgetMillis время на поиск одной цепочки.
+     */
+    @Autowired
+    public FriendshipPathFinder(final FriendshipGraph friendshipGraph, final FriendshipDbStorage friendshipDbStorage,
+                                @Value("${filmorate.friends.path.time-budget-ms:" + DEFAULT_TIME_BUDGET_MS + "}")
+                                final long timeBudgetMillis) {
+        this(friendshipGraph, friendshipDbStorage, timeBudgetMillis, System::nanoTime);
+    }
+
+    FriendshipPathFinder(final FriendshipGraph friendshipGraph, final FriendshipDbStorage friendshipDbStorage,
+                         final long timeBudgetMillis, final LongSupplier ticker) {
+        this.friendshipGraph = friendshipGraph;
+        this.friendshipDbStorage = friendshipDbStorage;
+        this.timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        this.ticker = ticker;
+    }
+
+    /**
+     * Поиск кратчайшей цепочки друзей, в которой каждый пользователь добавил в друзья следующего.
+     *
+     * @param userId      идентификатор первого пользователя цепочки.
+     * @param otherUserId идентификатор последнего пользователя цепочки.
+     * @param maxDepth    максимальное количество связей в цепочке.
+     * @return цепочка или пустая цепочка, если она не найдена за отведенное время.
+     */
+    public FriendshipPaths.Path findPath(final long userId, final long otherUserId, final int maxDepth) {
+        final long deadline = ticker.getAsLong() + timeBudgetNanos;
+        final FriendshipPaths paths = friendshipGraph.findPaths().orElseGet(this::loadPaths);
+        final FriendshipPaths.Path path = paths.findPath(userId, otherUserId, maxDepth, deadline, ticker);
+        if (path.isTimedOut()) {
+            log.warn("Поиск цепочки друзей между пользователями с id {} и {} прерван: превышено время {} мс.",
+                    userId, otherUserId, TimeUnit.NANOSECONDS.toMillis(timeBudgetNanos));
+        }
+        return path;
+    }
+
+    private FriendshipPaths loadPaths() {
+        final FriendshipPaths.Builder builder = new FriendshipPaths.Builder();
+        friendshipDbStorage.streamFriendships((userId, friendId, statusId) -> builder.add(userId, friendId));
+        return builder.build();
+    }
+}
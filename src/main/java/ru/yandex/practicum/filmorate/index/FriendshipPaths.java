@@ -0,0 +1,302 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Неизменяемый снимок связей дружбы для поиска кратчайших цепочек друзей.
+ * <p>
+ * Пользователи пронумерованы подряд в порядке возрастания идентификатора, а связи хранятся в сжатом построчном
+ * формате в обе стороны: кого добавил в друзья пользователь и кто добавил его. Поэтому поиск идет двунаправленным
+ * обходом в ширину одновременно от первого пользователя по исходящим связям и от второго по входящим, а множества
+ * посещенных пользователей - битовые массивы по номерам пользователей. На каждом шаге расширяется меньший фронт, и
+ * поиск останавливается на первой встрече фронтов, по превышении допустимой длины цепочки или по истечении времени.
+ */
+public final class FriendshipPaths {
+
+    private static final long[] NO_PATH = new long[0];
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    private final long[] userIds;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] inOffsets;
+    private final int[] inTargets;
+
+    private FriendshipPaths(final long[] userIds, final int[] outOffsets, final int[] outTargets,
+                            final int[] inOffsets, final int[] inTargets) {
+        this.userIds = userIds;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.inOffsets = inOffsets;
+        this.inTargets = inTargets;
+    }
+
+    /**
+     * @return количество связей дружбы в снимке.
+     */
+    public int size() {
+        return outTargets.length;
+    }
+
+    /**
+     * Поиск кратчайшей цепочки друзей, в которой каждый пользователь добавил в друзья следующего.
+     *
+     * @param userId      идентификатор первого пользователя цепочки.
+     * @param otherUserId идентификатор последнего пользователя цепочки.
+     * @param maxDepth    максимальное количество связей в цепочке.
+     * @param deadline    момент по часам {@code ticker}, после которого поиск прекращается.
+     * @param ticker      часы в наносекундах.
+     * @return цепочка или пустая цепочка, если она не найдена или время истекло.
+     */
+    public Path findPath(final long userId, final long otherUserId, final int maxDepth, final long deadline,
+                         final LongSupplier ticker) {
+        if (userId == otherUserId) {
+            return Path.found(new long[]{userId});
+        }
+        final int from = Arrays.binarySearch(userIds, userId);
+        final int to = Arrays.binarySearch(userIds, otherUserId);
+        if (from < 0 || to < 0 || maxDepth <= 0) {
+            return Path.NOT_FOUND;
+        }
+        final Side forward = new Side(from, outOffsets, outTargets);
+        final Side backward = new Side(to, inOffsets, inTargets);
+        int expanded = 0;
+        while (forward.depth + backward.depth < maxDepth && forward.size > 0 && backward.size > 0) {
+            final boolean expandForward = forward.size <= backward.size;
+            final Side side = expandForward ? forward : backward;
+            final Side other = expandForward ? backward : forward;
+            int[] next = new int[Math.max(16, side.size)];
+            int nextSize = 0;
+            for (int i = 0; i < side.size; i++) {
+                if (expanded++ % DEADLINE_CHECK_INTERVAL == 0 && ticker.getAsLong() - deadline > 0) {
+                    return Path.TIMED_OUT;
+                }
+                final int user = side.frontier[i];
+                for (int j = side.offsets[user]; j < side.offsets[user + 1]; j++) {
+                    final int neighbour = side.targets[j];
+                    if (!side.visit(neighbour, user)) {
+                        continue;
+                    }
+                    if (other.isVisited(neighbour)) {
+                        return Path.found(toUserIds(forward, backward, neighbour));
+                    }
+                    if (nextSize == next.length) {
+                        next = Arrays.copyOf(next, nextSize * 2);
+                    }
+                    next[nextSize++] = neighbour;
+                }
+            }
+            side.frontier = next;
+            side.size = nextSize;
+            side.depth++;
+        }
+        return Path.NOT_FOUND;
+    }
+
+    private long[] toUserIds(final Side forward, final Side backward, final int meeting) {
+        final long[] path = new long[forward.depth + backward.depth + 2];
+        int head = 0;
+        for (int user = meeting; user != forward.start; user = forward.parents.get(user)) {
+            path[head++] = userIds[user];
+        }
+        path[head++] = userIds[forward.start];
+        for (int i = 0, j = head - 1; i < j; i++, j--) {
+            final long id = path[i];
+            path[i] = path[j];
+            path[j] = id;
+        }
+        for (int user = meeting; user != backward.start; ) {
+            user = backward.parents.get(user);
+            path[head++] = userIds[user];
+        }
+        return head == path.length ? path : Arrays.copyOf(path, head);
+    }
+
+    /**
+     * Результат поиска цепочки друзей.
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Path {
+        public static final Path NOT_FOUND = new Path(NO_PATH, false);
+        public static final Path TIMED_OUT = new Path(NO_PATH, true);
+
+        /**
+         * Идентификаторы пользователей цепочки от первого до последнего; пустой массив, если цепочка не найдена.
+         */
+        private final long[] userIds;
+        /**
+         * Поиск прекращен по истечении времени.
+         */
+        private final boolean timedOut;
+
+        private static Path found(final long[] userIds) {
+            return new Path(userIds, false);
+        }
+    }
+
+    /**
+     * Построение снимка по связям дружбы в любом порядке.
+     */
+    public static final class Builder {
+        private long[] fromIds = new long[16];
+        private long[] toIds = new long[16];
+        private int size;
+
+        public void add(final long userId, final long friendId) {
+            if (size == fromIds.length) {
+                fromIds = Arrays.copyOf(fromIds, size * 2);
+                toIds = Arrays.copyOf(toIds, size * 2);
+            }
+            fromIds[size] = userId;
+            toIds[size++] = friendId;
+        }
+
+        public FriendshipPaths build() {
+            final long[] ids = new long[size * 2];
+            System.arraycopy(fromIds, 0, ids, 0, size);
+            System.arraycopy(toIds, 0, ids, size, size);
+            Arrays.sort(ids);
+            int distinct = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (i == 0 || ids[i] != ids[i - 1]) {
+                    ids[distinct++] = ids[i];
+                }
+            }
+            final long[] userIds = Arrays.copyOf(ids, distinct);
+            final int[] from = new int[size];
+            final int[] to = new int[size];
+            for (int i = 0; i < size; i++) {
+                from[i] = Arrays.binarySearch(userIds, fromIds[i]);
+                to[i] = Arrays.binarySearch(userIds, toIds[i]);
+            }
+            final int[] outOffsets = new int[userIds.length + 1];
+            final int[] inOffsets = new int[userIds.length + 1];
+            return new FriendshipPaths(userIds, outOffsets, group(from, to, outOffsets), inOffsets,
+                    group(to, from, inOffsets));
+        }
+
+        /**
+         * Сортировка связей подсчетом по номеру пользователя, из которого они выходят.
+         *
+         * @param offsets заполняется смещениями строк.
+         * @return номера пользователей, в которые ведут связи, по строкам.
+         */
+        private int[] group(final int[] sources, final int[] targets, final int[] offsets) {
+            for (int source : sources) {
+                offsets[source + 1]++;
+            }
+            for (int i = 1; i < offsets.length; i++) {
+                offsets[i] += offsets[i - 1];
+            }
+            final int[] positions = Arrays.copyOf(offsets, offsets.length - 1);
+            final int[] grouped = new int[sources.length];
+            for (int i = 0; i < sources.length; i++) {
+                grouped[positions[sources[i]]++] = targets[i];
+            }
+            return grouped;
+        }
+    }
+
+    /**
+     * Одна сторона двунаправленного поиска: битовый массив посещенных пользователей, текущий фронт и родители
+     * посещенных пользователей для восстановления цепочки.
+     */
+    private final class Side {
+        private final int start;
+        private final int[] offsets;
+        private final int[] targets;
+        private final long[] visited = new long[(userIds.length + 63) >>> 6];
+        private final IntIntMap parents = new IntIntMap();
+        private int[] frontier;
+        private int size;
+        private int depth;
+
+        private Side(final int start, final int[] offsets, final int[] targets) {
+            this.start = start;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.frontier = new int[]{start};
+            this.size = 1;
+            visited[start >>> 6] |= 1L << start;
+        }
+
+        private boolean isVisited(final int user) {
+            return (visited[user >>> 6] & 1L << user) != 0;
+        }
+
+        /**
+         * @return false, если пользователь уже посещен.
+         */
+        private boolean visit(final int user, final int parent) {
+            if (isVisited(user)) {
+                return false;
+            }
+            visited[user >>> 6] |= 1L << user;
+            parents.put(user, parent);
+            return true;
+        }
+    }
+
+    /**
+     * Отображение номера пользователя в номер родителя: хеш-таблица с открытой адресацией на массиве int, размер
+     * которой зависит от количества посещенных пользователей, а не от размера графа.
+     */
+    private static final class IntIntMap {
+        private static final int EMPTY = -1;
+
+        private int[] keys = new int[32];
+        private int[] values = new int[32];
+        private int size;
+
+        private IntIntMap() {
+            Arrays.fill(keys, EMPTY);
+        }
+
+        private void put(final int key, final int value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            final int index = indexOf(key);
+            if (keys[index] == EMPTY) {
+                keys[index] = key;
+                size++;
+            }
+            values[index] = value;
+        }
+
+        private int get(final int key) {
+            return values[indexOf(key)];
+        }
+
+        private int indexOf(final int key) {
+            final int mask = keys.length - 1;
+            final int hash = key * 0x9E3779B9;
+            int index = (hash ^ hash >>> 16) & mask;
+            while (keys[index] != EMPTY && keys[index] != key) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        private void resize() {
+            final int[] oldKeys = keys;
+            final int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            Arrays.fill(keys, EMPTY);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    final int index = indexOf(oldKeys[i]);
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.util.TransactionStaleness;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Идентификаторы существующих записей в памяти в виде {@link RoaringBitmap}. Проверка существования записи по
+ * такому множеству не обращается к БД и не создает объектов.
+ * <p>
+ * При старте приложения множество строится по идентификаторам из БД, дальше после фиксации каждой транзакции, которая
+ * добавила или удалила запись, идентификатор добавляется или удаляется. Пока транзакция, изменившая записи, не
+ * завершена, множество для нее считается неактуальным. Построенному и актуальному множеству можно доверять в обе
+ * стороны: идентификатор добавляется после фиксации в том же потоке, до того как запрос, создавший запись, вернет
+ * ответ, поэтому клиент, получивший идентификатор новой записи, уже находит его в множестве.
+ */
+@Slf4j
+public abstract class IdsIndex implements SmartInitializingSingleton {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private RoaringBitmap ids = new RoaringBitmap();
+    private volatile boolean ready;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Проверка наличия идентификатора в множестве.
+     *
+     * @param id идентификатор записи.
+     * @return true, если запись существует, false, если ее нет; пустой результат, если множество не построено,
+     * занято перестроением или не учитывает изменения текущей транзакции.
+     */
+    public Optional<Boolean> contains(final long id) {
+        final Lock readLock = TransactionStaleness.tryReadLock(this, ready, lock);
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(isIntId(id) && ids.contains((int) id));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Отбор идентификаторов, которых нет в множестве.
+     *
+     * @param candidateIds идентификаторы записей.
+     * @return идентификаторы несуществующих записей; пустой результат, если множество не построено, занято
+     * перестроением или не учитывает изменения текущей транзакции.
+     */
+    public Optional<List<Long>> findAbsent(final Collection<Long> candidateIds) {
+        final Lock readLock = TransactionStaleness.tryReadLock(this, ready, lock);
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        try {
+            List<Long> absentIds = List.of();
+            for (Long id : candidateIds) {
+                if (!isIntId(id) || !ids.contains(id.intValue())) {
+                    if (absentIds.isEmpty()) {
+                        absentIds = new ArrayList<>();
+                    }
+                    absentIds.add(id);
+                }
+            }
+            return Optional.of(absentIds);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Перестроение множества по данным БД.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            final RoaringBitmap loadedIds = new RoaringBitmap();
+            streamIds(id -> loadedIds.add(Math.toIntExact(id)));
+            ids = loadedIds;
+            ready = true;
+            log.info("Множество идентификаторов {} построено, записей: {}.", getClass().getSimpleName(),
+                    loadedIds.getCardinality());
+        } catch (RuntimeException e) {
+            ready = false;
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.getCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Передача идентификаторов всех записей из БД.
+     */
+    protected abstract void streamIds(LongConsumer consumer);
+
+    /**
+     * Отметка о том, что текущая транзакция изменяет записи и до ее завершения множество для нее неактуально.
+     */
+    protected void markChanging() {
+        TransactionStaleness.markStale(this);
+    }
+
+    /**
+     * Добавление или удаление идентификатора после фиксации изменения записи.
+     */
+    protected void apply(final long id, final Operation operation) {
+        if (operation == Operation.UPDATE) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (operation == Operation.ADD) {
+                ids.add(Math.toIntExact(id));
+            } else if (isIntId(id)) {
+                ids.remove((int) id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean isIntId(final long id) {
+        return id >= 0 && id <= Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,213 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarkChangedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.util.TransactionStaleness;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Оцененные фильмы каждого пользователя в памяти в виде сжатых множеств {@link RoaringBitmap}.
+ * <p>
+ * Общие фильмы двух пользователей - пересечение их множеств, поэтому время поиска зависит от количества оценок этих
+ * пользователей, а не от размера каталога, и БД не используется.
+ * <p>
+ * При старте приложения множества строятся по таблице FILM_MARK, дальше после фиксации каждой транзакции в
+ * множество добавляется или из него удаляется фильм, оценку которого поставили или убрали; удаленный фильм
+ * убирается из всех множеств. Пока транзакция, изменившая оценки, не завершена, множества для нее считаются
+ * неактуальными. Множества удаленных пользователей остаются до перестроения: оценки таких пользователей не
+ * запрашиваются, потому что сервис сначала проверяет, что пользователь существует.
+ */
+@Component
+@Slf4j
+public class MarkedFilmsIndex implements SmartInitializingSingleton {
+
+    private static final int[] NO_FILMS = new int[0];
+
+    private final FilmDbStorage filmDbStorage;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, RoaringBitmap> markedFilms = new HashMap<>();
+    private volatile boolean ready;
+
+    public MarkedFilmsIndex(final FilmDbStorage filmDbStorage) {
+        this.filmDbStorage = filmDbStorage;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Получение фильмов, которые оценил пользователь.
+     *
+     * @param userId идентификатор пользователя.
+     * @return идентификаторы фильмов по возрастанию; пустой результат, если множества недоступны.
+     */
+    public Optional<int[]> findMarkedFilmIds(final long userId) {
+        final Lock readLock = TransactionStaleness.tryReadLock(this, ready, lock);
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        try {
+            final RoaringBitmap films = markedFilms.get(userId);
+            return Optional.of(films == null ? NO_FILMS : films.toArray());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Получение фильмов, которые оценили оба пользователя.
+     *
+     * @param userId      идентификатор первого пользователя.
+     * @param otherUserId идентификатор второго пользователя.
+     * @return идентификаторы фильмов по возрастанию; пустой результат, если множества не построены, заняты
+     * перестроением или не учитывают изменения текущей транзакции.
+     */
+    public Optional<int[]> findCommonFilmIds(final long userId, final long otherUserId) {
+        final Lock readLock = TransactionStaleness.tryReadLock(this, ready, lock);
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        try {
+            final RoaringBitmap films = markedFilms.get(userId);
+            final RoaringBitmap otherFilms = markedFilms.get(otherUserId);
+            if (films == null || otherFilms == null) {
+                return Optional.of(NO_FILMS);
+            }
+            return Optional.of(RoaringBitmap.and(films, otherFilms));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Схожесть вкуса пользователя с другими пользователями - коэффициент Жаккара их множеств оцененных фильмов:
+     * отношение количества общих фильмов к количеству фильмов, которые оценил хотя бы один из двух пользователей.
+     *
+     * @param userId       идентификатор пользователя.
+     * @param otherUserIds идентификаторы пользователей, с которыми сравнивается вкус.
+     * @return схожесть от 0 до 1 в порядке переданных идентификаторов; пустой результат, если множества недоступны.
+     */
+    public Optional<double[]> findTasteSimilarities(final long userId, final long[] otherUserIds) {
+        final Lock readLock = TransactionStaleness.tryReadLock(this, ready, lock);
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        try {
+            final double[] similarities = new double[otherUserIds.length];
+            final RoaringBitmap films = markedFilms.get(userId);
+            if (films == null) {
+                return Optional.of(similarities);
+            }
+            final int cardinality = films.getCardinality();
+            for (int i = 0; i < otherUserIds.length; i++) {
+                final RoaringBitmap otherFilms = markedFilms.get(otherUserIds[i]);
+                if (otherFilms != null) {
+                    final int common = RoaringBitmap.and(films, otherFilms).length;
+                    similarities[i] = (double) common / (cardinality + otherFilms.getCardinality() - common);
+                }
+            }
+            return Optional.of(similarities);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Перестроение всех множеств по данным БД.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            markedFilms.clear();
+            filmDbStorage.streamFilmMarks(filmMark -> markedFilms
+                    .computeIfAbsent(filmMark.getUserId(), id -> new RoaringBitmap())
+                    .add(Math.toIntExact(filmMark.getFilmId())));
+            ready = true;
+            log.info("Множества оцененных фильмов построены, пользователей: {}.", markedFilms.size());
+        } catch (RuntimeException e) {
+            ready = false;
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаление фильма из множеств всех пользователей.
+     *
+     * @param filmId идентификатор фильма.
+     */
+    public void removeFilm(final long filmId) {
+        lock.writeLock().lock();
+        try {
+            final Iterator<RoaringBitmap> iterator = markedFilms.values().iterator();
+            while (iterator.hasNext()) {
+                final RoaringBitmap films = iterator.next();
+                if (films.remove(Math.toIntExact(filmId)) && films.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return markedFilms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(classes = {FilmChangedEvent.class, FilmMarkChangedEvent.class})
+    public void onMarksChanging() {
+        TransactionStaleness.markStale(this);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmMarkChanged(final FilmMarkChangedEvent event) {
+        if (event.getOperation() == Operation.UPDATE) {
+            return;
+        }
+        final int filmId = Math.toIntExact(event.getFilmId());
+        lock.writeLock().lock();
+        try {
+            if (event.getOperation() == Operation.ADD) {
+                markedFilms.computeIfAbsent(event.getUserId(), id -> new RoaringBitmap()).add(filmId);
+                return;
+            }
+            final RoaringBitmap films = markedFilms.get(event.getUserId());
+            if (films != null && films.remove(filmId) && films.isEmpty()) {
+                markedFilms.remove(event.getUserId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmChanged(final FilmChangedEvent event) {
+        if (event.getOperation() == Operation.REMOVE) {
+            removeFilm(event.getFilmId());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Счетчики общих друзей по кандидатам в друзья: хеш-таблица с открытой адресацией на примитивных массивах, без
+ * упаковки идентификаторов и счетчиков в объекты на каждого друга друга.
+ * <p>
+ * Класс не потокобезопасен.
+ */
+public final class MutualFriendCounts {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] userIds;
+    private int[] counts;
+    private int size;
+
+    public MutualFriendCounts(final int expectedSize) {
+        final int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize * 2 - 1)) << 1;
+        userIds = new long[capacity];
+        counts = new int[capacity];
+        Arrays.fill(userIds, EMPTY);
+    }
+
+    public static MutualFriendCounts of(final Map<Long, Integer> counts) {
+        final MutualFriendCounts result = new MutualFriendCounts(counts.size());
+        counts.forEach(result::add);
+        return result;
+    }
+
+    public void increment(final long userId) {
+        add(userId, 1);
+    }
+
+    public void add(final long userId, final int count) {
+        int index = indexOf(userId);
+        if (userIds[index] == EMPTY) {
+            if ((size + 1) * 2 > userIds.length) {
+                resize();
+                index = indexOf(userId);
+            }
+            userIds[index] = userId;
+            size++;
+        }
+        counts[index] += count;
+    }
+
+    public int get(final long userId) {
+        final int index = indexOf(userId);
+        return userIds[index] == EMPTY ? 0 : counts[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(final Consumer consumer) {
+        for (int i = 0; i < userIds.length; i++) {
+            if (userIds[i] != EMPTY) {
+                consumer.accept(userIds[i], counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Линейное пробирование от позиции хеша: возвращает ячейку с идентификатором или первую пустую ячейку.
+     */
+    private int indexOf(final long userId) {
+        final int mask = userIds.length - 1;
+        int index = hash(userId) & mask;
+        while (userIds[index] != EMPTY && userIds[index] != userId) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void resize() {
+        final long[] oldUserIds = userIds;
+        final int[] oldCounts = counts;
+        userIds = new long[oldUserIds.length * 2];
+        counts = new int[oldCounts.length * 2];
+        Arrays.fill(userIds, EMPTY);
+        for (int i = 0; i < oldUserIds.length; i++) {
+            if (oldUserIds[i] != EMPTY) {
+                final int index = indexOf(oldUserIds[i]);
+                userIds[index] = oldUserIds[i];
+                counts[index] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int hash(final long userId) {
+        final long h = userId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @FunctionalInterface
+    public interface Consumer {
+        void accept(long userId, int count);
+    }
+}
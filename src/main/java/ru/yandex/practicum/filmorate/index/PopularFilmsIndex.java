@@ -0,0 +1,249 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarkChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarksRecalculatedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.model.FilmPopularity;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.util.TransactionStaleness;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Списки популярных фильмов в памяти: общий, по жанру, по году выпуска и по жанру и году одновременно.
+ * <p>
+ * Каждый список - упорядоченное множество фильмов по убыванию количества оценок, а при равенстве - по возрастанию
+ * идентификатора, то есть в том же порядке, что и запрос к БД. Получение первых N фильмов не обращается к БД.
+ * <p>
+ * При старте приложения списки строятся по таблице FILM_MARK. Дальше после фиксации каждой транзакции, изменившей
+ * оценки, год выпуска или жанры фильма, данные этого фильма перечитываются из БД и переставляются во всех его списках.
+ * Перечитывание и перестановка выполняются под блокировкой, поэтому списки сходятся к зафиксированному состоянию
+ * независимо от порядка, в котором завершаются транзакции. Пока транзакция, изменившая фильмы, не завершена,
+ * списки для нее считаются неактуальными.
+ */
+@Component
+@Slf4j
+public class PopularFilmsIndex implements SmartInitializingSingleton {
+
+    private static final Comparator<FilmPopularity> BY_POPULARITY = Comparator
+            .comparingInt(FilmPopularity::getMarkCount).reversed()
+            .thenComparingLong(FilmPopularity::getFilmId);
+
+    private final FilmDbStorage filmDbStorage;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, FilmPopularity> films = new HashMap<>();
+    private final Map<LeaderboardKey, NavigableSet<FilmPopularity>> leaderboards = new HashMap<>();
+    private volatile boolean ready;
+
+    public PopularFilmsIndex(final FilmDbStorage filmDbStorage) {
+        this.filmDbStorage = filmDbStorage;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Получение идентификаторов самых популярных фильмов.
+     *
+     * @param count   максимальное количество фильмов.
+     * @param genreId идентификатор жанра или null.
+     * @param year    год выпуска или null.
+     * @return идентификаторы фильмов по убыванию популярности; пустой результат, если списки не построены, заняты
+     * перестроением или не учитывают изменения текущей транзакции.
+     */
+    public Optional<List<Long>> findMostLikedFilmIds(final int count, final Integer genreId, final Integer year) {
+        final Lock readLock = TransactionStaleness.tryReadLock(this, ready, lock);
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        try {
+            final NavigableSet<FilmPopularity> leaderboard = leaderboards.get(new LeaderboardKey(genreId, year));
+            final List<Long> filmIds = new ArrayList<>(Math.max(0, Math.min(count, films.size())));
+            if (leaderboard != null) {
+                for (FilmPopularity film : leaderboard) {
+                    if (filmIds.size() >= count) {
+                        break;
+                    }
+                    filmIds.add(film.getFilmId());
+                }
+            }
+            return Optional.of(filmIds);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Упорядочивание фильмов по популярности: по убыванию количества оценок, а при равенстве - по возрастанию
+     * идентификатора.
+     *
+     * @param filmIds идентификаторы фильмов.
+     * @return идентификаторы фильмов по убыванию популярности без отсутствующих в списках; пустой результат, если
+     * списки не построены, заняты перестроением или не учитывают изменения текущей транзакции.
+     */
+    public Optional<List<Long>> orderByPopularity(final int[] filmIds) {
+        final Lock readLock = TransactionStaleness.tryReadLock(this, ready, lock);
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        final List<FilmPopularity> found = new ArrayList<>(filmIds.length);
+        try {
+            for (int filmId : filmIds) {
+                final FilmPopularity film = films.get((long) filmId);
+                if (film != null) {
+                    found.add(film);
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+        found.sort(BY_POPULARITY);
+        final List<Long> orderedIds = new ArrayList<>(found.size());
+        for (FilmPopularity film : found) {
+            orderedIds.add(film.getFilmId());
+        }
+        return Optional.of(orderedIds);
+    }
+
+    /**
+     * Получение количества оценок фильмов.
+     *
+     * @param filmIds идентификаторы фильмов.
+     * @return количество оценок каждого фильма или -1 для фильмов, отсутствующих в списках; пустой результат, если
+     * списки не построены, заняты перестроением или не учитывают изменения текущей транзакции.
+     */
+    public Optional<int[]> findMarkCounts(final int[] filmIds) {
+        final Lock readLock = TransactionStaleness.tryReadLock(this, ready, lock);
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        try {
+            final int[] markCounts = new int[filmIds.length];
+            for (int i = 0; i < filmIds.length; i++) {
+                final FilmPopularity film = films.get((long) filmIds[i]);
+                markCounts[i] = film == null ? -1 : film.getMarkCount();
+            }
+            return Optional.of(markCounts);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Перестроение всех списков по данным БД.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            films.clear();
+            leaderboards.clear();
+            filmDbStorage.streamFilmPopularity(this::add);
+            ready = true;
+            log.info("Списки популярных фильмов построены, фильмов: {}.", films.size());
+        } catch (RuntimeException e) {
+            ready = false;
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Перечитывание данных фильма из БД и перестановка его во всех списках.
+     *
+     * @param filmId идентификатор фильма.
+     */
+    public void refresh(final long filmId) {
+        lock.writeLock().lock();
+        try {
+            remove(filmId);
+            filmDbStorage.findFilmPopularity(filmId).ifPresent(this::add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return films.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(classes = {FilmChangedEvent.class, FilmMarkChangedEvent.class, FilmMarksRecalculatedEvent.class})
+    public void onFilmsChanging() {
+        TransactionStaleness.markStale(this);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmChanged(final FilmChangedEvent event) {
+        refresh(event.getFilmId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmMarkChanged(final FilmMarkChangedEvent event) {
+        if (event.getOperation() != Operation.UPDATE) {
+            refresh(event.getFilmId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmMarksRecalculated(final FilmMarksRecalculatedEvent event) {
+        rebuild();
+    }
+
+    private void add(final FilmPopularity film) {
+        films.put(film.getFilmId(), film);
+        forEachLeaderboard(film, leaderboard -> leaderboard.add(film));
+    }
+
+    private void remove(final long filmId) {
+        final FilmPopularity film = films.remove(filmId);
+        if (film != null) {
+            forEachLeaderboard(film, leaderboard -> leaderboard.remove(film));
+        }
+    }
+
+    private void forEachLeaderboard(final FilmPopularity film,
+                                    final Consumer<NavigableSet<FilmPopularity>> action) {
+        action.accept(leaderboard(new LeaderboardKey(null, null)));
+        action.accept(leaderboard(new LeaderboardKey(null, film.getReleaseYear())));
+        for (Integer genreId : film.getGenreIds()) {
+            action.accept(leaderboard(new LeaderboardKey(genreId, null)));
+            action.accept(leaderboard(new LeaderboardKey(genreId, film.getReleaseYear())));
+        }
+    }
+
+    private NavigableSet<FilmPopularity> leaderboard(final LeaderboardKey key) {
+        return leaderboards.computeIfAbsent(key, k -> new TreeSet<>(BY_POPULARITY));
+    }
+
+    @Value
+    private static class LeaderboardKey {
+        Integer genreId;
+        Integer year;
+    }
+}
@@ -0,0 +1,359 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+
+/**
+ * Сжатое множество неотрицательных целых чисел по схеме Roaring.
+ * <p>
+ * Числа делятся на блоки по старшим 16 битам. Блок, в котором не больше {@value #ARRAY_MAX_SIZE} чисел, хранится
+ * отсортированным массивом младших 16 бит, заполненный плотнее - битовой картой на 65 536 бит (8 КБ). Поэтому
+ * небольшие множества занимают по 2 байта на число, а плотные - не больше 1 бита, и пересечение двух множеств
+ * проходит только по блокам, которые есть в обоих: слиянием массивов, проверкой битов или побитовым И слов карт.
+ * <p>
+ * Класс не потокобезопасен.
+ */
+final class RoaringBitmap {
+
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+    private static final int GALLOP_RATIO = 32;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    /**
+     * @return true, если числа не было во множестве.
+     */
+    boolean add(final int value) {
+        final char key = highBits(value);
+        int index = indexOf(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+        final Container container = containers[index];
+        final int cardinality = container.cardinality();
+        containers[index] = container.add((char) value);
+        return containers[index].cardinality() > cardinality;
+    }
+
+    /**
+     * @return true, если число было во множестве.
+     */
+    boolean remove(final int value) {
+        final int index = indexOf(highBits(value));
+        if (index < 0) {
+            return false;
+        }
+        final Container container = containers[index];
+        final int cardinality = container.cardinality();
+        containers[index] = container.remove((char) value);
+        if (containers[index].cardinality() == 0) {
+            removeContainer(index);
+            return true;
+        }
+        return containers[index].cardinality() < cardinality;
+    }
+
+    boolean contains(final int value) {
+        final int index = indexOf(highBits(value));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    int getCardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return числа множества по возрастанию.
+     */
+    int[] toArray() {
+        final int[] values = new int[getCardinality()];
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            position = containers[i].copyTo(keys[i] << 16, values, position);
+        }
+        return values;
+    }
+
+    /**
+     * Пересечение двух множеств без построения промежуточного множества.
+     *
+     * @return числа, которые есть в обоих множествах, по возрастанию.
+     */
+    static int[] and(final RoaringBitmap first, final RoaringBitmap second) {
+        int[] values = new int[Math.min(first.getCardinality(), second.getCardinality())];
+        int position = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.size && j < second.size) {
+            final char firstKey = first.keys[i];
+            final char secondKey = second.keys[j];
+            if (firstKey < secondKey) {
+                i++;
+            } else if (firstKey > secondKey) {
+                j++;
+            } else {
+                position = first.containers[i].and(second.containers[j], firstKey << 16, values, position);
+                i++;
+                j++;
+            }
+        }
+        return position == values.length ? values : Arrays.copyOf(values, position);
+    }
+
+    private int indexOf(final char key) {
+        if (size > 0 && keys[size - 1] == key) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(final int index, final char key, final Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void removeContainer(final int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        containers[--size] = null;
+    }
+
+    private static char highBits(final int value) {
+        return (char) (value >>> 16);
+    }
+
+    /**
+     * Блок чисел с общими старшими 16 битами. Операции изменения возвращают блок, которым нужно заменить текущий:
+     * при переполнении массив превращается в битовую карту, а поредевшая карта - обратно в массив.
+     */
+    private abstract static class Container {
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        /**
+         * Запись чисел блока со старшими битами high в массив, начиная с позиции position.
+         *
+         * @return позиция после последнего записанного числа.
+         */
+        abstract int copyTo(int high, int[] values, int position);
+
+        /**
+         * Запись пересечения блоков в массив, начиная с позиции position.
+         *
+         * @return позиция после последнего записанного числа.
+         */
+        abstract int and(Container other, int high, int[] values, int position);
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values = new char[4];
+        private int cardinality;
+
+        @Override
+        Container add(final char value) {
+            final int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX_SIZE) {
+                return toBitmap().add(value);
+            }
+            final int insertion = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_MAX_SIZE));
+            }
+            System.arraycopy(values, insertion, values, insertion + 1, cardinality - insertion);
+            values[insertion] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(final char value) {
+            final int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(final char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int copyTo(final int high, final int[] target, int position) {
+            for (int i = 0; i < cardinality; i++) {
+                target[position++] = high | values[i];
+            }
+            return position;
+        }
+
+        @Override
+        int and(final Container other, final int high, final int[] target, int position) {
+            if (other instanceof BitmapContainer) {
+                final long[] words = ((BitmapContainer) other).words;
+                for (int i = 0; i < cardinality; i++) {
+                    final char value = values[i];
+                    if ((words[value >>> 6] & (1L << value)) != 0) {
+                        target[position++] = high | value;
+                    }
+                }
+                return position;
+            }
+            final ArrayContainer array = (ArrayContainer) other;
+            final ArrayContainer smaller = cardinality <= array.cardinality ? this : array;
+            final ArrayContainer larger = smaller == this ? array : this;
+            if (larger.cardinality / GALLOP_RATIO > smaller.cardinality) {
+                int from = 0;
+                for (int i = 0; i < smaller.cardinality && from < larger.cardinality; i++) {
+                    final int index = Arrays.binarySearch(larger.values, from, larger.cardinality,
+                            smaller.values[i]);
+                    if (index >= 0) {
+                        target[position++] = high | smaller.values[i];
+                        from = index + 1;
+                    } else {
+                        from = -index - 1;
+                    }
+                }
+                return position;
+            }
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < array.cardinality) {
+                final char value = values[i];
+                final char otherValue = array.values[j];
+                if (value < otherValue) {
+                    i++;
+                } else if (value > otherValue) {
+                    j++;
+                } else {
+                    target[position++] = high | value;
+                    i++;
+                    j++;
+                }
+            }
+            return position;
+        }
+
+        private BitmapContainer toBitmap() {
+            final BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words = new long[BITMAP_WORDS];
+        private int cardinality;
+
+        @Override
+        Container add(final char value) {
+            final long word = words[value >>> 6];
+            final long updated = word | (1L << value);
+            if (updated != word) {
+                words[value >>> 6] = updated;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(final char value) {
+            final long word = words[value >>> 6];
+            final long updated = word & ~(1L << value);
+            if (updated != word) {
+                words[value >>> 6] = updated;
+                cardinality--;
+                if (cardinality <= ARRAY_MAX_SIZE) {
+                    return toArray();
+                }
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(final char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int copyTo(final int high, final int[] target, int position) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    target[position++] = high | (i << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return position;
+        }
+
+        @Override
+        int and(final Container other, final int high, final int[] target, int position) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this, high, target, position);
+            }
+            final long[] otherWords = ((BitmapContainer) other).words;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i] & otherWords[i];
+                while (word != 0) {
+                    target[position++] = high | (i << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return position;
+        }
+
+        private ArrayContainer toArray() {
+            final ArrayContainer array = new ArrayContainer();
+            array.values = new char[ARRAY_MAX_SIZE];
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    array.values[array.cardinality++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return array;
+        }
+    }
+}
@@ -0,0 +1,558 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarkChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarksRecalculatedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.model.FilmMark;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.util.Constants;
+import ru.yandex.practicum.filmorate.util.TransactionStaleness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Похожие фильмы в памяти: для каждого фильма хранятся не больше K фильмов с наибольшим косинусным сходством
+ * векторов оценок, упорядоченные по убыванию сходства, а при равенстве - по возрастанию идентификатора, то есть в том
+ * же порядке, что и запрос к БД. Получение похожих фильмов не обращается к БД и занимает O(K).
+ * <p>
+ * Вектор оценок фильма - оценки пользователей, оценивших его; лайк без оценки учитывается с весом
+ * {@link Constants#UNRATED_LIKE_WEIGHT}. Сходство считается только для фильмов с общими оценившими пользователями.
+ * <p>
+ * При старте приложения векторы строятся по таблице FILM_MARK, а списки похожих фильмов считаются параллельно по всем
+ * фильмам. Дальше после фиксации каждой транзакции, изменившей оценку, вектор фильма перечитывается из БД, его список
+ * пересчитывается, а в списках фильмов с общими оценившими пользователями меняется только его позиция; список
+ * пересчитывается целиком, только если фильм из него выпал и на его место нужно найти следующий. Перечитывание
+ * выполняется под блокировкой, поэтому списки сходятся к зафиксированному состоянию независимо от порядка, в котором
+ * завершаются транзакции. Пока транзакция, изменившая оценки, не завершена, списки для нее считаются неактуальными.
+ */
+@Component
+@Slf4j
+public class SimilarFilmsIndex implements SmartInitializingSingleton {
+
+    private static final int DEFAULT_NEIGHBOURS = 50;
+
+    private final FilmDbStorage filmDbStorage;
+
+    private final int neighbourCount;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, MarkVector> filmVectors = new HashMap<>();
+    private final Map<Integer, MarkVector> userRows = new HashMap<>();
+    private final Map<Integer, Neighbours> neighbours = new HashMap<>();
+    private Accumulator accumulator = new Accumulator(0);
+    private int maxFilmId;
+    private volatile boolean ready;
+
+    public SimilarFilmsIndex(final FilmDbStorage filmDbStorage) {
+        this(filmDbStorage, DEFAULT_NEIGHBOURS);
+    }
+
+    /**
+     * @param neighbourCount количество хранимых похожих фильмов для каждого фильма.
+     */
+    @Autowired
+    public SimilarFilmsIndex(final FilmDbStorage filmDbStorage,
+                             @Value("${filmorate.films.similar.neighbours:" + DEFAULT_NEIGHBOURS + "}")
+                             final int neighbourCount) {
+        this.filmDbStorage = filmDbStorage;
+        this.neighbourCount = neighbourCount;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Получение фильмов, похожих на переданный. Больше {@link #getNeighbourCount()} фильмов не возвращается. Если
+     * списки в этот момент обновляются, запрос ждет окончания обновления одного фильма.
+     *
+     * @param filmId идентификатор фильма.
+     * @param count  максимальное количество фильмов.
+     * @return идентификаторы фильмов по убыванию сходства; пустой результат, если списки не построены или не
+     * учитывают изменения текущей транзакции.
+     */
+    public Optional<List<Long>> findSimilarFilmIds(final long filmId, final int count) {
+        final Lock readLock = TransactionStaleness.readLock(this, ready, lock);
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        try {
+            final Neighbours filmNeighbours = filmId > Integer.MAX_VALUE ? null : neighbours.get((int) filmId);
+            if (filmNeighbours == null) {
+                return Optional.of(List.of());
+            }
+            final List<Long> filmIds = new ArrayList<>(Math.min(count, filmNeighbours.size()));
+            for (int i = 0; i < filmNeighbours.size() && filmIds.size() < count; i++) {
+                filmIds.add((long) filmNeighbours.filmIds[i]);
+            }
+            return Optional.of(filmIds);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @return количество хранимых похожих фильмов для каждого фильма.
+     */
+    public int getNeighbourCount() {
+        return neighbourCount;
+    }
+
+    /**
+     * Перестроение всех векторов и списков по данным БД.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            filmVectors.clear();
+            userRows.clear();
+            neighbours.clear();
+            loadVectors();
+            maxFilmId = filmVectors.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+            accumulator = new Accumulator(maxFilmId + 1);
+            final int size = maxFilmId + 1;
+            final ThreadLocal<Accumulator> accumulators = ThreadLocal.withInitial(() -> new Accumulator(size));
+            final Map<Integer, Neighbours> computed = new ConcurrentHashMap<>();
+            filmVectors.keySet().parallelStream().forEach(filmId -> {
+                final Neighbours filmNeighbours = computeNeighbours(filmId, accumulators.get());
+                if (filmNeighbours.size() > 0) {
+                    computed.put(filmId, filmNeighbours);
+                }
+            });
+            neighbours.putAll(computed);
+            ready = true;
+            log.info("Списки похожих фильмов построены, фильмов: {}.", filmVectors.size());
+        } catch (RuntimeException e) {
+            ready = false;
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Перечитывание оценок фильма из БД и пересчет его списка и его позиции в списках фильмов с общими оценившими
+     * пользователями.
+     *
+     * @param filmId идентификатор фильма.
+     */
+    public void refresh(final long filmId) {
+        lock.writeLock().lock();
+        try {
+            if (ready) {
+                update((int) filmId, toVector(filmDbStorage.findFilmMarks(filmId), true));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener(classes = {FilmChangedEvent.class, FilmMarkChangedEvent.class, FilmMarksRecalculatedEvent.class})
+    public void onFilmsChanging() {
+        TransactionStaleness.markStale(this);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmChanged(final FilmChangedEvent event) {
+        if (event.getOperation() == Operation.REMOVE) {
+            refresh(event.getFilmId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmMarkChanged(final FilmMarkChangedEvent event) {
+        refresh(event.getFilmId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmMarksRecalculated(final FilmMarksRecalculatedEvent event) {
+        rebuild();
+    }
+
+    /**
+     * Загрузка векторов пользователей из упорядоченной выгрузки оценок и транспонирование их в векторы фильмов.
+     * Оценки каждого фильма попадают в его вектор по возрастанию идентификатора пользователя.
+     */
+    private void loadVectors() {
+        final List<FilmMark> userFilmMarks = new ArrayList<>();
+        filmDbStorage.streamFilmMarks(filmMark -> {
+            if (!userFilmMarks.isEmpty() && userFilmMarks.get(0).getUserId() != filmMark.getUserId()) {
+                userRows.put((int) userFilmMarks.get(0).getUserId(), toVector(userFilmMarks, false));
+                userFilmMarks.clear();
+            }
+            userFilmMarks.add(filmMark);
+        });
+        if (!userFilmMarks.isEmpty()) {
+            userRows.put((int) userFilmMarks.get(0).getUserId(), toVector(userFilmMarks, false));
+        }
+        final Map<Integer, int[]> sizes = new HashMap<>();
+        userRows.values().forEach(row -> {
+            for (int filmId : row.ids) {
+                sizes.computeIfAbsent(filmId, id -> new int[1])[0]++;
+            }
+        });
+        final Map<Integer, int[]> raterIds = new HashMap<>();
+        final Map<Integer, byte[]> raterWeights = new HashMap<>();
+        sizes.forEach((filmId, size) -> {
+            raterIds.put(filmId, new int[size[0]]);
+            raterWeights.put(filmId, new byte[size[0]]);
+            size[0] = 0;
+        });
+        final int[] userIds = userRows.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        for (int userId : userIds) {
+            final MarkVector row = userRows.get(userId);
+            for (int i = 0; i < row.ids.length; i++) {
+                final int position = sizes.get(row.ids[i])[0]++;
+                raterIds.get(row.ids[i])[position] = userId;
+                raterWeights.get(row.ids[i])[position] = row.weights[i];
+            }
+        }
+        raterIds.forEach((filmId, ids) -> filmVectors.put(filmId, new MarkVector(ids, raterWeights.get(filmId))));
+    }
+
+    /**
+     * Замена вектора фильма, обновление векторов его оценивших пользователей и всех затронутых списков.
+     */
+    private void update(final int filmId, final MarkVector vector) {
+        final MarkVector previous = filmVectors.getOrDefault(filmId, MarkVector.EMPTY);
+        final Set<Integer> affected = new HashSet<>();
+        for (int userId : previous.ids) {
+            for (int coratedId : userRows.get(userId).ids) {
+                affected.add(coratedId);
+            }
+        }
+        updateUserRows(filmId, previous, vector);
+        if (vector.ids.length == 0) {
+            filmVectors.remove(filmId);
+        } else {
+            filmVectors.put(filmId, vector);
+        }
+        maxFilmId = Math.max(maxFilmId, filmId);
+        accumulator = accumulator.ensureCapacity(maxFilmId + 1);
+        final int touched = accumulate(filmId, vector, accumulator);
+        final Neighbours filmNeighbours = select(filmId, vector, accumulator, touched);
+        if (filmNeighbours.size() > 0) {
+            neighbours.put(filmId, filmNeighbours);
+        } else {
+            neighbours.remove(filmId);
+        }
+        for (int i = 0; i < touched; i++) {
+            affected.add(accumulator.touched[i]);
+        }
+        affected.remove(filmId);
+        final List<Integer> recompute = new ArrayList<>();
+        for (int coratedId : affected) {
+            final long dot = accumulator.dots[coratedId];
+            final double similarity = dot == 0 ? 0 : similarity(dot, vector, filmVectors.get(coratedId));
+            if (!updateNeighbour(coratedId, filmId, similarity, dot != 0)) {
+                recompute.add(coratedId);
+            }
+        }
+        reset(accumulator, touched);
+        for (int coratedId : recompute) {
+            final Neighbours recomputed = computeNeighbours(coratedId, accumulator);
+            if (recomputed.size() > 0) {
+                neighbours.put(coratedId, recomputed);
+            } else {
+                neighbours.remove(coratedId);
+            }
+        }
+    }
+
+    private void updateUserRows(final int filmId, final MarkVector previous, final MarkVector vector) {
+        int i = 0;
+        int j = 0;
+        while (i < previous.ids.length || j < vector.ids.length) {
+            final int previousUserId = i < previous.ids.length ? previous.ids[i] : Integer.MAX_VALUE;
+            final int userId = j < vector.ids.length ? vector.ids[j] : Integer.MAX_VALUE;
+            if (previousUserId < userId) {
+                final MarkVector row = userRows.get(previousUserId).without(filmId);
+                if (row.ids.length == 0) {
+                    userRows.remove(previousUserId);
+                } else {
+                    userRows.put(previousUserId, row);
+                }
+                i++;
+            } else {
+                if (previousUserId > userId || previous.weights[i] != vector.weights[j]) {
+                    userRows.put(userId, userRows.getOrDefault(userId, MarkVector.EMPTY)
+                            .with(filmId, vector.weights[j]));
+                }
+                i += previousUserId == userId ? 1 : 0;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Обновление позиции фильма в списке другого фильма.
+     *
+     * @return false, если фильм выпал из заполненного списка и список нужно пересчитать целиком.
+     */
+    private boolean updateNeighbour(final int ownerId, final int filmId, final double similarity,
+                                    final boolean corated) {
+        final Neighbours current = neighbours.getOrDefault(ownerId, Neighbours.EMPTY);
+        final int position = current.indexOf(filmId);
+        final Neighbours updated;
+        if (current.size() < neighbourCount) {
+            final Neighbours remaining = position < 0 ? current : current.without(position);
+            updated = corated ? remaining.with(filmId, similarity) : remaining;
+        } else if (position < 0) {
+            final int last = current.size() - 1;
+            if (!corated || !isBetter(similarity, filmId, current.similarities[last], current.filmIds[last])) {
+                return true;
+            }
+            updated = current.without(last).with(filmId, similarity);
+        } else {
+            final int last = current.size() - 1;
+            final boolean stays = corated
+                    && (!isBetter(current.similarities[position], filmId, similarity, filmId)
+                    || position < last
+                    && isBetter(similarity, filmId, current.similarities[last], current.filmIds[last]));
+            if (!stays) {
+                return false;
+            }
+            updated = current.without(position).with(filmId, similarity);
+        }
+        if (updated.size() > 0) {
+            neighbours.put(ownerId, updated);
+        } else {
+            neighbours.remove(ownerId);
+        }
+        return true;
+    }
+
+    private Neighbours computeNeighbours(final int filmId, final Accumulator filmAccumulator) {
+        final MarkVector vector = filmVectors.get(filmId);
+        final int touched = accumulate(filmId, vector, filmAccumulator);
+        final Neighbours filmNeighbours = select(filmId, vector, filmAccumulator, touched);
+        reset(filmAccumulator, touched);
+        return filmNeighbours;
+    }
+
+    /**
+     * Накопление скалярных произведений вектора фильма с векторами всех фильмов, у которых есть общие оценившие
+     * пользователи.
+     *
+     * @return количество таких фильмов; их идентификаторы - в начале массива touched.
+     */
+    private int accumulate(final int filmId, final MarkVector vector, final Accumulator filmAccumulator) {
+        int touched = 0;
+        for (int i = 0; i < vector.ids.length; i++) {
+            final MarkVector row = userRows.get(vector.ids[i]);
+            for (int j = 0; j < row.ids.length; j++) {
+                final int coratedId = row.ids[j];
+                if (coratedId == filmId) {
+                    continue;
+                }
+                if (filmAccumulator.dots[coratedId] == 0) {
+                    filmAccumulator.touched[touched++] = coratedId;
+                }
+                filmAccumulator.dots[coratedId] += vector.weights[i] * row.weights[j];
+            }
+        }
+        return touched;
+    }
+
+    private Neighbours select(final int filmId, final MarkVector vector, final Accumulator filmAccumulator,
+                              final int touched) {
+        final int[] candidates = Arrays.copyOf(filmAccumulator.touched, touched);
+        final double[] similarities = new double[touched];
+        for (int i = 0; i < touched; i++) {
+            similarities[i] = similarity(filmAccumulator.dots[candidates[i]], vector, filmVectors.get(candidates[i]));
+        }
+        final PriorityQueue<Integer> best = new PriorityQueue<>(neighbourCount + 1,
+                (a, b) -> isBetter(similarities[a], candidates[a], similarities[b], candidates[b]) ? 1 : -1);
+        for (int i = 0; i < touched; i++) {
+            best.add(i);
+            if (best.size() > neighbourCount) {
+                best.poll();
+            }
+        }
+        final int[] filmIds = new int[best.size()];
+        final double[] bestSimilarities = new double[best.size()];
+        for (int i = filmIds.length - 1; i >= 0; i--) {
+            final int candidate = best.poll();
+            filmIds[i] = candidates[candidate];
+            bestSimilarities[i] = similarities[candidate];
+        }
+        return new Neighbours(filmIds, bestSimilarities);
+    }
+
+    private static void reset(final Accumulator filmAccumulator, final int touched) {
+        for (int i = 0; i < touched; i++) {
+            filmAccumulator.dots[filmAccumulator.touched[i]] = 0;
+        }
+    }
+
+    /**
+     * Косинусное сходство; знаменатель считается в том же порядке, что и в запросе к БД, чтобы значения совпадали
+     * до последнего бита.
+     */
+    private static double similarity(final long dot, final MarkVector vector, final MarkVector other) {
+        return (double) dot / (Math.sqrt((double) vector.squaredNorm) * Math.sqrt((double) other.squaredNorm));
+    }
+
+    private static boolean isBetter(final double similarity, final int filmId,
+                                    final double otherSimilarity, final int otherFilmId) {
+        return similarity > otherSimilarity || similarity == otherSimilarity && filmId < otherFilmId;
+    }
+
+    private static MarkVector toVector(final Collection<FilmMark> filmMarks, final boolean byUser) {
+        final int[] ids = new int[filmMarks.size()];
+        final byte[] weights = new byte[filmMarks.size()];
+        int i = 0;
+        for (FilmMark filmMark : filmMarks) {
+            ids[i] = (int) (byUser ? filmMark.getUserId() : filmMark.getFilmId());
+            weights[i++] = (byte) (filmMark.getMark() == 0 ? Constants.UNRATED_LIKE_WEIGHT : filmMark.getMark());
+        }
+        return new MarkVector(ids, weights);
+    }
+
+    /**
+     * Разреженный вектор весов оценок: отсортированные по возрастанию идентификаторы и параллельный массив весов.
+     * Вектор неизменяем.
+     */
+    private static final class MarkVector {
+        private static final MarkVector EMPTY = new MarkVector(new int[0], new byte[0]);
+
+        private final int[] ids;
+        private final byte[] weights;
+        private final long squaredNorm;
+
+        private MarkVector(final int[] ids, final byte[] weights) {
+            this.ids = ids;
+            this.weights = weights;
+            long norm = 0;
+            for (byte weight : weights) {
+                norm += weight * weight;
+            }
+            this.squaredNorm = norm;
+        }
+
+        private MarkVector with(final int id, final byte weight) {
+            final int index = Arrays.binarySearch(ids, id);
+            if (index >= 0) {
+                final byte[] updatedWeights = weights.clone();
+                updatedWeights[index] = weight;
+                return new MarkVector(ids, updatedWeights);
+            }
+            final int insertion = -index - 1;
+            final int[] updatedIds = new int[ids.length + 1];
+            final byte[] updatedWeights = new byte[weights.length + 1];
+            System.arraycopy(ids, 0, updatedIds, 0, insertion);
+            System.arraycopy(ids, insertion, updatedIds, insertion + 1, ids.length - insertion);
+            System.arraycopy(weights, 0, updatedWeights, 0, insertion);
+            System.arraycopy(weights, insertion, updatedWeights, insertion + 1, weights.length - insertion);
+            updatedIds[insertion] = id;
+            updatedWeights[insertion] = weight;
+            return new MarkVector(updatedIds, updatedWeights);
+        }
+
+        private MarkVector without(final int id) {
+            final int index = Arrays.binarySearch(ids, id);
+            if (index < 0) {
+                return this;
+            }
+            final int[] updatedIds = new int[ids.length - 1];
+            final byte[] updatedWeights = new byte[weights.length - 1];
+            System.arraycopy(ids, 0, updatedIds, 0, index);
+            System.arraycopy(ids, index + 1, updatedIds, index, updatedIds.length - index);
+            System.arraycopy(weights, 0, updatedWeights, 0, index);
+            System.arraycopy(weights, index + 1, updatedWeights, index, updatedWeights.length - index);
+            return new MarkVector(updatedIds, updatedWeights);
+        }
+    }
+
+    /**
+     * Список похожих фильмов по убыванию сходства, а при равенстве - по возрастанию идентификатора. Список неизменяем.
+     */
+    private static final class Neighbours {
+        private static final Neighbours EMPTY = new Neighbours(new int[0], new double[0]);
+
+        private final int[] filmIds;
+        private final double[] similarities;
+
+        private Neighbours(final int[] filmIds, final double[] similarities) {
+            this.filmIds = filmIds;
+            this.similarities = similarities;
+        }
+
+        private int size() {
+            return filmIds.length;
+        }
+
+        private int indexOf(final int filmId) {
+            for (int i = 0; i < filmIds.length; i++) {
+                if (filmIds[i] == filmId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private Neighbours with(final int filmId, final double similarity) {
+            int insertion = 0;
+            while (insertion < filmIds.length
+                    && isBetter(similarities[insertion], filmIds[insertion], similarity, filmId)) {
+                insertion++;
+            }
+            final int[] updatedIds = new int[filmIds.length + 1];
+            final double[] updatedSimilarities = new double[similarities.length + 1];
+            System.arraycopy(filmIds, 0, updatedIds, 0, insertion);
+            System.arraycopy(filmIds, insertion, updatedIds, insertion + 1, filmIds.length - insertion);
+            System.arraycopy(similarities, 0, updatedSimilarities, 0, insertion);
+            System.arraycopy(similarities, insertion, updatedSimilarities, insertion + 1,
+                    similarities.length - insertion);
+            updatedIds[insertion] = filmId;
+            updatedSimilarities[insertion] = similarity;
+            return new Neighbours(updatedIds, updatedSimilarities);
+        }
+
+        private Neighbours without(final int index) {
+            final int[] updatedIds = new int[filmIds.length - 1];
+            final double[] updatedSimilarities = new double[similarities.length - 1];
+            System.arraycopy(filmIds, 0, updatedIds, 0, index);
+            System.arraycopy(filmIds, index + 1, updatedIds, index, updatedIds.length - index);
+            System.arraycopy(similarities, 0, updatedSimilarities, 0, index);
+            System.arraycopy(similarities, index + 1, updatedSimilarities, index, updatedSimilarities.length - index);
+            return new Neighbours(updatedIds, updatedSimilarities);
+        }
+    }
+
+    private static final class Accumulator {
+        private final long[] dots;
+        private final int[] touched;
+
+        private Accumulator(final int size) {
+            dots = new long[size];
+            touched = new int[size];
+        }
+
+        private Accumulator ensureCapacity(final int size) {
+            return size <= dots.length ? this : new Accumulator(Math.max(size, dots.length * 2));
+        }
+    }
+}
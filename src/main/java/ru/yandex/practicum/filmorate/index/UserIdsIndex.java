@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dao.event.UserChangedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.UserDbStorage;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Идентификаторы существующих пользователей.
+ */
+@Component
+public class UserIdsIndex extends IdsIndex {
+
+    private final UserDbStorage userDbStorage;
+
+    public UserIdsIndex(final UserDbStorage userDbStorage) {
+        this.userDbStorage = userDbStorage;
+    }
+
+    @EventListener(classes = UserChangedEvent.class)
+    public void onUsersChanging() {
+        markChanging();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(final UserChangedEvent event) {
+        apply(event.getUserId(), event.getOperation());
+    }
+
+    @Override
+    protected void streamIds(final LongConsumer consumer) {
+        userDbStorage.streamIds(consumer);
+    }
+}
@@ -7,7 +7,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDate;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.Set;
 
 @Data
 @AllArgsConstructor
@@ -20,7 +22,86 @@ public class Film {
     private LocalDate releaseDate;
     private int duration;
     private Mpa mpa;
-    private final LinkedHashSet<Genre> genres = new LinkedHashSet<>();
-    private final LinkedHashSet<Director> directors = new LinkedHashSet<>();
+    @Builder.Default
+    private Set<Genre> genres = new LinkedHashSet<>();
+    @Builder.Default
+    private Set<Director> directors = new LinkedHashSet<>();
     private double rating;
+
+    /**
+     * Глубокая копия фильма: копируются также рейтинг MPA, жанры и режиссеры. Изменение копии не затрагивает
+     * исходный фильм. Копия снимка - обычный изменяемый фильм.
+     */
+    public Film copy() {
+        final Set<Genre> genresCopy = new LinkedHashSet<>();
+        genres.forEach(genre -> genresCopy.add(new Genre(genre.getId(), genre.getName())));
+        final Set<Director> directorsCopy = new LinkedHashSet<>();
+        directors.forEach(director -> directorsCopy.add(new Director(director.getId(), director.getName())));
+        return new Film(id, name, description, releaseDate, duration,
+                mpa == null ? null : new Mpa(mpa.getId(), mpa.getName()), genresCopy, directorsCopy, rating);
+    }
+
+    /**
+     * Неизменяемый снимок фильма, который можно отдавать нескольким читателям без копирования: рейтинг MPA, жанры и
+     * режиссеры копируются один раз при создании снимка, жанры и режиссеры доступны только для чтения, а сеттеры
+     * снимка бросают {@link UnsupportedOperationException}. Рейтинг MPA, жанры и режиссеры снимка тоже нельзя
+     * изменять; чтобы изменить фильм, нужно получить его копию через {@link #copy()}.
+     */
+    public Film snapshot() {
+        return this instanceof Snapshot ? this : new Snapshot(copy());
+    }
+
+    private static final class Snapshot extends Film {
+
+        private Snapshot(final Film film) {
+            super(film.id, film.name, film.description, film.releaseDate, film.duration, film.mpa,
+                    Collections.unmodifiableSet(film.genres), Collections.unmodifiableSet(film.directors),
+                    film.rating);
+        }
+
+        @Override
+        public void setId(final long id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setName(final String name) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setDescription(final String description) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setReleaseDate(final LocalDate releaseDate) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setDuration(final int duration) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setMpa(final Mpa mpa) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setGenres(final Set<Genre> genres) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setDirectors(final Set<Director> directors) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setRating(final double rating) {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Value;
+
+import java.util.Set;
+
+/**
+ * Данные фильма, по которым строятся списки популярных фильмов: год выпуска, количество оценок и жанры.
+ */
+@Value
+public class FilmPopularity {
+    long filmId;
+    int releaseYear;
+    int markCount;
+    Set<Integer> genreIds;
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Value;
+
+import java.util.Set;
+
+/**
+ * Данные фильма, по которым строится поисковый индекс: название и режиссеры.
+ */
+@Value
+public class FilmSearchDocument {
+    long filmId;
+    String title;
+    Set<Long> directorIds;
+}
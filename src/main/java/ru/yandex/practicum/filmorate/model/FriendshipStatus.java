@@ -12,6 +12,15 @@ public enum FriendshipStatus {
     private final int id;
     private final String status;
 
+    public static FriendshipStatus fromId(final int id) {
+        for (FriendshipStatus status : values()) {
+            if (status.id == id) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный статус дружбы: " + id);
+    }
+
     @Override
     public String toString() {
         return status;
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Value;
+
+/**
+ * Ссылка запроса на сущность, существование которой нужно проверить перед изменением данных.
+ */
+@Value
+public class Reference {
+    ReferenceType type;
+    long id;
+
+    public static Reference film(final long id) {
+        return new Reference(ReferenceType.FILM, id);
+    }
+
+    public static Reference user(final long id) {
+        return new Reference(ReferenceType.USER, id);
+    }
+
+    public static Reference review(final long id) {
+        return new Reference(ReferenceType.REVIEW, id);
+    }
+
+    public static Reference director(final long id) {
+        return new Reference(ReferenceType.DIRECTOR, id);
+    }
+
+    public String getNotFoundMessage() {
+        return type.getTitle() + " с id '" + id + "' не найден.";
+    }
+}
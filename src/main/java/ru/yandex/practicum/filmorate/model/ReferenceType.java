@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+@Getter
+public enum ReferenceType {
+    FILM("FILM", "Фильм"),
+    USER("FILMORATE_USER", "Пользователь"),
+    REVIEW("REVIEW", "Отзыв"),
+    DIRECTOR("DIRECTOR", "Режиссер");
+
+    private final String table;
+    private final String title;
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Качество совпадения фильма с поисковым запросом. Релевантность фильма - сумма веса совпадения и натурального
+ * логарифма количества оценок фильма, увеличенного на единицу: точное совпадение названия без оценок примерно
+ * равноценно совпадению части названия у фильма со 150 оценками.
+ */
+@RequiredArgsConstructor
+@Getter
+public enum SearchMatch {
+    DIRECTOR(2),
+    SUBSTRING(3),
+    PREFIX(5),
+    EXACT(8);
+
+    private final int weight;
+
+    public double relevance(int markCount) {
+        return weight + Math.log(1 + markCount);
+    }
+}
@@ -12,8 +12,8 @@ import java.util.stream.Stream;
 @Getter
 public enum SortBy {
     YEAR("f.release_date"),
-    LIKES("COUNT(fm.USER_ID) DESC"),
-    RATING("rating DESC");
+    LIKES("f.mark_count DESC"),
+    RATING("f.rating DESC");
 
     private final String sql;
 
@@ -0,0 +1,176 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Обучение матричного разложения оценок методом чередующихся наименьших квадратов (ALS).
+ * <p>
+ * Оценка пользователя u за фильм i приближается скалярным произведением векторов факторов x_u и y_i размерности
+ * rank. На каждой итерации при фиксированных векторах фильмов вектор каждого пользователя находится решением
+ * системы (Σ y_i y_i^T + λ n_u E) x_u = Σ r_ui y_i по оцененным им фильмам, затем так же при фиксированных векторах
+ * пользователей пересчитываются векторы фильмов. Строки одного прохода независимы, поэтому проход делится на
+ * диапазоны и выполняется параллельно в пуле fork/join. Результат не зависит от количества потоков.
+ */
+class AlsTrainer {
+
+    private static final int SWEEP_CHUNK_SIZE = 256;
+    private static final long SEED = 42;
+    private static final float INITIAL_SCALE = 0.1f;
+
+    private final int rank;
+    private final double regularization;
+    private final int iterations;
+
+    AlsTrainer(final int rank, final double regularization, final int iterations) {
+        this.rank = rank;
+        this.regularization = regularization;
+        this.iterations = iterations;
+    }
+
+    int getRank() {
+        return rank;
+    }
+
+    /**
+     * Обучение модели.
+     *
+     * @param ratings оценки.
+     * @param pool    пул, в котором выполняются проходы.
+     * @return векторы факторов: [0] - пользователей, [1] - фильмов, подряд в порядке ratings.
+     */
+    float[][] train(final RatingsData ratings, final ForkJoinPool pool) {
+        final float[] userFactors = new float[ratings.userCount() * rank];
+        final float[] filmFactors = new float[ratings.filmCount() * rank];
+        final Random random = new Random(SEED);
+        for (int i = 0; i < filmFactors.length; i++) {
+            filmFactors[i] = (float) random.nextGaussian() * INITIAL_SCALE;
+        }
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            pool.invoke(new Sweep(ratings.getUserOffsets(), ratings.getUserFilmIndexes(), ratings.getUserValues(),
+                    filmFactors, userFactors, 0, ratings.userCount()));
+            pool.invoke(new Sweep(ratings.getFilmOffsets(), ratings.getFilmUserIndexes(), ratings.getFilmValues(),
+                    userFactors, filmFactors, 0, ratings.filmCount()));
+        }
+        return new float[][]{userFactors, filmFactors};
+    }
+
+    /**
+     * Среднеквадратичная ошибка модели на обучающих оценках.
+     */
+    double rootMeanSquaredError(final RatingsData ratings, final float[] userFactors, final float[] filmFactors) {
+        double sum = 0;
+        for (int user = 0; user < ratings.userCount(); user++) {
+            for (int i = ratings.getUserOffsets()[user]; i < ratings.getUserOffsets()[user + 1]; i++) {
+                final int film = ratings.getUserFilmIndexes()[i];
+                double predicted = 0;
+                for (int k = 0; k < rank; k++) {
+                    predicted += userFactors[user * rank + k] * filmFactors[film * rank + k];
+                }
+                final double error = ratings.getUserValues()[i] - predicted;
+                sum += error * error;
+            }
+        }
+        return ratings.ratingCount() == 0 ? 0 : Math.sqrt(sum / ratings.ratingCount());
+    }
+
+    /**
+     * Пересчет векторов строк диапазона [from, to) по фиксированным векторам другой стороны.
+     */
+    private class Sweep extends RecursiveAction {
+        private final int[] offsets;
+        private final int[] indexes;
+        private final float[] values;
+        private final float[] fixed;
+        private final float[] solved;
+        private final int from;
+        private final int to;
+
+        Sweep(final int[] offsets, final int[] indexes, final float[] values, final float[] fixed,
+              final float[] solved, final int from, final int to) {
+            this.offsets = offsets;
+            this.indexes = indexes;
+            this.values = values;
+            this.fixed = fixed;
+            this.solved = solved;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SWEEP_CHUNK_SIZE) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new Sweep(offsets, indexes, values, fixed, solved, from, middle),
+                        new Sweep(offsets, indexes, values, fixed, solved, middle, to));
+                return;
+            }
+            final double[] matrix = new double[rank * rank];
+            final double[] vector = new double[rank];
+            for (int row = from; row < to; row++) {
+                solveRow(row, matrix, vector);
+            }
+        }
+
+        private void solveRow(final int row, final double[] matrix, final double[] vector) {
+            Arrays.fill(matrix, 0);
+            Arrays.fill(vector, 0);
+            final int count = offsets[row + 1] - offsets[row];
+            for (int i = offsets[row]; i < offsets[row + 1]; i++) {
+                final int base = indexes[i] * rank;
+                for (int a = 0; a < rank; a++) {
+                    final double factor = fixed[base + a];
+                    vector[a] += values[i] * factor;
+                    for (int b = 0; b <= a; b++) {
+                        matrix[a * rank + b] += factor * fixed[base + b];
+                    }
+                }
+            }
+            for (int a = 0; a < rank; a++) {
+                matrix[a * rank + a] += regularization * Math.max(count, 1);
+            }
+            choleskySolve(matrix, vector);
+            for (int a = 0; a < rank; a++) {
+                solved[row * rank + a] = (float) vector[a];
+            }
+        }
+
+        /**
+         * Решение системы с симметричной положительно определенной матрицей, заданной нижним треугольником, через
+         * разложение Холецкого на месте. Решение записывается в vector.
+         */
+        private void choleskySolve(final double[] matrix, final double[] vector) {
+            for (int j = 0; j < rank; j++) {
+                double diagonal = matrix[j * rank + j];
+                for (int k = 0; k < j; k++) {
+                    diagonal -= matrix[j * rank + k] * matrix[j * rank + k];
+                }
+                diagonal = Math.sqrt(diagonal);
+                matrix[j * rank + j] = diagonal;
+                for (int i = j + 1; i < rank; i++) {
+                    double value = matrix[i * rank + j];
+                    for (int k = 0; k < j; k++) {
+                        value -= matrix[i * rank + k] * matrix[j * rank + k];
+                    }
+                    matrix[i * rank + j] = value / diagonal;
+                }
+            }
+            for (int i = 0; i < rank; i++) {
+                double value = vector[i];
+                for (int k = 0; k < i; k++) {
+                    value -= matrix[i * rank + k] * vector[k];
+                }
+                vector[i] = value / matrix[i * rank + i];
+            }
+            for (int i = rank - 1; i >= 0; i--) {
+                double value = vector[i];
+                for (int k = i + 1; k < rank; k++) {
+                    value -= matrix[k * rank + i] * vector[k];
+                }
+                vector[i] = value / matrix[i * rank + i];
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import java.util.Arrays;
+
+/**
+ * Промежуточный результат поиска пользователя с наиболее схожими оценками на непрерывном диапазоне строк матрицы.
+ * <p>
+ * При последовательном переборе побеждает первый пользователь с наименьшей разницей оценок, если после него нет
+ * пользователей с той же разницей, оценивших больше фильмов, чем он; иначе - последний из таких пользователей.
+ * Поэтому кроме первого пользователя с наименьшей разницей хранятся только кандидаты, которых не вытесняет ни один
+ * более поздний кандидат с тем же или большим количеством оценок: количество оценок в этом списке строго убывает
+ * вместе с ростом индекса. Результаты соседних диапазонов объединяются в том же порядке, что и при последовательном
+ * переборе, поэтому победитель не зависит от того, как перебор разбит на части.
+ */
+class ClosestUsers {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private double marksDiff = Double.MAX_VALUE;
+    private int firstIndex = -1;
+    private int firstLiked;
+    private int[] tiedIndexes = new int[INITIAL_CAPACITY];
+    private int[] tiedLiked = new int[INITIAL_CAPACITY];
+    private int tiedCount;
+
+    /**
+     * Учет очередного пользователя. Пользователи передаются по возрастанию индекса.
+     *
+     * @param index     индекс строки пользователя.
+     * @param marksDiff модуль средней разницы оценок.
+     * @param liked     количество фильмов, оцененных пользователем.
+     */
+    void accept(final int index, final double marksDiff, final int liked) {
+        if (marksDiff < this.marksDiff) {
+            this.marksDiff = marksDiff;
+            firstIndex = index;
+            firstLiked = liked;
+            tiedCount = 0;
+        } else if (marksDiff > this.marksDiff) {
+            return;
+        }
+        pushTied(index, liked);
+    }
+
+    /**
+     * Объединение с результатом диапазона, следующего сразу за этим.
+     *
+     * @param later результат следующего диапазона.
+     * @return объединенный результат.
+     */
+    ClosestUsers combine(final ClosestUsers later) {
+        if (later.firstIndex < 0 || later.marksDiff > marksDiff) {
+            return this;
+        }
+        if (firstIndex < 0 || later.marksDiff < marksDiff) {
+            return later;
+        }
+        for (int i = 0; i < later.tiedCount; i++) {
+            pushTied(later.tiedIndexes[i], later.tiedLiked[i]);
+        }
+        return this;
+    }
+
+    /**
+     * @return индекс строки победителя или -1, если ни у одного пользователя нет общих фильмов с запрашивающим.
+     */
+    int winner() {
+        for (int i = tiedCount - 1; i >= 0; i--) {
+            if (tiedLiked[i] > firstLiked) {
+                return tiedIndexes[i];
+            }
+        }
+        return firstIndex;
+    }
+
+    private void pushTied(final int index, final int liked) {
+        while (tiedCount > 0 && tiedLiked[tiedCount - 1] <= liked) {
+            tiedCount--;
+        }
+        if (tiedCount == tiedIndexes.length) {
+            tiedIndexes = Arrays.copyOf(tiedIndexes, tiedCount * 2);
+            tiedLiked = Arrays.copyOf(tiedLiked, tiedCount * 2);
+        }
+        tiedIndexes[tiedCount] = index;
+        tiedLiked[tiedCount] = liked;
+        tiedCount++;
+    }
+}
@@ -0,0 +1,464 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dao.GenreStorage;
+import ru.yandex.practicum.filmorate.dao.event.DirectorChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarkChangedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.util.Constants;
+import ru.yandex.practicum.filmorate.util.TransactionStaleness;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Рекомендации по содержанию фильмов: жанрам и режиссерам.
+ * <p>
+ * Каждому фильму соответствует вектор признаков: по одному столбцу на жанр и столбцы режиссеров, в которые
+ * режиссеры распределяются по хешу идентификатора. Вектор нормирован, чтобы фильмы с большим количеством жанров не
+ * получали преимущества. Вкус пользователя - сумма векторов оцененных им фильмов с весом оценки относительно
+ * середины шкалы: высокие оценки притягивают к жанрам и режиссерам фильма, низкие - отталкивают. При каждом
+ * изменении оценки из БД перечитывается только эта оценка, и вкус сдвигается на разницу весов. Для каждого фильма
+ * хранятся оценившие его пользователи, чтобы при изменении жанров или режиссеров фильма сдвигать только их вкусы.
+ * <p>
+ * Признаки хранятся по столбцам, поэтому оценка всех фильмов сводится к нескольким проходам
+ * scores[i] += taste[c] * features[c][i] по плотным массивам float - только по ненулевым столбцам вкуса. Такие циклы
+ * JIT-компилятор векторизует. Из оценок отбираются фильмы, которые пользователь не оценивал, с наибольшим
+ * положительным значением. Пользователю достаточно одной оценки, чтобы получить рекомендации, и подбор не зависит
+ * от количества пользователей.
+ * <p>
+ * Как и {@link RecommendationEngine}, движок строится при старте приложения, обновляется после фиксации транзакций и
+ * не используется, пока транзакция, изменившая оценки или фильмы, не завершена.
+ */
+@Component
+@Slf4j
+public class ContentEngine implements SmartInitializingSingleton {
+
+    private static final String STRATEGY_TAG = "content";
+    private static final float NEUTRAL_MARK = 5.5f;
+    private static final int DEFAULT_DIRECTOR_BUCKETS = 64;
+    private static final int DEFAULT_COUNT = 20;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final FilmDbStorage filmDbStorage;
+    private final GenreStorage genreStorage;
+    private final int directorBuckets;
+    private final int count;
+    private final Timer trainingTimer;
+    private final Timer scoringTimer;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Integer> genreColumns = new HashMap<>();
+    private final Map<Integer, Integer> filmSlots = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final Map<Long, Taste> tastes = new HashMap<>();
+    private final Map<Integer, Set<Long>> raters = new HashMap<>();
+    private int columns;
+    private int capacity;
+    private int slotCount;
+    private int[] slotFilmIds = new int[0];
+    private float[] features = new float[0];
+    private volatile boolean ready;
+
+    public ContentEngine(final FilmDbStorage filmDbStorage, final GenreStorage genreStorage) {
+        this(filmDbStorage, genreStorage, DEFAULT_DIRECTOR_BUCKETS, DEFAULT_COUNT, new SimpleMeterRegistry());
+    }
+
+    /**
+     * @param directorBuckets количество столбцов режиссеров.
+     * @param count           количество рекомендуемых фильмов.
+     */
+    @Autowired
+    public ContentEngine(final FilmDbStorage filmDbStorage,
+                         final GenreStorage genreStorage,
+                         @Value("${filmorate.recommendations.content.director-buckets:" + DEFAULT_DIRECTOR_BUCKETS +
+                                 "}") final int directorBuckets,
+                         @Value("${filmorate.recommendations.content.count:" + DEFAULT_COUNT + "}") final int count,
+                         final MeterRegistry meterRegistry) {
+        this.filmDbStorage = filmDbStorage;
+        this.genreStorage = genreStorage;
+        this.directorBuckets = directorBuckets;
+        this.count = count;
+        this.trainingTimer = Timer.builder("recommendations.training")
+                .tag("strategy", STRATEGY_TAG)
+                .register(meterRegistry);
+        this.scoringTimer = Timer.builder("recommendations.scoring")
+                .tag("strategy", STRATEGY_TAG)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Получение фильмов, наиболее близких к вкусу пользователя, среди не оцененных им.
+     *
+     * @param userId идентификатор пользователя.
+     * @return идентификаторы фильмов по убыванию близости, а при равенстве - по возрастанию идентификатора; пустой
+     * список, если пользователь ничего не оценивал; пустой результат, если движок не построен, занят перестроением
+     * или не учитывает изменения текущей транзакции.
+     */
+    public Optional<List<Long>> findRecommendedFilmIds(final long userId) {
+        final Lock readLock = TransactionStaleness.tryReadLock(this, ready, lock);
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        final long start = System.nanoTime();
+        try {
+            final Taste taste = tastes.get(userId);
+            if (taste == null || taste.size == 0) {
+                return Optional.of(Collections.emptyList());
+            }
+            final float[] scores = score(taste.vector);
+            for (int i = 0; i < taste.size; i++) {
+                final Integer slot = filmSlots.get(taste.filmIds[i]);
+                if (slot != null) {
+                    scores[slot] = 0;
+                }
+            }
+            final TopIds top = new TopIds(count);
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (scores[slot] > 0) {
+                    top.offer(slotFilmIds[slot], scores[slot]);
+                }
+            }
+            return Optional.of(top.toList());
+        } finally {
+            readLock.unlock();
+            scoringTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Построение векторов фильмов и вкусов пользователей по данным БД.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        final long start = System.nanoTime();
+        try {
+            genreColumns.clear();
+            filmSlots.clear();
+            freeSlots.clear();
+            tastes.clear();
+            raters.clear();
+            genreStorage.findAll().stream()
+                    .mapToInt(Genre::getId)
+                    .sorted()
+                    .forEach(genreId -> genreColumns.put(genreId, genreColumns.size()));
+            columns = genreColumns.size() + directorBuckets;
+            capacity = INITIAL_CAPACITY;
+            slotCount = 0;
+            slotFilmIds = new int[capacity];
+            features = new float[columns * capacity];
+            filmDbStorage.streamFilmsAfter(0, this::putFilm);
+            filmDbStorage.streamFilmMarks(filmMark -> setWeight(filmMark.getUserId(), (int) filmMark.getFilmId(),
+                    weight(filmMark.getMark())));
+            ready = true;
+            log.info("Векторы содержания построены, фильмов: {}, пользователей: {}.", filmSlots.size(),
+                    tastes.size());
+        } catch (RuntimeException e) {
+            ready = false;
+            throw e;
+        } finally {
+            trainingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Перечитывание жанров и режиссеров фильма из БД. Вкусы пользователей, оценивших фильм, сдвигаются на разницу
+     * векторов; если фильм удален, его оценки убираются из вкусов.
+     *
+     * @param filmId идентификатор фильма.
+     */
+    public void refreshFilm(final long filmId) {
+        lock.writeLock().lock();
+        try {
+            final int id = Math.toIntExact(filmId);
+            Film film;
+            try {
+                film = filmDbStorage.findById(filmId);
+            } catch (NotFoundException e) {
+                film = null;
+            }
+            final float[] previous = featuresOf(id);
+            final Integer slot = filmSlots.get(id);
+            if (film != null) {
+                putFilm(film);
+            } else if (slot != null) {
+                filmSlots.remove(id);
+                slotFilmIds[slot] = 0;
+                for (int column = 0; column < columns; column++) {
+                    features[column * capacity + slot] = 0;
+                }
+                freeSlots.push(slot);
+            }
+            final float[] current = featuresOf(id);
+            final Set<Long> filmRaters = film == null ? raters.remove(id) : raters.get(id);
+            if (filmRaters == null) {
+                return;
+            }
+            for (long userId : filmRaters) {
+                final Taste taste = tastes.get(userId);
+                final int index = taste.indexOf(id);
+                final float weight = taste.weights[index];
+                for (int column = 0; column < columns; column++) {
+                    taste.vector[column] += weight * (current[column] - previous[column]);
+                }
+                if (film == null) {
+                    taste.remove(index);
+                    if (taste.size == 0) {
+                        tastes.remove(userId);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Перечитывание оценки фильма пользователем из БД. Оценка перечитывается под блокировкой записи, поэтому вкус
+     * соответствует последней зафиксированной оценке, в каком бы порядке ни пришли события об изменениях.
+     *
+     * @param userId идентификатор пользователя.
+     * @param filmId идентификатор фильма.
+     */
+    public void refreshMark(final long userId, final long filmId) {
+        lock.writeLock().lock();
+        try {
+            final float weight = filmDbStorage.findFilmMark(filmId, userId)
+                    .map(filmMark -> weight(filmMark.getMark()))
+                    .orElse(0f);
+            setWeight(userId, Math.toIntExact(filmId), weight);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return filmSlots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(classes = {FilmChangedEvent.class, FilmMarkChangedEvent.class, DirectorChangedEvent.class})
+    public void onContentChanging() {
+        TransactionStaleness.markStale(this);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmMarkChanged(final FilmMarkChangedEvent event) {
+        refreshMark(event.getUserId(), event.getFilmId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmChanged(final FilmChangedEvent event) {
+        refreshFilm(event.getFilmId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDirectorChanged(final DirectorChangedEvent event) {
+        if (event.getOperation() == Operation.REMOVE) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Оценки всех фильмов для вкуса: сумма столбцов признаков с весами вкуса.
+     */
+    private float[] score(final float[] taste) {
+        final float[] scores = new float[slotCount];
+        for (int column = 0; column < columns; column++) {
+            final float weight = taste[column];
+            if (weight == 0) {
+                continue;
+            }
+            final int base = column * capacity;
+            for (int slot = 0; slot < scores.length; slot++) {
+                scores[slot] += weight * features[base + slot];
+            }
+        }
+        return scores;
+    }
+
+    private void putFilm(final Film film) {
+        final int filmId = Math.toIntExact(film.getId());
+        Integer slot = filmSlots.get(filmId);
+        if (slot == null) {
+            slot = freeSlots.isEmpty() ? slotCount++ : freeSlots.pop();
+            if (slot == capacity) {
+                grow();
+            }
+            filmSlots.put(filmId, slot);
+            slotFilmIds[slot] = filmId;
+        }
+        final float[] vector = new float[columns];
+        for (Genre genre : film.getGenres()) {
+            final Integer column = genreColumns.get(genre.getId());
+            if (column != null) {
+                vector[column] = 1;
+            }
+        }
+        for (Director director : film.getDirectors()) {
+            vector[genreColumns.size() + directorBucket(director.getId())] += 1;
+        }
+        float norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        final float scale = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+        for (int column = 0; column < columns; column++) {
+            features[column * capacity + slot] = vector[column] * scale;
+        }
+    }
+
+    private float[] featuresOf(final int filmId) {
+        final float[] vector = new float[columns];
+        final Integer slot = filmSlots.get(filmId);
+        if (slot != null) {
+            for (int column = 0; column < columns; column++) {
+                vector[column] = features[column * capacity + slot];
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * Замена веса оценки фильма во вкусе пользователя со сдвигом вектора вкуса на разницу весов.
+     *
+     * @param weight новый вес; 0 - оценка удалена.
+     */
+    private void setWeight(final long userId, final int filmId, final float weight) {
+        final Taste taste = tastes.computeIfAbsent(userId, id -> new Taste(columns));
+        final float delta = weight - taste.put(filmId, weight);
+        final Integer slot = filmSlots.get(filmId);
+        if (slot != null && delta != 0) {
+            for (int column = 0; column < columns; column++) {
+                taste.vector[column] += delta * features[column * capacity + slot];
+            }
+        }
+        if (weight == 0) {
+            final Set<Long> filmRaters = raters.get(filmId);
+            if (filmRaters != null && filmRaters.remove(userId) && filmRaters.isEmpty()) {
+                raters.remove(filmId);
+            }
+        } else {
+            raters.computeIfAbsent(filmId, id -> new HashSet<>()).add(userId);
+        }
+        if (taste.size == 0) {
+            tastes.remove(userId);
+        }
+    }
+
+    private void grow() {
+        final int newCapacity = capacity * 2;
+        final float[] newFeatures = new float[columns * newCapacity];
+        for (int column = 0; column < columns; column++) {
+            System.arraycopy(features, column * capacity, newFeatures, column * newCapacity, capacity);
+        }
+        features = newFeatures;
+        slotFilmIds = Arrays.copyOf(slotFilmIds, newCapacity);
+        capacity = newCapacity;
+    }
+
+    private int directorBucket(final long directorId) {
+        return Math.floorMod(Long.hashCode(directorId * 0x9E3779B97F4A7C15L), directorBuckets);
+    }
+
+    /**
+     * Вес оценки во вкусе: оценка относительно середины шкалы, лайк без оценки считается оценкой
+     * {@link Constants#UNRATED_LIKE_WEIGHT}.
+     */
+    private static float weight(final int mark) {
+        return (mark == 0 ? Constants.UNRATED_LIKE_WEIGHT : mark) - NEUTRAL_MARK;
+    }
+
+    /**
+     * Вкус пользователя: вектор и веса оцененных фильмов, упорядоченных по идентификатору.
+     */
+    private static final class Taste {
+        private final float[] vector;
+        private int[] filmIds = new int[4];
+        private float[] weights = new float[4];
+        private int size;
+
+        private Taste(final int columns) {
+            vector = new float[columns];
+        }
+
+        private int indexOf(final int filmId) {
+            return Arrays.binarySearch(filmIds, 0, size, filmId);
+        }
+
+        /**
+         * Замена веса фильма.
+         *
+         * @param weight новый вес; 0 - удаление фильма.
+         * @return прежний вес или 0, если фильма не было.
+         */
+        private float put(final int filmId, final float weight) {
+            final int index = indexOf(filmId);
+            if (index >= 0) {
+                final float previous = weights[index];
+                if (weight == 0) {
+                    remove(index);
+                } else {
+                    weights[index] = weight;
+                }
+                return previous;
+            }
+            if (weight == 0) {
+                return 0;
+            }
+            final int insertion = -index - 1;
+            if (size == filmIds.length) {
+                filmIds = Arrays.copyOf(filmIds, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            System.arraycopy(filmIds, insertion, filmIds, insertion + 1, size - insertion);
+            System.arraycopy(weights, insertion, weights, insertion + 1, size - insertion);
+            filmIds[insertion] = filmId;
+            weights[insertion] = weight;
+            size++;
+            return 0;
+        }
+
+        private void remove(final int index) {
+            System.arraycopy(filmIds, index + 1, filmIds, index, size - index - 1);
+            System.arraycopy(weights, index + 1, weights, index, size - index - 1);
+            size--;
+        }
+    }
+}
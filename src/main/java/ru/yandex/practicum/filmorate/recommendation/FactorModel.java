@@ -0,0 +1,222 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Обученная модель матричного разложения, отображенная в память из файла.
+ * <p>
+ * Файл хранит отсортированные идентификаторы пользователей и фильмов, оцененные каждым пользователем фильмы на
+ * момент обучения в формате CSR и векторы факторов пользователей и фильмов в виде float. Все значения записаны в
+ * порядке little-endian после заголовка из шести int (сигнатуры, версии, ранга, количества пользователей, фильмов и
+ * оценок) и long отпечатка оценок, на которых обучена модель. Модель неизменяема, читать ее можно из нескольких
+ * потоков одновременно.
+ */
+public class FactorModel {
+
+    private static final int MAGIC = 0x464D4631;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 6 * Integer.BYTES + Long.BYTES;
+
+    private final int rank;
+    private final int userCount;
+    private final int filmCount;
+    private final long fingerprint;
+    private final LongBuffer userIds;
+    private final IntBuffer filmIds;
+    private final IntBuffer ratedOffsets;
+    private final IntBuffer ratedFilmIndexes;
+    private final FloatBuffer userFactors;
+    private final FloatBuffer filmFactors;
+
+    private FactorModel(final ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IllegalArgumentException("Файл не содержит модель матричного разложения.");
+        }
+        rank = buffer.getInt(2 * Integer.BYTES);
+        userCount = buffer.getInt(3 * Integer.BYTES);
+        filmCount = buffer.getInt(4 * Integer.BYTES);
+        final int ratedCount = buffer.getInt(5 * Integer.BYTES);
+        fingerprint = buffer.getLong(6 * Integer.BYTES);
+        int offset = HEADER_SIZE;
+        userIds = slice(buffer, offset, userCount * Long.BYTES).asLongBuffer();
+        offset += userCount * Long.BYTES;
+        filmIds = slice(buffer, offset, filmCount * Integer.BYTES).asIntBuffer();
+        offset += filmCount * Integer.BYTES;
+        ratedOffsets = slice(buffer, offset, (userCount + 1) * Integer.BYTES).asIntBuffer();
+        offset += (userCount + 1) * Integer.BYTES;
+        ratedFilmIndexes = slice(buffer, offset, ratedCount * Integer.BYTES).asIntBuffer();
+        offset += ratedCount * Integer.BYTES;
+        userFactors = slice(buffer, offset, userCount * rank * Float.BYTES).asFloatBuffer();
+        offset += userCount * rank * Float.BYTES;
+        filmFactors = slice(buffer, offset, filmCount * rank * Float.BYTES).asFloatBuffer();
+    }
+
+    /**
+     * Отображение файла модели в память.
+     *
+     * @param file файл, записанный {@link #write(Path, RatingsData, float[], float[], int)}.
+     * @return модель.
+     */
+    public static FactorModel load(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new FactorModel(buffer.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    /**
+     * Запись модели в файл. Модель записывается во временный файл рядом с целевым и переносится на его место одной
+     * операцией, поэтому уже отображенная в память предыдущая модель остается целой.
+     *
+     * @param file        файл модели.
+     * @param ratings     оценки, по которым обучена модель.
+     * @param userFactors векторы факторов пользователей подряд, в порядке ratings.
+     * @param filmFactors векторы факторов фильмов подряд, в порядке ratings.
+     * @param rank        размерность векторов факторов.
+     */
+    static void write(final Path file, final RatingsData ratings, final float[] userFactors,
+                      final float[] filmFactors, final int rank) throws IOException {
+        final int userCount = ratings.userCount();
+        final int filmCount = ratings.filmCount();
+        final int ratedCount = ratings.ratingCount();
+        final long size = HEADER_SIZE + (long) userCount * Long.BYTES + (long) filmCount * Integer.BYTES
+                + (long) (userCount + 1) * Integer.BYTES + (long) ratedCount * Integer.BYTES
+                + ((long) userCount + filmCount) * rank * Float.BYTES;
+        final Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        final Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(rank).putInt(userCount).putInt(filmCount)
+                        .putInt(ratedCount).putLong(ratings.fingerprint());
+                for (long userId : ratings.getUserIds()) {
+                    buffer.putLong(userId);
+                }
+                for (int filmId : ratings.getFilmIds()) {
+                    buffer.putInt(filmId);
+                }
+                for (int ratedOffset : ratings.getUserOffsets()) {
+                    buffer.putInt(ratedOffset);
+                }
+                for (int i = 0; i < ratedCount; i++) {
+                    buffer.putInt(ratings.getUserFilmIndexes()[i]);
+                }
+                for (float factor : userFactors) {
+                    buffer.putFloat(factor);
+                }
+                for (float factor : filmFactors) {
+                    buffer.putFloat(factor);
+                }
+                buffer.force();
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Подбор фильмов с наибольшей предсказанной оценкой среди фильмов, которые пользователь не оценивал ни на момент
+     * обучения, ни после него. Предсказанная оценка - скалярное произведение векторов факторов пользователя и фильма.
+     *
+     * @param userId        идентификатор пользователя.
+     * @param count         максимальное количество фильмов.
+     * @param markedFilmIds идентификаторы фильмов, которые пользователь оценил сейчас, по возрастанию.
+     * @return идентификаторы фильмов по убыванию предсказанной оценки, а при равенстве - по возрастанию
+     * идентификатора; пустой результат, если пользователя нет в модели.
+     */
+    public Optional<List<Long>> findTopFilmIds(final long userId, final int count, final int[] markedFilmIds) {
+        final int userIndex = indexOf(userId);
+        if (userIndex < 0) {
+            return Optional.empty();
+        }
+        if (count <= 0) {
+            return Optional.of(Collections.emptyList());
+        }
+        final float[] user = new float[rank];
+        for (int k = 0; k < rank; k++) {
+            user[k] = userFactors.get(userIndex * rank + k);
+        }
+        final TopIds top = new TopIds(count);
+        int rated = ratedOffsets.get(userIndex);
+        final int ratedEnd = ratedOffsets.get(userIndex + 1);
+        int marked = 0;
+        for (int filmIndex = 0; filmIndex < filmCount; filmIndex++) {
+            final int filmId = filmIds.get(filmIndex);
+            while (marked < markedFilmIds.length && markedFilmIds[marked] < filmId) {
+                marked++;
+            }
+            if (rated < ratedEnd && ratedFilmIndexes.get(rated) == filmIndex) {
+                rated++;
+                continue;
+            }
+            if (marked < markedFilmIds.length && markedFilmIds[marked] == filmId) {
+                continue;
+            }
+            float score = 0;
+            final int base = filmIndex * rank;
+            for (int k = 0; k < rank; k++) {
+                score += user[k] * filmFactors.get(base + k);
+            }
+            top.offer(filmId, score);
+        }
+        return Optional.of(top.toList());
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public int getUserCount() {
+        return userCount;
+    }
+
+    public int getFilmCount() {
+        return filmCount;
+    }
+
+    /**
+     * Отпечаток оценок, на которых обучена модель.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    private int indexOf(final long userId) {
+        int low = 0;
+        int high = userCount - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final long middleId = userIds.get(middle);
+            if (middleId < userId) {
+                low = middle + 1;
+            } else if (middleId > userId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private static ByteBuffer slice(final ByteBuffer buffer, final int offset, final int length) {
+        return buffer.duplicate().position(offset).limit(offset + length).slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
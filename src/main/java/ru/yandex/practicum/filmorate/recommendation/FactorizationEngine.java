@@ -0,0 +1,181 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.index.MarkedFilmsIndex;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рекомендации по матричному разложению оценок.
+ * <p>
+ * Модель обучается методом ALS по всей таблице FILM_MARK в отдельном пуле fork/join и записывается в файл, который
+ * затем отображается в память. В заголовке файла хранится отпечаток оценок, на которых обучена модель. При старте
+ * приложения файл, оставшийся от прошлого обучения, используется, только если его отпечаток совпадает с отпечатком
+ * текущих оценок FILM_MARK; иначе (БД пересоздана или оценки изменились, пока приложение было остановлено) модель
+ * обучается заново на уже прочитанных оценках. Дальше модель переобучается по расписанию. Если файл модели не удается
+ * записать, ошибка пишется в журнал и остается прежняя модель; пока модели нет, этот способ подбора недоступен, и
+ * рекомендации подбираются по схожему пользователю. Для пользователя считаются скалярные произведения с векторами
+ * всех фильмов, и отбираются фильмы с наибольшими значениями; фильмы, которые пользователь оценил до или после
+ * обучения, пропускаются. Текущие оценки пользователя берутся из {@link MarkedFilmsIndex}, а если он недоступен - из
+ * БД. Оценки, поставленные после обучения, влияют на векторы факторов только после следующего обучения;
+ * пользователей, которых не было при обучении, модель не знает.
+ * <p>
+ * Время обучения и подбора рекомендаций публикуются в метриках recommendations.training и recommendations.scoring
+ * с тегом strategy=factorization.
+ */
+@Component
+@Slf4j
+public class FactorizationEngine implements SmartInitializingSingleton, DisposableBean {
+
+    private static final String STRATEGY_TAG = "factorization";
+
+    private final FilmDbStorage filmDbStorage;
+    private final MarkedFilmsIndex markedFilmsIndex;
+    private final Path modelFile;
+    private final AlsTrainer trainer;
+    private final int count;
+    private final ForkJoinPool trainingPool;
+    private final Timer trainingTimer;
+    private final Timer scoringTimer;
+    private volatile FactorModel model;
+    private volatile long modelVersion;
+
+    /**
+     * @param modelFile      файл модели.
+     * @param rank           размерность векторов факторов.
+     * @param regularization коэффициент регуляризации.
+     * @param iterations     количество итераций обучения.
+     * @param count          количество рекомендуемых фильмов.
+     * @param parallelism    количество потоков обучения; 0 - по количеству процессоров.
+     */
+    public FactorizationEngine(final FilmDbStorage filmDbStorage,
+                               final MarkedFilmsIndex markedFilmsIndex,
+                               @Value("${filmorate.recommendations.factorization.model-file:./db/factors.bin}")
+                               final Path modelFile,
+                               @Value("${filmorate.recommendations.factorization.rank:16}") final int rank,
+                               @Value("${filmorate.recommendations.factorization.regularization:0.1}")
+                               final double regularization,
+                               @Value("${filmorate.recommendations.factorization.iterations:10}") final int iterations,
+                               @Value("${filmorate.recommendations.factorization.count:20}") final int count,
+                               @Value("${filmorate.recommendations.parallelism:0}") final int parallelism,
+                               final MeterRegistry meterRegistry) {
+        this.filmDbStorage = filmDbStorage;
+        this.markedFilmsIndex = markedFilmsIndex;
+        this.modelFile = modelFile;
+        this.trainer = new AlsTrainer(rank, regularization, iterations);
+        this.count = count;
+        this.trainingPool = new ForkJoinPool(parallelism > 0 ? parallelism
+                : Runtime.getRuntime().availableProcessors());
+        this.trainingTimer = Timer.builder("recommendations.training")
+                .tag("strategy", STRATEGY_TAG)
+                .register(meterRegistry);
+        this.scoringTimer = Timer.builder("recommendations.scoring")
+                .tag("strategy", STRATEGY_TAG)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public synchronized void afterSingletonsInstantiated() {
+        final RatingsData ratings = loadRatings();
+        if (Files.exists(modelFile)) {
+            try {
+                final FactorModel savedModel = FactorModel.load(modelFile);
+                if (savedModel.getFingerprint() == ratings.fingerprint()) {
+                    setModel(savedModel);
+                    log.info("Модель матричного разложения загружена из {}, пользователей: {}, фильмов: {}.",
+                            modelFile, model.getUserCount(), model.getFilmCount());
+                    return;
+                }
+                log.info("Модель матричного разложения в {} обучена на других оценках и будет обучена заново.",
+                        modelFile);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Не удалось загрузить модель матричного разложения из {}: {}", modelFile, e.getMessage());
+            }
+        }
+        train(ratings);
+    }
+
+    @Override
+    public void destroy() {
+        trainingPool.shutdown();
+    }
+
+    /**
+     * Получение фильмов с наибольшей предсказанной оценкой среди не оцененных пользователем.
+     *
+     * @param userId идентификатор пользователя.
+     * @return идентификаторы фильмов по убыванию предсказанной оценки; пустой результат, если модель не обучена или
+     * пользователя не было при обучении.
+     */
+    public Optional<List<Long>> findRecommendedFilmIds(final long userId) {
+        final FactorModel currentModel = model;
+        if (currentModel == null) {
+            return Optional.empty();
+        }
+        final int[] markedFilmIds = markedFilmsIndex.findMarkedFilmIds(userId)
+                .orElseGet(() -> filmDbStorage.findUserFilmMarks(userId).stream()
+                        .mapToInt(filmMark -> (int) filmMark.getFilmId())
+                        .toArray());
+        return scoringTimer.record(() -> currentModel.findTopFilmIds(userId, count, markedFilmIds));
+    }
+
+    /**
+     * Версия текущей модели, которая меняется при каждой ее замене. По ней можно определить, что сохраненные
+     * рекомендации подобраны по прежней модели.
+     */
+    public long getModelVersion() {
+        return modelVersion;
+    }
+
+    /**
+     * Обучение модели по данным БД, запись ее в файл и замена текущей модели.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.factorization.retrain-delay-ms:21600000}",
+            initialDelayString = "${filmorate.recommendations.factorization.retrain-delay-ms:21600000}")
+    public synchronized void train() {
+        train(loadRatings());
+    }
+
+    private void train(final RatingsData ratings) {
+        final long start = System.nanoTime();
+        final float[][] factors = trainer.train(ratings, trainingPool);
+        try {
+            FactorModel.write(modelFile, ratings, factors[0], factors[1], trainer.getRank());
+            setModel(FactorModel.load(modelFile));
+        } catch (IOException e) {
+            log.error("Не удалось записать модель матричного разложения в {}, используется прежняя модель: {}",
+                    modelFile, e.getMessage());
+            return;
+        }
+        final long elapsed = System.nanoTime() - start;
+        trainingTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Модель матричного разложения обучена за {} мс, пользователей: {}, фильмов: {}, RMSE: {}.",
+                elapsed / 1_000_000, ratings.userCount(), ratings.filmCount(),
+                String.format("%.4f", trainer.rootMeanSquaredError(ratings, factors[0], factors[1])));
+    }
+
+    private RatingsData loadRatings() {
+        final RatingsData.Builder builder = new RatingsData.Builder();
+        filmDbStorage.streamFilmMarks(builder::add);
+        return builder.build();
+    }
+
+    private synchronized void setModel(final FactorModel newModel) {
+        model = newModel;
+        modelVersion++;
+    }
+}
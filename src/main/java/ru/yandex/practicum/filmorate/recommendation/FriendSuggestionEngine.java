@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.impl.FriendshipDbStorage;
+import ru.yandex.practicum.filmorate.index.FriendshipGraph;
+import ru.yandex.practicum.filmorate.index.MarkedFilmsIndex;
+import ru.yandex.practicum.filmorate.index.MutualFriendCounts;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Подбор возможных друзей среди друзей друзей пользователя.
+ * <p>
+ * Кандидаты и количество общих друзей с каждым из них считаются по {@link FriendshipGraph} за один проход по
+ * строкам друзей пользователя, без двойного соединения таблицы FRIENDSHIP с собой. Вес кандидата - количество общих
+ * друзей плюс схожесть вкуса из {@link MarkedFilmsIndex} с весом {@code filmorate.friends.suggestions.taste-weight}
+ * (0 - вкус не учитывается), поэтому при весе меньше 1 вкус упорядочивает кандидатов с одинаковым количеством
+ * общих друзей. Лучшие кандидаты отбираются кучей ограниченного размера, без сортировки всех друзей друзей. Если
+ * граф недоступен, общие друзья считаются запросом к БД, а если недоступны множества оцененных фильмов, вкус не
+ * учитывается.
+ */
+@Component
+public class FriendSuggestionEngine {
+
+    private static final double DEFAULT_TASTE_WEIGHT = 0.5;
+
+    private final FriendshipGraph friendshipGraph;
+    private final FriendshipDbStorage friendshipDbStorage;
+    private final MarkedFilmsIndex markedFilmsIndex;
+    private final double tasteWeight;
+
+    public FriendSuggestionEngine(final FriendshipGraph friendshipGraph, final FriendshipDbStorage friendshipDbStorage,
+                                  final MarkedFilmsIndex markedFilmsIndex) {
+        this(friendshipGraph, friendshipDbStorage, markedFilmsIndex, DEFAULT_TASTE_WEIGHT);
+    }
+
+    /**
+     * @param tasteWeight вес схожести вкуса от 0 до 1, которая прибавляется к количеству общих друзей.
+     */
+    @Autowired
+    public FriendSuggestionEngine(final FriendshipGraph friendshipGraph, final FriendshipDbStorage friendshipDbStorage,
+                                  final MarkedFilmsIndex markedFilmsIndex,
+                                  @Value("${filmorate.friends.suggestions.taste-weight:" + DEFAULT_TASTE_WEIGHT + "}")
+                                  final double tasteWeight) {
+        this.friendshipGraph = friendshipGraph;
+        this.friendshipDbStorage = friendshipDbStorage;
+        this.markedFilmsIndex = markedFilmsIndex;
+        this.tasteWeight = tasteWeight;
+    }
+
+    /**
+     * Подбор возможных друзей пользователя.
+     *
+     * @param userId идентификатор пользователя.
+     * @param count  максимальное количество кандидатов.
+     * @return идентификаторы кандидатов по убыванию веса, при равном весе - по возрастанию идентификатора.
+     */
+    public FriendSuggestions findSuggestions(final long userId, final int count) {
+        final Optional<long[]> friendIds = friendshipGraph.findFriendIds(userId);
+        final Optional<MutualFriendCounts> graphCounts =
+                friendIds.flatMap(ids -> friendshipGraph.countMutualFriends(userId));
+        final MutualFriendCounts counts = graphCounts
+                .orElseGet(() -> MutualFriendCounts.of(friendshipDbStorage.countMutualFriends(userId)));
+        final long[] candidateIds = new long[counts.size()];
+        final int[] mutualFriends = new int[counts.size()];
+        final int[] position = new int[1];
+        counts.forEach((candidateId, candidateMutualFriends) -> {
+            candidateIds[position[0]] = candidateId;
+            mutualFriends[position[0]++] = candidateMutualFriends;
+        });
+        Optional<double[]> similarities = Optional.of(new double[candidateIds.length]);
+        if (tasteWeight > 0 && candidateIds.length > 0) {
+            similarities = markedFilmsIndex.findTasteSimilarities(userId, candidateIds);
+        }
+        final double[] tasteSimilarities = similarities.orElseGet(() -> new double[candidateIds.length]);
+        final List<Long> userIds = rank(candidateIds, mutualFriends, tasteSimilarities, count);
+        if (graphCounts.isEmpty() || similarities.isEmpty()) {
+            return FriendSuggestions.of(userIds);
+        }
+        return FriendSuggestions.of(userIds, friendIds.get());
+    }
+
+    private List<Long> rank(final long[] candidateIds, final int[] mutualFriends, final double[] similarities,
+                            final int count) {
+        if (candidateIds.length == 0 || count <= 0) {
+            return List.of();
+        }
+        final TopIds top = new TopIds(Math.min(count, candidateIds.length));
+        for (int i = 0; i < candidateIds.length; i++) {
+            top.offer(candidateIds[i], (float) (mutualFriends[i] + tasteWeight * similarities[i]));
+        }
+        return top.toList();
+    }
+}
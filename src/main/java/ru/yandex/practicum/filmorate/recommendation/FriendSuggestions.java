@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Результат подбора возможных друзей вместе с друзьями пользователя, по спискам друзей которых он подобран. Результат,
+ * подобранный без графа дружбы в памяти или без учета вкуса, не кэшируется: от каких друзей он зависит, неизвестно.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class FriendSuggestions {
+    private static final long[] NO_FRIENDS = new long[0];
+
+    private final List<Long> userIds;
+    private final long[] friendIds;
+    private final boolean cacheable;
+
+    public static FriendSuggestions of(final List<Long> userIds) {
+        return new FriendSuggestions(userIds, NO_FRIENDS, false);
+    }
+
+    public static FriendSuggestions of(final List<Long> userIds, final long[] friendIds) {
+        return new FriendSuggestions(userIds, friendIds, true);
+    }
+}
@@ -0,0 +1,134 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Приближенный отбор кандидатов в схожие пользователи через MinHash и LSH.
+ * <p>
+ * Для множества оцененных пользователем фильмов считается сигнатура: минимумы значений bands × rows независимых
+ * хеш-функций по идентификаторам фильмов. Вероятность совпадения одного минимума у двух пользователей равна мере
+ * Жаккара их множеств фильмов. Сигнатура делится на bands полос по rows значений, и пользователь попадает в корзину
+ * каждой своей полосы. Кандидаты - пользователи, совпавшие с запрашивающим хотя бы в одной корзине, то есть с
+ * вероятностью 1 - (1 - J^rows)^bands; больше полос - выше полнота и больше кандидатов, длиннее полоса - меньше
+ * случайных совпадений.
+ * <p>
+ * Изменение индекса требует внешней синхронизации.
+ */
+public class MinHashIndex {
+
+    private static final long PRIME = (1L << 31) - 1;
+    private static final long SEED = 0x5DEECE66DL;
+    private static final long[] NO_CANDIDATES = new long[0];
+
+    private final int bands;
+    private final int rows;
+    private final long[] multipliers;
+    private final long[] increments;
+    private final Map<Long, long[]> bandKeys = new HashMap<>();
+    private final Map<Long, Set<Long>> buckets = new HashMap<>();
+
+    /**
+     * @param bands количество полос сигнатуры.
+     * @param rows  количество значений сигнатуры в полосе.
+     */
+    public MinHashIndex(final int bands, final int rows) {
+        if (bands < 1 || rows < 1) {
+            throw new IllegalArgumentException("Количество полос и строк в полосе должно быть положительным.");
+        }
+        this.bands = bands;
+        this.rows = rows;
+        final Random random = new Random(SEED);
+        multipliers = new long[bands * rows];
+        increments = new long[bands * rows];
+        for (int i = 0; i < multipliers.length; i++) {
+            multipliers[i] = 1 + (long) (random.nextDouble() * (PRIME - 1));
+            increments[i] = (long) (random.nextDouble() * PRIME);
+        }
+    }
+
+    /**
+     * Замена оценок пользователя. Пустая строка удаляет пользователя из индекса.
+     *
+     * @param userId  идентификатор пользователя.
+     * @param ratings оценки пользователя.
+     */
+    public void put(final long userId, final UserRatings ratings) {
+        final long[] previousKeys = bandKeys.remove(userId);
+        if (previousKeys != null) {
+            for (long key : previousKeys) {
+                final Set<Long> bucket = buckets.get(key);
+                bucket.remove(userId);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+        if (ratings.isEmpty()) {
+            return;
+        }
+        final long[] keys = computeBandKeys(ratings.getFilmIds());
+        bandKeys.put(userId, keys);
+        for (long key : keys) {
+            buckets.computeIfAbsent(key, k -> new HashSet<>()).add(userId);
+        }
+    }
+
+    /**
+     * Получение кандидатов в схожие пользователи.
+     *
+     * @param userId идентификатор пользователя.
+     * @return идентификаторы пользователей, совпавших с переданным хотя бы в одной корзине, без него самого; пустой
+     * массив, если пользователя нет в индексе.
+     */
+    public long[] findCandidates(final long userId) {
+        final long[] keys = bandKeys.get(userId);
+        if (keys == null) {
+            return NO_CANDIDATES;
+        }
+        final Set<Long> candidates = new HashSet<>();
+        for (long key : keys) {
+            candidates.addAll(buckets.get(key));
+        }
+        candidates.remove(userId);
+        return candidates.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    public int size() {
+        return bandKeys.size();
+    }
+
+    public void clear() {
+        bandKeys.clear();
+        buckets.clear();
+    }
+
+    private long[] computeBandKeys(final int[] filmIds) {
+        final long[] signature = new long[multipliers.length];
+        for (int i = 0; i < signature.length; i++) {
+            long min = Long.MAX_VALUE;
+            for (int filmId : filmIds) {
+                min = Math.min(min, (multipliers[i] * filmId + increments[i]) % PRIME);
+            }
+            signature[i] = min;
+        }
+        final long[] keys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            long key = band;
+            for (int row = 0; row < rows; row++) {
+                key = key * PRIME + signature[band * rows + row];
+            }
+            keys[band] = mix(key);
+        }
+        return keys;
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+}
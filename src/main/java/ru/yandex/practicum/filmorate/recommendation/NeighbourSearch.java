@@ -0,0 +1,170 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Поиск схожих пользователей по неизменяемой копии матрицы оценок через обратный индекс фильм → оценившие его
+ * пользователи. Для запрашивающего пользователя просматриваются только пользователи с общими фильмами, поэтому время
+ * поиска зависит от популярности его фильмов, а не от общего количества пользователей.
+ * <p>
+ * Обратный индекс хранится в формате CSR: для каждого фильма - диапазон в общих массивах индексов строк и оценок.
+ * Поиск можно вызывать из нескольких потоков одновременно.
+ */
+class NeighbourSearch {
+
+    private static final long[] NO_NEIGHBOURS = new long[0];
+
+    private final RatingMatrix matrix;
+    private final int[] filmOffsets;
+    private final int[] raterIndexes;
+    private final byte[] raterMarks;
+    private final ThreadLocal<Accumulator> accumulators;
+
+    NeighbourSearch(final RatingMatrix matrix) {
+        this.matrix = matrix;
+        int maxFilmId = 0;
+        int marks = 0;
+        for (int i = 0; i < matrix.size(); i++) {
+            final int[] filmIds = matrix.rowAt(i).getFilmIds();
+            maxFilmId = Math.max(maxFilmId, filmIds[filmIds.length - 1]);
+            marks += filmIds.length;
+        }
+        filmOffsets = new int[maxFilmId + 2];
+        for (int i = 0; i < matrix.size(); i++) {
+            for (int filmId : matrix.rowAt(i).getFilmIds()) {
+                filmOffsets[filmId + 1]++;
+            }
+        }
+        for (int filmId = 0; filmId <= maxFilmId; filmId++) {
+            filmOffsets[filmId + 1] += filmOffsets[filmId];
+        }
+        raterIndexes = new int[marks];
+        raterMarks = new byte[marks];
+        final int[] positions = Arrays.copyOf(filmOffsets, maxFilmId + 1);
+        for (int i = 0; i < matrix.size(); i++) {
+            final UserRatings row = matrix.rowAt(i);
+            for (int j = 0; j < row.size(); j++) {
+                final int position = positions[row.getFilmIds()[j]]++;
+                raterIndexes[position] = i;
+                raterMarks[position] = row.getMarks()[j];
+            }
+        }
+        accumulators = ThreadLocal.withInitial(() -> new Accumulator(matrix.size()));
+    }
+
+    /**
+     * Поиск схожих пользователей.
+     *
+     * @param requesterIndex индекс строки запрашивающего пользователя.
+     * @param count          количество пользователей, ближайших по разнице оценок, кроме выбранного.
+     * @return идентификаторы пользователей: первым - пользователь, выбранный по тем же правилам, что и в
+     * {@link RatingMatrix#findRecommendedFilmIds(long)}, дальше - не больше count ближайших по возрастанию разницы
+     * оценок, а при равенстве - индекса; пустой массив, если пользователей с общими фильмами нет.
+     */
+    long[] findNeighbours(final int requesterIndex, final int count) {
+        final Accumulator accumulator = accumulators.get();
+        final UserRatings requester = matrix.rowAt(requesterIndex);
+        int touched = 0;
+        for (int filmId : requester.getFilmIds()) {
+            for (int position = filmOffsets[filmId]; position < filmOffsets[filmId + 1]; position++) {
+                final int index = raterIndexes[position];
+                if (index == requesterIndex) {
+                    continue;
+                }
+                if (accumulator.matches[index] == 0) {
+                    accumulator.touched[touched++] = index;
+                }
+                accumulator.matches[index]++;
+                accumulator.commonMarkSums[index] += raterMarks[position];
+            }
+        }
+        if (touched == 0) {
+            return NO_NEIGHBOURS;
+        }
+        final int[] candidates = Arrays.copyOf(accumulator.touched, touched);
+        Arrays.sort(candidates);
+        final double[] marksDiffs = new double[touched];
+        final ClosestUsers closestUsers = new ClosestUsers();
+        for (int i = 0; i < touched; i++) {
+            final int index = candidates[i];
+            marksDiffs[i] = Math.abs((double) (requester.getMarkSum() - accumulator.commonMarkSums[index])
+                    / accumulator.matches[index]);
+            closestUsers.accept(index, marksDiffs[i], matrix.rowAt(index).size());
+            accumulator.matches[index] = 0;
+            accumulator.commonMarkSums[index] = 0;
+        }
+        final int closestIndex = closestUsers.winner();
+        final Comparator<Integer> worstFirst = Comparator.<Integer>comparingDouble(i -> marksDiffs[i])
+                .thenComparingInt(i -> candidates[i])
+                .reversed();
+        final PriorityQueue<Integer> nearest = new PriorityQueue<>(count + 1, worstFirst);
+        for (int i = 0; i < touched && count > 0; i++) {
+            if (candidates[i] == closestIndex) {
+                continue;
+            }
+            if (nearest.size() < count) {
+                nearest.add(i);
+            } else if (worstFirst.compare(i, nearest.peek()) > 0) {
+                nearest.poll();
+                nearest.add(i);
+            }
+        }
+        final long[] neighbours = new long[nearest.size() + 1];
+        for (int i = neighbours.length - 1; i > 0; i--) {
+            neighbours[i] = matrix.userIdAt(candidates[nearest.poll()]);
+        }
+        neighbours[0] = matrix.userIdAt(closestIndex);
+        return neighbours;
+    }
+
+    /**
+     * Поиск пользователей, оценивших хотя бы один фильм из оцененных пользователем.
+     *
+     * @param userIndex индекс строки пользователя.
+     * @return индексы строк пользователей с общими фильмами, кроме самого пользователя, в порядке первого появления.
+     */
+    int[] findCoRaterIndexes(final int userIndex) {
+        final Accumulator accumulator = accumulators.get();
+        int touched = 0;
+        for (int filmId : matrix.rowAt(userIndex).getFilmIds()) {
+            for (int position = filmOffsets[filmId]; position < filmOffsets[filmId + 1]; position++) {
+                final int index = raterIndexes[position];
+                if (index != userIndex && accumulator.matches[index] == 0) {
+                    accumulator.matches[index] = 1;
+                    accumulator.touched[touched++] = index;
+                }
+            }
+        }
+        final int[] coRaters = Arrays.copyOf(accumulator.touched, touched);
+        for (int index : coRaters) {
+            accumulator.matches[index] = 0;
+        }
+        return coRaters;
+    }
+
+    int size() {
+        return matrix.size();
+    }
+
+    long userIdAt(final int index) {
+        return matrix.userIdAt(index);
+    }
+
+    int indexOf(final long userId) {
+        return matrix.indexOf(userId);
+    }
+
+    private static final class Accumulator {
+        private final int[] matches;
+        private final int[] commonMarkSums;
+        private final int[] touched;
+
+        private Accumulator(final int size) {
+            matches = new int[size];
+            commonMarkSums = new int[size];
+            touched = new int[size];
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import ru.yandex.practicum.filmorate.model.FilmMark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Разреженная матрица оценок пользователь × фильм. Пользователи хранятся в отсортированном массиве идентификаторов,
+ * каждому соответствует строка {@link UserRatings}. Пользователи без оценок в матрицу не попадают.
+ * <p>
+ * Сходство пользователей считается слиянием двух отсортированных строк за время, линейное от их длины, без
+ * промежуточных коллекций. Строки матрицы можно просматривать из нескольких потоков одновременно, изменение матрицы
+ * требует внешней синхронизации.
+ */
+public class RatingMatrix {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int SCAN_CHUNK_SIZE = 4096;
+
+    private long[] userIds = new long[INITIAL_CAPACITY];
+    private UserRatings[] rows = new UserRatings[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Построение матрицы по оценкам, сгруппированным по пользователям.
+     *
+     * @param userFilmMarks оценки пользователей по их идентификаторам.
+     * @return матрица оценок.
+     */
+    public static RatingMatrix of(final Map<Long, Set<FilmMark>> userFilmMarks) {
+        final RatingMatrix matrix = new RatingMatrix();
+        userFilmMarks.forEach((userId, filmMarks) -> matrix.put(userId, UserRatings.of(filmMarks)));
+        return matrix;
+    }
+
+    /**
+     * Замена строки пользователя. Пустая строка удаляет пользователя из матрицы.
+     *
+     * @param userId  идентификатор пользователя.
+     * @param ratings оценки пользователя.
+     */
+    public void put(final long userId, final UserRatings ratings) {
+        final int index = Arrays.binarySearch(userIds, 0, size, userId);
+        if (ratings.isEmpty()) {
+            if (index >= 0) {
+                System.arraycopy(userIds, index + 1, userIds, index, size - index - 1);
+                System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+                rows[--size] = null;
+            }
+            return;
+        }
+        if (index >= 0) {
+            rows[index] = ratings;
+            return;
+        }
+        final int insertion = -index - 1;
+        if (size == userIds.length) {
+            userIds = Arrays.copyOf(userIds, size * 2);
+            rows = Arrays.copyOf(rows, size * 2);
+        }
+        System.arraycopy(userIds, insertion, userIds, insertion + 1, size - insertion);
+        System.arraycopy(rows, insertion, rows, insertion + 1, size - insertion);
+        userIds[insertion] = userId;
+        rows[insertion] = ratings;
+        size++;
+    }
+
+    /**
+     * Удаление оценок фильма из всех строк.
+     *
+     * @param filmId идентификатор фильма.
+     * @return идентификаторы пользователей, оценивших фильм.
+     */
+    public List<Long> removeFilm(final int filmId) {
+        final List<Long> changedUserIds = new ArrayList<>();
+        for (int i = size - 1; i >= 0; i--) {
+            final UserRatings ratings = rows[i].withoutFilm(filmId);
+            if (ratings != rows[i]) {
+                changedUserIds.add(userIds[i]);
+                put(userIds[i], ratings);
+            }
+        }
+        return changedUserIds;
+    }
+
+    /**
+     * Копия матрицы, которая не меняется при последующих изменениях этой матрицы. Строки неизменяемы, поэтому
+     * копируются только массивы ссылок на них.
+     *
+     * @return копия матрицы.
+     */
+    public RatingMatrix snapshot() {
+        final RatingMatrix snapshot = new RatingMatrix();
+        snapshot.userIds = Arrays.copyOf(userIds, Math.max(size, INITIAL_CAPACITY));
+        snapshot.rows = Arrays.copyOf(rows, Math.max(size, INITIAL_CAPACITY));
+        snapshot.size = size;
+        return snapshot;
+    }
+
+    /**
+     * Поиск пользователя с наиболее схожими оценками. Для каждого пользователя, оценившего хотя бы один общий фильм,
+     * считается модуль средней разницы: сумма разниц оценок общих фильмов и оценок запрашивающего пользователя за
+     * фильмы, которые другой пользователь не оценивал, деленная на количество общих фильмов. Выбирается пользователь
+     * с наименьшей разницей; при равенстве разниц - пользователь, оценивший больше фильмов, чем первый найденный с
+     * такой разницей. Пользователи перебираются по возрастанию идентификатора.
+     *
+     * @param requesterId идентификатор пользователя, для которого ищутся рекомендации.
+     * @return индекс строки найденного пользователя или -1, если пользователей с общими фильмами нет.
+     */
+    int findClosestUserIndex(final long requesterId) {
+        final int requesterIndex = Arrays.binarySearch(userIds, 0, size, requesterId);
+        if (requesterIndex < 0) {
+            return -1;
+        }
+        return scan(requesterIndex, 0, size).winner();
+    }
+
+    /**
+     * Поиск пользователя с наиболее схожими оценками, при котором строки матрицы делятся на диапазоны и
+     * просматриваются параллельно в переданном пуле. Результат совпадает с последовательным поиском.
+     *
+     * @param requesterId идентификатор пользователя, для которого ищутся рекомендации.
+     * @param pool        пул, в котором просматриваются диапазоны строк.
+     * @return индекс строки найденного пользователя или -1, если пользователей с общими фильмами нет.
+     */
+    int findClosestUserIndex(final long requesterId, final ForkJoinPool pool) {
+        final int requesterIndex = Arrays.binarySearch(userIds, 0, size, requesterId);
+        if (requesterIndex < 0) {
+            return -1;
+        }
+        if (size <= SCAN_CHUNK_SIZE) {
+            return scan(requesterIndex, 0, size).winner();
+        }
+        return pool.invoke(new ScanTask(requesterIndex, 0, size)).winner();
+    }
+
+    /**
+     * Поиск пользователя с наиболее схожими оценками только среди переданных кандидатов. Кандидаты сравниваются
+     * с запрашивающим так же, как при полном переборе, и в том же порядке, поэтому если среди кандидатов есть все
+     * пользователи с общими фильмами, результат совпадает с полным перебором.
+     *
+     * @param requesterId  идентификатор пользователя, для которого ищутся рекомендации.
+     * @param candidateIds идентификаторы кандидатов в любом порядке; отсутствующие в матрице пропускаются.
+     * @return индекс строки найденного пользователя или -1, если среди кандидатов нет пользователей с общими фильмами.
+     */
+    int findClosestUserIndex(final long requesterId, final long[] candidateIds) {
+        final int requesterIndex = Arrays.binarySearch(userIds, 0, size, requesterId);
+        if (requesterIndex < 0) {
+            return -1;
+        }
+        final int[] candidateIndexes = Arrays.stream(candidateIds)
+                .mapToInt(userId -> Arrays.binarySearch(userIds, 0, size, userId))
+                .filter(index -> index >= 0 && index != requesterIndex)
+                .sorted()
+                .distinct()
+                .toArray();
+        final UserRatings requester = rows[requesterIndex];
+        final ClosestUsers closestUsers = new ClosestUsers();
+        for (int index : candidateIndexes) {
+            compare(requester, index, closestUsers);
+        }
+        return closestUsers.winner();
+    }
+
+    /**
+     * Получение фильмов, которые оценил пользователь с наиболее схожими оценками, но не оценил запрашивающий.
+     *
+     * @param requesterId идентификатор пользователя, для которого ищутся рекомендации.
+     * @return идентификаторы фильмов по возрастанию; пустой список, если схожий пользователь не найден.
+     */
+    public List<Long> findRecommendedFilmIds(final long requesterId) {
+        return findUnratedFilmIds(requesterId, findClosestUserIndex(requesterId));
+    }
+
+    /**
+     * Получение фильмов, которые оценил пользователь с наиболее схожими оценками, но не оценил запрашивающий, с
+     * параллельным поиском схожего пользователя в переданном пуле.
+     *
+     * @param requesterId идентификатор пользователя, для которого ищутся рекомендации.
+     * @param pool        пул, в котором просматриваются диапазоны строк.
+     * @return идентификаторы фильмов по возрастанию; пустой список, если схожий пользователь не найден.
+     */
+    public List<Long> findRecommendedFilmIds(final long requesterId, final ForkJoinPool pool) {
+        return findUnratedFilmIds(requesterId, findClosestUserIndex(requesterId, pool));
+    }
+
+    /**
+     * Получение фильмов, которые оценил наиболее схожий из переданных кандидатов, но не оценил запрашивающий.
+     *
+     * @param requesterId  идентификатор пользователя, для которого ищутся рекомендации.
+     * @param candidateIds идентификаторы кандидатов, например, найденные {@link MinHashIndex}.
+     * @return идентификаторы фильмов по возрастанию; пустой список, если схожий пользователь не найден.
+     */
+    public List<Long> findRecommendedFilmIds(final long requesterId, final long[] candidateIds) {
+        return findUnratedFilmIds(requesterId, findClosestUserIndex(requesterId, candidateIds));
+    }
+
+    /**
+     * Подбор рекомендаций вместе с пользователем с наиболее схожими оценками.
+     *
+     * @param requesterId идентификатор пользователя, для которого ищутся рекомендации.
+     * @return рекомендации; без схожего пользователя, если он не найден.
+     */
+    public Recommendation findRecommendation(final long requesterId) {
+        return recommendationAt(requesterId, findClosestUserIndex(requesterId));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    int indexOf(final long userId) {
+        return Arrays.binarySearch(userIds, 0, size, userId);
+    }
+
+    long userIdAt(final int index) {
+        return userIds[index];
+    }
+
+    UserRatings rowAt(final int index) {
+        return rows[index];
+    }
+
+    public void clear() {
+        userIds = new long[INITIAL_CAPACITY];
+        rows = new UserRatings[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Получение фильмов, которые оценил пользователь с переданным индексом строки, но не оценил запрашивающий.
+     *
+     * @param requesterId  идентификатор пользователя, для которого ищутся рекомендации.
+     * @param closestIndex индекс строки схожего пользователя или -1.
+     * @return идентификаторы фильмов по возрастанию.
+     */
+    List<Long> findUnratedFilmIds(final long requesterId, final int closestIndex) {
+        if (closestIndex < 0) {
+            return Collections.emptyList();
+        }
+        final int[] requesterFilmIds = rows[Arrays.binarySearch(userIds, 0, size, requesterId)].getFilmIds();
+        final int[] filmIds = rows[closestIndex].getFilmIds();
+        final List<Long> recommended = new ArrayList<>();
+        int r = 0;
+        for (int filmId : filmIds) {
+            while (r < requesterFilmIds.length && requesterFilmIds[r] < filmId) {
+                r++;
+            }
+            if (r == requesterFilmIds.length || requesterFilmIds[r] != filmId) {
+                recommended.add((long) filmId);
+            }
+        }
+        return recommended;
+    }
+
+    /**
+     * Рекомендации по оценкам пользователя с переданным индексом строки.
+     *
+     * @param requesterId  идентификатор пользователя, для которого ищутся рекомендации.
+     * @param closestIndex индекс строки схожего пользователя или -1.
+     * @return рекомендации.
+     */
+    Recommendation recommendationAt(final long requesterId, final int closestIndex) {
+        final List<Long> filmIds = findUnratedFilmIds(requesterId, closestIndex);
+        if (closestIndex < 0) {
+            return Recommendation.of(filmIds);
+        }
+        return Recommendation.of(filmIds, userIds[closestIndex], rows[closestIndex].getFilmIds());
+    }
+
+    private ClosestUsers scan(final int requesterIndex, final int from, final int to) {
+        final UserRatings requester = rows[requesterIndex];
+        final ClosestUsers closestUsers = new ClosestUsers();
+        for (int i = from; i < to; i++) {
+            if (i != requesterIndex) {
+                compare(requester, i, closestUsers);
+            }
+        }
+        return closestUsers;
+    }
+
+    private void compare(final UserRatings requester, final int index, final ClosestUsers closestUsers) {
+        final int[] requesterFilmIds = requester.getFilmIds();
+        final int[] filmIds = rows[index].getFilmIds();
+        final byte[] marks = rows[index].getMarks();
+        int matches = 0;
+        int commonMarkSum = 0;
+        int r = 0;
+        int u = 0;
+        while (r < requesterFilmIds.length && u < filmIds.length) {
+            if (requesterFilmIds[r] < filmIds[u]) {
+                r++;
+            } else if (requesterFilmIds[r] > filmIds[u]) {
+                u++;
+            } else {
+                matches++;
+                commonMarkSum += marks[u];
+                r++;
+                u++;
+            }
+        }
+        if (matches > 0) {
+            closestUsers.accept(index, Math.abs((double) (requester.getMarkSum() - commonMarkSum) / matches),
+                    filmIds.length);
+        }
+    }
+
+    private class ScanTask extends RecursiveTask<ClosestUsers> {
+        private final int requesterIndex;
+        private final int from;
+        private final int to;
+
+        ScanTask(final int requesterIndex, final int from, final int to) {
+            this.requesterIndex = requesterIndex;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ClosestUsers compute() {
+            if (to - from <= SCAN_CHUNK_SIZE) {
+                return scan(requesterIndex, from, to);
+            }
+            final int middle = (from + to) >>> 1;
+            final ScanTask left = new ScanTask(requesterIndex, from, middle);
+            left.fork();
+            final ClosestUsers right = new ScanTask(requesterIndex, middle, to).compute();
+            return left.join().combine(right);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.FilmMark;
+import ru.yandex.practicum.filmorate.util.Constants;
+
+import java.util.Arrays;
+
+/**
+ * Оценки для обучения матричного разложения в двух представлениях CSR: по пользователям (оцененные фильмы каждого
+ * пользователя) и по фильмам (оценившие пользователи каждого фильма). Пользователи и фильмы пронумерованы по
+ * возрастанию идентификаторов. Лайк без оценки учитывается как оценка {@link Constants#UNRATED_LIKE_WEIGHT}.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+class RatingsData {
+    private static final long FINGERPRINT_SEED = 0x46494C4D4D41524BL;
+
+    private final long[] userIds;
+    private final int[] filmIds;
+    private final int[] userOffsets;
+    private final int[] userFilmIndexes;
+    private final float[] userValues;
+    private final int[] filmOffsets;
+    private final int[] filmUserIndexes;
+    private final float[] filmValues;
+
+    int userCount() {
+        return userIds.length;
+    }
+
+    int filmCount() {
+        return filmIds.length;
+    }
+
+    int ratingCount() {
+        return userOffsets[userIds.length];
+    }
+
+    /**
+     * Отпечаток оценок: 64-битный хеш пользователей, фильмов и значений всех оценок. По нему проверяется, что
+     * сохраненная модель обучена на тех же оценках, что сейчас в БД.
+     */
+    long fingerprint() {
+        long hash = FINGERPRINT_SEED;
+        for (int user = 0; user < userIds.length; user++) {
+            hash = mix(hash, userIds[user]);
+            for (int i = userOffsets[user]; i < userOffsets[user + 1]; i++) {
+                hash = mix(hash, filmIds[userFilmIndexes[i]]);
+                hash = mix(hash, Float.floatToIntBits(userValues[i]));
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(final long hash, final long value) {
+        final long mixed = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return mixed ^ (mixed >>> 31);
+    }
+
+    /**
+     * Накопление оценок, упорядоченных по пользователю и фильму.
+     */
+    static class Builder {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private long[] userIds = new long[INITIAL_CAPACITY];
+        private int[] filmIds = new int[INITIAL_CAPACITY];
+        private float[] values = new float[INITIAL_CAPACITY];
+        private int size;
+
+        void add(final FilmMark filmMark) {
+            if (size == userIds.length) {
+                userIds = Arrays.copyOf(userIds, size * 2);
+                filmIds = Arrays.copyOf(filmIds, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            userIds[size] = filmMark.getUserId();
+            filmIds[size] = (int) filmMark.getFilmId();
+            values[size++] = filmMark.getMark() == 0 ? Constants.UNRATED_LIKE_WEIGHT : filmMark.getMark();
+        }
+
+        RatingsData build() {
+            final long[] uniqueUserIds = Arrays.stream(userIds, 0, size).distinct().toArray();
+            final int[] uniqueFilmIds = Arrays.stream(filmIds, 0, size).sorted().distinct().toArray();
+            final int[] userOffsets = new int[uniqueUserIds.length + 1];
+            final int[] userFilmIndexes = new int[size];
+            final int[] filmOffsets = new int[uniqueFilmIds.length + 1];
+            int user = -1;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || userIds[i] != userIds[i - 1]) {
+                    userOffsets[++user] = i;
+                }
+                userFilmIndexes[i] = Arrays.binarySearch(uniqueFilmIds, filmIds[i]);
+                filmOffsets[userFilmIndexes[i] + 1]++;
+            }
+            userOffsets[uniqueUserIds.length] = size;
+            for (int film = 0; film < uniqueFilmIds.length; film++) {
+                filmOffsets[film + 1] += filmOffsets[film];
+            }
+            final int[] filmUserIndexes = new int[size];
+            final float[] filmValues = new float[size];
+            final int[] positions = Arrays.copyOf(filmOffsets, uniqueFilmIds.length);
+            for (user = 0; user < uniqueUserIds.length; user++) {
+                for (int i = userOffsets[user]; i < userOffsets[user + 1]; i++) {
+                    final int position = positions[userFilmIndexes[i]]++;
+                    filmUserIndexes[position] = user;
+                    filmValues[position] = values[i];
+                }
+            }
+            return new RatingsData(uniqueUserIds, uniqueFilmIds, userOffsets, userFilmIndexes,
+                    Arrays.copyOf(values, size), filmOffsets, filmUserIndexes, filmValues);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Результат подбора рекомендаций вместе с данными, от которых он зависит: пользователем с наиболее схожими оценками
+ * и фильмами, которые этот пользователь оценил. Для рекомендаций, подобранных без схожего пользователя, эти данные
+ * пустые.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class Recommendation {
+    public static final long NO_USER = -1;
+    private static final int[] NO_FILMS = new int[0];
+
+    private final List<Long> filmIds;
+    private final long closestUserId;
+    private final int[] closestUserFilmIds;
+
+    public static Recommendation of(final List<Long> filmIds) {
+        return new Recommendation(filmIds, NO_USER, NO_FILMS);
+    }
+
+    public static Recommendation of(final List<Long> filmIds, final long closestUserId,
+                                    final int[] closestUserFilmIds) {
+        return new Recommendation(filmIds, closestUserId, closestUserFilmIds);
+    }
+}
@@ -0,0 +1,402 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarkChangedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.model.FilmMark;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.util.TransactionStaleness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Матрица оценок всех пользователей в памяти для подбора рекомендаций без выгрузки таблицы FILM_MARK на каждый
+ * запрос.
+ * <p>
+ * При старте приложения матрица строится по таблице FILM_MARK. Дальше после фиксации каждой транзакции, изменившей
+ * оценку, строка пользователя перечитывается из БД, а при удалении фильма его оценки убираются из всех строк.
+ * Перечитывание выполняется под блокировкой, поэтому матрица сходится к зафиксированному состоянию независимо от
+ * порядка, в котором завершаются транзакции. Пока транзакция, изменившая оценки, не завершена, матрица для нее
+ * считается неактуальной.
+ * <p>
+ * Для каждого пользователя фоновая задача заранее находит схожего пользователя и еще несколько ближайших по разнице
+ * оценок, поэтому запрос рекомендаций обычно сводится к сравнению двух строк матрицы. Задача пересчитывает соседей
+ * пользователей, чьи оценки изменились с прошлого запуска, пользователей, среди соседей которых есть такие, и
+ * пользователей с общими с ними фильмами, для которых изменившийся пользователь мог стать ближе прежних соседей;
+ * раз в заданный интервал соседи пересчитываются для всех. Для пользователя, чьи оценки изменились после последнего
+ * пересчета или для которого соседей еще нет, схожий пользователь ищется полным перебором параллельно в отдельном
+ * пуле потоков, чтобы один запрос рекомендаций не занимал поток обработки запроса на все время перебора.
+ * <p>
+ * В режиме {@link RecommendationMode#APPROXIMATE} полный перебор заменяется сравнением только с кандидатами из
+ * {@link MinHashIndex}, который обновляется вместе с матрицей. Схожий пользователь может быть найден не тот, что при
+ * полном переборе, зато время поиска не зависит от общего количества пользователей.
+ * <p>
+ * Время построения матрицы и полного пересчета соседей и время подбора рекомендаций публикуются в метриках
+ * recommendations.training и recommendations.scoring с тегом strategy=closest-user.
+ */
+@Component
+@Slf4j
+public class RecommendationEngine implements SmartInitializingSingleton, DisposableBean {
+
+    private static final int DEFAULT_PARALLELISM = 0;
+    private static final int DEFAULT_NEIGHBOURS = 10;
+    private static final String DEFAULT_MODE = "EXACT";
+    private static final int DEFAULT_MINHASH_BANDS = 20;
+    private static final int DEFAULT_MINHASH_ROWS = 2;
+    private static final String STRATEGY_TAG = "closest-user";
+
+    private final FilmDbStorage filmDbStorage;
+
+    private final ForkJoinPool scanPool;
+
+    private final int neighbourCount;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RatingMatrix matrix = new RatingMatrix();
+    private final MinHashIndex minHashIndex;
+
+    private final Timer trainingTimer;
+    private final Timer scoringTimer;
+    private volatile boolean ready;
+
+    private final AtomicLong changeVersion = new AtomicLong();
+    private final Map<Long, Long> changedUsers = new ConcurrentHashMap<>();
+    private volatile Map<Long, long[]> neighbours;
+
+    public RecommendationEngine(final FilmDbStorage filmDbStorage) {
+        this(filmDbStorage, DEFAULT_PARALLELISM, DEFAULT_NEIGHBOURS);
+    }
+
+    public RecommendationEngine(final FilmDbStorage filmDbStorage, final int parallelism, final int neighbourCount) {
+        this(filmDbStorage, parallelism, neighbourCount, RecommendationMode.EXACT, DEFAULT_MINHASH_BANDS,
+                DEFAULT_MINHASH_ROWS, new SimpleMeterRegistry());
+    }
+
+    /**
+     * @param parallelism    количество потоков для поиска схожих пользователей; 0 - по количеству процессоров.
+     * @param neighbourCount количество хранимых ближайших пользователей кроме выбранного.
+     * @param mode           способ поиска схожего пользователя без заранее найденных соседей.
+     * @param minHashBands   количество полос сигнатуры MinHash в приближенном режиме.
+     * @param minHashRows    количество значений сигнатуры MinHash в полосе в приближенном режиме.
+     */
+    @Autowired
+    public RecommendationEngine(final FilmDbStorage filmDbStorage,
+                                @Value("${filmorate.recommendations.parallelism:" + DEFAULT_PARALLELISM + "}")
+                                final int parallelism,
+                                @Value("${filmorate.recommendations.neighbours.count:" + DEFAULT_NEIGHBOURS + "}")
+                                final int neighbourCount,
+                                @Value("${filmorate.recommendations.mode:" + DEFAULT_MODE + "}")
+                                final RecommendationMode mode,
+                                @Value("${filmorate.recommendations.minhash.bands:" + DEFAULT_MINHASH_BANDS + "}")
+                                final int minHashBands,
+                                @Value("${filmorate.recommendations.minhash.rows:" + DEFAULT_MINHASH_ROWS + "}")
+                                final int minHashRows,
+                                final MeterRegistry meterRegistry) {
+        this.filmDbStorage = filmDbStorage;
+        this.scanPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.neighbourCount = neighbourCount;
+        this.minHashIndex = mode == RecommendationMode.APPROXIMATE
+                ? new MinHashIndex(minHashBands, minHashRows) : null;
+        this.trainingTimer = Timer.builder("recommendations.training")
+                .tag("strategy", STRATEGY_TAG)
+                .register(meterRegistry);
+        this.scoringTimer = Timer.builder("recommendations.scoring")
+                .tag("strategy", STRATEGY_TAG)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    @Override
+    public void destroy() {
+        scanPool.shutdown();
+    }
+
+    /**
+     * Получение фильмов, которые оценил пользователь с наиболее схожими оценками, но не оценил запрашивающий.
+     *
+     * @param requesterId идентификатор пользователя, для которого ищутся рекомендации.
+     * @return идентификаторы фильмов по возрастанию; пустой результат, если матрица не построена или не учитывает
+     * изменения текущей транзакции.
+     */
+    public Optional<List<Long>> findRecommendedFilmIds(final long requesterId) {
+        return findRecommendation(requesterId).map(Recommendation::getFilmIds);
+    }
+
+    /**
+     * Подбор рекомендаций вместе со схожим пользователем, по оценкам которого они подобраны. Если матрица в этот
+     * момент обновляется, запрос ждет окончания обновления: запись удерживает блокировку только на время замены
+     * одной строки, а ответ без матрицы потребовал бы выгрузки всей таблицы FILM_MARK.
+     *
+     * @param requesterId идентификатор пользователя, для которого ищутся рекомендации.
+     * @return рекомендации; пустой результат, если матрица не построена или не учитывает изменения текущей
+     * транзакции.
+     */
+    public Optional<Recommendation> findRecommendation(final long requesterId) {
+        final Lock readLock = TransactionStaleness.readLock(this, ready, lock);
+        if (readLock == null) {
+            return Optional.empty();
+        }
+        final long start = System.nanoTime();
+        try {
+            final Map<Long, long[]> currentNeighbours = neighbours;
+            final long[] requesterNeighbours = currentNeighbours == null || changedUsers.containsKey(requesterId)
+                    ? null : currentNeighbours.get(requesterId);
+            if (requesterNeighbours != null && matrix.indexOf(requesterId) >= 0) {
+                if (requesterNeighbours.length == 0) {
+                    return Optional.of(Recommendation.of(Collections.emptyList()));
+                }
+                final int closestIndex = matrix.indexOf(requesterNeighbours[0]);
+                if (closestIndex >= 0) {
+                    return Optional.of(matrix.recommendationAt(requesterId, closestIndex));
+                }
+            }
+            if (minHashIndex != null) {
+                return Optional.of(matrix.recommendationAt(requesterId,
+                        matrix.findClosestUserIndex(requesterId, minHashIndex.findCandidates(requesterId))));
+            }
+            return Optional.of(matrix.recommendationAt(requesterId,
+                    matrix.findClosestUserIndex(requesterId, scanPool)));
+        } finally {
+            readLock.unlock();
+            scoringTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Получение сохраненных схожих пользователей.
+     *
+     * @param userId идентификатор пользователя.
+     * @return идентификаторы пользователей: первым - пользователь, по оценкам которого подбираются рекомендации,
+     * дальше - ближайшие по разнице оценок; пустой результат, если соседи пользователя еще не найдены или
+     * устарели.
+     */
+    public Optional<long[]> findNeighbours(final long userId) {
+        final Map<Long, long[]> currentNeighbours = neighbours;
+        if (currentNeighbours == null || changedUsers.containsKey(userId)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(currentNeighbours.get(userId)).map(long[]::clone);
+    }
+
+    /**
+     * Пересчет соседей пользователей, чьи оценки изменились с прошлого запуска, пользователей, среди соседей
+     * которых есть такие, и пользователей с общими с ними фильмами.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.neighbours.refresh-delay-ms:60000}")
+    public void refreshNeighbours() {
+        refreshNeighbours(false);
+    }
+
+    /**
+     * Пересчет соседей всех пользователей.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.neighbours.rebuild-delay-ms:3600000}",
+            initialDelayString = "${filmorate.recommendations.neighbours.rebuild-delay-ms:3600000}")
+    public void rebuildNeighbours() {
+        refreshNeighbours(true);
+    }
+
+    /**
+     * Перестроение матрицы по данным БД.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        final long start = System.nanoTime();
+        try {
+            matrix.clear();
+            if (minHashIndex != null) {
+                minHashIndex.clear();
+            }
+            neighbours = null;
+            changedUsers.clear();
+            final List<FilmMark> userFilmMarks = new ArrayList<>();
+            filmDbStorage.streamFilmMarks(filmMark -> {
+                if (!userFilmMarks.isEmpty() && userFilmMarks.get(0).getUserId() != filmMark.getUserId()) {
+                    putRow(userFilmMarks.get(0).getUserId(), UserRatings.of(userFilmMarks));
+                    userFilmMarks.clear();
+                }
+                userFilmMarks.add(filmMark);
+            });
+            if (!userFilmMarks.isEmpty()) {
+                putRow(userFilmMarks.get(0).getUserId(), UserRatings.of(userFilmMarks));
+            }
+            ready = true;
+            trainingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.info("Матрица оценок построена, пользователей: {}.", matrix.size());
+        } catch (RuntimeException e) {
+            ready = false;
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Перечитывание оценок пользователя из БД.
+     *
+     * @param userId идентификатор пользователя.
+     */
+    public void refreshUser(final long userId) {
+        lock.writeLock().lock();
+        try {
+            putRow(userId, UserRatings.of(filmDbStorage.findUserFilmMarks(userId)));
+            changedUsers.put(userId, changeVersion.incrementAndGet());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Удаление оценок фильма из матрицы.
+     *
+     * @param filmId идентификатор фильма.
+     */
+    public void removeFilm(final long filmId) {
+        lock.writeLock().lock();
+        try {
+            for (long userId : matrix.removeFilm((int) filmId)) {
+                changedUsers.put(userId, changeVersion.incrementAndGet());
+                if (minHashIndex != null) {
+                    final int index = matrix.indexOf(userId);
+                    minHashIndex.put(userId, index >= 0 ? matrix.rowAt(index) : UserRatings.of(List.of()));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return matrix.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(classes = {FilmChangedEvent.class, FilmMarkChangedEvent.class})
+    public void onMarksChanging() {
+        TransactionStaleness.markStale(this);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmMarkChanged(final FilmMarkChangedEvent event) {
+        refreshUser(event.getUserId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmChanged(final FilmChangedEvent event) {
+        if (event.getOperation() == Operation.REMOVE) {
+            removeFilm(event.getFilmId());
+        }
+    }
+
+    private void putRow(final long userId, final UserRatings ratings) {
+        matrix.put(userId, ratings);
+        if (minHashIndex != null) {
+            minHashIndex.put(userId, ratings);
+        }
+    }
+
+    private synchronized void refreshNeighbours(final boolean full) {
+        if (!ready) {
+            return;
+        }
+        final RatingMatrix snapshot;
+        final Map<Long, Long> processedChanges;
+        lock.readLock().lock();
+        try {
+            snapshot = matrix.snapshot();
+            processedChanges = new HashMap<>(changedUsers);
+        } finally {
+            lock.readLock().unlock();
+        }
+        final long start = System.nanoTime();
+        final NeighbourSearch search = new NeighbourSearch(snapshot);
+        final Map<Long, long[]> previousNeighbours = neighbours;
+        final boolean rebuildAll = full || previousNeighbours == null;
+        final int[] targets = rebuildAll
+                ? IntStream.range(0, search.size()).toArray()
+                : findRefreshTargets(search, previousNeighbours, processedChanges.keySet());
+        final Map<Long, long[]> updatedNeighbours = rebuildAll ? new ConcurrentHashMap<>() : previousNeighbours;
+        scanPool.submit(() -> Arrays.stream(targets).parallel().forEach(index ->
+                updatedNeighbours.put(search.userIdAt(index), search.findNeighbours(index, neighbourCount))))
+                .join();
+        for (Long userId : processedChanges.keySet()) {
+            if (search.indexOf(userId) < 0) {
+                updatedNeighbours.remove(userId);
+            }
+        }
+        neighbours = updatedNeighbours;
+        processedChanges.forEach(changedUsers::remove);
+        if (rebuildAll) {
+            trainingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        log.info("Соседи пересчитаны для {} пользователей за {} мс.", targets.length,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private int[] findRefreshTargets(final NeighbourSearch search, final Map<Long, long[]> previousNeighbours,
+                                     final Set<Long> changedUserIds) {
+        final Set<Long> targetUserIds = new HashSet<>(changedUserIds);
+        previousNeighbours.forEach((userId, userNeighbours) -> {
+            for (long neighbourId : userNeighbours) {
+                if (changedUserIds.contains(neighbourId)) {
+                    targetUserIds.add(userId);
+                    break;
+                }
+            }
+        });
+        final Set<Integer> targets = new HashSet<>();
+        for (Long userId : targetUserIds) {
+            final int index = search.indexOf(userId);
+            if (index >= 0) {
+                targets.add(index);
+            }
+        }
+        for (Long userId : changedUserIds) {
+            final int index = search.indexOf(userId);
+            if (index >= 0) {
+                for (int coRaterIndex : search.findCoRaterIndexes(index)) {
+                    targets.add(coRaterIndex);
+                }
+            }
+        }
+        return targets.stream()
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+/**
+ * Способ поиска схожего пользователя, когда заранее найденные соседи отсутствуют или устарели.
+ */
+public enum RecommendationMode {
+    /**
+     * Полный перебор всех пользователей матрицы.
+     */
+    EXACT,
+    /**
+     * Сравнение только с кандидатами, отобранными {@link MinHashIndex}.
+     */
+    APPROXIMATE
+}
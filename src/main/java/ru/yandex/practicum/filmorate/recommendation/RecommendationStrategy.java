@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import java.util.Arrays;
+
+/**
+ * Способ подбора рекомендаций.
+ */
+public enum RecommendationStrategy {
+    /**
+     * Фильмы пользователя с наиболее схожими оценками, {@link RecommendationEngine}.
+     */
+    CLOSEST_USER,
+    /**
+     * Фильмы с наибольшей оценкой, предсказанной матричным разложением, {@link FactorizationEngine}.
+     */
+    FACTORIZATION,
+    /**
+     * Фильмы, жанры и режиссеры которых ближе всего к вкусу пользователя, {@link ContentEngine}.
+     */
+    CONTENT;
+
+    public static RecommendationStrategy fromString(final String text) {
+        return Arrays.stream(RecommendationStrategy.values())
+                .filter(strategy -> strategy.name().replace('_', '-').equalsIgnoreCase(text)
+                        || strategy.name().equalsIgnoreCase(text))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Способ подбора рекомендаций '" + text +
+                        "' не поддерживается."));
+    }
+}
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Отбор идентификаторов с наибольшими оценками, например, рекомендуемых фильмов или возможных друзей: двоичная куча
+ * фиксированного размера с худшим из отобранных идентификаторов в вершине. При равенстве оценок лучшим считается
+ * меньший идентификатор.
+ */
+final class TopIds {
+    private final long[] ids;
+    private final float[] scores;
+    private int size;
+
+    TopIds(final int capacity) {
+        ids = new long[capacity];
+        scores = new float[capacity];
+    }
+
+    void offer(final long id, final float score) {
+        if (size < ids.length) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (isBetter(id, score, 0)) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    List<Long> toList() {
+        final Long[] ordered = new Long[size];
+        while (size > 0) {
+            ordered[size - 1] = ids[0];
+            size--;
+            ids[0] = ids[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        final List<Long> result = new ArrayList<>(ordered.length);
+        Collections.addAll(result, ordered);
+        return result;
+    }
+
+    private boolean isBetter(final long id, final float score, final int index) {
+        return score > scores[index] || score == scores[index] && id < ids[index];
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            final int parent = (index - 1) / 2;
+            if (!isBetter(ids[parent], scores[parent], index)) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int worst = index;
+            for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                if (!isBetter(ids[child], scores[child], worst)) {
+                    worst = child;
+                }
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(final int a, final int b) {
+        final long id = ids[a];
+        final float score = scores[a];
+        ids[a] = ids[b];
+        scores[a] = scores[b];
+        ids[b] = id;
+        scores[b] = score;
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import lombok.Value;
+import ru.yandex.practicum.filmorate.model.FilmMark;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Строка матрицы оценок: оценки одного пользователя в виде отсортированных по возрастанию идентификаторов фильмов
+ * и параллельного массива оценок. Лайк без оценки хранится как оценка 0. Строка неизменяема.
+ */
+@Value
+public class UserRatings {
+    int[] filmIds;
+    byte[] marks;
+    int markSum;
+
+    /**
+     * Построение строки по оценкам пользователя в любом порядке.
+     *
+     * @param filmMarks оценки одного пользователя.
+     * @return строка с оценками, упорядоченными по идентификатору фильма.
+     */
+    public static UserRatings of(final Collection<FilmMark> filmMarks) {
+        final List<FilmMark> sorted = filmMarks.stream()
+                .sorted(Comparator.comparingLong(FilmMark::getFilmId))
+                .collect(Collectors.toList());
+        final int[] filmIds = new int[sorted.size()];
+        final byte[] marks = new byte[sorted.size()];
+        int markSum = 0;
+        for (int i = 0; i < filmIds.length; i++) {
+            filmIds[i] = (int) sorted.get(i).getFilmId();
+            marks[i] = (byte) sorted.get(i).getMark();
+            markSum += marks[i];
+        }
+        return new UserRatings(filmIds, marks, markSum);
+    }
+
+    public int size() {
+        return filmIds.length;
+    }
+
+    public boolean isEmpty() {
+        return filmIds.length == 0;
+    }
+
+    /**
+     * Копия строки без оценки фильма.
+     *
+     * @param filmId идентификатор фильма.
+     * @return строка без оценки фильма или эта же строка, если пользователь фильм не оценивал.
+     */
+    public UserRatings withoutFilm(final int filmId) {
+        final int index = Arrays.binarySearch(filmIds, filmId);
+        if (index < 0) {
+            return this;
+        }
+        final int[] remainingFilmIds = new int[filmIds.length - 1];
+        final byte[] remainingMarks = new byte[marks.length - 1];
+        System.arraycopy(filmIds, 0, remainingFilmIds, 0, index);
+        System.arraycopy(filmIds, index + 1, remainingFilmIds, index, remainingFilmIds.length - index);
+        System.arraycopy(marks, 0, remainingMarks, 0, index);
+        System.arraycopy(marks, index + 1, remainingMarks, index, remainingMarks.length - index);
+        return new UserRatings(remainingFilmIds, remainingMarks, markSum - marks[index]);
+    }
+}
@@ -4,13 +4,16 @@ import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.FilmSearchDto;
 
 import java.util.Collection;
+import java.util.function.Consumer;
 
 public interface FilmService {
     FilmDto addFilm(FilmDto filmDto);
 
     FilmDto updateFilm(FilmDto filmDto);
 
-    Collection<FilmDto> getAllFilms();
+    Collection<FilmDto> getFilms(long afterId, int limit);
+
+    void streamFilms(long afterId, Consumer<FilmDto> consumer);
 
     FilmDto getFilmById(long filmId);
 
@@ -27,4 +30,8 @@ public interface FilmService {
     Collection<FilmDto> getMostPopularFilms(int count, Integer genreId, Integer year);
 
     Collection<FilmDto> getCommonFilms(long userId, long friendId);
+
+    Collection<FilmDto> getSimilarFilms(long filmId, int count);
+
+    int recalculateFilmMarks();
 }
\ No newline at end of file
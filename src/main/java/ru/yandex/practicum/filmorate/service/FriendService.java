@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.dto.UserDto;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface FriendService {
+
+    UserDto addFriend(long userId, long friendId);
+
+    Collection<UserDto> showFriendList(long userId);
+
+    Collection<UserDto> findCommonFriends(long userId, long otherUserId);
+
+    Collection<UserDto> findFriendSuggestions(long userId, int count);
+
+    List<UserDto> findPath(long userId, long otherUserId, int maxDepth);
+
+    void removeFriend(long userId, long friendId);
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.service;
+
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.recommendation.RecommendationStrategy;
+
+import java.util.Collection;
+
+public interface RecommendationService {
+
+    Collection<FilmDto> showRecommendations(long id);
+
+    Collection<FilmDto> showRecommendations(long id, RecommendationStrategy strategy);
+}
@@ -1,7 +1,6 @@
 package ru.yandex.practicum.filmorate.service;
 
 import ru.yandex.practicum.filmorate.dto.FeedDto;
-import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.UserDto;
 
 import java.util.Collection;
@@ -16,17 +15,7 @@ public interface UserService {
 
     UserDto getUserById(long userId);
 
-    UserDto addFriend(long userId, long friendId);
-
-    Collection<UserDto> showFriendList(long userId);
-
-    Collection<UserDto> findCommonFriends(long userId, long otherUserId);
-
-    void removeFriend(long userId, long friendId);
-
     void removeUser(long userId);
 
-    Collection<FilmDto> showRecommendations(long id);
-
     Collection<FeedDto> getFeed(long id);
-}
\ No newline at end of file
+}
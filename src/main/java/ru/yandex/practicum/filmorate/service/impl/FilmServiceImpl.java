@@ -13,6 +13,8 @@ import ru.yandex.practicum.filmorate.service.FilmService;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static ru.yandex.practicum.filmorate.mapper.FilmMapper.toDto;
@@ -25,12 +27,10 @@ public class FilmServiceImpl implements FilmService {
 
     private final FilmStorage filmStorage;
 
-    private final UserStorage userStorage;
-
-    private final DirectorStorage directorStorage;
-
     private final EventStorage eventStorage;
 
+    private final ReferenceStorage referenceStorage;
+
     /**
      * Добавление фильма в БД.
      *
@@ -63,14 +63,30 @@ public class FilmServiceImpl implements FilmService {
     }
 
     /**
-     * Получение списка всех фильмов.
+     * Получение страницы фильмов, упорядоченных по идентификатору.
+     *
+     * @param afterId идентификатор последнего фильма предыдущей страницы.
+     * @param limit   максимальное количество фильмов на странице.
+     * @return список фильмов с идентификатором больше afterId.
+     */
+    @Override
+    public Collection<FilmDto> getFilms(final long afterId, final int limit) {
+        log.info("Получение {} фильмов с id больше {}.", limit, afterId);
+        return filmStorage.findFilmsAfter(afterId, limit).stream()
+                .map(FilmMapper::toDto)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Последовательная выгрузка всех фильмов без загрузки каталога в память целиком.
      *
-     * @return список всех фильмов, хранящихся в БД.
+     * @param afterId  идентификатор, после которого начинается выгрузка.
+     * @param consumer получатель фильмов, упорядоченных по идентификатору.
      */
     @Override
-    public Collection<FilmDto> getAllFilms() {
-        log.info("Получение списка всех фильмов.");
-        return filmStorage.findAll().stream().map(FilmMapper::toDto).collect(Collectors.toCollection(ArrayList::new));
+    public void streamFilms(final long afterId, final Consumer<FilmDto> consumer) {
+        log.info("Выгрузка фильмов с id больше {}.", afterId);
+        filmStorage.streamFilmsAfter(afterId, film -> consumer.accept(toDto(film)));
     }
 
     /**
@@ -97,12 +113,12 @@ public class FilmServiceImpl implements FilmService {
     @Override
     @Transactional
     public FilmDto addMarkToFilm(final long filmId, final long userId, final Integer mark) {
-        filmStorage.findById(filmId);
-        userStorage.findById(userId);
-        filmStorage.addMarkToFilm(filmId, userId, mark);
+        final Film film = filmStorage.findById(filmId);
+        referenceStorage.requireAll(Reference.user(userId));
+        final double rating = filmStorage.addMarkToFilm(filmId, userId, mark);
         log.info("Пользователь с id {} поставил лайк фильму с id {}", userId, filmId);
         eventStorage.addEvent(EventType.LIKE.name(), Operation.ADD.name(), filmId, userId);
-        return toDto(filmStorage.findById(filmId));
+        return toDto(withRating(film, rating));
     }
 
     /**
@@ -115,12 +131,12 @@ public class FilmServiceImpl implements FilmService {
     @Override
     @Transactional
     public FilmDto removeMarkFromFilm(final long filmId, final long userId) {
-        filmStorage.findById(filmId);
-        userStorage.findById(userId);
-        filmStorage.removeMarkFromFilm(filmId, userId);
+        final Film film = filmStorage.findById(filmId);
+        referenceStorage.requireAll(Reference.user(userId));
+        final double rating = filmStorage.removeMarkFromFilm(filmId, userId);
         log.info("Пользователь с id {} удалил лайк фильма с id {}", userId, filmId);
         eventStorage.addEvent(EventType.LIKE.name(), Operation.REMOVE.name(), filmId, userId);
-        return toDto(filmStorage.findById(filmId));
+        return toDto(withRating(film, rating));
     }
 
     /**
@@ -184,7 +200,7 @@ public class FilmServiceImpl implements FilmService {
             throw new IllegalArgumentException("Поле сортировки '" + sortBy + "' не поддерживается.");
         }
         String sort = SortBy.fromString(sortBy).getSql();
-        directorStorage.findById(directorId);
+        referenceStorage.requireAll(Reference.director(directorId));
         return filmStorage.findFilmsFromDirectorOrderBy(directorId, sort).stream()
                 .map(FilmMapper::toDto)
                 .collect(Collectors.toList());
@@ -199,10 +215,48 @@ public class FilmServiceImpl implements FilmService {
      */
     @Override
     public Collection<FilmDto> getCommonFilms(long userId, long friendId) {
-        userStorage.findById(userId);
-        userStorage.findById(friendId);
+        referenceStorage.requireAll(Reference.user(userId), Reference.user(friendId));
         return filmStorage.findCommonFilms(userId, friendId).stream()
                 .map(FilmMapper::toDto)
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Получение фильмов, похожих на переданный по оценкам пользователей.
+     *
+     * @param filmId идентификатор фильма.
+     * @param count  максимальное количество фильмов.
+     * @return список фильмов по убыванию сходства.
+     */
+    @Override
+    public Collection<FilmDto> getSimilarFilms(final long filmId, final int count) {
+        referenceStorage.requireAll(Reference.film(filmId));
+        return filmStorage.findSimilarFilms(filmId, count).stream()
+                .map(FilmMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Пересчет агрегированных оценок (количество, сумма и средняя оценка) всех фильмов по таблице film_mark.
+     * Используется для восстановления согласованности данных, например, после ручного изменения оценок в БД.
+     *
+     * @return количество фильмов, для которых был выполнен пересчет.
+     */
+    @Override
+    @Transactional
+    public int recalculateFilmMarks() {
+        final int films = filmStorage.recalculateMarkAggregates();
+        log.info("Пересчитаны оценки для {} фильмов.", films);
+        return films;
+    }
+
+    /**
+     * Копия фильма, загруженного до изменения оценки, с рейтингом после изменения. Хранилище может вернуть
+     * неизменяемый снимок из кэша, поэтому рейтинг меняется в копии.
+     */
+    private Film withRating(final Film film, final double rating) {
+        final Film rated = film.copy();
+        rated.setRating(rating);
+        return rated;
+    }
 }
@@ -0,0 +1,173 @@
+package ru.yandex.practicum.filmorate.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.cache.FriendSuggestionCache;
+import ru.yandex.practicum.filmorate.dao.EventStorage;
+import ru.yandex.practicum.filmorate.dao.FriendshipStorage;
+import ru.yandex.practicum.filmorate.dao.ReferenceStorage;
+import ru.yandex.practicum.filmorate.dao.UserStorage;
+import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.TimeLimitExceededException;
+import ru.yandex.practicum.filmorate.index.FriendshipPathFinder;
+import ru.yandex.practicum.filmorate.index.FriendshipPaths;
+import ru.yandex.practicum.filmorate.mapper.UserMapper;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.model.Reference;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.recommendation.FriendSuggestionEngine;
+import ru.yandex.practicum.filmorate.service.FriendService;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static ru.yandex.practicum.filmorate.model.FriendshipStatus.ACKNOWLEDGED;
+import static ru.yandex.practicum.filmorate.model.FriendshipStatus.NOT_ACKNOWLEDGED;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FriendServiceImpl implements FriendService {
+
+    private final UserStorage userStorage;
+    private final FriendshipStorage friendshipStorage;
+    private final ReferenceStorage referenceStorage;
+    private final EventStorage eventStorage;
+    private final FriendSuggestionEngine friendSuggestionEngine;
+    private final FriendSuggestionCache friendSuggestionCache;
+    private final FriendshipPathFinder friendshipPathFinder;
+
+    /**
+     * Добавление пользователя в друзья. Если, пользователи взаимно подружились, то статус дружбы переходит в
+     * "Подтверждено".
+     *
+     * @param userId   идентификатор пользователя.
+     * @param friendId идентификатор пользователя, которого требуется добавить в друзья.
+     * @return пользователь с обновленным списком друзей.
+     */
+    @Override
+    @Transactional
+    public UserDto addFriend(final long userId, final long friendId) {
+        referenceStorage.requireAll(Reference.user(userId), Reference.user(friendId));
+        if (friendshipStorage.exists(friendId, userId)) {
+            friendshipStorage.add(userId, friendId, ACKNOWLEDGED.getId());
+            friendshipStorage.update(friendId, userId, ACKNOWLEDGED.getId());
+        } else {
+            friendshipStorage.add(userId, friendId, NOT_ACKNOWLEDGED.getId());
+        }
+        log.info("Пользователи с id {} и id {} стали друзьями.", userId, friendId);
+        eventStorage.addEvent(EventType.FRIEND.name(), Operation.ADD.name(), friendId, userId);
+        return UserMapper.toDto(userStorage.findById(userId));
+    }
+
+    /**
+     * Получение списка друзей пользователя.
+     *
+     * @param userId идентификатор пользователя, список друзей которого требуется отобразить
+     * @return список пользователей
+     */
+    @Override
+    public Collection<UserDto> showFriendList(final long userId) {
+        checkUserExists(userId);
+        log.info("Получение списка друзей пользователя с id {}.", userId);
+        return userStorage.findFriendsByUserId(userId).stream().map(UserMapper::toDto).collect(Collectors.toList());
+    }
+
+    /**
+     * Получение списка общих друзей между пользователями.
+     *
+     * @param userId      идентификатор первого пользователя.
+     * @param otherUserId идентификатор второго пользователя.
+     * @return список общих друзей между первым и вторым пользователем.
+     */
+    @Override
+    public Collection<UserDto> findCommonFriends(final long userId, final long otherUserId) {
+        referenceStorage.requireAll(Reference.user(userId), Reference.user(otherUserId));
+        return userStorage.findCommonFriends(userId, otherUserId).stream()
+                .map(UserMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Получение возможных друзей пользователя: друзей его друзей, упорядоченных по количеству общих друзей и
+     * схожести вкуса. Подобранные идентификаторы сохраняются в {@link FriendSuggestionCache}.
+     *
+     * @param userId идентификатор пользователя.
+     * @param count  максимальное количество возможных друзей.
+     * @return список возможных друзей, начиная с наиболее подходящего.
+     */
+    @Override
+    public Collection<UserDto> findFriendSuggestions(final long userId, final int count) {
+        checkUserExists(userId);
+        log.info("Получение возможных друзей пользователя с id {}.", userId);
+        return findUsersInOrder(friendSuggestionCache.get(userId, count,
+                () -> friendSuggestionEngine.findSuggestions(userId, count)));
+    }
+
+    /**
+     * Поиск кратчайшей цепочки друзей между пользователями: первый пользователь добавил в друзья второго, второй -
+     * третьего и так далее до последнего. Цепочка ищется по графу дружбы в памяти с ограничением по длине и времени.
+     *
+     * @param userId      идентификатор первого пользователя цепочки.
+     * @param otherUserId идентификатор последнего пользователя цепочки.
+     * @param maxDepth    максимальное количество связей в цепочке.
+     * @return пользователи цепочки от первого до последнего; пустой список, если цепочки нет.
+     * @throws TimeLimitExceededException если поиск не уложился в отведенное время и ответ неизвестен.
+     */
+    @Override
+    public List<UserDto> findPath(final long userId, final long otherUserId, final int maxDepth) {
+        referenceStorage.requireAll(Reference.user(userId), Reference.user(otherUserId));
+        log.info("Поиск цепочки друзей между пользователями с id {} и {}.", userId, otherUserId);
+        final FriendshipPaths.Path path = friendshipPathFinder.findPath(userId, otherUserId, maxDepth);
+        if (path.isTimedOut()) {
+            throw new TimeLimitExceededException("Поиск цепочки друзей между пользователями с id '" + userId
+                    + "' и '" + otherUserId + "' не уложился в отведенное время.");
+        }
+        return findUsersInOrder(Arrays.stream(path.getUserIds()).boxed().collect(Collectors.toList()));
+    }
+
+    /**
+     * Удаление пользователя из списка друзей. Удаление происходит только у пользователя с userId. Если дружба была
+     * обоюдной, удаление произойдет только у одного из них.
+     *
+     * @param userId   идентификатор пользователя.
+     * @param friendId идентификатор друга, которого требуется исключить из списка друзей.
+     */
+    @Override
+    @Transactional
+    public void removeFriend(final long userId, final long friendId) {
+        referenceStorage.requireAll(Reference.user(userId), Reference.user(friendId));
+        friendshipStorage.remove(userId, friendId);
+        eventStorage.addEvent(EventType.FRIEND.name(), Operation.REMOVE.name(), friendId, userId);
+        log.info("Пользователи с id {} и {} перестали быть друзьями", userId, friendId);
+    }
+
+    private List<UserDto> findUsersInOrder(final List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final Map<Long, User> users = userStorage.findByIds(ids).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(UserMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    private void checkUserExists(final long userId) {
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("Пользователь с id '" + userId + "' не найден.");
+        }
+    }
+}
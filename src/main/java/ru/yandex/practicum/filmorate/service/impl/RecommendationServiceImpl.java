@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.cache.RecommendationCache;
+import ru.yandex.practicum.filmorate.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.recommendation.ContentEngine;
+import ru.yandex.practicum.filmorate.recommendation.FactorizationEngine;
+import ru.yandex.practicum.filmorate.recommendation.RatingMatrix;
+import ru.yandex.practicum.filmorate.recommendation.Recommendation;
+import ru.yandex.practicum.filmorate.recommendation.RecommendationEngine;
+import ru.yandex.practicum.filmorate.recommendation.RecommendationStrategy;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RecommendationServiceImpl implements RecommendationService {
+    private static final int MIN_POSITIVE_RATING_VALUE = 6;
+
+    private final FilmStorage filmStorage;
+    private final RecommendationEngine recommendationEngine;
+    private final FactorizationEngine factorizationEngine;
+    private final ContentEngine contentEngine;
+    private final RecommendationCache recommendationCache;
+    @Value("${filmorate.recommendations.strategy:closest-user}")
+    private final RecommendationStrategy defaultStrategy;
+
+    /**
+     * Получение списка рекомендованных к просмотру фильмов способом подбора по умолчанию.
+     *
+     * @param requesterId идентификатор пользователя, который хочет получить рекомендации.
+     * @return список рекомендованных фильмов.
+     */
+    @Override
+    public Collection<FilmDto> showRecommendations(long requesterId) {
+        return showRecommendations(requesterId, null);
+    }
+
+    /**
+     * Получение списка рекомендованных к просмотру фильмов, которые могут понравится пользователю. Алгоритм
+     * выбора рекомендаций определяет пользователя с наиболее схожими оценками с пользователем, который хочет получить
+     * рекомендации, и возвращает те фильмы, которые не были оценены искомым пользователем и у которых положительный
+     * рейтинг. При подборе по матричному разложению возвращаются фильмы с наибольшей предсказанной оценкой и
+     * положительным рейтингом; если пользователя не было при обучении модели, используется первый алгоритм. При
+     * подборе по содержанию возвращаются фильмы, жанры и режиссеры которых ближе всего к вкусу пользователя.
+     * Подобранные фильмы сохраняются в {@link RecommendationCache}, рейтинг фильмов проверяется при каждом запросе.
+     *
+     * @param requesterId идентификатор пользователя, который хочет получить рекомендации.
+     * @param strategy    способ подбора рекомендаций или null - способ по умолчанию из настроек.
+     * @return список рекомендованных фильмов.
+     */
+    @Override
+    public Collection<FilmDto> showRecommendations(long requesterId, RecommendationStrategy strategy) {
+        log.info("Получение списка рекомендаций фильмов для пользователя с id {}.", requesterId);
+        final List<Long> recommendedFilmIds =
+                findRecommendedFilmIds(requesterId, strategy != null ? strategy : defaultStrategy);
+        if (recommendedFilmIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return filmStorage.findFilmsByIds(new LinkedHashSet<>(recommendedFilmIds)).stream()
+                .filter(film -> film.getRating() >= MIN_POSITIVE_RATING_VALUE)
+                .map(FilmMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    private List<Long> findRecommendedFilmIds(final long requesterId, final RecommendationStrategy strategy) {
+        Optional<List<Long>> filmIds = Optional.empty();
+        if (strategy == RecommendationStrategy.FACTORIZATION) {
+            filmIds = recommendationCache.find(requesterId, strategy, factorizationEngine.getModelVersion(),
+                    () -> factorizationEngine.findRecommendedFilmIds(requesterId).map(Recommendation::of));
+        } else if (strategy == RecommendationStrategy.CONTENT) {
+            filmIds = recommendationCache.find(requesterId, strategy, 0,
+                    () -> contentEngine.findRecommendedFilmIds(requesterId).map(Recommendation::of));
+        }
+        return filmIds.orElseGet(() -> recommendationCache.get(requesterId, RecommendationStrategy.CLOSEST_USER, 0,
+                () -> findClosestUserRecommendation(requesterId)));
+    }
+
+    private Recommendation findClosestUserRecommendation(final long requesterId) {
+        return recommendationEngine.findRecommendation(requesterId).orElseGet(() ->
+                RatingMatrix.of(filmStorage.findUserIdFilmMarks()).findRecommendation(requesterId));
+    }
+}
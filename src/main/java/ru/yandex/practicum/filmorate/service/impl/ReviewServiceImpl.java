@@ -5,13 +5,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dao.EventStorage;
-import ru.yandex.practicum.filmorate.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.dao.ReferenceStorage;
 import ru.yandex.practicum.filmorate.dao.ReviewStorage;
-import ru.yandex.practicum.filmorate.dao.UserStorage;
 import ru.yandex.practicum.filmorate.dto.ReviewDto;
 import ru.yandex.practicum.filmorate.mapper.ReviewMapper;
 import ru.yandex.practicum.filmorate.model.EventType;
 import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.model.Reference;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.service.ReviewService;
 
@@ -27,9 +27,8 @@ import static ru.yandex.practicum.filmorate.mapper.ReviewMapper.toModel;
 public class ReviewServiceImpl implements ReviewService {
 
     private final ReviewStorage reviewStorage;
-    private final UserStorage userStorage;
-    private final FilmStorage filmStorage;
     private final EventStorage eventStorage;
+    private final ReferenceStorage referenceStorage;
 
     /**
      * Добавление отзыва в БД.
@@ -40,12 +39,12 @@ public class ReviewServiceImpl implements ReviewService {
     @Override
     @Transactional
     public ReviewDto addReview(final ReviewDto reviewDto) {
-        findUserAndFilmInDb(reviewDto);
+        referenceStorage.requireAll(Reference.user(reviewDto.getUserId()), Reference.film(reviewDto.getFilmId()));
         final Review review = toModel(reviewDto);
         final Review addedReview = reviewStorage.add(review);
         log.info("Добавлен новый отзыв: {}.", addedReview);
         eventStorage.addEvent(EventType.REVIEW.name(), Operation.ADD.name(), review.getReviewId(), review.getUserId());
-        return toDto(reviewStorage.findById(addedReview.getReviewId()));
+        return toDto(addedReview);
     }
 
     /**
@@ -71,13 +70,11 @@ public class ReviewServiceImpl implements ReviewService {
     @Transactional
     public ReviewDto updateReview(final ReviewDto updatedReviewDto) {
         final long reviewId = updatedReviewDto.getReviewId();
-        reviewStorage.findById(reviewId);
         final Review updatedReview = toModel(updatedReviewDto);
         reviewStorage.update(updatedReview);
         log.info("Обновление отзыва с id '{}': {}", reviewId, updatedReview);
-        Review currentReview = reviewStorage.findById(reviewId);
-        eventStorage.addEvent(EventType.REVIEW.name(), Operation.UPDATE.name(), currentReview.getReviewId(), currentReview.getUserId());
-        return toDto(currentReview);
+        eventStorage.addEvent(EventType.REVIEW.name(), Operation.UPDATE.name(), reviewId, updatedReview.getUserId());
+        return toDto(updatedReview);
     }
 
     /**
@@ -108,7 +105,7 @@ public class ReviewServiceImpl implements ReviewService {
             log.info("Запрос на получение отзывов.");
             return reviews.stream().map(ReviewMapper::toDto).collect(Collectors.toList());
         } else {
-            filmStorage.findById(filmId);
+            referenceStorage.requireAll(Reference.film(filmId));
             final List<Review> reviews = reviewStorage.findByFilmIdLimitBy(filmId, count);
             log.info("Запрос на получение отзывов по фильму с id '{}'.", filmId);
             return reviews.stream().map(ReviewMapper::toDto).collect(Collectors.toList());
@@ -125,10 +122,11 @@ public class ReviewServiceImpl implements ReviewService {
     @Override
     @Transactional
     public ReviewDto addLikeOrDislikeToReview(final long id, final long userId, String type) {
-        findReviewAndUserInDb(id, userId);
-        reviewStorage.addLikeOrDislikeToReview(id, userId, type);
+        final Review review = reviewStorage.findById(id);
+        referenceStorage.requireAll(Reference.user(userId));
+        review.setUseful(reviewStorage.addLikeOrDislikeToReview(id, userId, type));
         log.info("Пользователь с id '{}' поставил лайк отзыву с id '{}'", userId, id);
-        return toDto(reviewStorage.findById(id));
+        return toDto(review);
     }
 
     /**
@@ -141,19 +139,10 @@ public class ReviewServiceImpl implements ReviewService {
     @Override
     @Transactional
     public ReviewDto deleteLikeOrDislikeFromReview(long id, long userId, String type) {
-        findReviewAndUserInDb(id, userId);
-        reviewStorage.deleteLikeOrDislikeFromReview(id, userId, type);
+        final Review review = reviewStorage.findById(id);
+        referenceStorage.requireAll(Reference.user(userId));
+        review.setUseful(reviewStorage.deleteLikeOrDislikeFromReview(id, userId, type));
         log.info("Пользователь с id '{}' удалил лайк отзыву с id '{}'", userId, id);
-        return toDto(reviewStorage.findById(id));
-    }
-
-    private void findReviewAndUserInDb(long id, long userId) {
-        reviewStorage.findById(id);
-        userStorage.findById(userId);
-    }
-
-    private void findUserAndFilmInDb(ReviewDto updatedReviewDto) {
-        userStorage.findById(updatedReviewDto.getUserId());
-        filmStorage.findById(updatedReviewDto.getFilmId());
+        return toDto(review);
     }
 }
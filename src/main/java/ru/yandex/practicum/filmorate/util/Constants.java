@@ -9,4 +9,9 @@ public final class Constants {
 
     public static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
+    /**
+     * Вес лайка без оценки при сравнении фильмов по оценкам: лайк считается минимальной положительной оценкой.
+     */
+    public static final int UNRATED_LIKE_WEIGHT = 6;
+
 }
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.util;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Отметки о том, что текущая транзакция изменила данные, по которым построена структура в памяти: индекс, кэш или
+ * движок рекомендаций. Такие структуры обновляются после фиксации транзакции, поэтому до ее завершения они не
+ * учитывают изменения транзакции, и сама транзакция должна читать данные в обход них. Отметка привязывается к
+ * транзакции как ресурс, ключом которого служит структура, и снимается после завершения транзакции.
+ */
+@UtilityClass
+public final class TransactionStaleness {
+
+    /**
+     * Отметка о том, что текущая транзакция изменяет данные структуры и до ее завершения структура для нее
+     * неактуальна. Вне транзакции ничего не делает.
+     *
+     * @param owner структура в памяти.
+     */
+    public static void markStale(final Object owner) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+                && !TransactionSynchronizationManager.hasResource(owner)) {
+            TransactionSynchronizationManager.bindResource(owner, Boolean.TRUE);
+            runAfterCompletion(() -> TransactionSynchronizationManager.unbindResourceIfPossible(owner));
+        }
+    }
+
+    /**
+     * @param owner структура в памяти.
+     * @return true, если текущая транзакция изменила данные структуры и еще не завершена.
+     */
+    public static boolean isStale(final Object owner) {
+        return TransactionSynchronizationManager.hasResource(owner);
+    }
+
+    /**
+     * Выполнение действия после завершения текущей транзакции. Вне транзакции ничего не делает.
+     *
+     * @param action действие, которое выполняется после фиксации или отката транзакции.
+     */
+    public static void runAfterCompletion(final Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Попытка занять блокировку чтения структуры без ожидания.
+     *
+     * @param owner структура в памяти.
+     * @param ready структура построена.
+     * @param lock  блокировка структуры.
+     * @return занятая блокировка чтения, которую нужно освободить; null, если структура не построена, не учитывает
+     * изменения текущей транзакции или занята перестроением.
+     */
+    public static Lock tryReadLock(final Object owner, final boolean ready, final ReadWriteLock lock) {
+        if (!ready || isStale(owner)) {
+            return null;
+        }
+        final Lock readLock = lock.readLock();
+        return readLock.tryLock() ? readLock : null;
+    }
+
+    /**
+     * Блокировка чтения структуры с ожиданием, если структура занята изменением.
+     *
+     * @param owner структура в памяти.
+     * @param ready структура построена.
+     * @param lock  блокировка структуры.
+     * @return занятая блокировка чтения, которую нужно освободить; null, если структура не построена или не учитывает
+     * изменения текущей транзакции.
+     */
+    public static Lock readLock(final Object owner, final boolean ready, final ReadWriteLock lock) {
+        if (!ready || isStale(owner)) {
+            return null;
+        }
+        final Lock readLock = lock.readLock();
+        readLock.lock();
+        return readLock;
+    }
+}
@@ -17,11 +17,21 @@ CREATE TABLE IF NOT EXISTS FILM(
     TITLE CHARACTER VARYING(255) NOT NULL,
     DESCRIPTION CHARACTER VARYING(200),
     RELEASE_DATE DATE NOT NULL,
+    RELEASE_YEAR INTEGER GENERATED ALWAYS AS (EXTRACT(YEAR FROM RELEASE_DATE)),
     DURATION INTEGER NOT NULL,
     MPA_ID INTEGER NOT NULL,
+    MARK_COUNT INTEGER NOT NULL DEFAULT 0,
+    RATED_COUNT INTEGER NOT NULL DEFAULT 0,
+    MARK_SUM INTEGER NOT NULL DEFAULT 0,
+    RATING DECIMAL(3,1) GENERATED ALWAYS AS (
+        CASE WHEN RATED_COUNT > 0 THEN CAST(CAST(MARK_SUM AS DOUBLE PRECISION) / RATED_COUNT AS DECIMAL(3,1)) END
+    ),
 	FOREIGN KEY (MPA_ID) REFERENCES MPA(ID)
 );
 
+CREATE INDEX IF NOT EXISTS FILM_POPULARITY_IDX ON FILM (MARK_COUNT DESC, ID);
+CREATE INDEX IF NOT EXISTS FILM_YEAR_POPULARITY_IDX ON FILM (RELEASE_YEAR, MARK_COUNT DESC, ID);
+
 
 CREATE TABLE IF NOT EXISTS FILM_GENRE(
     ID INTEGER GENERATED BY DEFAULT AS IDENTITY(START WITH 1) NOT NULL PRIMARY KEY,
@@ -31,7 +41,8 @@ CREATE TABLE IF NOT EXISTS FILM_GENRE(
 	FOREIGN KEY (GENRE_ID) REFERENCES GENRE(ID)
 );
 
-CREATE UNIQUE INDEX IF NOT EXISTS FILM_GENRE_IDX ON FILM_GENRE (ID, FILM_ID, GENRE_ID);
+CREATE UNIQUE INDEX IF NOT EXISTS FILM_GENRE_IDX ON FILM_GENRE (FILM_ID, GENRE_ID);
+CREATE INDEX IF NOT EXISTS GENRE_FILM_IDX ON FILM_GENRE (GENRE_ID, FILM_ID);
 
 CREATE TABLE IF NOT EXISTS FILMORATE_USER(
     ID INTEGER GENERATED BY DEFAULT AS IDENTITY(START WITH 1) NOT NULL PRIMARY KEY,
@@ -66,6 +77,8 @@ CREATE TABLE IF NOT EXISTS FILM_MARK(
 	FOREIGN KEY (USER_ID) REFERENCES FILMORATE_USER(ID)
 );
 
+CREATE INDEX IF NOT EXISTS FILM_MARK_USER_IDX ON FILM_MARK (USER_ID, FILM_ID, MARK);
+
 CREATE TABLE IF NOT EXISTS REVIEW(
     ID INTEGER GENERATED BY DEFAULT AS IDENTITY(START WITH 1) NOT NULL PRIMARY KEY,
     REVIEW_CONTENT CHARACTER VARYING(255) NOT NULL,
@@ -77,6 +90,9 @@ CREATE TABLE IF NOT EXISTS REVIEW(
     FOREIGN KEY (FILM_ID) REFERENCES FILM(ID) ON DELETE CASCADE
 );
 
+CREATE INDEX IF NOT EXISTS REVIEW_USEFUL_IDX ON REVIEW (USEFUL DESC, ID);
+CREATE INDEX IF NOT EXISTS REVIEW_FILM_USEFUL_IDX ON REVIEW (FILM_ID, USEFUL DESC, ID);
+
 CREATE TABLE IF NOT EXISTS REVIEW_LIKE(
     REVIEW_ID INTEGER NOT NULL,
     USER_ID INTEGER NOT NULL,
@@ -98,7 +114,8 @@ CREATE TABLE IF NOT EXISTS FILM_DIRECTOR(
 	FOREIGN KEY (DIRECTOR_ID) REFERENCES DIRECTOR(ID) ON DELETE CASCADE
 );
 
-CREATE UNIQUE INDEX IF NOT EXISTS FILM_DIRECTOR_IDX ON FILM_DIRECTOR (ID, FILM_ID, DIRECTOR_ID);
+CREATE UNIQUE INDEX IF NOT EXISTS FILM_DIRECTOR_IDX ON FILM_DIRECTOR (FILM_ID, DIRECTOR_ID);
+CREATE INDEX IF NOT EXISTS DIRECTOR_FILM_IDX ON FILM_DIRECTOR (DIRECTOR_ID, FILM_ID);
 
 CREATE TABLE IF NOT EXISTS FEED_EVENTS(
     ID INTEGER GENERATED BY DEFAULT AS IDENTITY(START WITH 1) NOT NULL PRIMARY KEY,
@@ -3,7 +3,7 @@ package ru.yandex.practicum.filmorate;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "filmorate.recommendations.factorization.model-file=target/test-db/factors.bin")
 class FilmorateApplicationTests {
 
 	@Test
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Замер времени получения фильма по идентификатору при росте каталога до 1 000 000 фильмов.
+ */
+@Tag("benchmark")
+@JdbcTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FilmByIdBenchmarkTest {
+
+    private static final int[] CATALOG_SIZES = {1_000, 10_000, 100_000, 1_000_000};
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final int MEASURED_ITERATIONS = 5_000;
+    private static final double MAX_LATENCY_GROWTH = 3.0;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Test
+    @DisplayName("Время получения фильма по id не зависит от размера каталога")
+    public void findByIdLatencyIsFlat() {
+        final FilmStorage filmStorage = new FilmDbStorage(jdbcTemplate, eventPublisher);
+        jdbcTemplate.update("INSERT INTO director (director_name) VALUES ('director')");
+        final Map<Integer, Long> medianNanosBySize = new LinkedHashMap<>();
+        int filmsInCatalog = 0;
+        for (int catalogSize : CATALOG_SIZES) {
+            fillCatalog(filmsInCatalog + 1, catalogSize);
+            filmsInCatalog = catalogSize;
+            medianNanosBySize.put(catalogSize, measureMedianNanos(filmStorage, catalogSize));
+        }
+
+        medianNanosBySize.forEach((size, nanos) ->
+                System.out.printf("films: %,9d  findById p50: %,8d ns%n", size, nanos));
+        final long smallestCatalogMedian = medianNanosBySize.get(CATALOG_SIZES[0]);
+        final long largestCatalogMedian = medianNanosBySize.get(CATALOG_SIZES[CATALOG_SIZES.length - 1]);
+        assertThat((double) largestCatalogMedian / smallestCatalogMedian)
+                .isLessThan(MAX_LATENCY_GROWTH);
+    }
+
+    private void fillCatalog(int fromId, int toId) {
+        jdbcTemplate.update("INSERT INTO film (id, title, description, release_date, duration, mpa_id) " +
+                "SELECT x, 'film ' || x, 'description', DATEADD(DAY, MOD(x, 20000), DATE '1950-01-01'), 90, " +
+                "MOD(x, 5) + 1 FROM SYSTEM_RANGE(?, ?)", fromId, toId);
+        jdbcTemplate.update("INSERT INTO film_genre (film_id, genre_id) " +
+                "SELECT x, MOD(x, 6) + 1 FROM SYSTEM_RANGE(?, ?)", fromId, toId);
+        jdbcTemplate.update("INSERT INTO film_director (film_id, director_id) " +
+                "SELECT x, 1 FROM SYSTEM_RANGE(?, ?)", fromId, toId);
+    }
+
+    private long measureMedianNanos(FilmStorage filmStorage, int catalogSize) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            filmStorage.findById(random.nextInt(1, catalogSize + 1));
+        }
+        final long[] timings = new long[MEASURED_ITERATIONS];
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            final long filmId = random.nextInt(1, catalogSize + 1);
+            final long start = System.nanoTime();
+            filmStorage.findById(filmId);
+            timings[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(timings);
+        return timings[timings.length / 2];
+    }
+}
@@ -0,0 +1,157 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dao.FilmStorage;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.RecordingJdbcTemplate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import static java.util.function.Function.identity;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнение получения страницы фильмов одним запросом с жанрами и режиссерами и прежнего способа из трех запросов:
+ * фильмы, затем жанры и режиссеры по списку идентификаторов.
+ */
+@Tag("benchmark")
+@JdbcTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FilmHydrationBenchmarkTest {
+
+    private static final int CATALOG_SIZE = 100_000;
+    private static final int[] PAGE_SIZES = {10, 100, 1_000};
+    private static final int WARMUP_ITERATIONS = 300;
+    private static final int MEASURED_ITERATIONS = 1_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Test
+    @DisplayName("Страница фильмов с жанрами и режиссерами за одно обращение к БД против трех")
+    public void hydratedPageAgainstThreeQueries() {
+        fillCatalog();
+        final RecordingJdbcTemplate recordingJdbcTemplate = new RecordingJdbcTemplate(jdbcTemplate);
+        final FilmStorage filmStorage = new FilmDbStorage(recordingJdbcTemplate, eventPublisher);
+
+        for (int pageSize : PAGE_SIZES) {
+            final IntFunction<Collection<Film>> hydrated = afterId -> filmStorage.findFilmsAfter(afterId, pageSize);
+            final IntFunction<Collection<Film>> threeQueries = afterId ->
+                    findFilmsAfterInThreeQueries(recordingJdbcTemplate, afterId, pageSize);
+
+            assertThat(hydrated.apply(0))
+                    .usingRecursiveComparison()
+                    .ignoringCollectionOrder()
+                    .isEqualTo(threeQueries.apply(0));
+            recordingJdbcTemplate.clear();
+            hydrated.apply(0);
+            assertThat(recordingJdbcTemplate.getStatements()).hasSize(1);
+            recordingJdbcTemplate.clear();
+            threeQueries.apply(0);
+            assertThat(recordingJdbcTemplate.getStatements()).hasSize(3);
+
+            final long[] hydratedTimings = measure(hydrated, pageSize, recordingJdbcTemplate);
+            final long[] threeQueriesTimings = measure(threeQueries, pageSize, recordingJdbcTemplate);
+            System.out.printf("page: %,5d  one query p50: %,10d ns p99: %,10d ns | " +
+                            "three queries p50: %,10d ns p99: %,10d ns%n", pageSize,
+                    percentile(hydratedTimings, 0.5), percentile(hydratedTimings, 0.99),
+                    percentile(threeQueriesTimings, 0.5), percentile(threeQueriesTimings, 0.99));
+        }
+    }
+
+    private void fillCatalog() {
+        jdbcTemplate.update("INSERT INTO director (director_name) SELECT 'director ' || x FROM SYSTEM_RANGE(1, 100)");
+        jdbcTemplate.update("INSERT INTO film (id, title, description, release_date, duration, mpa_id) " +
+                "SELECT x, 'film ' || x, 'description', DATEADD(DAY, MOD(x, 20000), DATE '1950-01-01'), 90, " +
+                "MOD(x, 5) + 1 FROM SYSTEM_RANGE(1, ?)", CATALOG_SIZE);
+        jdbcTemplate.update("INSERT INTO film_genre (film_id, genre_id) " +
+                "SELECT x, MOD(x, 6) + 1 FROM SYSTEM_RANGE(1, ?)", CATALOG_SIZE);
+        jdbcTemplate.update("INSERT INTO film_genre (film_id, genre_id) " +
+                "SELECT x, MOD(x + 3, 6) + 1 FROM SYSTEM_RANGE(1, ?)", CATALOG_SIZE);
+        jdbcTemplate.update("INSERT INTO film_director (film_id, director_id) " +
+                "SELECT x, MOD(x, 100) + 1 FROM SYSTEM_RANGE(1, ?)", CATALOG_SIZE);
+    }
+
+    private long[] measure(IntFunction<Collection<Film>> query, int pageSize, RecordingJdbcTemplate recordingJdbcTemplate) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            query.apply(random.nextInt(CATALOG_SIZE - pageSize));
+            recordingJdbcTemplate.clear();
+        }
+        final long[] timings = new long[MEASURED_ITERATIONS];
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            final int afterId = random.nextInt(CATALOG_SIZE - pageSize);
+            final long start = System.nanoTime();
+            query.apply(afterId);
+            timings[i] = System.nanoTime() - start;
+            recordingJdbcTemplate.clear();
+        }
+        Arrays.sort(timings);
+        return timings;
+    }
+
+    private long percentile(long[] sortedTimings, double percentile) {
+        return sortedTimings[(int) Math.ceil(percentile * sortedTimings.length) - 1];
+    }
+
+    /**
+     * Прежний способ получения фильмов: строки фильмов, затем жанры и режиссеры отдельными запросами со списком
+     * идентификаторов.
+     */
+    private Collection<Film> findFilmsAfterInThreeQueries(JdbcTemplate jdbcTemplate, int afterId, int limit) {
+        final List<Film> films = jdbcTemplate.query("SELECT " +
+                "f.ID, f.TITLE, f.DESCRIPTION, f.RELEASE_DATE, f.DURATION, f.MPA_ID, m.RATING_NAME, f.RATING " +
+                "FROM FILM f LEFT JOIN MPA m ON f.MPA_ID = m.ID " +
+                "WHERE f.ID > ? ORDER BY f.ID LIMIT ?", (rs, rowNum) -> {
+            Film film = Film.builder()
+                    .id(rs.getLong("id"))
+                    .name(rs.getString("title"))
+                    .description(rs.getString("description"))
+                    .releaseDate(rs.getDate("release_date").toLocalDate())
+                    .duration(rs.getInt("duration"))
+                    .mpa(new Mpa(rs.getInt("mpa_id"), rs.getString("rating_name")))
+                    .build();
+            film.setRating(rs.getDouble("rating"));
+            return film;
+        }, afterId, limit);
+        final Map<Long, Film> filmMap = films.stream().collect(Collectors.toMap(Film::getId, identity()));
+        final String ids = String.join(",", Collections.nCopies(filmMap.size(), "?"));
+        final Object[] filmIds = filmMap.keySet().toArray();
+
+        jdbcTemplate.query(String.format("SELECT fg.film_id, fg.genre_id, g.genre_name FROM film_genre fg " +
+                "JOIN genre g ON fg.genre_id = g.id WHERE fg.film_id IN (%s)", ids), rs -> {
+            filmMap.get(rs.getLong(1)).getGenres().add(new Genre(rs.getInt(2), rs.getString(3)));
+        }, filmIds);
+        jdbcTemplate.query(String.format("SELECT fd.film_id, fd.director_id, d.director_name FROM film_director fd " +
+                "JOIN director d ON fd.director_id = d.id WHERE fd.film_id IN (%s)", ids), rs -> {
+            filmMap.get(rs.getLong(1)).getDirectors().add(Director.builder()
+                    .id(rs.getLong(2))
+                    .name(rs.getString(3))
+                    .build());
+        }, filmIds);
+        return films;
+    }
+}
@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dao.impl.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.PopularFilmsIndex;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Замер времени поиска фильмов по названию и режиссеру в каталоге из 1 000 000 фильмов: отбор фильмов по
+ * поисковому индексу и упорядочивание найденных по популярности.
+ */
+@Tag("benchmark")
+@JdbcTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class FilmSearchBenchmarkTest {
+
+    private static final int CATALOG_SIZE = 1_000_000;
+    private static final int DIRECTORS = 10_000;
+    private static final String[] WORDS = {"небо", "sky", "война", "war", "мир", "peace", "дорога", "road", "ночь",
+            "night", "город", "city", "звезда", "star", "море", "sea", "огонь", "fire", "тень", "shadow"};
+    private static final int WARMUP_ITERATIONS = 1_000;
+    private static final int MEASURED_ITERATIONS = 2_000;
+    private static final long MAX_MEDIAN_NANOS = 10_000_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Test
+    @DisplayName("Поиск по индексу в каталоге из миллиона фильмов занимает единицы миллисекунд")
+    public void searchLatency() {
+        fillCatalog();
+        final FilmDbStorage filmDbStorage = new FilmDbStorage(jdbcTemplate, eventPublisher);
+        final FilmSearchIndex filmSearchIndex =
+                new FilmSearchIndex(filmDbStorage, new DirectorDbStorage(jdbcTemplate, eventPublisher));
+        final PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex(filmDbStorage);
+        long start = System.nanoTime();
+        filmSearchIndex.rebuild();
+        popularFilmsIndex.rebuild();
+        System.out.printf("films: %,9d  indexes built in %,d ms%n", filmSearchIndex.size(),
+                (System.nanoTime() - start) / 1_000_000);
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            search(filmSearchIndex, popularFilmsIndex, randomQuery(random));
+        }
+        final long[] timings = new long[MEASURED_ITERATIONS];
+        long found = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            final String query = randomQuery(random);
+            start = System.nanoTime();
+            found += search(filmSearchIndex, popularFilmsIndex, query);
+            timings[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(timings);
+        final long median = timings[MEASURED_ITERATIONS / 2];
+        System.out.printf("search p50: %,10d ns p99: %,10d ns, films found on average: %,d%n",
+                median, timings[(int) (MEASURED_ITERATIONS * 0.99)], found / MEASURED_ITERATIONS);
+        assertThat(median).isLessThan(MAX_MEDIAN_NANOS);
+    }
+
+    private void fillCatalog() {
+        jdbcTemplate.update("INSERT INTO director (director_name) " +
+                "SELECT 'Режиссер ' || x FROM SYSTEM_RANGE(1, ?)", DIRECTORS);
+        final String words = "ARRAY['" + String.join("', '", WORDS) + "']";
+        jdbcTemplate.update("INSERT INTO film (title, description, release_date, duration, mpa_id) " +
+                "SELECT ARRAY_GET(" + words + ", MOD(x, 20) + 1) || ' ' || " +
+                "ARRAY_GET(" + words + ", MOD(x / 20, 20) + 1) || ' ' || x, " +
+                "'description', DATE '2000-01-01', 90, 1 FROM SYSTEM_RANGE(1, ?)", CATALOG_SIZE);
+        jdbcTemplate.update("INSERT INTO film_director (film_id, director_id) " +
+                "SELECT x, MOD(x, ?) + 1 FROM SYSTEM_RANGE(1, ?)", DIRECTORS, CATALOG_SIZE);
+    }
+
+    /**
+     * Запрос из двух слов названия, части номера фильма или части имени режиссера.
+     */
+    private String randomQuery(ThreadLocalRandom random) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+            case 1:
+                return String.valueOf(random.nextInt(1_000, CATALOG_SIZE));
+            default:
+                return "жиссер " + random.nextInt(1_000, DIRECTORS);
+        }
+    }
+
+    private int search(FilmSearchIndex filmSearchIndex, PopularFilmsIndex popularFilmsIndex, String query) {
+        return filmSearchIndex.findFilmIds(query, true, true)
+                .flatMap(popularFilmsIndex::orderByPopularity)
+                .orElseThrow()
+                .size();
+    }
+}
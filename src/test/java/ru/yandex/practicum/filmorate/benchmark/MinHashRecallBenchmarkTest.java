@@ -0,0 +1,164 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import ru.yandex.practicum.filmorate.model.FilmMark;
+import ru.yandex.practicum.filmorate.recommendation.MinHashIndex;
+import ru.yandex.practicum.filmorate.recommendation.RatingMatrix;
+import ru.yandex.practicum.filmorate.recommendation.UserRatings;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Замер JMH времени подбора рекомендаций полным перебором и по кандидатам MinHash при разных параметрах полос, и
+ * доли запросов, в которых приближенный поиск дал те же рекомендации, что и полный перебор. Оценки синтетические:
+ * пользователи разбиты на группы со схожими вкусами, большую часть фильмов каждый выбирает из фильмов своей группы.
+ */
+@Tag("benchmark")
+public class MinHashRecallBenchmarkTest {
+
+    private static final int USERS = 100_000;
+    private static final int FILMS = 10_000;
+    private static final int GROUPS = 500;
+    private static final int GROUP_FILMS = 60;
+    private static final int MAX_MARKS_PER_USER = 40;
+    private static final int REQUESTERS = 500;
+
+    @Test
+    @DisplayName("Полнота и время приближенного поиска схожего пользователя по сравнению с полным перебором")
+    public void recallVersusLatency() throws RunnerException {
+        final Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(MinHashRecallBenchmarkTest.class.getName() + ".RecallBenchmark")
+                .forks(0)
+                .warmupIterations(2)
+                .warmupTime(TimeValue.seconds(2))
+                .measurementIterations(3)
+                .measurementTime(TimeValue.seconds(2))
+                .build()).run();
+
+        final Map<String, Double> latencies = new TreeMap<>();
+        for (RunResult result : results) {
+            latencies.put(result.getParams().getParam("bands"), result.getPrimaryResult().getScore());
+        }
+        final Dataset dataset = new Dataset();
+        for (Map.Entry<String, Double> entry : latencies.entrySet()) {
+            final int[] bands = RecallBenchmark.parseBands(entry.getKey());
+            if (bands == null) {
+                System.out.printf("%-8s  recall: %6.2f%%  candidates: %,9d  latency: %,10.3f ms/op%n", "exact",
+                        100.0, dataset.matrix.size() - 1, entry.getValue());
+                continue;
+            }
+            final MinHashIndex index = dataset.index(bands[0], bands[1]);
+            int matches = 0;
+            long candidates = 0;
+            for (long requesterId : dataset.requesterIds) {
+                final long[] candidateIds = index.findCandidates(requesterId);
+                candidates += candidateIds.length;
+                if (dataset.matrix.findRecommendedFilmIds(requesterId, candidateIds)
+                        .equals(dataset.matrix.findRecommendedFilmIds(requesterId))) {
+                    matches++;
+                }
+            }
+            System.out.printf("%-8s  recall: %6.2f%%  candidates: %,9d  latency: %,10.3f ms/op%n", entry.getKey(),
+                    100.0 * matches / REQUESTERS, candidates / REQUESTERS, entry.getValue());
+        }
+        assertThat(results).isNotEmpty();
+    }
+
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public static class RecallBenchmark {
+
+        @Param({"exact", "10x2", "20x2", "40x2", "20x3"})
+        public String bands;
+
+        private Dataset dataset;
+        private MinHashIndex index;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            dataset = new Dataset();
+            final int[] parsed = parseBands(bands);
+            index = parsed == null ? null : dataset.index(parsed[0], parsed[1]);
+        }
+
+        @Benchmark
+        public List<Long> recommend() {
+            final long requesterId = dataset.requesterIds[next++ % REQUESTERS];
+            if (index == null) {
+                return dataset.matrix.findRecommendedFilmIds(requesterId);
+            }
+            return dataset.matrix.findRecommendedFilmIds(requesterId, index.findCandidates(requesterId));
+        }
+
+        private static int[] parseBands(final String bands) {
+            if ("exact".equals(bands)) {
+                return null;
+            }
+            final String[] parts = bands.split("x");
+            return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+        }
+    }
+
+    private static class Dataset {
+        private final RatingMatrix matrix = new RatingMatrix();
+        private final UserRatings[] rows = new UserRatings[USERS + 1];
+        private final long[] requesterIds = new long[REQUESTERS];
+
+        private Dataset() {
+            final Random random = new Random(42);
+            final int[][] groupFilms = new int[GROUPS][];
+            for (int group = 0; group < GROUPS; group++) {
+                groupFilms[group] = random.ints(1, FILMS + 1).distinct().limit(GROUP_FILMS).toArray();
+            }
+            for (long userId = 1; userId <= USERS; userId++) {
+                final int[] films = groupFilms[random.nextInt(GROUPS)];
+                final int count = 1 + random.nextInt(MAX_MARKS_PER_USER);
+                final List<FilmMark> filmMarks = new ArrayList<>(count);
+                random.ints(0, 5 * count)
+                        .map(i -> i < 4 * count ? films[i % films.length] : 1 + random.nextInt(FILMS))
+                        .distinct()
+                        .limit(count)
+                        .forEach(filmId -> filmMarks.add(new FilmMark(0, filmId, 1 + random.nextInt(10))));
+                rows[(int) userId] = UserRatings.of(filmMarks);
+                matrix.put(userId, rows[(int) userId]);
+            }
+            for (int i = 0; i < REQUESTERS; i++) {
+                requesterIds[i] = 1 + random.nextInt(USERS);
+            }
+        }
+
+        private MinHashIndex index(final int bands, final int rowsPerBand) {
+            final MinHashIndex index = new MinHashIndex(bands, rowsPerBand);
+            for (long userId = 1; userId <= USERS; userId++) {
+                index.put(userId, rows[(int) userId]);
+            }
+            return index;
+        }
+    }
+}
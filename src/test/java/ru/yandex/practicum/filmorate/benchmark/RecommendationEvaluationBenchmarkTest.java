@@ -0,0 +1,377 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.openjdk.jmh.util.Statistics;
+import ru.yandex.practicum.filmorate.dao.GenreStorage;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.index.MarkedFilmsIndex;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmMark;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.recommendation.ContentEngine;
+import ru.yandex.practicum.filmorate.recommendation.FactorizationEngine;
+import ru.yandex.practicum.filmorate.recommendation.RecommendationEngine;
+import ru.yandex.practicum.filmorate.recommendation.RecommendationMode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Офлайн-оценка способов подбора рекомендаций: качество и стоимость на одном наборе оценок.
+ * <p>
+ * Оценки пользователей делятся на обучающие и проверочные: у каждого пользователя случайно откладывается пятая часть
+ * оценок. Движки строятся только по обучающим оценкам, а рекомендации сравниваются с отложенными фильмами, которые
+ * пользователь оценил положительно: precision@k - доля таких фильмов среди первых k рекомендаций, recall@k - доля
+ * найденных среди всех отложенных положительных. Время подбора (p50, p99), объем памяти, выделяемой на один подбор,
+ * и пропускная способность в одном потоке замеряются JMH в режиме SampleTime с профилировщиком GC.
+ * <p>
+ * По умолчанию оценки синтетические: пользователи и фильмы разбиты на группы, у фильмов группы общие жанры и
+ * режиссеры, большую часть фильмов пользователь выбирает из своей группы и оценивает высоко. Реальные оценки можно
+ * загрузить из CSV-файла со строками user_id,film_id,mark: -Dfilmorate.evaluation.marks=marks.csv; жанров и
+ * режиссеров у таких фильмов нет. Результаты записываются в JSON, по умолчанию в
+ * target/recommendation-evaluation.json (-Dfilmorate.evaluation.output=...), чтобы сравнивать их между сборками.
+ * <p>
+ * Запуск: mvn test -Pbenchmark -Dtest=RecommendationEvaluationBenchmarkTest
+ */
+@Tag("benchmark")
+public class RecommendationEvaluationBenchmarkTest {
+
+    private static final int USERS = 20_000;
+    private static final int FILMS = 5_000;
+    private static final int GROUPS = 100;
+    private static final int GENRES = 6;
+    private static final int MAX_MARKS_PER_USER = 40;
+    private static final double TEST_SHARE = 0.2;
+    private static final int POSITIVE_MARK = 6;
+    private static final int EVALUATED_USERS = 1_000;
+    private static final int K = 10;
+
+    @Test
+    @DisplayName("Качество, время подбора и объем выделяемой памяти каждого способа подбора рекомендаций")
+    public void evaluate() throws RunnerException, IOException {
+        final Evaluation evaluation = Evaluation.get();
+        final Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(RecommendationEvaluationBenchmarkTest.class.getName() + ".ScoringBenchmark")
+                .forks(0)
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(2)
+                .warmupTime(TimeValue.seconds(2))
+                .measurementIterations(3)
+                .measurementTime(TimeValue.seconds(2))
+                .build()).run();
+
+        final Map<String, Object> strategies = new LinkedHashMap<>();
+        for (RunResult result : results) {
+            final String strategy = result.getParams().getParam("strategy");
+            final Statistics latency = result.getPrimaryResult().getStatistics();
+            final Map<String, Object> metrics = new LinkedHashMap<>(evaluation.quality(strategy));
+            metrics.put("trainingMs", evaluation.trainingMillis.get(strategy));
+            metrics.put("latencyP50Us", latency.getPercentile(50));
+            metrics.put("latencyP99Us", latency.getPercentile(99));
+            metrics.put("latencyMeanUs", latency.getMean());
+            metrics.put("throughputOpsPerSecond", TimeUnit.SECONDS.toMicros(1) / latency.getMean());
+            metrics.put("allocatedBytesPerOp", allocatedBytesPerOp(result));
+            strategies.put(strategy, metrics);
+            System.out.printf("%-22s  precision@%d: %.4f  recall@%d: %.4f  p50: %,9.1f us  p99: %,9.1f us  " +
+                            "alloc: %,10.0f B/op%n", strategy, K, (double) metrics.get("precisionAtK"), K,
+                    (double) metrics.get("recallAtK"), latency.getPercentile(50), latency.getPercentile(99),
+                    (double) metrics.get("allocatedBytesPerOp"));
+        }
+
+        final Map<String, Object> report = new LinkedHashMap<>();
+        report.put("dataset", evaluation.dataset.describe());
+        report.put("k", K);
+        report.put("evaluatedUsers", evaluation.evaluatedUserIds.length);
+        report.put("strategies", strategies);
+        final Path output = Paths.get(System.getProperty("filmorate.evaluation.output",
+                "target/recommendation-evaluation.json"));
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), report);
+        System.out.println("Результаты оценки записаны в " + output.toAbsolutePath());
+
+        assertThat(strategies).hasSize(Evaluation.STRATEGIES.length);
+    }
+
+    private static double allocatedBytesPerOp(final RunResult result) {
+        return result.getSecondaryResults().entrySet().stream()
+                .filter(entry -> entry.getKey().endsWith("gc.alloc.rate.norm"))
+                .map(Map.Entry::getValue)
+                .mapToDouble(Result::getScore)
+                .findFirst()
+                .orElse(Double.NaN);
+    }
+
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public static class ScoringBenchmark {
+
+        @Param({"closest-user", "closest-user-minhash", "factorization", "content"})
+        public String strategy;
+
+        private LongFunction<List<Long>> recommender;
+        private long[] userIds;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            final Evaluation evaluation = Evaluation.get();
+            recommender = evaluation.recommenders.get(strategy);
+            userIds = evaluation.evaluatedUserIds;
+        }
+
+        @Benchmark
+        public List<Long> recommend() {
+            return recommender.apply(userIds[next++ % userIds.length]);
+        }
+    }
+
+    /**
+     * Движки, построенные по обучающим оценкам, и пользователи, по которым оценивается качество. Создается один раз:
+     * JMH запускается в том же процессе и использует те же движки.
+     */
+    private static class Evaluation {
+        private static final String[] STRATEGIES = {"closest-user", "closest-user-minhash", "factorization",
+                "content"};
+        private static Evaluation instance;
+
+        private final Dataset dataset;
+        private final Map<Long, Set<Long>> relevantFilmIds = new HashMap<>();
+        private final long[] evaluatedUserIds;
+        private final Map<String, LongFunction<List<Long>>> recommenders = new LinkedHashMap<>();
+        private final Map<String, Long> trainingMillis = new HashMap<>();
+
+        private static synchronized Evaluation get() throws IOException {
+            if (instance == null) {
+                instance = new Evaluation();
+            }
+            return instance;
+        }
+
+        private Evaluation() throws IOException {
+            final String marksFile = System.getProperty("filmorate.evaluation.marks");
+            dataset = marksFile == null ? Dataset.generate() : Dataset.load(Paths.get(marksFile));
+
+            final Random random = new Random(7);
+            final List<FilmMark> trainMarks = new ArrayList<>();
+            dataset.marks.stream()
+                    .collect(Collectors.groupingBy(FilmMark::getUserId, LinkedHashMap::new, Collectors.toList()))
+                    .forEach((userId, userMarks) -> {
+                        final int testCount = userMarks.size() < 2 ? 0
+                                : Math.max(1, (int) Math.round(userMarks.size() * TEST_SHARE));
+                        Collections.shuffle(userMarks, random);
+                        for (FilmMark filmMark : userMarks.subList(0, testCount)) {
+                            if (filmMark.getMark() >= POSITIVE_MARK) {
+                                relevantFilmIds.computeIfAbsent(userId, id -> new HashSet<>())
+                                        .add(filmMark.getFilmId());
+                            }
+                        }
+                        trainMarks.addAll(userMarks.subList(testCount, userMarks.size()));
+                    });
+            trainMarks.sort(Comparator.comparingLong(FilmMark::getUserId).thenComparingLong(FilmMark::getFilmId));
+            final List<Long> candidates = new ArrayList<>(relevantFilmIds.keySet());
+            Collections.shuffle(candidates, random);
+            evaluatedUserIds = candidates.stream().limit(EVALUATED_USERS).mapToLong(Long::longValue).toArray();
+
+            final FilmDbStorage filmDbStorage = mock(FilmDbStorage.class);
+            doAnswer(invocation -> {
+                trainMarks.forEach(invocation.<Consumer<FilmMark>>getArgument(0));
+                return null;
+            }).when(filmDbStorage).streamFilmMarks(any());
+            doAnswer(invocation -> {
+                dataset.films.forEach(invocation.<Consumer<Film>>getArgument(1));
+                return null;
+            }).when(filmDbStorage).streamFilmsAfter(anyLong(), any());
+            final GenreStorage genreStorage = mock(GenreStorage.class);
+            when(genreStorage.findAll()).thenReturn(IntStream.rangeClosed(1, GENRES)
+                    .mapToObj(id -> new Genre(id, "genre " + id))
+                    .collect(Collectors.toList()));
+
+            final RecommendationEngine exact = new RecommendationEngine(filmDbStorage, 1, 10,
+                    RecommendationMode.EXACT, 20, 2, new SimpleMeterRegistry());
+            train("closest-user", exact::rebuild);
+            recommenders.put("closest-user", userId -> exact.findRecommendedFilmIds(userId).orElseThrow());
+
+            final RecommendationEngine approximate = new RecommendationEngine(filmDbStorage, 1, 10,
+                    RecommendationMode.APPROXIMATE, 20, 2, new SimpleMeterRegistry());
+            train("closest-user-minhash", approximate::rebuild);
+            recommenders.put("closest-user-minhash",
+                    userId -> approximate.findRecommendedFilmIds(userId).orElseThrow());
+
+            final Path modelFile = Files.createTempFile("factors", ".bin");
+            modelFile.toFile().deleteOnExit();
+            final MarkedFilmsIndex markedFilmsIndex = new MarkedFilmsIndex(filmDbStorage);
+            markedFilmsIndex.rebuild();
+            final FactorizationEngine factorization = new FactorizationEngine(filmDbStorage, markedFilmsIndex,
+                    modelFile, 16, 0.1, 10, 20, 0, new SimpleMeterRegistry());
+            train("factorization", factorization::train);
+            factorization.destroy();
+            recommenders.put("factorization",
+                    userId -> factorization.findRecommendedFilmIds(userId).orElse(Collections.emptyList()));
+
+            final ContentEngine content = new ContentEngine(filmDbStorage, genreStorage, 64, 20,
+                    new SimpleMeterRegistry());
+            train("content", content::rebuild);
+            recommenders.put("content", userId -> content.findRecommendedFilmIds(userId).orElseThrow());
+        }
+
+        private void train(final String strategy, final Runnable training) {
+            final long start = System.nanoTime();
+            training.run();
+            trainingMillis.put(strategy, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        /**
+         * Средние precision@k и recall@k по проверяемым пользователям, а также доля пользователей, получивших
+         * хотя бы одну рекомендацию. Рекомендации по схожему пользователю не ранжированы, для них берутся первые k
+         * фильмов в порядке возрастания идентификатора, как их и возвращает сервис.
+         */
+        private Map<String, Object> quality(final String strategy) {
+            final LongFunction<List<Long>> recommender = recommenders.get(strategy);
+            double precision = 0;
+            double recall = 0;
+            int covered = 0;
+            for (long userId : evaluatedUserIds) {
+                final List<Long> recommended = recommender.apply(userId);
+                final Set<Long> relevant = relevantFilmIds.get(userId);
+                final long hits = recommended.stream().limit(K).filter(relevant::contains).count();
+                precision += (double) hits / K;
+                recall += (double) hits / relevant.size();
+                if (!recommended.isEmpty()) {
+                    covered++;
+                }
+            }
+            final Map<String, Object> quality = new LinkedHashMap<>();
+            quality.put("precisionAtK", precision / evaluatedUserIds.length);
+            quality.put("recallAtK", recall / evaluatedUserIds.length);
+            quality.put("userCoverage", (double) covered / evaluatedUserIds.length);
+            return quality;
+        }
+    }
+
+    private static class Dataset {
+        private final String source;
+        private final List<Film> films;
+        private final List<FilmMark> marks;
+
+        private Dataset(final String source, final List<Film> films, final List<FilmMark> marks) {
+            this.source = source;
+            this.films = films;
+            this.marks = marks;
+        }
+
+        /**
+         * Синтетические оценки: у фильмов группы один основной жанр и два режиссера, у части фильмов есть второй
+         * случайный жанр. Четыре пятых оценок пользователь ставит фильмам своей группы от 6 до 10, остальные -
+         * случайным фильмам от 1 до 10.
+         */
+        private static Dataset generate() {
+            final Random random = new Random(42);
+            final List<Film> films = new ArrayList<>(FILMS);
+            final List<List<Integer>> groupFilms = new ArrayList<>(GROUPS);
+            for (int group = 0; group < GROUPS; group++) {
+                groupFilms.add(new ArrayList<>());
+            }
+            for (int filmId = 1; filmId <= FILMS; filmId++) {
+                final int group = random.nextInt(GROUPS);
+                groupFilms.get(group).add(filmId);
+                final Film film = Film.builder().id(filmId).name("film " + filmId).build();
+                film.getGenres().add(new Genre(1 + group % GENRES, null));
+                if (random.nextInt(10) < 3) {
+                    film.getGenres().add(new Genre(1 + random.nextInt(GENRES), null));
+                }
+                film.getDirectors().add(new Director(1 + group * 2L + random.nextInt(2), null));
+                films.add(film);
+            }
+            final List<FilmMark> marks = new ArrayList<>();
+            for (long userId = 1; userId <= USERS; userId++) {
+                final List<Integer> ownFilms = groupFilms.get(random.nextInt(GROUPS));
+                final int count = 2 + random.nextInt(MAX_MARKS_PER_USER - 1);
+                final Set<Integer> marked = new HashSet<>();
+                while (marked.size() < count) {
+                    final boolean own = random.nextInt(5) < 4;
+                    final int filmId = own ? ownFilms.get(random.nextInt(ownFilms.size())) : 1 + random.nextInt(FILMS);
+                    if (marked.add(filmId)) {
+                        marks.add(new FilmMark(userId, filmId, own ? 6 + random.nextInt(5) : 1 + random.nextInt(10)));
+                    }
+                }
+            }
+            return new Dataset("synthetic", films, marks);
+        }
+
+        private static Dataset load(final Path file) throws IOException {
+            final List<FilmMark> marks = Files.readAllLines(file).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && Character.isDigit(line.charAt(0)))
+                    .map(line -> line.split(","))
+                    .map(parts -> new FilmMark(Long.parseLong(parts[0].trim()), Long.parseLong(parts[1].trim()),
+                            Integer.parseInt(parts[2].trim())))
+                    .collect(Collectors.toList());
+            final List<Film> films = marks.stream()
+                    .map(FilmMark::getFilmId)
+                    .distinct()
+                    .sorted()
+                    .map(filmId -> Film.builder().id(filmId).name("film " + filmId).build())
+                    .collect(Collectors.toList());
+            return new Dataset(file.toString(), films, marks);
+        }
+
+        private Map<String, Object> describe() {
+            final Map<String, Object> description = new LinkedHashMap<>();
+            description.put("source", source);
+            description.put("users", marks.stream().mapToLong(FilmMark::getUserId).distinct().count());
+            description.put("films", films.size());
+            description.put("marks", marks.size());
+            description.put("testShare", TEST_SHARE);
+            description.put("positiveMark", POSITIVE_MARK);
+            return description;
+        }
+    }
+}
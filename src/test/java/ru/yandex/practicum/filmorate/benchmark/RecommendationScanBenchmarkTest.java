@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import ru.yandex.practicum.filmorate.model.FilmMark;
+import ru.yandex.practicum.filmorate.recommendation.RatingMatrix;
+import ru.yandex.practicum.filmorate.recommendation.UserRatings;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Замер JMH времени поиска пользователя с наиболее схожими оценками среди 300 000 пользователей при разном
+ * количестве потоков пула. Оценки синтетические, БД не используется.
+ */
+@Tag("benchmark")
+public class RecommendationScanBenchmarkTest {
+
+    private static final int USERS = 300_000;
+    private static final int FILMS = 20_000;
+    private static final int MAX_MARKS_PER_USER = 80;
+
+    @Test
+    @DisplayName("Поиск схожего пользователя масштабируется с количеством потоков")
+    public void scanScaling() throws RunnerException {
+        final Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(RecommendationScanBenchmarkTest.class.getName() + ".ScanBenchmark")
+                .forks(0)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(2))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(2))
+                .build()).run();
+
+        for (RunResult result : results) {
+            System.out.printf("parallelism: %2s  scan: %,10.3f ms/op%n", result.getParams().getParam("parallelism"),
+                    result.getPrimaryResult().getScore());
+        }
+        assertThat(results).isNotEmpty();
+    }
+
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public static class ScanBenchmark {
+
+        @Param({"1", "2", "4", "8"})
+        public int parallelism;
+
+        private RatingMatrix matrix;
+        private ForkJoinPool pool;
+        private long requesterId;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            final Random random = new Random(42);
+            matrix = new RatingMatrix();
+            for (long userId = 1; userId <= USERS; userId++) {
+                final int count = 1 + random.nextInt(MAX_MARKS_PER_USER);
+                final List<FilmMark> filmMarks = new ArrayList<>(count);
+                random.ints(1, FILMS + 1).distinct().limit(count)
+                        .forEach(filmId -> filmMarks.add(new FilmMark(0, filmId, 1 + random.nextInt(10))));
+                matrix.put(userId, UserRatings.of(filmMarks));
+            }
+            pool = new ForkJoinPool(parallelism);
+            requesterId = 1 + random.nextInt(USERS);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            pool.shutdown();
+        }
+
+        @Benchmark
+        public List<Long> scan() {
+            return matrix.findRecommendedFilmIds(requesterId, pool);
+        }
+    }
+}
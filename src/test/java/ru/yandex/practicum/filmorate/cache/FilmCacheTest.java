@@ -0,0 +1,160 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.event.DirectorChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarkChangedEvent;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FilmCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private FilmCache filmCache;
+    private List<Long> loadedIds;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filmCache = new FilmCache(2, 1, meterRegistry);
+        loadedIds = new ArrayList<>();
+    }
+
+    @Test
+    @DisplayName("Повторное получение фильма берется из кэша")
+    public void testHitAfterMiss() {
+        Film first = filmCache.get(1, this::loadFilm);
+        Film second = filmCache.get(1, this::loadFilm);
+
+        assertSame(first, second);
+        assertEquals(List.of(1L), loadedIds);
+        assertEquals(1, filmCache.getHits());
+        assertEquals(1, filmCache.getMisses());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("При превышении размера вытесняется давно не использованный фильм")
+    public void testLeastRecentlyUsedEviction() {
+        filmCache.get(1, this::loadFilm);
+        filmCache.get(2, this::loadFilm);
+        filmCache.get(1, this::loadFilm);
+        filmCache.get(3, this::loadFilm);
+        filmCache.get(1, this::loadFilm);
+        filmCache.get(2, this::loadFilm);
+
+        assertEquals(List.of(1L, 2L, 3L, 2L), loadedIds);
+        assertEquals(2, filmCache.getEvictions());
+        assertEquals(2, filmCache.size());
+    }
+
+    @Test
+    @DisplayName("Недостающие фильмы списка загружаются одним вызовом, порядок списка сохраняется")
+    public void testGetAllLoadsMissingAtOnce() {
+        filmCache.get(2, this::loadFilm);
+        List<Set<Long>> requestedIds = new ArrayList<>();
+
+        List<Film> films = filmCache.getAll(List.of(3L, 2L, 1L), filmIds -> {
+            requestedIds.add(filmIds);
+            return filmIds.stream().filter(id -> id != 1L).map(this::loadFilm).collect(Collectors.toList());
+        });
+
+        assertThat(films).extracting(Film::getId).containsExactly(3L, 2L);
+        assertEquals(List.of(Set.of(3L, 1L)), requestedIds);
+        assertEquals(1, filmCache.getHits());
+        assertEquals(3, filmCache.getMisses());
+    }
+
+    @Test
+    @DisplayName("Изменение оценки удаляет из кэша только этот фильм")
+    public void testInvalidateOnMarkChange() {
+        filmCache.get(1, this::loadFilm);
+        filmCache.get(2, this::loadFilm);
+
+        filmCache.onFilmMarkChanged(new FilmMarkChangedEvent(1, 1, 8, null, Operation.ADD));
+        filmCache.get(1, this::loadFilm);
+        filmCache.get(2, this::loadFilm);
+
+        assertEquals(List.of(1L, 2L, 1L), loadedIds);
+    }
+
+    @Test
+    @DisplayName("Переименование режиссера удаляет из кэша только его фильмы")
+    public void testInvalidateOnDirectorRename() {
+        filmCache.get(1, this::loadFilm);
+        filmCache.get(2, this::loadFilm);
+
+        filmCache.onDirectorChanged(new DirectorChangedEvent(2, Operation.UPDATE));
+        filmCache.get(1, this::loadFilm);
+        filmCache.get(2, this::loadFilm);
+
+        assertEquals(List.of(1L, 2L, 2L), loadedIds);
+    }
+
+    @Test
+    @DisplayName("Фильм из кэша нельзя изменить, а изменение его копии и загруженного фильма не затрагивает кэш")
+    public void testCachedFilmIsImmutable() {
+        Film loaded = loadFilm(1);
+        Film film = filmCache.get(1, filmId -> loaded);
+        loaded.setName("changed");
+        loaded.getGenres().clear();
+
+        assertThrows(UnsupportedOperationException.class, () -> film.setName("changed"));
+        assertThrows(UnsupportedOperationException.class, () -> film.setRating(10));
+        assertThrows(UnsupportedOperationException.class, () -> film.getGenres().clear());
+        assertThrows(UnsupportedOperationException.class, () -> filmCache.getAll(List.of(1L), filmIds -> List.of())
+                .get(0).getDirectors().add(Director.builder().id(2).name("director").build()));
+        Film copy = film.copy();
+        copy.setRating(10);
+        copy.getGenres().add(new Genre(2, "Драма"));
+
+        assertEquals(List.of(1L), loadedIds);
+        assertEquals(loadFilm(1), filmCache.get(1, this::loadFilm));
+    }
+
+    @Test
+    @DisplayName("Кэш с несколькими сегментами не превышает общий размер")
+    public void testStripedSize() {
+        filmCache = new FilmCache(8, 4, new SimpleMeterRegistry());
+
+        for (long filmId = 1; filmId <= 100; filmId++) {
+            filmCache.get(filmId, this::loadFilm);
+        }
+        filmCache.get(100, this::loadFilm);
+
+        assertEquals(8, filmCache.size());
+        assertEquals(92, filmCache.getEvictions());
+        assertEquals(1, filmCache.getHits());
+    }
+
+    private Film loadFilm(long filmId) {
+        loadedIds.add(filmId);
+        Film film = Film.builder()
+                .id(filmId)
+                .name("film " + filmId)
+                .description("description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1, "G"))
+                .build();
+        film.getGenres().add(new Genre(1, "Комедия"));
+        film.getDirectors().add(Director.builder().id(filmId).name("director " + filmId).build());
+        return film;
+    }
+}
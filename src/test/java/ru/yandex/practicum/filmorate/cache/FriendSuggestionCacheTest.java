@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.event.FriendshipChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.UserChangedEvent;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.recommendation.FriendSuggestions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FriendSuggestionCacheTest {
+
+    private static final long TTL_MILLIS = 1000;
+
+    private SimpleMeterRegistry meterRegistry;
+    private FriendSuggestionCache friendSuggestionCache;
+    private List<Long> loadedIds;
+    private long now;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        friendSuggestionCache = new FriendSuggestionCache(2, TTL_MILLIS, meterRegistry, () -> now);
+        loadedIds = new ArrayList<>();
+    }
+
+    @Test
+    @DisplayName("Повторный запрос возможных друзей берется из кэша, другое количество - отдельная запись")
+    public void testHitAfterMiss() {
+        final List<Long> first = get(1);
+        final List<Long> second = get(1);
+        friendSuggestionCache.get(1, 5, () -> load(1));
+
+        assertEquals(List.of(21L, 22L), first);
+        assertEquals(first, second);
+        assertEquals(List.of(1L, 1L), loadedIds);
+        assertEquals(1, friendSuggestionCache.getHits());
+        assertEquals(2, friendSuggestionCache.getMisses());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "friend-suggestions").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Изменение дружбы пользователя или его друга удаляет возможных друзей пользователя")
+    public void testInvalidateOnFriendshipChange() {
+        get(1);
+        get(2);
+
+        friendSuggestionCache.onFriendshipChanged(new FriendshipChangedEvent(1, 50, 2, Operation.ADD));
+        get(1);
+        get(2);
+        friendSuggestionCache.onFriendshipChanged(new FriendshipChangedEvent(12, 50, null, Operation.REMOVE));
+        get(1);
+        get(2);
+        friendSuggestionCache.onFriendshipChanged(new FriendshipChangedEvent(50, 1, 2, Operation.ADD));
+        get(1);
+        get(2);
+
+        assertEquals(List.of(1L, 2L, 1L, 1L, 2L), loadedIds);
+        assertEquals(3, meterRegistry.get("cache.invalidations").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Результат без зависимостей не кэшируется, удаление пользователя очищает кэш")
+    public void testUncacheableAndUserRemoval() {
+        friendSuggestionCache.get(1, 10, () -> FriendSuggestions.of(List.of(21L)));
+        friendSuggestionCache.get(1, 10, () -> load(1));
+        get(2);
+
+        assertEquals(3, friendSuggestionCache.getMisses());
+        assertEquals(2, friendSuggestionCache.size());
+
+        friendSuggestionCache.onUserChanged(new UserChangedEvent(100, Operation.UPDATE));
+        assertEquals(2, friendSuggestionCache.size());
+        friendSuggestionCache.onUserChanged(new UserChangedEvent(100, Operation.REMOVE));
+        assertEquals(0, friendSuggestionCache.size());
+    }
+
+    @Test
+    @DisplayName("Запись удаляется по истечении времени жизни")
+    public void testExpiration() {
+        get(1);
+        now += TimeUnit.MILLISECONDS.toNanos(TTL_MILLIS) - 1;
+        get(1);
+        now += 1;
+        get(1);
+
+        assertEquals(List.of(1L, 1L), loadedIds);
+    }
+
+    @Test
+    @DisplayName("При превышении размера вытесняется давно не использованная запись")
+    public void testLeastRecentlyUsedEviction() {
+        get(1);
+        get(2);
+        get(1);
+        get(3);
+        get(1);
+        get(2);
+
+        assertEquals(List.of(1L, 2L, 3L, 2L), loadedIds);
+        assertEquals(2, friendSuggestionCache.size());
+        assertEquals(2, meterRegistry.get("cache.evictions").functionCounter().count());
+
+        friendSuggestionCache.onFriendshipChanged(new FriendshipChangedEvent(14, 50, 2, Operation.ADD));
+
+        assertEquals(0, meterRegistry.get("cache.invalidations").functionCounter().count());
+    }
+
+    private List<Long> get(long userId) {
+        return friendSuggestionCache.get(userId, 10, () -> load(userId));
+    }
+
+    /**
+     * Возможные друзья пользователя с id n - пользователи 20 + n и 21 + n, подобранные по друзьям 10 + n и 11 + n.
+     */
+    private FriendSuggestions load(long userId) {
+        loadedIds.add(userId);
+        return FriendSuggestions.of(List.of(20 + userId, 21 + userId), new long[]{10 + userId, 11 + userId});
+    }
+}
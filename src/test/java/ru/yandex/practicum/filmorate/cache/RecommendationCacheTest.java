@@ -0,0 +1,191 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarkChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarksRecalculatedEvent;
+import ru.yandex.practicum.filmorate.dao.event.UserChangedEvent;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.recommendation.Recommendation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static ru.yandex.practicum.filmorate.recommendation.RecommendationStrategy.CLOSEST_USER;
+import static ru.yandex.practicum.filmorate.recommendation.RecommendationStrategy.FACTORIZATION;
+
+class RecommendationCacheTest {
+
+    private static final long TTL_MILLIS = 1000;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RecommendationCache recommendationCache;
+    private List<Long> loadedIds;
+    private long now;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        recommendationCache = new RecommendationCache(2, TTL_MILLIS, meterRegistry, () -> now);
+        loadedIds = new ArrayList<>();
+    }
+
+    @Test
+    @DisplayName("Повторный запрос рекомендаций берется из кэша")
+    public void testHitAfterMiss() {
+        List<Long> first = get(1);
+        List<Long> second = get(1);
+
+        assertEquals(List.of(11L, 12L), first);
+        assertEquals(first, second);
+        assertEquals(List.of(1L), loadedIds);
+        assertEquals(1, recommendationCache.getHits());
+        assertEquals(1, recommendationCache.getMisses());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "recommendations").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Изменение оценок пользователя или его схожего пользователя удаляет рекомендации пользователя")
+    public void testInvalidateOnUserMarkChange() {
+        get(1);
+        get(2);
+
+        recommendationCache.onFilmMarkChanged(new FilmMarkChangedEvent(30, 1, 8, null, Operation.ADD));
+        get(1);
+        get(2);
+        recommendationCache.onFilmMarkChanged(new FilmMarkChangedEvent(30, 102, 8, null, Operation.ADD));
+        get(1);
+        get(2);
+
+        assertEquals(List.of(1L, 2L, 1L, 2L), loadedIds);
+    }
+
+    @Test
+    @DisplayName("Удаление схожего пользователя удаляет рекомендации, а обновление пользователя - нет")
+    public void testInvalidateOnUserRemove() {
+        get(1);
+        get(2);
+
+        recommendationCache.onUserChanged(new UserChangedEvent(1, Operation.UPDATE));
+        recommendationCache.onUserChanged(new UserChangedEvent(102, Operation.REMOVE));
+        get(1);
+        get(2);
+
+        assertEquals(List.of(1L, 2L, 2L), loadedIds);
+    }
+
+    @Test
+    @DisplayName("Изменение оценки фильма, который оценил схожий пользователь, удаляет рекомендации")
+    public void testInvalidateOnNeighbourFilmMarkChange() {
+        get(1);
+        get(2);
+
+        recommendationCache.onFilmMarkChanged(new FilmMarkChangedEvent(11, 500, 8, null, Operation.ADD));
+        get(1);
+        get(2);
+        recommendationCache.onFilmChanged(new FilmChangedEvent(20, Operation.REMOVE));
+        get(1);
+        get(2);
+
+        assertEquals(List.of(1L, 2L, 1L, 1L, 2L), loadedIds);
+        assertEquals(3, meterRegistry.get("cache.invalidations").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Запись удаляется по истечении времени жизни")
+    public void testExpiration() {
+        get(1);
+        now += TimeUnit.MILLISECONDS.toNanos(TTL_MILLIS) - 1;
+        get(1);
+        now += 1;
+        get(1);
+
+        assertEquals(List.of(1L, 1L), loadedIds);
+        assertEquals(1, meterRegistry.get("cache.expirations").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Запись другой версии модели считается устаревшей")
+    public void testVersionMismatch() {
+        recommendationCache.get(1, FACTORIZATION, 1, () -> load(1));
+        recommendationCache.get(1, FACTORIZATION, 1, () -> load(1));
+        recommendationCache.get(1, FACTORIZATION, 2, () -> load(1));
+        recommendationCache.get(1, CLOSEST_USER, 0, () -> load(1));
+
+        assertEquals(List.of(1L, 1L, 1L), loadedIds);
+        assertEquals(1, meterRegistry.get("cache.invalidations").functionCounter().count());
+        assertEquals(0, meterRegistry.get("cache.expirations").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Рекомендации, подобранные во время инвалидации, сохраняются, только если она их не затрагивает")
+    public void testInvalidationDuringLoad() {
+        recommendationCache.get(1, CLOSEST_USER, 0, () -> {
+            recommendationCache.onFilmMarkChanged(new FilmMarkChangedEvent(30, 2, 8, null, Operation.ADD));
+            return load(1);
+        });
+        recommendationCache.get(2, CLOSEST_USER, 0, () -> {
+            recommendationCache.onFilmMarkChanged(new FilmMarkChangedEvent(30, 102, 8, null, Operation.ADD));
+            return load(2);
+        });
+        recommendationCache.get(3, CLOSEST_USER, 0, () -> {
+            recommendationCache.onFilmMarkChanged(new FilmMarkChangedEvent(14, 500, 8, null, Operation.ADD));
+            return load(3);
+        });
+        get(1);
+        get(2);
+        get(3);
+
+        assertEquals(List.of(1L, 2L, 3L, 2L, 3L), loadedIds);
+    }
+
+    @Test
+    @DisplayName("При превышении размера вытесняется давно не использованная запись")
+    public void testLeastRecentlyUsedEviction() {
+        get(1);
+        get(2);
+        get(1);
+        get(3);
+        get(1);
+        get(2);
+
+        assertEquals(List.of(1L, 2L, 3L, 2L), loadedIds);
+        assertEquals(2, recommendationCache.size());
+        assertEquals(2, meterRegistry.get("cache.evictions").functionCounter().count());
+
+        recommendationCache.onFilmMarkChanged(new FilmMarkChangedEvent(14, 500, 8, null, Operation.ADD));
+
+        assertEquals(0, meterRegistry.get("cache.invalidations").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Пересчет оценок очищает кэш")
+    public void testInvalidateAllOnMarksRecalculated() {
+        get(1);
+        get(2);
+
+        recommendationCache.onFilmMarksRecalculated(new FilmMarksRecalculatedEvent(2));
+
+        assertEquals(0, recommendationCache.size());
+    }
+
+    private List<Long> get(long userId) {
+        return recommendationCache.get(userId, CLOSEST_USER, 0, () -> load(userId));
+    }
+
+    /**
+     * Рекомендации пользователя с id n - фильмы 10 + n и 11 + n, подобранные по оценкам пользователя 100 + n,
+     * который оценил эти фильмы и фильм 20.
+     */
+    private Recommendation load(long userId) {
+        loadedIds.add(userId);
+        return Recommendation.of(List.of(10 + userId, 11 + userId), 100 + userId,
+                new int[]{(int) (10 + userId), (int) (11 + userId), 20});
+    }
+}
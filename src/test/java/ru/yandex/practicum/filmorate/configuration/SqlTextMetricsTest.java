@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.configuration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SqlTextMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SqlTextMetrics sqlTextMetrics;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sqlTextMetrics = new SqlTextMetrics(2, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Повторная подготовка запроса с тем же текстом не считается новым текстом")
+    public void testRepeatedText() {
+        sqlTextMetrics.record("SELECT * FROM FILM WHERE ID = ANY(?)");
+        sqlTextMetrics.record("SELECT * FROM FILM WHERE ID = ANY(?)");
+        sqlTextMetrics.record("SELECT * FROM FILM WHERE ID = ?");
+
+        assertEquals(1, sqlTextMetrics.getRepeated());
+        assertEquals(2, sqlTextMetrics.getDistinct());
+        assertEquals(1, meterRegistry.get("jdbc.statements.prepared").tag("text", "repeated")
+                .functionCounter().count());
+        assertEquals(2, meterRegistry.get("jdbc.statements.prepared").tag("text", "new").functionCounter().count());
+        assertEquals(2, meterRegistry.get("jdbc.statements.distinct.texts").gauge().value());
+    }
+
+    @Test
+    @DisplayName("После предельного количества текстов новые тексты не запоминаются")
+    public void testTrackedTextsLimit() {
+        sqlTextMetrics.record("SELECT 1");
+        sqlTextMetrics.record("SELECT 2");
+        sqlTextMetrics.record("SELECT 3");
+        sqlTextMetrics.record("SELECT 3");
+        sqlTextMetrics.record("SELECT 1");
+
+        assertEquals(1, sqlTextMetrics.getRepeated());
+        assertEquals(4, sqlTextMetrics.getDistinct());
+        assertEquals(2, sqlTextMetrics.size());
+    }
+}
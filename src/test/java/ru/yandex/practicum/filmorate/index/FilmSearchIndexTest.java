@@ -0,0 +1,182 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.event.DirectorChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dto.FilmSearchDto;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.model.SearchBy;
+import ru.yandex.practicum.filmorate.model.SearchMatch;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class FilmSearchIndexTest {
+
+    private static final List<String> QUERIES = List.of("", "a", "A", "ы", "аб", "film", "FILM 1", "ilm 2", "1",
+            "12", "ник", "Никита", "кит", "director", "tor 3", "xyz", "%", "_", "'");
+    private static final List<List<String>> SEARCH_BY_VARIANTS = List.of(
+            List.of(SearchBy.TITLE.toString()),
+            List.of(SearchBy.DIRECTOR.toString()),
+            List.of(SearchBy.TITLE.toString(), SearchBy.DIRECTOR.toString()));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private FilmDbStorage filmDbStorage;
+    private DirectorDbStorage directorStorage;
+    private FilmSearchIndex filmSearchIndex;
+
+    @BeforeEach
+    public void setUp() {
+        filmDbStorage = new FilmDbStorage(jdbcTemplate, eventPublisher);
+        directorStorage = new DirectorDbStorage(jdbcTemplate, eventPublisher);
+        filmSearchIndex = new FilmSearchIndex(filmDbStorage, directorStorage);
+        jdbcTemplate.update("INSERT INTO director (director_name) " +
+                "SELECT CASEWHEN(MOD(x, 2) = 0, 'Director ' || x, 'Никита Михалков ' || x) FROM SYSTEM_RANGE(1, 5)");
+        jdbcTemplate.update("INSERT INTO film (title, description, release_date, duration, mpa_id) " +
+                "SELECT CASEWHEN(MOD(x, 3) = 0, 'Аб', 'Film ' || x), 'description', DATE '2000-01-01', 100, 1 " +
+                "FROM SYSTEM_RANGE(1, 30)");
+        jdbcTemplate.update("INSERT INTO film (title, description, release_date, duration, mpa_id) " +
+                "VALUES ('100% _film_', 'description', DATE '2000-01-01', 100, 1)");
+        jdbcTemplate.update("INSERT INTO film_director (film_id, director_id) " +
+                "SELECT f.id, d.id FROM film f JOIN director d ON MOD(f.id, 5) = MOD(d.id, 5) WHERE MOD(f.id, 4) <> 0");
+    }
+
+    @Test
+    @DisplayName("Результаты поиска после построения индекса совпадают с запросом к БД")
+    public void testRebuildMatchesDatabase() {
+        filmSearchIndex.rebuild();
+
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Изменение и удаление фильма отражаются в индексе")
+    public void testRefreshAfterFilmChange() {
+        filmSearchIndex.rebuild();
+        final long filmId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM film", Long.class);
+        final Film film = filmDbStorage.findById(filmId);
+        film.setName("Сибирский цирюльник");
+        film.getDirectors().clear();
+        film.getDirectors().add(directorStorage.findAll().iterator().next());
+
+        filmDbStorage.update(film);
+        filmSearchIndex.onFilmChanged(new FilmChangedEvent(film.getId(), Operation.UPDATE));
+
+        assertThat(filmSearchIndex.findFilmIds("цирюль", true, false).orElseThrow())
+                .containsExactly((int) film.getId());
+        assertMatchesDatabase();
+
+        filmDbStorage.remove(film.getId());
+        filmSearchIndex.onFilmChanged(new FilmChangedEvent(film.getId(), Operation.REMOVE));
+
+        assertThat(filmSearchIndex.findFilmIds("цирюль", true, true).orElseThrow())
+                .isEmpty();
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Переименование и удаление режиссера отражаются в индексе")
+    public void testRefreshAfterDirectorChange() {
+        filmSearchIndex.rebuild();
+        final Director director = directorStorage.findAll().iterator().next();
+        director.setName("Андрей Тарковский");
+
+        directorStorage.update(director);
+        filmSearchIndex.onDirectorChanged(new DirectorChangedEvent(director.getId(), Operation.UPDATE));
+
+        assertThat(filmSearchIndex.findFilmIds("тарков", false, true).orElseThrow())
+                .isNotEmpty();
+        assertMatchesDatabase();
+
+        directorStorage.remove(director.getId());
+        filmSearchIndex.onDirectorChanged(new DirectorChangedEvent(director.getId(), Operation.REMOVE));
+
+        assertThat(filmSearchIndex.findFilmIds("тарков", false, true).orElseThrow())
+                .isEmpty();
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Страницы результатов по релевантности совпадают с запросом к БД")
+    public void testRankedPagesMatchDatabase() {
+        jdbcTemplate.update("INSERT INTO film (title, description, release_date, duration, mpa_id) " +
+                "VALUES ('Film', 'description', DATE '2000-01-01', 100, 1)");
+        jdbcTemplate.update("INSERT INTO filmorate_user (email, login, nickname, birthday) " +
+                "SELECT 'user' || x || '@mail.ru', 'user' || x, 'user' || x, DATE '1990-01-01' FROM SYSTEM_RANGE(1, 10)");
+        jdbcTemplate.update("INSERT INTO film_mark (film_id, user_id, mark) " +
+                "SELECT f.id, u.id, 5 FROM film f, filmorate_user u WHERE MOD(f.id * 7 + u.id * 3, 11) < MOD(f.id, 5)");
+        filmDbStorage.recalculateMarkAggregates();
+        final PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex(filmDbStorage);
+        popularFilmsIndex.rebuild();
+        filmSearchIndex.rebuild();
+
+        for (String query : QUERIES) {
+            for (List<String> by : SEARCH_BY_VARIANTS) {
+                final boolean byTitle = by.contains(SearchBy.TITLE.toString());
+                final boolean byDirector = by.contains(SearchBy.DIRECTOR.toString());
+                final FilmSearchMatches matches = filmSearchIndex.findMatches(query, byTitle, byDirector)
+                        .orElseThrow();
+                final int[] markCounts = popularFilmsIndex.findMarkCounts(matches.getFilmIds()).orElseThrow();
+                for (int offset : new int[]{0, 3, 40}) {
+                    for (int limit : new int[]{1, 5, 1000}) {
+                        final FilmSearchDto search = FilmSearchDto.builder()
+                                .by(by)
+                                .query(query)
+                                .limit(limit)
+                                .offset(offset)
+                                .build();
+                        final List<Long> expected = filmDbStorage.searchFilms(search).stream()
+                                .map(Film::getId)
+                                .collect(Collectors.toList());
+                        assertThat(matches.findTop(markCounts, offset, limit))
+                                .as("query=%s, by=%s, offset=%s, limit=%s", query, by, offset, limit)
+                                .isEqualTo(expected);
+                    }
+                }
+            }
+        }
+        assertThat(filmSearchIndex.findMatches("film", true, false).orElseThrow().getMatches())
+                .contains(SearchMatch.EXACT, SearchMatch.PREFIX, SearchMatch.SUBSTRING);
+    }
+
+    @Test
+    @DisplayName("До построения индекса запросы передаются в БД")
+    public void testEmptyBeforeRebuild() {
+        assertThat(filmSearchIndex.findFilmIds("film", true, true))
+                .isEmpty();
+    }
+
+    private void assertMatchesDatabase() {
+        for (String query : QUERIES) {
+            for (List<String> by : SEARCH_BY_VARIANTS) {
+                final FilmSearchDto search = FilmSearchDto.builder().by(by).query(query).build();
+                final int[] expected = filmDbStorage.searchFilms(search).stream()
+                        .mapToInt(film -> (int) film.getId())
+                        .sorted()
+                        .toArray();
+                assertThat(filmSearchIndex.findFilmIds(query, by.contains(SearchBy.TITLE.toString()),
+                        by.contains(SearchBy.DIRECTOR.toString())).orElseThrow())
+                        .as("query=%s, by=%s", query, by)
+                        .containsExactly(expected);
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.event.FriendshipChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.UserChangedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.CachingUserStorage;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.impl.FriendshipDbStorage;
+import ru.yandex.practicum.filmorate.dao.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.recommendation.FriendSuggestionEngine;
+import ru.yandex.practicum.filmorate.recommendation.FriendSuggestions;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.model.FriendshipStatus.ACKNOWLEDGED;
+import static ru.yandex.practicum.filmorate.model.FriendshipStatus.NOT_ACKNOWLEDGED;
+
+@JdbcTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class FriendshipGraphTest {
+
+    private final JdbcTemplate jdbcTemplate;
+    private FriendshipDbStorage friendshipDbStorage;
+    private UserDbStorage userDbStorage;
+    private FriendshipGraph friendshipGraph;
+    private List<Long> userIds;
+
+    @BeforeEach
+    public void setUp() {
+        friendshipDbStorage = new FriendshipDbStorage(jdbcTemplate);
+        userDbStorage = new UserDbStorage(jdbcTemplate);
+        friendshipGraph = new FriendshipGraph(friendshipDbStorage, 3);
+        jdbcTemplate.update("INSERT INTO filmorate_user (email, login, nickname, birthday) " +
+                "SELECT 'user' || x || '@mail.ru', 'user' || x, 'user' || x, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, 25)");
+        jdbcTemplate.update("INSERT INTO friendship (user_id, friend_id, friendship_status_id) " +
+                "SELECT u.id, f.id, CASEWHEN(MOD(u.id + f.id, 3) = 0, 1, 2) " +
+                "FROM filmorate_user u, filmorate_user f WHERE u.id <> f.id AND MOD(u.id * 5 + f.id * 3, 7) < 2");
+        userIds = jdbcTemplate.queryForList("SELECT id FROM filmorate_user ORDER BY id", Long.class);
+    }
+
+    @Test
+    @DisplayName("Граф после построения совпадает с таблицей FRIENDSHIP")
+    public void testRebuildMatchesDatabase() {
+        friendshipGraph.rebuild();
+
+        assertMatchesDatabase();
+        assertThat(friendshipGraph.size())
+                .isEqualTo(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM friendship", Integer.class));
+    }
+
+    @Test
+    @DisplayName("Добавление, изменение статуса и удаление дружбы с переполнением буфера изменений")
+    public void testChangesWithCompaction() {
+        friendshipGraph.rebuild();
+        final Random random = new Random(11);
+
+        for (int i = 0; i < 300; i++) {
+            final long userId = userIds.get(random.nextInt(userIds.size()));
+            final long friendId = userIds.get(random.nextInt(userIds.size()));
+            if (userId == friendId) {
+                continue;
+            }
+            if (!friendshipDbStorage.exists(userId, friendId)) {
+                friendshipDbStorage.add(userId, friendId, NOT_ACKNOWLEDGED.getId());
+                apply(userId, friendId, NOT_ACKNOWLEDGED.getId(), Operation.ADD);
+            } else if (random.nextBoolean()) {
+                friendshipDbStorage.update(userId, friendId, ACKNOWLEDGED.getId());
+                apply(userId, friendId, ACKNOWLEDGED.getId(), Operation.UPDATE);
+            } else {
+                friendshipDbStorage.remove(userId, friendId);
+                apply(userId, friendId, null, Operation.REMOVE);
+            }
+            if (i % 50 == 0) {
+                assertMatchesDatabase();
+            }
+        }
+        assertMatchesDatabase();
+
+        userDbStorage.remove(userIds.get(0));
+        friendshipGraph.onUserChanged(new UserChangedEvent(userIds.get(0), Operation.REMOVE));
+        userIds = userIds.subList(1, userIds.size());
+
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Граф совпадает с таблицей FRIENDSHIP, даже если события об изменениях пришли не по порядку")
+    public void testEventsOutOfOrder() {
+        friendshipGraph.rebuild();
+        final long userId = userIds.get(0);
+        final long friendId = userIds.get(1);
+        if (friendshipDbStorage.exists(userId, friendId)) {
+            friendshipDbStorage.remove(userId, friendId);
+        }
+
+        friendshipDbStorage.add(userId, friendId, NOT_ACKNOWLEDGED.getId());
+        friendshipDbStorage.remove(userId, friendId);
+        friendshipDbStorage.add(userId, friendId, ACKNOWLEDGED.getId());
+        apply(userId, friendId, ACKNOWLEDGED.getId(), Operation.ADD);
+        apply(userId, friendId, null, Operation.REMOVE);
+        apply(userId, friendId, NOT_ACKNOWLEDGED.getId(), Operation.ADD);
+
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Хранилище пользователей отдает тех же друзей и общих друзей, что и запросы к БД")
+    public void testCachingUserStorage() {
+        friendshipGraph.rebuild();
+        final UserIdsIndex userIdsIndex = new UserIdsIndex(userDbStorage);
+        userIdsIndex.rebuild();
+        final CachingUserStorage cachingUserStorage = new CachingUserStorage(userDbStorage, userIdsIndex,
+                friendshipGraph);
+
+        for (long userId : userIds) {
+            assertThat(normalized(cachingUserStorage.findById(userId)))
+                    .isEqualTo(normalized(userDbStorage.findById(userId)));
+            assertThat(normalized(cachingUserStorage.findFriendsByUserId(userId)))
+                    .isEqualTo(normalized(userDbStorage.findFriendsByUserId(userId)));
+            for (long otherUserId : userIds) {
+                assertThat(normalized(cachingUserStorage.findCommonFriends(userId, otherUserId)))
+                        .as("userId=%s, otherUserId=%s", userId, otherUserId)
+                        .isEqualTo(normalized(userDbStorage.findCommonFriends(userId, otherUserId)));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Общие друзья с друзьями друзей совпадают с запросом к БД, возможные друзья упорядочены по ним")
+    public void testMutualFriendsAndSuggestions() {
+        friendshipGraph.rebuild();
+        final FriendSuggestionEngine engine = new FriendSuggestionEngine(friendshipGraph, friendshipDbStorage,
+                new MarkedFilmsIndex(new FilmDbStorage(jdbcTemplate, event -> {
+                })), 0);
+
+        for (long userId : userIds) {
+            final Map<Long, Integer> expected = friendshipDbStorage.countMutualFriends(userId);
+            final Map<Long, Integer> counts = new HashMap<>();
+            friendshipGraph.countMutualFriends(userId).orElseThrow().forEach(counts::put);
+            assertThat(counts).as("userId=%s", userId).isEqualTo(expected);
+
+            final FriendSuggestions suggestions = engine.findSuggestions(userId, 5);
+            assertThat(suggestions.getUserIds()).isEqualTo(expected.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(5)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList()));
+            assertThat(suggestions.isCacheable()).isTrue();
+            assertThat(suggestions.getFriendIds()).isEqualTo(friendshipGraph.findFriendIds(userId).orElseThrow());
+        }
+    }
+
+    @Test
+    @DisplayName("При равном количестве общих друзей выше кандидат со схожим вкусом")
+    public void testSuggestionsWithTaste() {
+        jdbcTemplate.update("DELETE FROM friendship");
+        final long userId = userIds.get(0);
+        final long friendId = userIds.get(1);
+        final long otherFriendId = userIds.get(2);
+        final long candidateId = userIds.get(3);
+        final long similarCandidateId = userIds.get(4);
+        for (long id : List.of(friendId, otherFriendId)) {
+            friendshipDbStorage.add(userId, id, NOT_ACKNOWLEDGED.getId());
+            friendshipDbStorage.add(id, candidateId, NOT_ACKNOWLEDGED.getId());
+            friendshipDbStorage.add(id, similarCandidateId, NOT_ACKNOWLEDGED.getId());
+        }
+        friendshipDbStorage.add(friendId, userId, NOT_ACKNOWLEDGED.getId());
+        friendshipDbStorage.add(friendId, otherFriendId, NOT_ACKNOWLEDGED.getId());
+        jdbcTemplate.update("INSERT INTO film (title, description, release_date, duration, mpa_id) " +
+                "VALUES ('film', 'description', DATE '2000-01-01', 100, 1)");
+        jdbcTemplate.update("INSERT INTO film_mark (film_id, user_id, mark) SELECT MAX(id), ?, 8 FROM film",
+                userId);
+        jdbcTemplate.update("INSERT INTO film_mark (film_id, user_id, mark) SELECT MAX(id), ?, 9 FROM film",
+                similarCandidateId);
+        final MarkedFilmsIndex markedFilmsIndex = new MarkedFilmsIndex(new FilmDbStorage(jdbcTemplate, event -> {
+        }));
+        friendshipGraph.rebuild();
+        markedFilmsIndex.rebuild();
+
+        assertThat(new FriendSuggestionEngine(friendshipGraph, friendshipDbStorage, markedFilmsIndex, 0)
+                .findSuggestions(userId, 10).getUserIds())
+                .containsExactly(candidateId, similarCandidateId);
+        final FriendSuggestionEngine engine = new FriendSuggestionEngine(friendshipGraph, friendshipDbStorage,
+                markedFilmsIndex);
+        assertThat(engine.findSuggestions(userId, 10).getUserIds())
+                .containsExactly(similarCandidateId, candidateId);
+        assertThat(engine.findSuggestions(userId, 1).getUserIds())
+                .containsExactly(similarCandidateId);
+        assertThat(engine.findSuggestions(candidateId, 10).getUserIds()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("До построения граф не используется")
+    public void testEmptyBeforeRebuild() {
+        assertThat(friendshipGraph.findFriendIds(userIds.get(0))).isEmpty();
+        assertThat(friendshipGraph.findCommonFriendIds(userIds.get(0), userIds.get(1))).isEmpty();
+        assertThat(friendshipGraph.isFriend(userIds.get(0), userIds.get(1))).isEmpty();
+        assertThat(friendshipGraph.countMutualFriends(userIds.get(0))).isEmpty();
+    }
+
+    private void apply(final long userId, final long friendId, final Integer statusId, final Operation operation) {
+        friendshipGraph.onFriendshipChanged(new FriendshipChangedEvent(userId, friendId, statusId, operation));
+    }
+
+    private void assertMatchesDatabase() {
+        for (long userId : userIds) {
+            final List<Long> friendIds = jdbcTemplate.queryForList(
+                    "SELECT friend_id FROM friendship WHERE user_id = ? ORDER BY friend_id", Long.class, userId);
+            assertThat(friendshipGraph.findFriendIds(userId).orElseThrow())
+                    .as("userId=%s", userId)
+                    .containsExactly(friendIds.stream().mapToLong(Long::longValue).toArray());
+            assertThat(friendshipGraph.findFriendships(List.of(userId)).orElseThrow().get(userId))
+                    .isEqualTo(normalized(userDbStorage.findById(userId)).getFriends());
+            for (long otherUserId : userIds) {
+                final List<Long> commonIds = jdbcTemplate.queryForList("SELECT f1.friend_id " +
+                        "FROM friendship f1 JOIN friendship f2 ON f1.friend_id = f2.friend_id " +
+                        "WHERE f1.user_id = ? AND f2.user_id = ? ORDER BY f1.friend_id", Long.class,
+                        userId, otherUserId);
+                assertThat(friendshipGraph.findCommonFriendIds(userId, otherUserId).orElseThrow())
+                        .as("userId=%s, otherUserId=%s", userId, otherUserId)
+                        .containsExactly(commonIds.stream().mapToLong(Long::longValue).toArray());
+                assertThat(friendshipGraph.isFriend(userId, otherUserId).orElseThrow())
+                        .isEqualTo(friendIds.contains(otherUserId));
+            }
+        }
+    }
+
+    private static List<User> normalized(final Collection<User> users) {
+        return users.stream()
+                .map(FriendshipGraphTest::normalized)
+                .sorted(Comparator.comparingLong(User::getId))
+                .collect(Collectors.toList());
+    }
+
+    private static User normalized(final User user) {
+        user.getFriends().sort(Comparator.comparing(Friendship::getId));
+        return user;
+    }
+}
@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.event.FriendshipChangedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.FriendshipDbStorage;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.model.FriendshipStatus.NOT_ACKNOWLEDGED;
+
+@JdbcTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class FriendshipPathFinderTest {
+
+    private final JdbcTemplate jdbcTemplate;
+    private FriendshipDbStorage friendshipDbStorage;
+    private FriendshipGraph friendshipGraph;
+    private List<Long> userIds;
+
+    @BeforeEach
+    public void setUp() {
+        friendshipDbStorage = new FriendshipDbStorage(jdbcTemplate);
+        friendshipGraph = new FriendshipGraph(friendshipDbStorage);
+        jdbcTemplate.update("INSERT INTO filmorate_user (email, login, nickname, birthday) " +
+                "SELECT 'user' || x || '@mail.ru', 'user' || x, 'user' || x, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, 40)");
+        userIds = jdbcTemplate.queryForList("SELECT id FROM filmorate_user ORDER BY id", Long.class);
+        final Random random = new Random(5);
+        for (int i = 0; i < 55; i++) {
+            final long userId = userIds.get(random.nextInt(userIds.size()));
+            final long friendId = userIds.get(random.nextInt(userIds.size()));
+            if (userId != friendId && !friendshipDbStorage.exists(userId, friendId)) {
+                friendshipDbStorage.add(userId, friendId, NOT_ACKNOWLEDGED.getId());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Цепочки по графу и по таблице FRIENDSHIP кратчайшие и состоят из связей дружбы")
+    public void testShortestPaths() {
+        final FriendshipPathFinder dbPathFinder = new FriendshipPathFinder(friendshipGraph, friendshipDbStorage);
+        assertMatchesBreadthFirstSearch(dbPathFinder);
+
+        friendshipGraph.rebuild();
+        assertThat(friendshipGraph.findPaths().orElseThrow().size())
+                .isEqualTo(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM friendship", Integer.class));
+        assertMatchesBreadthFirstSearch(new FriendshipPathFinder(friendshipGraph, friendshipDbStorage));
+    }
+
+    @Test
+    @DisplayName("Изменение дружбы сбрасывает снимок графа")
+    public void testSnapshotReset() {
+        friendshipGraph.rebuild();
+        final FriendshipPathFinder pathFinder = new FriendshipPathFinder(friendshipGraph, friendshipDbStorage);
+        final long userId = userIds.get(0);
+        final long otherUserId = userIds.get(userIds.size() - 1);
+        pathFinder.findPath(userId, otherUserId, 20);
+
+        if (!friendshipDbStorage.exists(userId, otherUserId)) {
+            friendshipDbStorage.add(userId, otherUserId, NOT_ACKNOWLEDGED.getId());
+            friendshipGraph.onFriendshipChanged(new FriendshipChangedEvent(userId, otherUserId,
+                    NOT_ACKNOWLEDGED.getId(), Operation.ADD));
+        }
+
+        assertThat(pathFinder.findPath(userId, otherUserId, 1).getUserIds()).containsExactly(userId, otherUserId);
+        assertThat(pathFinder.findPath(userId, userId, 1).getUserIds()).containsExactly(userId);
+        assertThat(friendshipGraph.findPaths().orElseThrow().size())
+                .isEqualTo(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM friendship", Integer.class));
+    }
+
+    @Test
+    @DisplayName("Поиск прекращается по истечении времени")
+    public void testTimeBudget() {
+        friendshipGraph.rebuild();
+        final long[] now = new long[1];
+        final FriendshipPathFinder pathFinder = new FriendshipPathFinder(friendshipGraph, friendshipDbStorage, 10,
+                () -> now[0] += TimeUnit.MILLISECONDS.toNanos(11));
+
+        final FriendshipPaths.Path path = pathFinder.findPath(userIds.get(0), userIds.get(1), 20);
+
+        assertThat(path.isTimedOut()).isTrue();
+        assertThat(path.getUserIds()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Построение снимка после изменения графа входит во время поиска")
+    public void testSnapshotBuildCountsAgainstTimeBudget() {
+        final long userId = userIds.get(0);
+        final long otherUserId = userIds.get(1);
+        if (!friendshipDbStorage.exists(userId, otherUserId)) {
+            friendshipDbStorage.add(userId, otherUserId, NOT_ACKNOWLEDGED.getId());
+        }
+        final long[] now = new long[1];
+        final FriendshipGraph slowGraph = new FriendshipGraph(friendshipDbStorage) {
+            @Override
+            public Optional<FriendshipPaths> findPaths() {
+                now[0] += TimeUnit.MILLISECONDS.toNanos(11);
+                return super.findPaths();
+            }
+        };
+        slowGraph.rebuild();
+        final FriendshipPathFinder pathFinder = new FriendshipPathFinder(slowGraph, friendshipDbStorage, 10,
+                () -> now[0]);
+
+        final FriendshipPaths.Path path = pathFinder.findPath(userId, otherUserId, 20);
+
+        assertThat(path.isTimedOut()).isTrue();
+        assertThat(path.getUserIds()).isEmpty();
+    }
+
+    private void assertMatchesBreadthFirstSearch(final FriendshipPathFinder pathFinder) {
+        final Map<Long, List<Long>> friends = new HashMap<>();
+        friendshipDbStorage.streamFriendships((userId, friendId, statusId) ->
+                friends.computeIfAbsent(userId, id -> new ArrayList<>()).add(friendId));
+        for (long userId : userIds) {
+            final Map<Long, Integer> distances = breadthFirstSearch(friends, userId);
+            for (long otherUserId : userIds) {
+                final long[] path = pathFinder.findPath(userId, otherUserId, 20).getUserIds();
+                final Integer distance = distances.get(otherUserId);
+                if (distance == null) {
+                    assertThat(path).as("userId=%s, otherUserId=%s", userId, otherUserId).isEmpty();
+                    continue;
+                }
+                assertThat(path).as("userId=%s, otherUserId=%s", userId, otherUserId).hasSize(distance + 1);
+                assertThat(path[0]).isEqualTo(userId);
+                assertThat(path[path.length - 1]).isEqualTo(otherUserId);
+                for (int i = 1; i < path.length; i++) {
+                    assertThat(friends.get(path[i - 1])).contains(path[i]);
+                }
+                if (distance > 1) {
+                    assertThat(pathFinder.findPath(userId, otherUserId, distance - 1).getUserIds()).isEmpty();
+                }
+            }
+        }
+    }
+
+    private static Map<Long, Integer> breadthFirstSearch(final Map<Long, List<Long>> friends, final long userId) {
+        final Map<Long, Integer> distances = new HashMap<>(Map.of(userId, 0));
+        final Deque<Long> queue = new ArrayDeque<>(List.of(userId));
+        while (!queue.isEmpty()) {
+            final long current = queue.poll();
+            for (long friendId : friends.getOrDefault(current, List.of())) {
+                if (!distances.containsKey(friendId)) {
+                    distances.put(friendId, distances.get(current) + 1);
+                    queue.add(friendId);
+                }
+            }
+        }
+        return distances;
+    }
+}
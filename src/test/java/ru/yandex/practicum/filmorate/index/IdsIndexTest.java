@@ -0,0 +1,163 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.UserChangedEvent;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
+import ru.yandex.practicum.filmorate.dao.impl.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.dao.impl.CachingReferenceStorage;
+import ru.yandex.practicum.filmorate.dao.impl.CachingUserStorage;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.impl.ReferenceDbStorage;
+import ru.yandex.practicum.filmorate.dao.impl.UserDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.model.Reference;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@JdbcTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class IdsIndexTest {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private FilmDbStorage filmDbStorage;
+    private UserDbStorage userDbStorage;
+    private FilmIdsIndex filmIdsIndex;
+    private UserIdsIndex userIdsIndex;
+    private List<Long> filmIds;
+    private List<Long> userIds;
+
+    @BeforeEach
+    public void setUp() {
+        filmDbStorage = new FilmDbStorage(jdbcTemplate, eventPublisher);
+        userDbStorage = new UserDbStorage(jdbcTemplate, eventPublisher);
+        filmIdsIndex = new FilmIdsIndex(filmDbStorage);
+        userIdsIndex = new UserIdsIndex(userDbStorage);
+        jdbcTemplate.update("INSERT INTO filmorate_user (email, login, nickname, birthday) " +
+                "SELECT 'user' || x || '@mail.ru', 'user' || x, 'user' || x, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, 20)");
+        jdbcTemplate.update("INSERT INTO film (title, description, release_date, duration, mpa_id) " +
+                "SELECT 'film ' || x, 'description', DATE '2000-01-01', 100, 1 FROM SYSTEM_RANGE(1, 30)");
+        jdbcTemplate.update("DELETE FROM film WHERE MOD(id, 4) = 0");
+        filmIds = jdbcTemplate.queryForList("SELECT id FROM film ORDER BY id", Long.class);
+        userIds = jdbcTemplate.queryForList("SELECT id FROM filmorate_user ORDER BY id", Long.class);
+    }
+
+    @Test
+    @DisplayName("Множества после построения совпадают с идентификаторами в БД")
+    public void testRebuildMatchesDatabase() {
+        filmIdsIndex.rebuild();
+        userIdsIndex.rebuild();
+
+        assertMatchesDatabase();
+        assertThat(filmIdsIndex.size()).isEqualTo(filmIds.size());
+        assertThat(userIdsIndex.size()).isEqualTo(userIds.size());
+    }
+
+    @Test
+    @DisplayName("Добавление и удаление фильмов и пользователей отражаются в множествах")
+    public void testAddAndRemove() {
+        filmIdsIndex.rebuild();
+        userIdsIndex.rebuild();
+
+        final Film film = filmDbStorage.add(Film.builder()
+                .name("new film")
+                .description("description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1, "G"))
+                .build());
+        filmIdsIndex.onFilmChanged(new FilmChangedEvent(film.getId(), Operation.ADD));
+        final User user = userDbStorage.add(User.builder()
+                .email("new@mail.ru")
+                .login("new")
+                .name("new")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+        userIdsIndex.onUserChanged(new UserChangedEvent(user.getId(), Operation.ADD));
+
+        assertThat(filmIdsIndex.contains(film.getId())).contains(true);
+        assertThat(userIdsIndex.contains(user.getId())).contains(true);
+
+        filmDbStorage.remove(filmIds.get(0));
+        filmIdsIndex.onFilmChanged(new FilmChangedEvent(filmIds.get(0), Operation.REMOVE));
+        userDbStorage.remove(userIds.get(0));
+        userIdsIndex.onUserChanged(new UserChangedEvent(userIds.get(0), Operation.REMOVE));
+        filmIds = jdbcTemplate.queryForList("SELECT id FROM film ORDER BY id", Long.class);
+        userIds = jdbcTemplate.queryForList("SELECT id FROM filmorate_user ORDER BY id", Long.class);
+
+        assertMatchesDatabase();
+        assertThat(filmIdsIndex.findAbsent(List.of(film.getId(), 4L, -1L, Long.MAX_VALUE)).orElseThrow())
+                .containsExactly(4L, -1L, Long.MAX_VALUE);
+    }
+
+    @Test
+    @DisplayName("Отсутствие записи в построенном множестве проверяется без обращения к БД")
+    public void testAbsentWithoutDatabase() {
+        filmIdsIndex.rebuild();
+        userIdsIndex.rebuild();
+        final FilmDbStorage filmDb = mock(FilmDbStorage.class);
+        final UserDbStorage userDb = mock(UserDbStorage.class);
+        final ReferenceDbStorage referenceDb = mock(ReferenceDbStorage.class);
+        final CachingFilmStorage filmStorage = new CachingFilmStorage(filmDb, mock(FilmCache.class),
+                mock(PopularFilmsIndex.class), mock(FilmSearchIndex.class), mock(SimilarFilmsIndex.class),
+                mock(MarkedFilmsIndex.class), filmIdsIndex);
+        final CachingUserStorage userStorage = new CachingUserStorage(userDb, userIdsIndex,
+                mock(FriendshipGraph.class));
+        final CachingReferenceStorage referenceStorage = new CachingReferenceStorage(referenceDb, filmIdsIndex,
+                userIdsIndex);
+        final long absentFilmId = 4L;
+        final long absentUserId = userIds.get(userIds.size() - 1) + 1;
+        when(referenceDb.findAbsent(List.of(Reference.review(1)))).thenReturn(List.of(Reference.review(1)));
+
+        assertThat(filmStorage.existsById(absentFilmId)).isFalse();
+        assertThat(filmStorage.existAll(List.of(filmIds.get(0), absentFilmId))).isFalse();
+        assertThat(userStorage.existsById(absentUserId)).isFalse();
+        assertThat(userStorage.existAll(List.of(absentUserId))).isFalse();
+        assertThat(referenceStorage.findAbsent(List.of(Reference.user(absentUserId), Reference.film(filmIds.get(0)),
+                Reference.review(1), Reference.film(absentFilmId))))
+                .containsExactly(Reference.user(absentUserId), Reference.review(1), Reference.film(absentFilmId));
+        verifyNoInteractions(filmDb, userDb);
+        verify(referenceDb).findAbsent(List.of(Reference.review(1)));
+    }
+
+    @Test
+    @DisplayName("До построения множеств проверка передается в БД")
+    public void testEmptyBeforeRebuild() {
+        assertThat(filmIdsIndex.contains(filmIds.get(0))).isEmpty();
+        assertThat(userIdsIndex.findAbsent(userIds)).isEmpty();
+    }
+
+    private void assertMatchesDatabase() {
+        for (long id = 0; id <= 40; id++) {
+            assertThat(filmIdsIndex.contains(id).orElseThrow())
+                    .as("filmId=%s", id)
+                    .isEqualTo(filmIds.contains(id));
+            assertThat(userIdsIndex.contains(id).orElseThrow())
+                    .as("userId=%s", id)
+                    .isEqualTo(userIds.contains(id));
+        }
+        assertThat(filmIdsIndex.findAbsent(filmIds).orElseThrow()).isEmpty();
+        assertThat(userIdsIndex.findAbsent(userIds).orElseThrow()).isEmpty();
+    }
+}
@@ -0,0 +1,120 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarkChangedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class MarkedFilmsIndexTest {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private FilmDbStorage filmDbStorage;
+    private MarkedFilmsIndex markedFilmsIndex;
+    private PopularFilmsIndex popularFilmsIndex;
+    private List<Long> userIds;
+
+    @BeforeEach
+    public void setUp() {
+        filmDbStorage = new FilmDbStorage(jdbcTemplate, eventPublisher);
+        markedFilmsIndex = new MarkedFilmsIndex(filmDbStorage);
+        popularFilmsIndex = new PopularFilmsIndex(filmDbStorage);
+        jdbcTemplate.update("INSERT INTO filmorate_user (email, login, nickname, birthday) " +
+                "SELECT 'user' || x || '@mail.ru', 'user' || x, 'user' || x, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, 12)");
+        jdbcTemplate.update("INSERT INTO film (title, description, release_date, duration, mpa_id) " +
+                "SELECT 'film ' || x, 'description', DATE '2000-01-01', 100, 1 FROM SYSTEM_RANGE(1, 40)");
+        jdbcTemplate.update("INSERT INTO film_mark (film_id, user_id, mark) " +
+                "SELECT f.id, u.id, CASEWHEN(MOD(f.id, 5) = 0, NULL, MOD(f.id + u.id, 10) + 1) " +
+                "FROM film f, filmorate_user u WHERE MOD(f.id * 7 + u.id * 3, 11) < MOD(u.id, 6)");
+        filmDbStorage.recalculateMarkAggregates();
+        popularFilmsIndex.rebuild();
+        userIds = jdbcTemplate.queryForList("SELECT id FROM filmorate_user ORDER BY id", Long.class);
+    }
+
+    @Test
+    @DisplayName("Общие фильмы после построения совпадают с запросом к БД для всех пар пользователей")
+    public void testRebuildMatchesDatabase() {
+        markedFilmsIndex.rebuild();
+
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Добавление и удаление оценок и удаление фильма отражаются в общих фильмах")
+    public void testMarkAndFilmChanges() {
+        markedFilmsIndex.rebuild();
+        final List<Long> filmIds = jdbcTemplate.queryForList("SELECT id FROM film ORDER BY id", Long.class);
+
+        for (int i = 0; i < userIds.size(); i++) {
+            final long userId = userIds.get(i);
+            final long filmId = filmIds.get(i * 5 % filmIds.size());
+            filmDbStorage.removeMarkFromFilm(filmId, userId);
+            final FilmMarkChangedEvent removed = new FilmMarkChangedEvent(filmId, userId, null, null,
+                    Operation.REMOVE);
+            markedFilmsIndex.onFilmMarkChanged(removed);
+            popularFilmsIndex.onFilmMarkChanged(removed);
+            filmDbStorage.addMarkToFilm(filmIds.get(0), userId, 7);
+            final FilmMarkChangedEvent added = new FilmMarkChangedEvent(filmIds.get(0), userId, 7, null,
+                    Operation.ADD);
+            markedFilmsIndex.onFilmMarkChanged(added);
+            popularFilmsIndex.onFilmMarkChanged(added);
+        }
+        assertMatchesDatabase();
+
+        filmDbStorage.remove(filmIds.get(0));
+        markedFilmsIndex.onFilmChanged(new FilmChangedEvent(filmIds.get(0), Operation.REMOVE));
+        popularFilmsIndex.onFilmChanged(new FilmChangedEvent(filmIds.get(0), Operation.REMOVE));
+
+        assertThat(markedFilmsIndex.findCommonFilmIds(userIds.get(0), userIds.get(1)).orElseThrow())
+                .doesNotContain(filmIds.get(0).intValue());
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Пользователь без оценок не имеет общих фильмов, до построения запросы передаются в БД")
+    public void testEmptyResults() {
+        jdbcTemplate.update("DELETE FROM film_mark WHERE user_id = ?", userIds.get(0));
+
+        assertThat(markedFilmsIndex.findCommonFilmIds(userIds.get(0), userIds.get(1)))
+                .isEmpty();
+
+        markedFilmsIndex.rebuild();
+
+        assertThat(markedFilmsIndex.findCommonFilmIds(userIds.get(0), userIds.get(1)).orElseThrow())
+                .isEmpty();
+    }
+
+    private void assertMatchesDatabase() {
+        for (long userId : userIds) {
+            for (long otherUserId : userIds) {
+                final List<Long> expected = filmDbStorage.findCommonFilms(userId, otherUserId).stream()
+                        .map(Film::getId)
+                        .collect(Collectors.toList());
+                assertThat(markedFilmsIndex.findCommonFilmIds(userId, otherUserId)
+                        .flatMap(popularFilmsIndex::orderByPopularity)
+                        .orElseThrow())
+                        .as("userId=%s, otherUserId=%s", userId, otherUserId)
+                        .isEqualTo(expected);
+            }
+        }
+    }
+}
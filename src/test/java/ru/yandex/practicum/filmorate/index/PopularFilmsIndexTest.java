@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarkChangedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class PopularFilmsIndexTest {
+
+    private static final Integer[] GENRES = {null, 1, 2, 3};
+    private static final Integer[] YEARS = {null, 2000, 2001, 2002, 1999};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private FilmDbStorage filmDbStorage;
+    private PopularFilmsIndex popularFilmsIndex;
+
+    @BeforeEach
+    public void setUp() {
+        filmDbStorage = new FilmDbStorage(jdbcTemplate, eventPublisher);
+        popularFilmsIndex = new PopularFilmsIndex(filmDbStorage);
+        jdbcTemplate.update("INSERT INTO filmorate_user (email, login, nickname, birthday) " +
+                "SELECT 'user' || x || '@mail.ru', 'user' || x, 'user' || x, DATE '1990-01-01' FROM SYSTEM_RANGE(1, 10)");
+        jdbcTemplate.update("INSERT INTO film (title, description, release_date, duration, mpa_id) " +
+                "SELECT 'film ' || x, 'description', DATEADD(YEAR, MOD(x, 3), DATE '2000-01-01'), 100, 1 " +
+                "FROM SYSTEM_RANGE(1, 30)");
+        jdbcTemplate.update("INSERT INTO film_genre (film_id, genre_id) SELECT id, MOD(id, 3) + 1 FROM film");
+        jdbcTemplate.update("INSERT INTO film_genre (film_id, genre_id) SELECT id, 3 FROM film WHERE MOD(id, 4) = 0 " +
+                "AND MOD(id, 3) <> 2");
+        jdbcTemplate.update("INSERT INTO film_mark (film_id, user_id, mark) " +
+                "SELECT f.id, u.id, 5 FROM film f, filmorate_user u WHERE MOD(f.id * 7 + u.id * 3, 11) < 4");
+        filmDbStorage.recalculateMarkAggregates();
+    }
+
+    @Test
+    @DisplayName("Списки после построения совпадают с запросом к БД для всех сочетаний фильтров")
+    public void testRebuildMatchesDatabase() {
+        popularFilmsIndex.rebuild();
+
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Добавление и удаление оценки переставляет фильм в списках")
+    public void testRefreshAfterMarkChange() {
+        popularFilmsIndex.rebuild();
+        final long lastFilmId = popularFilmsIndex.findMostLikedFilmIds(30, null, null).orElseThrow().get(29);
+
+        for (long userId = 1; userId <= 10; userId++) {
+            filmDbStorage.addMarkToFilm(lastFilmId, userId, 10);
+            popularFilmsIndex.onFilmMarkChanged(
+                    new FilmMarkChangedEvent(lastFilmId, userId, 10, null, Operation.ADD));
+        }
+
+        assertThat(popularFilmsIndex.findMostLikedFilmIds(1, null, null).orElseThrow())
+                .containsExactly(lastFilmId);
+        assertMatchesDatabase();
+
+        filmDbStorage.removeMarkFromFilm(lastFilmId, 1);
+        popularFilmsIndex.onFilmMarkChanged(new FilmMarkChangedEvent(lastFilmId, 1, null, 10, Operation.REMOVE));
+
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Изменение жанров и года фильма и его удаление отражаются в списках")
+    public void testRefreshAfterFilmChange() {
+        popularFilmsIndex.rebuild();
+        final Film film = filmDbStorage.findById(3);
+        film.setReleaseDate(film.getReleaseDate().withYear(1999));
+        film.getGenres().clear();
+        film.getGenres().add(new Genre(2, "Драма"));
+
+        filmDbStorage.update(film);
+        popularFilmsIndex.onFilmChanged(new FilmChangedEvent(film.getId(), Operation.UPDATE));
+
+        assertThat(popularFilmsIndex.findMostLikedFilmIds(10, 2, 1999).orElseThrow())
+                .containsExactly(film.getId());
+        assertMatchesDatabase();
+
+        filmDbStorage.remove(film.getId());
+        popularFilmsIndex.onFilmChanged(new FilmChangedEvent(film.getId(), Operation.REMOVE));
+
+        assertThat(popularFilmsIndex.findMostLikedFilmIds(10, null, 1999).orElseThrow())
+                .isEmpty();
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("До построения списков запросы передаются в БД")
+    public void testEmptyBeforeRebuild() {
+        assertThat(popularFilmsIndex.findMostLikedFilmIds(10, null, null))
+                .isEmpty();
+    }
+
+    private void assertMatchesDatabase() {
+        for (Integer genreId : GENRES) {
+            for (Integer year : YEARS) {
+                for (int count : Arrays.asList(0, 1, 5, 100)) {
+                    final List<Long> expected = filmDbStorage.findMostLikedFilms(count, genreId, year).stream()
+                            .map(Film::getId)
+                            .collect(Collectors.toList());
+                    assertThat(popularFilmsIndex.findMostLikedFilmIds(count, genreId, year).orElseThrow())
+                            .as("genreId=%s, year=%s, count=%s", genreId, year, count)
+                            .isEqualTo(expected);
+                }
+            }
+        }
+    }
+}
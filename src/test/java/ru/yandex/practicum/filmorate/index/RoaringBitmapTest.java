@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoaringBitmapTest {
+
+    @Test
+    @DisplayName("Добавление и удаление чисел совпадают с TreeSet при переходах между массивом и битовой картой")
+    public void testMatchesTreeSet() {
+        final Random random = new Random(42);
+        final RoaringBitmap bitmap = new RoaringBitmap();
+        final TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int i = 0; i < 60_000; i++) {
+            final int value = i < 30_000 ? random.nextInt(20_000) : random.nextInt(200_000);
+            assertThat(bitmap.add(value)).isEqualTo(expected.add(value));
+        }
+        assertMatches(bitmap, expected);
+
+        for (int i = 0; i < 80_000; i++) {
+            final int value = random.nextInt(200_000);
+            assertThat(bitmap.remove(value)).isEqualTo(expected.remove(value));
+        }
+        assertMatches(bitmap, expected);
+        for (int value = 0; value < 200_000; value += 7) {
+            assertThat(bitmap.contains(value)).isEqualTo(expected.contains(value));
+        }
+    }
+
+    @Test
+    @DisplayName("Пересечение совпадает с TreeSet для массивов и битовых карт разной плотности")
+    public void testAnd() {
+        final Random random = new Random(7);
+        final int[][] shapes = {{10, 100_000}, {3_000, 70_000}, {30_000, 70_000}, {50_000, 300_000}, {1, 10}};
+        for (int[] first : shapes) {
+            for (int[] second : shapes) {
+                final RoaringBitmap firstBitmap = new RoaringBitmap();
+                final RoaringBitmap secondBitmap = new RoaringBitmap();
+                final TreeSet<Integer> expected = new TreeSet<>();
+                final TreeSet<Integer> secondValues = new TreeSet<>();
+                for (int i = 0; i < first[0]; i++) {
+                    final int value = random.nextInt(first[1]);
+                    firstBitmap.add(value);
+                    expected.add(value);
+                }
+                for (int i = 0; i < second[0]; i++) {
+                    final int value = random.nextInt(second[1]);
+                    secondBitmap.add(value);
+                    secondValues.add(value);
+                }
+                expected.retainAll(secondValues);
+
+                assertThat(RoaringBitmap.and(firstBitmap, secondBitmap))
+                        .as("first=%s/%s, second=%s/%s", first[0], first[1], second[0], second[1])
+                        .containsExactly(expected.stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Удаление всех чисел оставляет пустое множество")
+    public void testRemoveAll() {
+        final RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value = 0; value < 10_000; value++) {
+            bitmap.add(value * 3);
+        }
+        for (int value = 0; value < 10_000; value++) {
+            bitmap.remove(value * 3);
+        }
+
+        assertThat(bitmap.isEmpty()).isTrue();
+        assertThat(bitmap.toArray()).isEmpty();
+        assertThat(RoaringBitmap.and(bitmap, bitmap)).isEmpty();
+    }
+
+    private static void assertMatches(final RoaringBitmap bitmap, final TreeSet<Integer> expected) {
+        assertThat(bitmap.getCardinality()).isEqualTo(expected.size());
+        assertThat(bitmap.toArray()).containsExactly(expected.stream().mapToInt(Integer::intValue).toArray());
+    }
+}
@@ -0,0 +1,163 @@
+package ru.yandex.practicum.filmorate.index;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.cache.FilmCache;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarkChangedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@JdbcTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class SimilarFilmsIndexTest {
+
+    private static final int NEIGHBOURS = 4;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private FilmDbStorage filmDbStorage;
+    private SimilarFilmsIndex similarFilmsIndex;
+    private List<Long> filmIds;
+    private List<Long> userIds;
+
+    @BeforeEach
+    public void setUp() {
+        filmDbStorage = new FilmDbStorage(jdbcTemplate, eventPublisher);
+        similarFilmsIndex = new SimilarFilmsIndex(filmDbStorage, NEIGHBOURS);
+        jdbcTemplate.update("INSERT INTO filmorate_user (email, login, nickname, birthday) " +
+                "SELECT 'user' || x || '@mail.ru', 'user' || x, 'user' || x, DATE '1990-01-01' FROM SYSTEM_RANGE(1, 20)");
+        jdbcTemplate.update("INSERT INTO film (title, description, release_date, duration, mpa_id) " +
+                "SELECT 'film ' || x, 'description', DATE '2000-01-01', 100, 1 FROM SYSTEM_RANGE(1, 25)");
+        jdbcTemplate.update("INSERT INTO film_mark (film_id, user_id, mark) " +
+                "SELECT f.id, u.id, CASEWHEN(MOD(f.id + u.id, 5) = 0, NULL, MOD(f.id * u.id, 10) + 1) " +
+                "FROM film f, filmorate_user u WHERE MOD(f.id * 7 + u.id * 3, 11) < 3");
+        filmIds = jdbcTemplate.queryForList("SELECT id FROM film ORDER BY id", Long.class);
+        userIds = jdbcTemplate.queryForList("SELECT id FROM filmorate_user ORDER BY id", Long.class);
+    }
+
+    @Test
+    @DisplayName("Списки после построения совпадают с запросом к БД")
+    public void testRebuildMatchesDatabase() {
+        similarFilmsIndex.rebuild();
+
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Добавление, изменение и удаление оценок пересчитывают списки")
+    public void testRefreshAfterMarkChange() {
+        similarFilmsIndex.rebuild();
+        final Random random = new Random(5);
+
+        for (int i = 0; i < 150; i++) {
+            final long filmId = filmIds.get(random.nextInt(filmIds.size()));
+            final long userId = userIds.get(random.nextInt(userIds.size()));
+            final Integer mark = jdbcTemplate.query("SELECT COALESCE(mark, 0) FROM film_mark " +
+                    "WHERE film_id = ? AND user_id = ?", (rs, rowNum) -> rs.getInt(1), filmId, userId).stream()
+                    .findFirst().orElse(null);
+            if (mark != null && random.nextBoolean()) {
+                filmDbStorage.removeMarkFromFilm(filmId, userId);
+                similarFilmsIndex.onFilmMarkChanged(new FilmMarkChangedEvent(filmId, userId, null, mark,
+                        Operation.REMOVE));
+            } else {
+                final int newMark = 1 + random.nextInt(10);
+                if (mark == null) {
+                    filmDbStorage.addMarkToFilm(filmId, userId, newMark);
+                } else {
+                    jdbcTemplate.update("UPDATE film_mark SET mark = ? WHERE film_id = ? AND user_id = ?",
+                            newMark, filmId, userId);
+                }
+                similarFilmsIndex.onFilmMarkChanged(new FilmMarkChangedEvent(filmId, userId, newMark, mark,
+                        mark == null ? Operation.ADD : Operation.UPDATE));
+            }
+            assertMatchesDatabase();
+        }
+    }
+
+    @Test
+    @DisplayName("Удаление фильма убирает его из списков")
+    public void testRemoveFilm() {
+        similarFilmsIndex.rebuild();
+
+        for (long filmId : filmIds.subList(0, 10)) {
+            filmDbStorage.remove(filmId);
+            similarFilmsIndex.onFilmChanged(new FilmChangedEvent(filmId, Operation.REMOVE));
+        }
+
+        assertMatchesDatabase();
+        assertThat(similarFilmsIndex.findSimilarFilmIds(filmIds.get(0), NEIGHBOURS).orElseThrow())
+                .isEmpty();
+    }
+
+    @Test
+    @DisplayName("Запрос большего количества фильмов, чем хранится в списках, ограничивается размером списка")
+    public void testCountAboveNeighbours() {
+        similarFilmsIndex.rebuild();
+
+        assertThat(similarFilmsIndex.findSimilarFilmIds(filmIds.get(0), 1000).orElseThrow())
+                .isEqualTo(similarFilmsIndex.findSimilarFilmIds(filmIds.get(0), NEIGHBOURS).orElseThrow())
+                .hasSize(NEIGHBOURS);
+    }
+
+    @Test
+    @DisplayName("Хранилище отдает больше фильмов, чем хранится в списках, запросом к БД")
+    public void testStorageCountAboveNeighbours() {
+        similarFilmsIndex.rebuild();
+        final CachingFilmStorage filmStorage = new CachingFilmStorage(filmDbStorage,
+                new FilmCache(100, new SimpleMeterRegistry()), mock(PopularFilmsIndex.class),
+                mock(FilmSearchIndex.class), similarFilmsIndex, mock(MarkedFilmsIndex.class), mock(FilmIdsIndex.class));
+        final long filmId = filmIds.stream()
+                .filter(id -> filmDbStorage.findSimilarFilms(id, 1000).size() > NEIGHBOURS)
+                .findFirst()
+                .orElseThrow();
+
+        assertThat(ids(filmStorage.findSimilarFilms(filmId, 1000)))
+                .hasSizeGreaterThan(NEIGHBOURS)
+                .isEqualTo(ids(filmDbStorage.findSimilarFilms(filmId, 1000)));
+        assertThat(ids(filmStorage.findSimilarFilms(filmId, NEIGHBOURS)))
+                .isEqualTo(similarFilmsIndex.findSimilarFilmIds(filmId, NEIGHBOURS).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("До построения списков запросы передаются в БД")
+    public void testEmptyBeforeRebuild() {
+        assertThat(similarFilmsIndex.findSimilarFilmIds(filmIds.get(0), 1))
+                .isEmpty();
+    }
+
+    private static List<Long> ids(final Collection<Film> films) {
+        return films.stream().map(Film::getId).collect(Collectors.toList());
+    }
+
+    private void assertMatchesDatabase() {
+        for (long filmId : filmIds) {
+            for (int count = 1; count <= NEIGHBOURS; count++) {
+                assertThat(similarFilmsIndex.findSimilarFilmIds(filmId, count).orElseThrow())
+                        .as("filmId=%s, count=%s", filmId, count)
+                        .isEqualTo(filmDbStorage.findSimilarFilms(filmId, count).stream()
+                                .map(Film::getId)
+                                .collect(Collectors.toList()));
+            }
+        }
+    }
+}
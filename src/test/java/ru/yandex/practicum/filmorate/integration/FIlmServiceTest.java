@@ -28,13 +28,10 @@ class FIlmServiceTest {
     private FilmStorage filmStorage;
 
     @Mock
-    private UserStorage userStorage;
-
-    @Mock
-    private DirectorStorage directorStorage;
+    private EventStorage eventStorage;
 
     @Mock
-    private EventStorage eventStorage;
+    private ReferenceStorage referenceStorage;
 
 
     @InjectMocks
@@ -44,7 +41,7 @@ class FIlmServiceTest {
 
     @BeforeAll
     public void beforeAll() {
-        filmService = new FilmServiceImpl(filmStorage, userStorage, directorStorage, eventStorage);
+        filmService = new FilmServiceImpl(filmStorage, eventStorage, referenceStorage);
     }
 
     @BeforeEach
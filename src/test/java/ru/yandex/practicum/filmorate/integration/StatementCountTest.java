@@ -0,0 +1,181 @@
+package ru.yandex.practicum.filmorate.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.ReviewDto;
+import ru.yandex.practicum.filmorate.dto.UserDto;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.ReviewLike;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.ReviewService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.RecordingJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Количество запросов к БД, которое выполняют изменяющие данные запросы API. Все ссылки запроса проверяются не
+ * больше чем одним запросом, а результат строится из данных, полученных при изменении.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statement-count;DB_CLOSE_DELAY=-1",
+        "filmorate.recommendations.neighbours.refresh-delay-ms=3600000",
+        "filmorate.recommendations.factorization.model-file=target/test-db/statement-count-factors.bin"
+})
+@DirtiesContext
+class StatementCountTest {
+
+    @Autowired
+    private RecordingJdbcTemplate recordingJdbcTemplate;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    private FilmDto film;
+    private UserDto user;
+
+    @TestConfiguration
+    static class RecordingConfiguration {
+
+        @Bean
+        @Primary
+        public RecordingJdbcTemplate recordingJdbcTemplate(final DataSource dataSource) {
+            return new RecordingJdbcTemplate(new JdbcTemplate(dataSource));
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        film = filmService.addFilm(FilmDto.builder()
+                .name("film")
+                .description("description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Mpa(1, "G"))
+                .build());
+        user = userService.addUser(UserDto.builder()
+                .email("user" + film.getId() + "@mail.ru")
+                .login("user" + film.getId())
+                .name("user")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+        filmService.getFilmById(film.getId());
+        recordingJdbcTemplate.clear();
+    }
+
+    @Test
+    @DisplayName("Оценка фильма: запись оценки, обновление рейтинга и событие ленты, без проверок и перечитывания")
+    public void testAddAndRemoveMark() {
+        final FilmDto marked = filmService.addMarkToFilm(film.getId(), user.getId(), 8);
+
+        assertMarkStatements("SELECT mark FROM OLD TABLE (MERGE");
+        assertThat(marked.getRating()).isEqualTo(8.0);
+        assertThat(marked).isEqualTo(filmService.getFilmById(film.getId()));
+
+        filmService.getFilmById(film.getId());
+        recordingJdbcTemplate.clear();
+        final FilmDto unmarked = filmService.removeMarkFromFilm(film.getId(), user.getId());
+
+        assertMarkStatements("SELECT mark FROM OLD TABLE (DELETE");
+        assertThat(unmarked.getRating()).isZero();
+        assertThat(unmarked).isEqualTo(filmService.getFilmById(film.getId()));
+    }
+
+    @Test
+    @DisplayName("Несуществующий фильм проверяется одним запросом, а отсутствующий в множестве пользователь - без БД")
+    public void testMarkWithAbsentReferences() {
+        assertThatThrownBy(() -> filmService.addMarkToFilm(-1, -2, 8))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("Фильм с id '-1' не найден.");
+        assertThat(statements()).hasSize(1);
+
+        recordingJdbcTemplate.clear();
+        assertThatThrownBy(() -> filmService.addMarkToFilm(film.getId(), -2, 8))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("Пользователь с id '-2' не найден.");
+        assertThat(statements()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Общие фильмы существующих пользователей не требуют проверочных запросов")
+    public void testCommonFilms() {
+        filmService.getCommonFilms(user.getId(), user.getId());
+
+        assertThat(statements()).noneMatch(sql -> sql.contains("EXISTS"));
+    }
+
+    @Test
+    @DisplayName("Отзыв: добавление, обновление и оценка без перечитывания отзыва")
+    public void testReview() {
+        final ReviewDto review = reviewService.addReview(ReviewDto.builder()
+                .content("content")
+                .isPositive(true)
+                .userId(user.getId())
+                .filmId(film.getId())
+                .build());
+
+        assertThat(statements()).hasSize(2);
+        assertThat(review).isEqualTo(reviewService.getReviewById(review.getReviewId()));
+
+        recordingJdbcTemplate.clear();
+        review.setContent("updated");
+        final ReviewDto updated = reviewService.updateReview(review);
+
+        assertThat(statements()).hasSize(2);
+        assertThat(updated).isEqualTo(reviewService.getReviewById(review.getReviewId()));
+
+        recordingJdbcTemplate.clear();
+        final ReviewDto liked = reviewService.addLikeOrDislikeToReview(review.getReviewId(), user.getId(),
+                ReviewLike.LIKE.name());
+
+        assertThat(statements()).hasSize(3);
+        assertThat(liked.getUseful()).isEqualTo(1);
+        assertThat(liked).isEqualTo(reviewService.getReviewById(review.getReviewId()));
+
+        recordingJdbcTemplate.clear();
+        final ReviewDto unliked = reviewService.deleteLikeOrDislikeFromReview(review.getReviewId(), user.getId(),
+                ReviewLike.LIKE.name());
+
+        assertThat(statements()).hasSize(3);
+        assertThat(unliked.getUseful()).isZero();
+    }
+
+    /**
+     * Три запроса в транзакции запроса и четыре чтения после фиксации, которыми обновляются индексы популярных и
+     * похожих фильмов, оценки пользователя для рекомендаций и вкус пользователя для рекомендаций по содержанию.
+     */
+    private void assertMarkStatements(final String markStatement) {
+        final List<String> statements = statements();
+        assertThat(statements).hasSize(7);
+        assertThat(statements.subList(0, 3)).satisfiesExactly(
+                sql -> assertThat(sql).startsWith(markStatement),
+                sql -> assertThat(sql).startsWith("SELECT rating FROM FINAL TABLE (UPDATE film"),
+                sql -> assertThat(sql).startsWith("INSERT INTO feed_events"));
+        assertThat(statements.subList(3, 7)).allMatch(sql -> sql.startsWith("SELECT"));
+    }
+
+    private List<String> statements() {
+        return recordingJdbcTemplate.getCurrentThreadStatements();
+    }
+}
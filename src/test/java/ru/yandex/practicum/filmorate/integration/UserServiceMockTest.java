@@ -1,29 +1,33 @@
 package ru.yandex.practicum.filmorate.integration;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import ru.yandex.practicum.filmorate.dao.EventStorage;
+import ru.yandex.practicum.filmorate.cache.RecommendationCache;
 import ru.yandex.practicum.filmorate.dao.FilmStorage;
-import ru.yandex.practicum.filmorate.dao.FriendshipStorage;
-import ru.yandex.practicum.filmorate.dao.UserStorage;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.mapper.FilmMapper;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.FilmMark;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
-import ru.yandex.practicum.filmorate.service.impl.UserServiceImpl;
+import ru.yandex.practicum.filmorate.recommendation.ContentEngine;
+import ru.yandex.practicum.filmorate.recommendation.FactorizationEngine;
+import ru.yandex.practicum.filmorate.recommendation.RecommendationEngine;
+import ru.yandex.practicum.filmorate.recommendation.RecommendationStrategy;
+import ru.yandex.practicum.filmorate.service.impl.RecommendationServiceImpl;
 
 import java.time.LocalDate;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -32,16 +36,18 @@ import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
 public class UserServiceMockTest {
 
-    @Mock
-    private UserStorage userStorage;
     @Mock
     private FilmStorage filmStorage;
     @Mock
-    private FriendshipStorage friendshipStorage;
+    private RecommendationEngine recommendationEngine;
+    @Mock
+    private FactorizationEngine factorizationEngine;
     @Mock
-    private EventStorage eventStorage;
+    private ContentEngine contentEngine;
+    @Spy
+    private RecommendationCache recommendationCache = new RecommendationCache(100, 60000, new SimpleMeterRegistry());
     @InjectMocks
-    private UserServiceImpl userService;
+    private RecommendationServiceImpl recommendationService;
 
     private User user1;
     private User user2;
@@ -82,7 +88,7 @@ public class UserServiceMockTest {
         film2.setRating(5);
         film4.setRating(9.0);
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -111,7 +117,7 @@ public class UserServiceMockTest {
         film2.setRating(6.0);
         film4.setRating(9.0);
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -146,7 +152,7 @@ public class UserServiceMockTest {
         film2.setRating(5.5);
         film4.setRating(9.0);
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -169,9 +175,7 @@ public class UserServiceMockTest {
                 ))
         );
 
-        when(filmStorage.findFilmsByIds(Collections.emptySet())).thenReturn(Collections.emptySet());
-
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -203,7 +207,7 @@ public class UserServiceMockTest {
 
         film4.setRating(9.0);
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -237,7 +241,7 @@ public class UserServiceMockTest {
 
         film4.setRating(9.0);
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -256,7 +260,7 @@ public class UserServiceMockTest {
                 ))
         );
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -289,7 +293,7 @@ public class UserServiceMockTest {
         film2.setRating(5.0);
         film4.setRating(2.0);
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -319,13 +323,98 @@ public class UserServiceMockTest {
 
         when(filmStorage.findFilmsByIds(Set.of(2L, 4L))).thenReturn(List.of(film2, film4));
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
                 .isEmpty();
     }
 
+    @Test
+    @DisplayName("Тест получения рекомендаций по матричному разложению")
+    public void findRecommendationsByFactorization() {
+        when(factorizationEngine.findRecommendedFilmIds(user1.getId())).thenReturn(Optional.of(List.of(4L, 2L, 3L)));
+        when(filmStorage.findFilmsByIds(Set.of(4L, 2L, 3L))).thenReturn(List.of(film4, film2, film3));
+
+        film2.setRating(6.0);
+        film3.setRating(4.0);
+        film4.setRating(9.0);
+
+        Collection<FilmDto> recommendations =
+                recommendationService.showRecommendations(user1.getId(), RecommendationStrategy.FACTORIZATION);
+
+        assertThat(recommendations)
+                .usingRecursiveComparison()
+                .isEqualTo(List.of(FilmMapper.toDto(film4), FilmMapper.toDto(film2)));
+    }
+
+    @Test
+    @DisplayName("Тест получения рекомендаций для пользователя, которого нет в модели")
+    public void findRecommendationsByFactorizationForUnknownUser() {
+        when(factorizationEngine.findRecommendedFilmIds(user1.getId())).thenReturn(Optional.empty());
+        when(filmStorage.findUserIdFilmMarks()).thenReturn(Map.of(
+                user1.getId(), Set.of(new FilmMark(user1.getId(), film1.getId(), 8)),
+                user2.getId(), Set.of(
+                        new FilmMark(user2.getId(), film1.getId(), 8),
+                        new FilmMark(user2.getId(), film2.getId(), 6)
+                ))
+        );
+        when(filmStorage.findFilmsByIds(Set.of(2L))).thenReturn(List.of(film2));
+
+        film2.setRating(6.0);
+
+        Collection<FilmDto> recommendations =
+                recommendationService.showRecommendations(user1.getId(), RecommendationStrategy.FACTORIZATION);
+
+        assertThat(recommendations)
+                .usingRecursiveComparison()
+                .isEqualTo(List.of(FilmMapper.toDto(film2)));
+    }
+
+    @Test
+    @DisplayName("Рекомендации, подобранные без движка по содержанию, не кэшируются как рекомендации по содержанию")
+    public void findRecommendationsByContentFallbackIsNotCachedAsContent() {
+        when(contentEngine.findRecommendedFilmIds(user1.getId()))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(List.of(3L)));
+        when(filmStorage.findUserIdFilmMarks()).thenReturn(Map.of(
+                user1.getId(), Set.of(new FilmMark(user1.getId(), film1.getId(), 8)),
+                user2.getId(), Set.of(
+                        new FilmMark(user2.getId(), film1.getId(), 8),
+                        new FilmMark(user2.getId(), film2.getId(), 6)
+                ))
+        );
+        when(filmStorage.findFilmsByIds(Set.of(2L))).thenReturn(List.of(film2));
+        when(filmStorage.findFilmsByIds(Set.of(3L))).thenReturn(List.of(film3));
+
+        film2.setRating(6.0);
+        film3.setRating(8.0);
+
+        assertThat(recommendationService.showRecommendations(user1.getId(), RecommendationStrategy.CONTENT))
+                .usingRecursiveComparison()
+                .isEqualTo(List.of(FilmMapper.toDto(film2)));
+        assertThat(recommendationService.showRecommendations(user1.getId(), RecommendationStrategy.CONTENT))
+                .usingRecursiveComparison()
+                .isEqualTo(List.of(FilmMapper.toDto(film3)));
+    }
+
+    @Test
+    @DisplayName("Тест получения рекомендаций по содержанию фильмов")
+    public void findRecommendationsByContent() {
+        when(contentEngine.findRecommendedFilmIds(user1.getId())).thenReturn(Optional.of(List.of(3L, 4L)));
+        when(filmStorage.findFilmsByIds(Set.of(3L, 4L))).thenReturn(List.of(film3, film4));
+
+        film3.setRating(8.0);
+        film4.setRating(5.0);
+
+        Collection<FilmDto> recommendations =
+                recommendationService.showRecommendations(user1.getId(), RecommendationStrategy.CONTENT);
+
+        assertThat(recommendations)
+                .usingRecursiveComparison()
+                .isEqualTo(List.of(FilmMapper.toDto(film3)));
+    }
+
     private User createUser(int id) {
         return User.builder()
                 .id(id)
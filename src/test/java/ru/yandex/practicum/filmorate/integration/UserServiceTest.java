@@ -3,22 +3,24 @@ package ru.yandex.practicum.filmorate.integration;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
-import ru.yandex.practicum.filmorate.dao.EventStorage;
+import ru.yandex.practicum.filmorate.cache.RecommendationCache;
 import ru.yandex.practicum.filmorate.dao.FilmStorage;
-import ru.yandex.practicum.filmorate.dao.FriendshipStorage;
 import ru.yandex.practicum.filmorate.dao.UserStorage;
-import ru.yandex.practicum.filmorate.dao.impl.EventDbStorage;
 import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
-import ru.yandex.practicum.filmorate.dao.impl.FriendshipDbStorage;
 import ru.yandex.practicum.filmorate.dao.impl.UserDbStorage;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.mapper.FilmMapper;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
-import ru.yandex.practicum.filmorate.service.UserService;
-import ru.yandex.practicum.filmorate.service.impl.UserServiceImpl;
+import ru.yandex.practicum.filmorate.recommendation.ContentEngine;
+import ru.yandex.practicum.filmorate.recommendation.FactorizationEngine;
+import ru.yandex.practicum.filmorate.recommendation.RecommendationEngine;
+import ru.yandex.practicum.filmorate.recommendation.RecommendationStrategy;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.service.impl.RecommendationServiceImpl;
 
 import java.time.LocalDate;
 import java.util.Collection;
@@ -26,14 +28,29 @@ import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-@SpringBootTest
+@SpringBootTest(properties = "filmorate.recommendations.factorization.model-file=target/test-db/factors.bin")
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public class UserServiceTest {
 
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
-    private UserService userService;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private RecommendationEngine recommendationEngine;
+
+    @Autowired
+    private FactorizationEngine factorizationEngine;
+
+    @Autowired
+    private ContentEngine contentEngine;
+
+    @Autowired
+    private RecommendationCache recommendationCache;
+
+    private RecommendationService recommendationService;
     private UserStorage userStorage;
     private FilmStorage filmStorage;
 
@@ -48,10 +65,9 @@ public class UserServiceTest {
     @BeforeAll
     public void beforeAll() {
         userStorage = new UserDbStorage(jdbcTemplate);
-        filmStorage = new FilmDbStorage(jdbcTemplate);
-        FriendshipStorage friendshipStorage = new FriendshipDbStorage(jdbcTemplate);
-        EventStorage eventStorage = new EventDbStorage(jdbcTemplate);
-        userService = new UserServiceImpl(userStorage, filmStorage, friendshipStorage, eventStorage);
+        filmStorage = new FilmDbStorage(jdbcTemplate, eventPublisher);
+        recommendationService = new RecommendationServiceImpl(filmStorage, recommendationEngine, factorizationEngine,
+                contentEngine, recommendationCache, RecommendationStrategy.CLOSEST_USER);
     }
 
     @BeforeEach
@@ -84,7 +100,7 @@ public class UserServiceTest {
 
         film4.setRating(9.0);
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -106,7 +122,7 @@ public class UserServiceTest {
         film2.setRating(6.0);
         film4.setRating(9.0);
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -115,6 +131,35 @@ public class UserServiceTest {
                 .isEqualTo(List.of(FilmMapper.toDto(film2), FilmMapper.toDto(film4)));
     }
 
+    @Test
+    @DisplayName("Тест повторного получения рекомендаций из кэша и обновления после оценки схожего пользователя")
+    public void findCachedRecommendations() {
+        filmStorage.addMarkToFilm(film1.getId(), user1.getId(), 8);
+        filmStorage.addMarkToFilm(film3.getId(), user1.getId(), 7);
+
+        filmStorage.addMarkToFilm(film1.getId(), user2.getId(), 8);
+        filmStorage.addMarkToFilm(film4.getId(), user2.getId(), 9);
+
+        film2.setRating(7.0);
+        film4.setRating(9.0);
+
+        Collection<FilmDto> first = recommendationService.showRecommendations(user1.getId());
+        long hits = recommendationCache.getHits();
+        Collection<FilmDto> second = recommendationService.showRecommendations(user1.getId());
+
+        assertThat(recommendationCache.getHits()).isEqualTo(hits + 1);
+        assertThat(second)
+                .usingRecursiveComparison()
+                .isEqualTo(first)
+                .isEqualTo(List.of(FilmMapper.toDto(film4)));
+
+        filmStorage.addMarkToFilm(film2.getId(), user2.getId(), 7);
+
+        assertThat(recommendationService.showRecommendations(user1.getId()))
+                .usingRecursiveComparison()
+                .isEqualTo(List.of(FilmMapper.toDto(film2), FilmMapper.toDto(film4)));
+    }
+
     @Test
     @DisplayName("Тест получения рекомендаций с разным количеством совпавших оцененных фильмов")
     public void findRecommendations() {
@@ -130,7 +175,7 @@ public class UserServiceTest {
         filmStorage.addMarkToFilm(film4.getId(), user3.getId(), 9);
         film4.setRating(9.0);
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -148,7 +193,7 @@ public class UserServiceTest {
         filmStorage.addMarkToFilm(film1.getId(), user2.getId(), 8);
         filmStorage.addMarkToFilm(film3.getId(), user2.getId(), 7);
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -170,7 +215,7 @@ public class UserServiceTest {
         filmStorage.addMarkToFilm(film4.getId(), user3.getId(), 9);
         film4.setRating(9.0);
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -195,7 +240,7 @@ public class UserServiceTest {
         filmStorage.addMarkToFilm(film3.getId(), user3.getId(), 10);
         film4.setRating(9.0);
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -210,7 +255,7 @@ public class UserServiceTest {
         filmStorage.addMarkToFilm(film1.getId(), user1.getId(), 8);
         filmStorage.addMarkToFilm(film3.getId(), user1.getId(), 7);
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -233,7 +278,7 @@ public class UserServiceTest {
         filmStorage.addMarkToFilm(film3.getId(), user3.getId(), 10);
         film4.setRating(9.0);
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -256,7 +301,7 @@ public class UserServiceTest {
         filmStorage.addMarkToFilm(film3.getId(), user3.getId(), 1);
         film4.setRating(9.0);
 
-        Collection<FilmDto> recommendations = userService.showRecommendations(user1.getId());
+        Collection<FilmDto> recommendations = recommendationService.showRecommendations(user1.getId());
 
         assertThat(recommendations)
                 .isNotNull()
@@ -0,0 +1,228 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarkChangedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.impl.GenreDbStorage;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class ContentEngineTest {
+
+    private static final int COUNT = 5;
+    private static final double EPSILON = 1e-4;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private FilmDbStorage filmDbStorage;
+    private ContentEngine contentEngine;
+    private List<Long> userIds;
+
+    @BeforeEach
+    public void setUp() {
+        filmDbStorage = new FilmDbStorage(jdbcTemplate, eventPublisher);
+        contentEngine = new ContentEngine(filmDbStorage, new GenreDbStorage(jdbcTemplate), 1024, COUNT,
+                new SimpleMeterRegistry());
+        jdbcTemplate.update("INSERT INTO filmorate_user (email, login, nickname, birthday) " +
+                "SELECT 'user' || x || '@mail.ru', 'user' || x, 'user' || x, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, 30)");
+        jdbcTemplate.update("INSERT INTO film (title, description, release_date, duration, mpa_id) " +
+                "SELECT 'film ' || x, 'description', DATE '2000-01-01', 100, 1 FROM SYSTEM_RANGE(1, 40)");
+        jdbcTemplate.update("INSERT INTO director (director_name) SELECT 'director ' || x FROM SYSTEM_RANGE(1, 8)");
+        jdbcTemplate.update("INSERT INTO film_genre (film_id, genre_id) " +
+                "SELECT f.id, g.id FROM film f, genre g WHERE MOD(f.id + g.id, 4) = 0 OR MOD(f.id * g.id, 7) = 1");
+        jdbcTemplate.update("INSERT INTO film_director (film_id, director_id) " +
+                "SELECT f.id, d.id FROM film f, director d WHERE MOD(f.id, 8) = MOD(d.id, 8) AND MOD(f.id, 5) > 0");
+        jdbcTemplate.update("INSERT INTO film_mark (film_id, user_id, mark) " +
+                "SELECT f.id, u.id, CASEWHEN(MOD(f.id + u.id, 7) = 0, NULL, MOD(f.id * u.id, 10) + 1) " +
+                "FROM film f, filmorate_user u WHERE MOD(f.id * 7 + u.id * 3, 11) < MOD(u.id, 4)");
+        userIds = jdbcTemplate.queryForList("SELECT id FROM filmorate_user ORDER BY id", Long.class);
+    }
+
+    @Test
+    @DisplayName("Рекомендации после построения совпадают с расчетом по жанрам, режиссерам и оценкам из БД")
+    public void testRebuildMatchesDatabase() {
+        contentEngine.rebuild();
+
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Добавление, изменение и удаление оценок обновляют вкус пользователя")
+    public void testMarkChanges() {
+        contentEngine.rebuild();
+        final List<Long> filmIds = jdbcTemplate.queryForList("SELECT id FROM film ORDER BY id", Long.class);
+
+        for (int i = 0; i < 20; i++) {
+            final long userId = userIds.get(i);
+            final long filmId = filmIds.get(i * 3 % filmIds.size());
+            final Integer mark = i % 4 == 0 ? null : 1 + i % 10;
+            filmDbStorage.addMarkToFilm(filmId, userId, mark);
+            contentEngine.onFilmMarkChanged(new FilmMarkChangedEvent(filmId, userId, mark, null, Operation.ADD));
+        }
+        assertMatchesDatabase();
+
+        for (int i = 0; i < 10; i++) {
+            final long userId = userIds.get(i);
+            final long filmId = filmIds.get(i * 3 % filmIds.size());
+            filmDbStorage.removeMarkFromFilm(filmId, userId);
+            contentEngine.onFilmMarkChanged(new FilmMarkChangedEvent(filmId, userId, null, null, Operation.REMOVE));
+        }
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Вкус соответствует оценке в БД, даже если события об изменениях пришли не по порядку")
+    public void testMarkEventsOutOfOrder() {
+        contentEngine.rebuild();
+        final long userId = userIds.get(0);
+        final long filmId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM film", Long.class);
+
+        filmDbStorage.addMarkToFilm(filmId, userId, 9);
+        filmDbStorage.addMarkToFilm(filmId, userId, 2);
+        contentEngine.onFilmMarkChanged(new FilmMarkChangedEvent(filmId, userId, 2, 9, Operation.UPDATE));
+        contentEngine.onFilmMarkChanged(new FilmMarkChangedEvent(filmId, userId, 9, null, Operation.ADD));
+
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Изменение жанров и удаление фильма обновляют векторы фильмов и вкусы оценивших их пользователей")
+    public void testFilmChanges() {
+        contentEngine.rebuild();
+        final List<Long> filmIds = jdbcTemplate.queryForList("SELECT id FROM film ORDER BY id", Long.class);
+
+        for (long filmId : filmIds.subList(0, 10)) {
+            jdbcTemplate.update("DELETE FROM film_genre WHERE film_id = ?", filmId);
+            jdbcTemplate.update("INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)", filmId, 1 + filmId % 3);
+            contentEngine.onFilmChanged(new FilmChangedEvent(filmId, Operation.UPDATE));
+        }
+        assertMatchesDatabase();
+
+        for (long filmId : filmIds.subList(10, 20)) {
+            filmDbStorage.remove(filmId);
+            contentEngine.onFilmChanged(new FilmChangedEvent(filmId, Operation.REMOVE));
+        }
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Пользователю с одной оценкой рекомендуются фильмы с теми же жанрами")
+    public void testSingleMark() {
+        final long userId = userIds.get(0);
+        jdbcTemplate.update("DELETE FROM film_mark WHERE user_id = ?", userId);
+        contentEngine.rebuild();
+        final long filmId = jdbcTemplate.queryForObject("SELECT MIN(film_id) FROM film_genre", Long.class);
+        final Set<Integer> genreIds = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT genre_id FROM film_genre WHERE film_id = ?", Integer.class, filmId));
+
+        filmDbStorage.addMarkToFilm(filmId, userId, 10);
+        contentEngine.onFilmMarkChanged(new FilmMarkChangedEvent(filmId, userId, 10, null, Operation.ADD));
+
+        final List<Long> recommendedFilmIds = contentEngine.findRecommendedFilmIds(userId).orElseThrow();
+        assertThat(recommendedFilmIds).hasSize(COUNT).doesNotContain(filmId);
+        for (long recommendedFilmId : recommendedFilmIds) {
+            assertThat(jdbcTemplate.queryForList("SELECT genre_id FROM film_genre WHERE film_id = ?", Integer.class,
+                    recommendedFilmId))
+                    .containsAnyElementsOf(genreIds);
+        }
+    }
+
+    @Test
+    @DisplayName("Пользователь без оценок получает пустой список, до построения запросы не обрабатываются")
+    public void testEmptyResults() {
+        final long userId = userIds.get(0);
+        jdbcTemplate.update("DELETE FROM film_mark WHERE user_id = ?", userId);
+
+        assertThat(contentEngine.findRecommendedFilmIds(userId)).isEmpty();
+
+        contentEngine.rebuild();
+
+        assertThat(contentEngine.findRecommendedFilmIds(userId).orElseThrow()).isEmpty();
+    }
+
+    /**
+     * Сравнение рекомендаций с близостью, посчитанной напрямую по БД: сумма по оцененным фильмам веса оценки,
+     * умноженного на косинус между множествами жанров и режиссеров фильмов. Рекомендации должны идти по убыванию
+     * близости, а все не попавшие в них фильмы - быть не ближе последнего рекомендованного.
+     */
+    private void assertMatchesDatabase() {
+        final Map<Long, Set<String>> filmFeatures = new HashMap<>();
+        jdbcTemplate.queryForList("SELECT id FROM film", Long.class)
+                .forEach(filmId -> filmFeatures.put(filmId, new HashSet<>()));
+        jdbcTemplate.query("SELECT film_id, genre_id FROM film_genre", rs -> {
+            filmFeatures.get(rs.getLong(1)).add("g" + rs.getInt(2));
+        });
+        jdbcTemplate.query("SELECT film_id, director_id FROM film_director", rs -> {
+            filmFeatures.get(rs.getLong(1)).add("d" + rs.getInt(2));
+        });
+        for (long userId : userIds) {
+            final Map<Long, Double> weights = new HashMap<>();
+            jdbcTemplate.query("SELECT film_id, mark FROM film_mark WHERE user_id = ?", rs -> {
+                final int mark = rs.getInt(2);
+                weights.put(rs.getLong(1), (mark == 0 ? 6 : mark) - 5.5);
+            }, userId);
+            final Map<Long, Double> scores = new HashMap<>();
+            for (Map.Entry<Long, Set<String>> film : filmFeatures.entrySet()) {
+                if (weights.containsKey(film.getKey())) {
+                    continue;
+                }
+                double score = 0;
+                for (Map.Entry<Long, Double> rated : weights.entrySet()) {
+                    score += rated.getValue() * cosine(filmFeatures.get(rated.getKey()), film.getValue());
+                }
+                if (score > EPSILON) {
+                    scores.put(film.getKey(), score);
+                }
+            }
+
+            final List<Long> recommendedFilmIds = contentEngine.findRecommendedFilmIds(userId).orElseThrow();
+
+            assertThat(recommendedFilmIds)
+                    .as("userId=%s", userId)
+                    .hasSize(Math.min(COUNT, scores.size()))
+                    .noneMatch(weights::containsKey);
+            for (int i = 1; i < recommendedFilmIds.size(); i++) {
+                assertThat(scores.get(recommendedFilmIds.get(i)))
+                        .as("userId=%s", userId)
+                        .isLessThanOrEqualTo(scores.get(recommendedFilmIds.get(i - 1)) + EPSILON);
+            }
+            if (!recommendedFilmIds.isEmpty()) {
+                final double last = scores.get(recommendedFilmIds.get(recommendedFilmIds.size() - 1));
+                scores.keySet().removeAll(recommendedFilmIds);
+                assertThat(scores.values())
+                        .as("userId=%s", userId)
+                        .allMatch(score -> score <= last + EPSILON);
+            }
+        }
+    }
+
+    private static double cosine(final Set<String> first, final Set<String> second) {
+        if (first.isEmpty() || second.isEmpty()) {
+            return 0;
+        }
+        final Set<String> common = new HashSet<>(first);
+        common.retainAll(second);
+        return common.size() / Math.sqrt((double) first.size() * second.size());
+    }
+}
@@ -0,0 +1,209 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.index.MarkedFilmsIndex;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class FactorizationEngineTest {
+
+    private static final int COUNT = 5;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    @TempDir
+    Path directory;
+    private FilmDbStorage filmDbStorage;
+    private List<Long> userIds;
+
+    @BeforeEach
+    public void setUp() {
+        filmDbStorage = new FilmDbStorage(jdbcTemplate, eventPublisher);
+        jdbcTemplate.update("INSERT INTO filmorate_user (email, login, nickname, birthday) " +
+                "SELECT 'user' || x || '@mail.ru', 'user' || x, 'user' || x, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, 40)");
+        jdbcTemplate.update("INSERT INTO film (title, description, release_date, duration, mpa_id) " +
+                "SELECT 'film ' || x, 'description', DATE '2000-01-01', 100, 1 FROM SYSTEM_RANGE(1, 30)");
+        jdbcTemplate.update("INSERT INTO film_mark (film_id, user_id, mark) " +
+                "SELECT f.id, u.id, CASEWHEN(MOD(f.id + u.id, 7) = 0, NULL, MOD(f.id * u.id, 10) + 1) " +
+                "FROM film f, filmorate_user u WHERE MOD(f.id * 7 + u.id * 3, 11) < MOD(u.id, 6) + 1");
+        userIds = jdbcTemplate.queryForList("SELECT DISTINCT user_id FROM film_mark ORDER BY user_id", Long.class);
+    }
+
+    @Test
+    @DisplayName("Рекомендации не содержат оцененных пользователем фильмов")
+    public void testRecommendationsExcludeRatedFilms() {
+        final FactorizationEngine engine = createEngine(directory.resolve("factors.bin"), 2, new SimpleMeterRegistry());
+        engine.afterSingletonsInstantiated();
+
+        for (long userId : userIds) {
+            final Set<Long> ratedFilmIds = new HashSet<>(jdbcTemplate.queryForList(
+                    "SELECT film_id FROM film_mark WHERE user_id = ?", Long.class, userId));
+            final List<Long> recommendedFilmIds = engine.findRecommendedFilmIds(userId).orElseThrow();
+
+            assertThat(recommendedFilmIds)
+                    .hasSize(Math.min(COUNT, 30 - ratedFilmIds.size()))
+                    .doesNotHaveDuplicates()
+                    .doesNotContainAnyElementsOf(ratedFilmIds);
+        }
+    }
+
+    @Test
+    @DisplayName("Модель из файла и модель, обученная другим количеством потоков, дают те же рекомендации")
+    public void testModelIsReproducible() {
+        final Path modelFile = directory.resolve("factors.bin");
+        final FactorizationEngine trained = createEngine(modelFile, 1, new SimpleMeterRegistry());
+        trained.afterSingletonsInstantiated();
+        assertThat(modelFile).exists();
+
+        final FactorizationEngine loaded = createEngine(modelFile, 1, new SimpleMeterRegistry());
+        loaded.afterSingletonsInstantiated();
+        final FactorizationEngine parallel = createEngine(directory.resolve("parallel.bin"), 4,
+                new SimpleMeterRegistry());
+        parallel.afterSingletonsInstantiated();
+
+        for (long userId : userIds) {
+            final Optional<List<Long>> expected = trained.findRecommendedFilmIds(userId);
+            assertThat(loaded.findRecommendedFilmIds(userId)).isEqualTo(expected);
+            assertThat(parallel.findRecommendedFilmIds(userId)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("Для пользователя, которого не было при обучении, рекомендаций нет")
+    public void testUnknownUser() {
+        final FactorizationEngine engine = createEngine(directory.resolve("factors.bin"), 2, new SimpleMeterRegistry());
+
+        assertThat(engine.findRecommendedFilmIds(userIds.get(0))).isEmpty();
+
+        engine.afterSingletonsInstantiated();
+
+        assertThat(engine.findRecommendedFilmIds(Long.MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Поврежденный файл модели заменяется новым обучением")
+    public void testCorruptedModelFile() throws Exception {
+        final Path modelFile = directory.resolve("factors.bin");
+        Files.write(modelFile, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        final FactorizationEngine engine = createEngine(modelFile, 2, new SimpleMeterRegistry());
+
+        engine.afterSingletonsInstantiated();
+
+        assertThat(engine.findRecommendedFilmIds(userIds.get(0))).isPresent();
+        assertThat(FactorModel.load(modelFile).getUserCount()).isEqualTo(userIds.size());
+    }
+
+    @Test
+    @DisplayName("Файл модели, обученной на других оценках, заменяется новым обучением")
+    public void testStaleModelFile() {
+        final Path modelFile = directory.resolve("factors.bin");
+        createEngine(modelFile, 2, new SimpleMeterRegistry()).afterSingletonsInstantiated();
+        final long userId = userIds.get(0);
+        jdbcTemplate.update("DELETE FROM film_mark WHERE user_id = ?", userId);
+        final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final FactorizationEngine engine = createEngine(modelFile, 2, meterRegistry);
+
+        engine.afterSingletonsInstantiated();
+
+        assertThat(meterRegistry.get("recommendations.training").timer().count()).isEqualTo(1);
+        assertThat(engine.findRecommendedFilmIds(userId)).isEmpty();
+        final MeterRegistry reloadedMeterRegistry = new SimpleMeterRegistry();
+        createEngine(modelFile, 2, reloadedMeterRegistry).afterSingletonsInstantiated();
+        assertThat(reloadedMeterRegistry.get("recommendations.training").timer().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Фильмы, оцененные после обучения, не рекомендуются")
+    public void testFilmsMarkedAfterTraining() {
+        final FactorizationEngine engine = createEngine(directory.resolve("factors.bin"), 2, new SimpleMeterRegistry());
+        engine.afterSingletonsInstantiated();
+        final long userId = userIds.get(0);
+        final List<Long> recommendedFilmIds = engine.findRecommendedFilmIds(userId).orElseThrow();
+
+        filmDbStorage.addMarkToFilm(recommendedFilmIds.get(0), userId, 7);
+
+        assertThat(engine.findRecommendedFilmIds(userId).orElseThrow())
+                .doesNotContain(recommendedFilmIds.get(0))
+                .containsAll(recommendedFilmIds.subList(1, recommendedFilmIds.size()));
+    }
+
+    @Test
+    @DisplayName("Ошибка модели на обучающих оценках уменьшается с количеством итераций")
+    public void testTrainingReducesError() {
+        final RatingsData.Builder builder = new RatingsData.Builder();
+        filmDbStorage.streamFilmMarks(builder::add);
+        final RatingsData ratings = builder.build();
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            final AlsTrainer once = new AlsTrainer(8, 0.1, 1);
+            final float[][] onceFactors = once.train(ratings, pool);
+            final AlsTrainer tenTimes = new AlsTrainer(8, 0.1, 10);
+            final float[][] tenTimesFactors = tenTimes.train(ratings, pool);
+
+            assertThat(tenTimes.rootMeanSquaredError(ratings, tenTimesFactors[0], tenTimesFactors[1]))
+                    .isLessThan(once.rootMeanSquaredError(ratings, onceFactors[0], onceFactors[1]));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Если файл модели не удается записать, движок запускается без модели")
+    public void testUnwritableModelFile() throws IOException {
+        final Path notDirectory = Files.writeString(directory.resolve("not-a-directory"), "");
+        final FactorizationEngine engine = createEngine(notDirectory.resolve("factors.bin"), 2,
+                new SimpleMeterRegistry());
+
+        engine.afterSingletonsInstantiated();
+
+        assertThat(engine.findRecommendedFilmIds(userIds.get(0))).isEmpty();
+        assertThat(engine.getModelVersion()).isZero();
+    }
+
+    @Test
+    @DisplayName("Время обучения и подбора рекомендаций публикуется в метриках")
+    public void testMetrics() {
+        final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final FactorizationEngine engine = createEngine(directory.resolve("factors.bin"), 2, meterRegistry);
+
+        engine.afterSingletonsInstantiated();
+        engine.findRecommendedFilmIds(userIds.get(0));
+        engine.findRecommendedFilmIds(userIds.get(1));
+
+        assertThat(meterRegistry.get("recommendations.training").tag("strategy", "factorization").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("recommendations.scoring").tag("strategy", "factorization").timer().count())
+                .isEqualTo(2);
+    }
+
+    private FactorizationEngine createEngine(final Path modelFile, final int parallelism,
+                                             final MeterRegistry meterRegistry) {
+        return new FactorizationEngine(filmDbStorage, new MarkedFilmsIndex(filmDbStorage), modelFile, 8, 0.1, 5, COUNT,
+                parallelism, meterRegistry);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.FilmMark;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MinHashIndexTest {
+
+    @Test
+    @DisplayName("Пользователи с одинаковыми множествами фильмов всегда становятся кандидатами друг для друга")
+    public void testIdenticalSetsCollide() {
+        final MinHashIndex index = new MinHashIndex(4, 5);
+        index.put(1, UserRatings.of(List.of(new FilmMark(1, 10, 1), new FilmMark(1, 20, 2))));
+        index.put(2, UserRatings.of(List.of(new FilmMark(2, 10, 9), new FilmMark(2, 20, 9))));
+        index.put(3, UserRatings.of(List.of(new FilmMark(3, 30, 5), new FilmMark(3, 40, 5))));
+
+        assertThat(index.findCandidates(1))
+                .containsExactly(2L);
+        assertThat(index.findCandidates(3))
+                .isEmpty();
+    }
+
+    @Test
+    @DisplayName("Замена и удаление оценок пользователя перекладывают его между корзинами")
+    public void testPutReplacesBuckets() {
+        final MinHashIndex index = new MinHashIndex(4, 5);
+        index.put(1, UserRatings.of(List.of(new FilmMark(1, 10, 1))));
+        index.put(2, UserRatings.of(List.of(new FilmMark(2, 10, 1))));
+
+        index.put(2, UserRatings.of(List.of(new FilmMark(2, 30, 1))));
+
+        assertThat(index.findCandidates(1))
+                .isEmpty();
+
+        index.put(3, UserRatings.of(List.of(new FilmMark(3, 30, 1))));
+        index.put(2, UserRatings.of(List.of()));
+
+        assertThat(index.findCandidates(3))
+                .isEmpty();
+        assertThat(index.findCandidates(2))
+                .isEmpty();
+        assertThat(index.size())
+                .isEqualTo(2);
+    }
+}
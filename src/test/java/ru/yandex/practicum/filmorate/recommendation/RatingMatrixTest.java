@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.FilmMark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RatingMatrixTest {
+
+    private static final int USERS = 20_000;
+    private static final int FILMS = 40;
+
+    @Test
+    @DisplayName("Параллельный поиск схожего пользователя выбирает того же пользователя, что и последовательный")
+    public void testParallelScanMatchesSequential() {
+        final Random random = new Random(7);
+        final RatingMatrix matrix = new RatingMatrix();
+        for (long userId = 1; userId <= USERS; userId++) {
+            final int count = 1 + random.nextInt(6);
+            final List<FilmMark> filmMarks = new ArrayList<>(count);
+            random.ints(1, FILMS + 1).distinct().limit(count)
+                    .forEach(filmId -> filmMarks.add(new FilmMark(0, filmId, 1 + random.nextInt(3))));
+            matrix.put(userId * 3, UserRatings.of(filmMarks));
+        }
+
+        for (int parallelism : new int[]{1, 2, 3, 8}) {
+            final ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                for (int i = 0; i < 50; i++) {
+                    final long requesterId = 3L * (1 + random.nextInt(USERS));
+                    assertThat(matrix.findClosestUserIndex(requesterId, pool))
+                            .as("parallelism=%s, requesterId=%s", parallelism, requesterId)
+                            .isEqualTo(matrix.findClosestUserIndex(requesterId))
+                            .isNotNegative();
+                    assertThat(matrix.findRecommendedFilmIds(requesterId, pool))
+                            .isEqualTo(matrix.findRecommendedFilmIds(requesterId));
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Поиск соседей по обратному индексу выбирает того же пользователя, что и полный перебор")
+    public void testNeighbourSearchMatchesScan() {
+        final Random random = new Random(11);
+        final RatingMatrix matrix = new RatingMatrix();
+        for (long userId = 1; userId <= 2_000; userId++) {
+            final int count = 1 + random.nextInt(6);
+            final List<FilmMark> filmMarks = new ArrayList<>(count);
+            random.ints(1, 200).distinct().limit(count)
+                    .forEach(filmId -> filmMarks.add(new FilmMark(0, filmId, 1 + random.nextInt(3))));
+            matrix.put(userId, UserRatings.of(filmMarks));
+        }
+        final NeighbourSearch search = new NeighbourSearch(matrix.snapshot());
+
+        for (int index = 0; index < matrix.size(); index++) {
+            final long[] neighbours = search.findNeighbours(index, 5);
+            final int closestIndex = matrix.findClosestUserIndex(matrix.userIdAt(index));
+            if (closestIndex < 0) {
+                assertThat(neighbours).isEmpty();
+            } else {
+                assertThat(neighbours[0])
+                        .as("userId=%s", matrix.userIdAt(index))
+                        .isEqualTo(matrix.userIdAt(closestIndex));
+                assertThat(neighbours).hasSizeBetween(1, 6).doesNotHaveDuplicates();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Поиск среди кандидатов, включающих всех пользователей с общими фильмами, совпадает с полным перебором")
+    public void testCandidateScanMatchesFullScan() {
+        final Random random = new Random(13);
+        final RatingMatrix matrix = new RatingMatrix();
+        for (long userId = 1; userId <= 2_000; userId++) {
+            final int count = 1 + random.nextInt(6);
+            final List<FilmMark> filmMarks = new ArrayList<>(count);
+            random.ints(1, 200).distinct().limit(count)
+                    .forEach(filmId -> filmMarks.add(new FilmMark(0, filmId, 1 + random.nextInt(3))));
+            matrix.put(userId, UserRatings.of(filmMarks));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            final long requesterId = 1 + random.nextInt(2_000);
+            final int closestIndex = matrix.findClosestUserIndex(requesterId);
+            final int[] requesterFilmIds = matrix.rowAt(matrix.indexOf(requesterId)).getFilmIds();
+            final LongStream coraterIds = LongStream.rangeClosed(1, 2_000)
+                    .filter(userId -> Arrays.stream(matrix.rowAt(matrix.indexOf(userId)).getFilmIds())
+                            .anyMatch(filmId -> Arrays.binarySearch(requesterFilmIds, filmId) >= 0));
+            final long[] candidateIds = LongStream.concat(coraterIds, random.longs(50, 1, 2_001)).toArray();
+            assertThat(matrix.findClosestUserIndex(requesterId, candidateIds))
+                    .as("requesterId=%s", requesterId)
+                    .isEqualTo(closestIndex);
+        }
+    }
+
+    @Test
+    @DisplayName("При равной разнице оценок выбирается последний пользователь, оценивший больше фильмов, чем первый")
+    public void testTieBreakOnNumberOfLikedFilms() {
+        final RatingMatrix matrix = new RatingMatrix();
+        matrix.put(1, UserRatings.of(List.of(new FilmMark(1, 1, 5))));
+        matrix.put(2, UserRatings.of(List.of(new FilmMark(2, 1, 5), new FilmMark(2, 2, 5))));
+        matrix.put(3, UserRatings.of(List.of(new FilmMark(3, 1, 5), new FilmMark(3, 3, 5),
+                new FilmMark(3, 4, 5), new FilmMark(3, 5, 5))));
+        matrix.put(4, UserRatings.of(List.of(new FilmMark(4, 1, 5), new FilmMark(4, 6, 5),
+                new FilmMark(4, 7, 5))));
+        matrix.put(5, UserRatings.of(List.of(new FilmMark(5, 1, 5), new FilmMark(5, 8, 5))));
+
+        assertThat(matrix.findRecommendedFilmIds(1))
+                .containsExactly(6L, 7L);
+        assertThat(matrix.findRecommendedFilmIds(1, ForkJoinPool.commonPool()))
+                .containsExactly(6L, 7L);
+    }
+}
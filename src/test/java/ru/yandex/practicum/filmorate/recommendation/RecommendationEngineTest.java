@@ -0,0 +1,286 @@
+package ru.yandex.practicum.filmorate.recommendation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.event.FilmChangedEvent;
+import ru.yandex.practicum.filmorate.dao.event.FilmMarkChangedEvent;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.model.FilmMark;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class RecommendationEngineTest {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private FilmDbStorage filmDbStorage;
+    private RecommendationEngine recommendationEngine;
+    private List<Long> userIds;
+
+    @BeforeEach
+    public void setUp() {
+        filmDbStorage = new FilmDbStorage(jdbcTemplate, eventPublisher);
+        recommendationEngine = new RecommendationEngine(filmDbStorage);
+        jdbcTemplate.update("INSERT INTO filmorate_user (email, login, nickname, birthday) " +
+                "SELECT 'user' || x || '@mail.ru', 'user' || x, 'user' || x, DATE '1990-01-01' FROM SYSTEM_RANGE(1, 25)");
+        jdbcTemplate.update("INSERT INTO film (title, description, release_date, duration, mpa_id) " +
+                "SELECT 'film ' || x, 'description', DATE '2000-01-01', 100, 1 FROM SYSTEM_RANGE(1, 30)");
+        jdbcTemplate.update("INSERT INTO film_mark (film_id, user_id, mark) " +
+                "SELECT f.id, u.id, CASEWHEN(MOD(f.id + u.id, 7) = 0, NULL, MOD(f.id * u.id, 10) + 1) " +
+                "FROM film f, filmorate_user u WHERE MOD(f.id * 7 + u.id * 3, 11) < MOD(u.id, 6) + 1");
+        userIds = jdbcTemplate.queryForList("SELECT id FROM filmorate_user ORDER BY id", Long.class);
+    }
+
+    @Test
+    @DisplayName("Рекомендации после построения матрицы совпадают с расчетом по всем оценкам из БД")
+    public void testRebuildMatchesDatabase() {
+        recommendationEngine.rebuild();
+
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Добавление, изменение и удаление оценок отражаются в матрице")
+    public void testRefreshAfterMarkChange() {
+        recommendationEngine.rebuild();
+        final long filmId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM film", Long.class);
+
+        for (long userId : userIds.subList(0, 10)) {
+            filmDbStorage.addMarkToFilm(filmId, userId, 10);
+            recommendationEngine.onFilmMarkChanged(new FilmMarkChangedEvent(filmId, userId, 10, null, Operation.ADD));
+        }
+        assertMatchesDatabase();
+
+        for (long userId : userIds.subList(5, 15)) {
+            filmDbStorage.removeMarkFromFilm(filmId, userId);
+            recommendationEngine.onFilmMarkChanged(new FilmMarkChangedEvent(filmId, userId, null, 10,
+                    Operation.REMOVE));
+        }
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Удаление фильма убирает его оценки из матрицы")
+    public void testRemoveFilm() {
+        recommendationEngine.rebuild();
+        final List<Long> filmIds = jdbcTemplate.queryForList("SELECT id FROM film ORDER BY id", Long.class);
+
+        for (long filmId : filmIds.subList(0, 20)) {
+            filmDbStorage.remove(filmId);
+            recommendationEngine.onFilmChanged(new FilmChangedEvent(filmId, Operation.REMOVE));
+        }
+
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Рекомендации по сохраненным соседям совпадают с расчетом по всем оценкам из БД")
+    public void testRecommendationsFromNeighbours() {
+        recommendationEngine.rebuild();
+        recommendationEngine.rebuildNeighbours();
+
+        for (long userId : userIds) {
+            assertThat(recommendationEngine.findNeighbours(userId))
+                    .as("userId=%s", userId)
+                    .isPresent();
+        }
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Соседи пользователей с изменившимися оценками пересчитываются фоновой задачей")
+    public void testRefreshNeighboursAfterMarkChange() {
+        recommendationEngine = new RecommendationEngine(filmDbStorage, 2, userIds.size());
+        recommendationEngine.rebuild();
+        recommendationEngine.refreshNeighbours();
+        final long filmId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM film", Long.class);
+        final List<Long> changedUserIds = userIds.subList(0, 5);
+
+        for (long userId : changedUserIds) {
+            filmDbStorage.addMarkToFilm(filmId, userId, 1);
+            recommendationEngine.onFilmMarkChanged(new FilmMarkChangedEvent(filmId, userId, 1, null, Operation.ADD));
+            assertThat(recommendationEngine.findNeighbours(userId))
+                    .isEmpty();
+        }
+        final Map<Long, Set<FilmMark>> userFilmMarks = new TreeMap<>(filmDbStorage.findUserIdFilmMarks());
+        for (long userId : changedUserIds) {
+            assertThat(recommendationEngine.findRecommendedFilmIds(userId).orElseThrow())
+                    .isEqualTo(findRecommendedFilmIdsByMarks(userFilmMarks, userId));
+        }
+
+        recommendationEngine.refreshNeighbours();
+
+        for (long userId : changedUserIds) {
+            assertThat(recommendationEngine.findNeighbours(userId))
+                    .isPresent();
+            assertThat(recommendationEngine.findRecommendedFilmIds(userId).orElseThrow())
+                    .isEqualTo(findRecommendedFilmIdsByMarks(userFilmMarks, userId));
+        }
+
+        recommendationEngine.rebuildNeighbours();
+
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Фоновая задача находит новый ближайший пользователь для пользователей с общими фильмами")
+    public void testRefreshNeighboursFindsNewClosestUser() {
+        recommendationEngine = new RecommendationEngine(filmDbStorage, 2, 1);
+        recommendationEngine.rebuild();
+        recommendationEngine.refreshNeighbours();
+        final long requesterId = userIds.get(5);
+        jdbcTemplate.update("INSERT INTO filmorate_user (email, login, nickname, birthday) " +
+                "VALUES ('closest@mail.ru', 'closest', 'closest', DATE '1990-01-01')");
+        final long closestUserId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM filmorate_user", Long.class);
+        jdbcTemplate.update("INSERT INTO film_mark (film_id, user_id, mark) " +
+                "SELECT f.id, ?, COALESCE(m.mark, 1) FROM film f " +
+                "LEFT JOIN film_mark m ON m.film_id = f.id AND m.user_id = ?", closestUserId, requesterId);
+        recommendationEngine.refreshUser(closestUserId);
+        userIds = new ArrayList<>(userIds);
+        userIds.add(closestUserId);
+
+        recommendationEngine.refreshNeighbours();
+
+        assertThat(recommendationEngine.findNeighbours(requesterId).orElseThrow()[0])
+                .isEqualTo(closestUserId);
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("В приближенном режиме кандидаты из MinHash обновляются вместе с оценками")
+    public void testApproximateMode() {
+        recommendationEngine = new RecommendationEngine(filmDbStorage, 1, 10, RecommendationMode.APPROXIMATE, 64, 1,
+                new SimpleMeterRegistry());
+        recommendationEngine.rebuild();
+
+        assertMatchesDatabase();
+
+        final long filmId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM film", Long.class);
+        for (long userId : userIds.subList(0, 10)) {
+            filmDbStorage.addMarkToFilm(filmId, userId, 10);
+            recommendationEngine.onFilmMarkChanged(new FilmMarkChangedEvent(filmId, userId, 10, null, Operation.ADD));
+        }
+        filmDbStorage.remove(filmId + 1);
+        recommendationEngine.onFilmChanged(new FilmChangedEvent(filmId + 1, Operation.REMOVE));
+
+        assertMatchesDatabase();
+    }
+
+    @Test
+    @DisplayName("Время построения матрицы и подбора рекомендаций публикуется в метриках")
+    public void testMetrics() {
+        final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        recommendationEngine = new RecommendationEngine(filmDbStorage, 1, 10, RecommendationMode.EXACT, 20, 2,
+                meterRegistry);
+
+        recommendationEngine.rebuild();
+        recommendationEngine.findRecommendedFilmIds(userIds.get(0));
+
+        assertThat(meterRegistry.get("recommendations.training").tag("strategy", "closest-user").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("recommendations.scoring").tag("strategy", "closest-user").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Пользователь без оценок получает пустой список рекомендаций")
+    public void testRequesterWithoutMarks() {
+        jdbcTemplate.update("DELETE FROM film_mark WHERE user_id = ?", userIds.get(0));
+        recommendationEngine.rebuild();
+
+        assertThat(recommendationEngine.findRecommendedFilmIds(userIds.get(0)).orElseThrow())
+                .isEmpty();
+    }
+
+    @Test
+    @DisplayName("До построения матрицы запросы передаются в БД")
+    public void testEmptyBeforeRebuild() {
+        assertThat(recommendationEngine.findRecommendedFilmIds(userIds.get(0)))
+                .isEmpty();
+    }
+
+    private void assertMatchesDatabase() {
+        final Map<Long, Set<FilmMark>> userFilmMarks = new TreeMap<>(filmDbStorage.findUserIdFilmMarks());
+        for (long userId : userIds) {
+            assertThat(recommendationEngine.findRecommendedFilmIds(userId).orElseThrow())
+                    .as("userId=%s", userId)
+                    .isEqualTo(findRecommendedFilmIdsByMarks(userFilmMarks, userId));
+        }
+    }
+
+    /**
+     * Расчет рекомендаций напрямую по множествам оценок: пользователь с наименьшей средней разницей оценок, при
+     * равенстве - оценивший больше фильмов, чем первый найденный с такой разницей.
+     */
+    private List<Long> findRecommendedFilmIdsByMarks(final Map<Long, Set<FilmMark>> userFilmMarks,
+                                                     final long requesterId) {
+        final Set<FilmMark> requesterMarks = userFilmMarks.get(requesterId);
+        if (requesterMarks == null) {
+            return Collections.emptyList();
+        }
+        double closestMarksDiff = Double.MAX_VALUE;
+        Long closestUserId = null;
+        int numberOfLikedFilms = 0;
+        for (Map.Entry<Long, Set<FilmMark>> entry : userFilmMarks.entrySet()) {
+            if (entry.getKey() == requesterId) {
+                continue;
+            }
+            final Map<Long, Integer> marks = entry.getValue().stream()
+                    .collect(Collectors.toMap(FilmMark::getFilmId, FilmMark::getMark));
+            int diff = 0;
+            int matches = 0;
+            for (FilmMark requesterMark : requesterMarks) {
+                final Integer mark = marks.get(requesterMark.getFilmId());
+                diff += requesterMark.getMark() - (mark == null ? 0 : mark);
+                matches += mark == null ? 0 : 1;
+            }
+            if (matches == 0) {
+                continue;
+            }
+            final double marksDiff = Math.abs((double) diff / matches);
+            if (marksDiff < closestMarksDiff) {
+                closestMarksDiff = marksDiff;
+                closestUserId = entry.getKey();
+                numberOfLikedFilms = marks.size();
+            }
+            if (marksDiff == closestMarksDiff && marks.size() > numberOfLikedFilms) {
+                closestUserId = entry.getKey();
+            }
+        }
+        if (closestUserId == null) {
+            return Collections.emptyList();
+        }
+        final Set<Long> requesterFilmIds = requesterMarks.stream()
+                .map(FilmMark::getFilmId)
+                .collect(Collectors.toSet());
+        final List<Long> recommended = new ArrayList<>();
+        for (FilmMark filmMark : userFilmMarks.get(closestUserId)) {
+            if (!requesterFilmIds.contains(filmMark.getFilmId())) {
+                recommended.add(filmMark.getFilmId());
+            }
+        }
+        Collections.sort(recommended);
+        return recommended;
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import ru.yandex.practicum.filmorate.dao.DirectorStorage;
@@ -19,6 +20,7 @@ import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.*;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -33,6 +35,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 public class FilmDbStorageTest {
 
     private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
     private FilmStorage filmDbStorage;
     private DirectorStorage directorStorage;
     private UserStorage userStorage;
@@ -46,8 +49,8 @@ public class FilmDbStorageTest {
 
     @BeforeEach
     public void setUp() {
-        directorStorage = new DirectorDbStorage(jdbcTemplate);
-        filmDbStorage = new FilmDbStorage(jdbcTemplate);
+        directorStorage = new DirectorDbStorage(jdbcTemplate, eventPublisher);
+        filmDbStorage = new FilmDbStorage(jdbcTemplate, eventPublisher);
         userStorage = new UserDbStorage(jdbcTemplate);
 
         Mpa mpa = new Mpa(1, "G");
@@ -123,6 +126,80 @@ public class FilmDbStorageTest {
         assertEquals("Фильм с id '99' не найден.", e.getMessage());
     }
 
+    @Test
+    @DisplayName("Тест получения фильма с жанрами и режиссерами за один запрос по первичному ключу")
+    public void testFindByIdSingleIndexedStatement() {
+        directorStorage.add(director);
+        film.getGenres().add(new Genre(1, "Комедия"));
+        film.getDirectors().add(director);
+        filmDbStorage.add(film);
+        RecordingJdbcTemplate recordingJdbcTemplate = new RecordingJdbcTemplate(jdbcTemplate);
+        FilmStorage recordingFilmStorage = new FilmDbStorage(recordingJdbcTemplate, eventPublisher);
+
+        Film savedFilm = recordingFilmStorage.findById(film.getId());
+
+        assertThat(savedFilm)
+                .usingRecursiveComparison()
+                .isEqualTo(film);
+        assertThat(recordingJdbcTemplate.getStatements())
+                .hasSize(1);
+        assertThat(recordingJdbcTemplate.explain(recordingJdbcTemplate.getStatements().get(0)))
+                .contains("PUBLIC.PRIMARY_KEY_")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Тест получения списка фильмов с жанрами и режиссерами за один запрос")
+    public void testFindMostLikedFilmsSingleStatement() {
+        directorStorage.add(director);
+        film.getGenres().add(new Genre(1, "Комедия"));
+        film.getGenres().add(new Genre(2, "Драма"));
+        film.getDirectors().add(director);
+        filmDbStorage.add(film);
+        film2.getGenres().add(new Genre(2, "Драма"));
+        filmDbStorage.add(film2);
+        RecordingJdbcTemplate recordingJdbcTemplate = new RecordingJdbcTemplate(jdbcTemplate);
+        FilmStorage recordingFilmStorage = new FilmDbStorage(recordingJdbcTemplate, eventPublisher);
+
+        Collection<Film> films = recordingFilmStorage.findMostLikedFilms(10, 2, null);
+
+        assertThat(films)
+                .usingRecursiveComparison()
+                .isEqualTo(List.of(film, film2));
+        assertThat(recordingJdbcTemplate.getStatements())
+                .hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Тест получения фильмов по списку идентификаторов частями с одинаковым текстом запроса")
+    public void testFindFilmsByIdsInChunks() {
+        jdbcTemplate.update("INSERT INTO film (title, description, release_date, duration, mpa_id) " +
+                "SELECT 'film ' || x, 'description', DATE '2000-01-01', 100, 1 FROM SYSTEM_RANGE(1, 7)");
+        RecordingJdbcTemplate recordingJdbcTemplate = new RecordingJdbcTemplate(jdbcTemplate);
+        FilmStorage recordingFilmStorage = new FilmDbStorage(recordingJdbcTemplate, eventPublisher, 2);
+
+        Collection<Film> films = recordingFilmStorage.findFilmsByIds(Set.of(7L, 1L, 3L, 4L, 5L, 100L));
+
+        assertThat(films)
+                .extracting(Film::getId)
+                .containsExactly(1L, 3L, 4L, 5L, 7L);
+        assertThat(recordingJdbcTemplate.getStatements())
+                .hasSize(3)
+                .containsOnly(recordingJdbcTemplate.getStatements().get(0));
+        assertThat(recordingJdbcTemplate.explain(recordingJdbcTemplate.getStatements().get(0)))
+                .contains("PUBLIC.PRIMARY_KEY_")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Тест получения фильмов по пустому списку идентификаторов")
+    public void testFindFilmsByEmptyIds() {
+        filmDbStorage.add(film);
+
+        assertThat(filmDbStorage.findFilmsByIds(Set.of()))
+                .isEmpty();
+    }
+
     @Test
     @DisplayName("Тест обновления данных фильма")
     public void testUpdate() {
@@ -156,7 +233,7 @@ public class FilmDbStorageTest {
         filmDbStorage.add(film);
         filmDbStorage.add(updatedFilm);
 
-        Collection<Film> films = filmDbStorage.findAll();
+        Collection<Film> films = findAllFilms();
 
         updatedFilm.setId(2L);
 
@@ -169,11 +246,60 @@ public class FilmDbStorageTest {
     @Test
     @DisplayName("Тест получения списка всех фильмов при пустой таблице")
     public void testFindAllEmptyDb() {
-        assertThat(filmDbStorage.findAll())
+        assertThat(findAllFilms())
                 .isNotNull()
                 .isEmpty();
     }
 
+    @Test
+    @DisplayName("Тест постраничного получения фильмов по курсору")
+    public void testFindFilmsAfter() {
+        filmDbStorage.add(film);
+        filmDbStorage.add(film2);
+        filmDbStorage.add(updatedFilm);
+
+        Collection<Film> firstPage = filmDbStorage.findFilmsAfter(0, 2);
+        Collection<Film> secondPage = filmDbStorage.findFilmsAfter(film2.getId(), 2);
+
+        assertThat(firstPage)
+                .extracting(Film::getId)
+                .containsExactly(film.getId(), film2.getId());
+        assertThat(secondPage)
+                .extracting(Film::getId)
+                .containsExactly(updatedFilm.getId());
+        assertThat(filmDbStorage.findFilmsAfter(updatedFilm.getId(), 2))
+                .isEmpty();
+    }
+
+    @Test
+    @DisplayName("Тест потоковой выгрузки большого числа фильмов с жанрами и режиссерами")
+    public void testStreamFilmsAfter() {
+        directorStorage.add(director);
+        jdbcTemplate.update("INSERT INTO film (title, description, release_date, duration, mpa_id) " +
+                "SELECT 'film ' || x, 'description', DATE '2000-01-01', 100, 1 FROM SYSTEM_RANGE(1, 1201)");
+        jdbcTemplate.update("INSERT INTO film_genre (film_id, genre_id) SELECT id, MOD(id, 6) + 1 FROM film");
+        jdbcTemplate.update("INSERT INTO film_director (film_id, director_id) SELECT id, ? FROM film",
+                director.getId());
+        List<Film> films = new ArrayList<>();
+
+        filmDbStorage.streamFilmsAfter(100, films::add);
+
+        assertThat(films)
+                .hasSize(1101)
+                .extracting(Film::getId)
+                .isSorted()
+                .startsWith(101L);
+        assertThat(films)
+                .allSatisfy(streamed -> {
+                    assertThat(streamed.getGenres())
+                            .extracting(Genre::getId)
+                            .containsExactly((int) (streamed.getId() % 6) + 1);
+                    assertThat(streamed.getDirectors())
+                            .extracting(Director::getId)
+                            .containsExactly(director.getId());
+                });
+    }
+
     @Test
     @DisplayName("Тест на добавление и получение списка жанров по id фильма")
     void testAddAndGetById() {
@@ -222,13 +348,27 @@ public class FilmDbStorageTest {
                 .isEqualTo(Set.of(genre1, genre3));
     }
 
+    @Test
+    @DisplayName("Тест проверки существования фильмов без их загрузки, в том числе по частям")
+    public void existsById() {
+        filmDbStorage.add(film);
+        filmDbStorage.add(film2);
+        final FilmDbStorage chunkedStorage = new FilmDbStorage(jdbcTemplate, eventPublisher, 1);
+
+        assertThat(filmDbStorage.existsById(film.getId())).isTrue();
+        assertThat(filmDbStorage.existsById(99)).isFalse();
+        assertThat(chunkedStorage.existAll(List.of(film.getId(), film2.getId(), film.getId()))).isTrue();
+        assertThat(chunkedStorage.existAll(List.of(film.getId(), film2.getId(), 99L))).isFalse();
+        assertThat(filmDbStorage.existAll(List.of())).isTrue();
+    }
+
     @Test
     @DisplayName("Тест удаления фильма из БД")
     void testDeleteById() {
         filmDbStorage.add(film);
         filmDbStorage.remove(film.getId());
 
-        assertThat(filmDbStorage.findAll())
+        assertThat(findAllFilms())
                 .isNotNull()
                 .isEmpty();
 
@@ -317,6 +457,49 @@ public class FilmDbStorageTest {
         assertEquals(6, rating);
     }
 
+    @Test
+    @DisplayName("Тест пересчета количества оценок при повторной оценке фильма одним пользователем")
+    void testMarkCountAfterMarkOverwrite() {
+        filmDbStorage.add(film);
+        filmDbStorage.add(film2);
+        userStorage.add(user);
+        userStorage.add(user2);
+
+        filmDbStorage.addMarkToFilm(film.getId(), user.getId(), 3);
+        filmDbStorage.addMarkToFilm(film.getId(), user.getId(), null);
+        filmDbStorage.addMarkToFilm(film.getId(), user.getId(), 9);
+        filmDbStorage.addMarkToFilm(film2.getId(), user.getId(), 4);
+        filmDbStorage.addMarkToFilm(film2.getId(), user2.getId(), 5);
+
+        Integer markCount = jdbcTemplate.queryForObject("SELECT mark_count FROM film WHERE id = ?", Integer.class,
+                film.getId());
+
+        assertEquals(1, markCount);
+        assertEquals(9, filmDbStorage.findById(film.getId()).getRating());
+        assertThat(filmDbStorage.findMostLikedFilms(10, null, null))
+                .extracting(Film::getId)
+                .containsExactly(film2.getId(), film.getId());
+    }
+
+    @Test
+    @DisplayName("Тест восстановления агрегированных оценок фильмов")
+    void testRecalculateMarkAggregates() {
+        filmDbStorage.add(film);
+        filmDbStorage.add(film2);
+        userStorage.add(user);
+        userStorage.add(user2);
+        jdbcTemplate.update("INSERT INTO film_mark (film_id, user_id, mark) VALUES (1, 1, 6), (1, 2, 5), (2, 1, NULL)");
+
+        int recalculatedFilms = filmDbStorage.recalculateMarkAggregates();
+
+        assertEquals(2, recalculatedFilms);
+        assertEquals(5.5, filmDbStorage.findById(film.getId()).getRating());
+        assertEquals(0, filmDbStorage.findById(film2.getId()).getRating());
+        assertThat(filmDbStorage.findMostLikedFilms(10, null, null))
+                .extracting(Film::getId)
+                .containsExactly(film.getId(), film2.getId());
+    }
+
     @Test
     @DisplayName("Тест удаления лайка")
     void testAddAndRemoveLike() {
@@ -351,7 +534,7 @@ public class FilmDbStorageTest {
 
         film.setRating(1);
 
-        assertThat(filmDbStorage.findAll())
+        assertThat(findAllFilms())
                 .isNotNull()
                 .isNotEmpty()
                 .containsExactlyElementsOf(List.of(film));
@@ -557,6 +740,32 @@ public class FilmDbStorageTest {
                 .isEqualTo(List.of(filmWithDir, fimWithName));
     }
 
+    @Test
+    @DisplayName("Тест поиск фильма по тексту со спецсимволами SQL и шаблона LIKE")
+    void testSearchFilmWithSpecialCharacters() {
+        filmDbStorage.add(film);
+        Film filmWithPercent = filmDbStorage.add(Film.builder()
+                .name("100% o'clock")
+                .description("film description")
+                .releaseDate(LocalDate.of(2019, 12, 12))
+                .duration(123)
+                .mpa(new Mpa(1, "G"))
+                .build());
+
+        for (String text : List.of("%", "0%", "o'c", "' OR '1'='1")) {
+            FilmSearchDto query = FilmSearchDto.builder()
+                    .by(SearchBy.getStringValues())
+                    .query(text)
+                    .build();
+            Collection<Film> films = filmDbStorage.searchFilms(query);
+
+            assertThat(films)
+                    .as(text)
+                    .extracting(Film::getId)
+                    .isEqualTo(text.startsWith("'") ? List.of() : List.of(filmWithPercent.getId()));
+        }
+    }
+
     @Test
     @DisplayName("Тест на получение самых популярных фильмов без указания жанра и года")
     void testMostPopularFilmsWithoutSpecifiedGenreAndYear() {
@@ -711,4 +920,10 @@ public class FilmDbStorageTest {
                 .isNotNull()
                 .isEmpty();
     }
+
+    private List<Film> findAllFilms() {
+        final List<Film> films = new ArrayList<>();
+        filmDbStorage.streamFilmsAfter(0, films::add);
+        return films;
+    }
 }
@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.impl.EventDbStorage;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.impl.ReviewDbStorage;
+import ru.yandex.practicum.filmorate.dao.impl.UserDbStorage;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверка планов выполнения часто используемых запросов: ни один из них не должен читать таблицу целиком.
+ */
+@JdbcTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class QueryPlanTest {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private RecordingJdbcTemplate recordingJdbcTemplate;
+    private FilmDbStorage filmDbStorage;
+
+    @BeforeEach
+    public void setUp() {
+        recordingJdbcTemplate = new RecordingJdbcTemplate(jdbcTemplate);
+        filmDbStorage = new FilmDbStorage(recordingJdbcTemplate, eventPublisher);
+    }
+
+    @Test
+    @DisplayName("Популярные фильмы без фильтров читаются из индекса по популярности")
+    public void testMostLikedFilmsPlan() {
+        filmDbStorage.findMostLikedFilms(10, null, null);
+
+        assertThat(singlePlan())
+                .contains("PUBLIC.FILM_POPULARITY_IDX")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Популярные фильмы за год отбираются по индексу года")
+    public void testMostLikedFilmsByYearPlan() {
+        filmDbStorage.findMostLikedFilms(10, null, 2000);
+
+        assertThat(singlePlan())
+                .contains("PUBLIC.FILM_YEAR_POPULARITY_IDX: RELEASE_YEAR = ?")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Популярные фильмы жанра отбираются по индексу жанра")
+    public void testMostLikedFilmsByGenrePlan() {
+        filmDbStorage.findMostLikedFilms(10, 1, null);
+
+        assertThat(singlePlan())
+                .contains("PUBLIC.GENRE_FILM_IDX: GENRE_ID = ?")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Популярные фильмы жанра за год отбираются по индексу")
+    public void testMostLikedFilmsByGenreAndYearPlan() {
+        filmDbStorage.findMostLikedFilms(10, 1, 2000);
+
+        assertThat(singlePlan())
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Фильмы режиссера отбираются по индексу режиссера")
+    public void testFilmsFromDirectorPlan() {
+        filmDbStorage.findFilmsFromDirectorOrderBy(1, "f.mark_count DESC");
+
+        assertThat(singlePlan())
+                .contains("PUBLIC.DIRECTOR_FILM_IDX: DIRECTOR_ID = ?")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Фильм, фильмы по списку и общие фильмы читаются по индексам")
+    public void testFilmLookupPlans() {
+        filmDbStorage.findFilmsByIds(Set.of(1L, 2L));
+        filmDbStorage.findCommonFilms(1, 2);
+        filmDbStorage.findFilmPopularity(1);
+
+        assertThat(recordingJdbcTemplate.getStatements())
+                .hasSize(3)
+                .allSatisfy(sql -> assertThat(recordingJdbcTemplate.explain(sql)).doesNotContain("tableScan"));
+        assertThat(recordingJdbcTemplate.explain(recordingJdbcTemplate.getStatements().get(1)))
+                .contains("PUBLIC.FILM_MARK_USER_IDX: USER_ID = ?");
+    }
+
+    @Test
+    @DisplayName("Отзывы к фильму и самые полезные отзывы читаются из индексов по полезности без сортировки")
+    public void testReviewPlans() {
+        ReviewDbStorage reviewStorage = new ReviewDbStorage(recordingJdbcTemplate);
+
+        reviewStorage.findByFilmIdLimitBy(1, 10);
+        reviewStorage.findAllLimitBy(10);
+
+        assertThat(recordingJdbcTemplate.explain(recordingJdbcTemplate.getStatements().get(0)))
+                .contains("PUBLIC.REVIEW_FILM_USEFUL_IDX: FILM_ID = ?")
+                .contains("index sorted")
+                .doesNotContain("tableScan");
+        assertThat(recordingJdbcTemplate.explain(recordingJdbcTemplate.getStatements().get(1)))
+                .contains("PUBLIC.REVIEW_USEFUL_IDX")
+                .contains("index sorted")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Лента событий и друзья пользователя читаются по индексам")
+    public void testUserPlans() {
+        EventDbStorage eventStorage = new EventDbStorage(recordingJdbcTemplate);
+        UserDbStorage userStorage = new UserDbStorage(recordingJdbcTemplate);
+        jdbcTemplate.update("INSERT INTO filmorate_user (email, login, nickname, birthday) " +
+                "VALUES ('user@mail.ru', 'user', 'user', DATE '1990-01-01')");
+
+        eventStorage.getFeed(1);
+        userStorage.findById(1);
+        userStorage.findFriendsByUserId(1);
+        userStorage.findCommonFriends(1, 2);
+
+        assertThat(recordingJdbcTemplate.explain(recordingJdbcTemplate.getStatements().get(0)))
+                .contains(": USER_ID = ?");
+        assertThat(recordingJdbcTemplate.getStatements())
+                .hasSize(4)
+                .allSatisfy(sql -> assertThat(recordingJdbcTemplate.explain(sql)).doesNotContain("tableScan"));
+    }
+
+    private String singlePlan() {
+        assertThat(recordingJdbcTemplate.getStatements()).hasSize(1);
+        return recordingJdbcTemplate.explain(recordingJdbcTemplate.getStatements().get(0));
+    }
+}
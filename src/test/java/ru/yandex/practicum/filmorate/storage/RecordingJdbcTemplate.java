@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * JdbcTemplate, запоминающий текст всех запросов, отправленных в БД. Соединения берутся из того же DataSource, что и
+ * у исходного шаблона, с учетом текущей транзакции, поэтому запросы выполняются в транзакции теста.
+ */
+public class RecordingJdbcTemplate extends JdbcTemplate {
+
+    public RecordingJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        super(new RecordingDataSource(Objects.requireNonNull(jdbcTemplate.getDataSource())));
+    }
+
+    public List<String> getStatements() {
+        return getRecordingDataSource().statements.stream()
+                .map(RecordedStatement::getSql)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Запросы, отправленные из текущего потока. Не учитывают запросы фоновых задач приложения.
+     */
+    public List<String> getCurrentThreadStatements() {
+        final Thread thread = Thread.currentThread();
+        return getRecordingDataSource().statements.stream()
+                .filter(statement -> statement.getThread() == thread)
+                .map(RecordedStatement::getSql)
+                .collect(Collectors.toList());
+    }
+
+    public void clear() {
+        getRecordingDataSource().statements.clear();
+    }
+
+    /**
+     * Получение плана выполнения запроса. Параметры запроса не требуются: H2 строит план для неподставленных значений.
+     * Сам запрос EXPLAIN не записывается.
+     */
+    public String explain(String sql) {
+        final DataSource targetDataSource = Objects.requireNonNull(getRecordingDataSource().getTargetDataSource());
+        return new JdbcTemplate(targetDataSource).queryForObject("EXPLAIN " + sql, String.class);
+    }
+
+    private RecordingDataSource getRecordingDataSource() {
+        return (RecordingDataSource) Objects.requireNonNull(getDataSource());
+    }
+
+    @Value
+    private static class RecordedStatement {
+        String sql;
+        Thread thread;
+    }
+
+    private static class RecordingDataSource extends DelegatingDataSource {
+
+        private final List<RecordedStatement> statements = new CopyOnWriteArrayList<>();
+
+        RecordingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Connection getConnection() {
+            final DataSource target = Objects.requireNonNull(getTargetDataSource());
+            final Connection connection = DataSourceUtils.getConnection(target);
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                DataSourceUtils.releaseConnection(connection, target);
+                                return null;
+                            case "prepareStatement":
+                            case "prepareCall":
+                                statements.add(new RecordedStatement((String) args[0], Thread.currentThread()));
+                                return invoke(method, connection, args);
+                            case "createStatement":
+                                return recordingStatement((Statement) invoke(method, connection, args));
+                            default:
+                                return invoke(method, connection, args);
+                        }
+                    });
+        }
+
+        private Statement recordingStatement(Statement statement) {
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("execute") && args != null && args[0] instanceof String) {
+                            statements.add(new RecordedStatement((String) args[0], Thread.currentThread()));
+                        }
+                        return invoke(method, statement, args);
+                    });
+        }
+
+        private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
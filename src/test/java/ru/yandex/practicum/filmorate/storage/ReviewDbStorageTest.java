@@ -6,6 +6,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import ru.yandex.practicum.filmorate.dao.*;
@@ -25,6 +26,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 class ReviewDbStorageTest {
 
     private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
     private ReviewStorage reviewStorage;
     private FilmStorage filmStorage;
@@ -39,7 +41,7 @@ class ReviewDbStorageTest {
     @BeforeEach
     public void setUp() {
         reviewStorage = new ReviewDbStorage(jdbcTemplate);
-        filmStorage = new FilmDbStorage(jdbcTemplate);
+        filmStorage = new FilmDbStorage(jdbcTemplate, eventPublisher);
         userStorage = new UserDbStorage(jdbcTemplate);
         Mpa mpa = new Mpa(1, "G");
 
@@ -6,13 +6,20 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.cache.FriendSuggestionCache;
 import ru.yandex.practicum.filmorate.dao.*;
 import ru.yandex.practicum.filmorate.dao.impl.*;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.TimeLimitExceededException;
+import ru.yandex.practicum.filmorate.index.FriendshipPathFinder;
+import ru.yandex.practicum.filmorate.index.FriendshipPaths;
 import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.recommendation.FriendSuggestionEngine;
 import ru.yandex.practicum.filmorate.service.impl.FilmServiceImpl;
+import ru.yandex.practicum.filmorate.service.impl.FriendServiceImpl;
 import ru.yandex.practicum.filmorate.service.impl.UserServiceImpl;
 
 import java.time.LocalDate;
@@ -21,6 +28,8 @@ import java.util.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static ru.yandex.practicum.filmorate.model.FriendshipStatus.ACKNOWLEDGED;
 import static ru.yandex.practicum.filmorate.model.FriendshipStatus.NOT_ACKNOWLEDGED;
 
@@ -31,13 +40,15 @@ import static ru.yandex.practicum.filmorate.model.FriendshipStatus.NOT_ACKNOWLED
 class UserDbStorageTest {
 
     private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
     private UserStorage userStorage;
     private UserServiceImpl userService;
+    private FriendServiceImpl friendService;
+    private FriendshipPathFinder friendshipPathFinder;
     private FilmServiceImpl filmService;
     private FriendshipStorage friendshipStorage;
     private FilmStorage filmStorage;
     private EventStorage eventStorage;
-    private DirectorStorage directorStorage;
     private User user;
     private User updatedUser;
     private User anotherUser;
@@ -47,12 +58,16 @@ class UserDbStorageTest {
 
     @BeforeEach
     void setUp() {
-        filmStorage = new FilmDbStorage(jdbcTemplate);
+        filmStorage = new FilmDbStorage(jdbcTemplate, eventPublisher);
         userStorage = new UserDbStorage(jdbcTemplate);
         eventStorage = new EventDbStorage(jdbcTemplate);
         friendshipStorage = new FriendshipDbStorage(jdbcTemplate);
-        userService = new UserServiceImpl(userStorage, filmStorage, friendshipStorage, eventStorage);
-        filmService = new FilmServiceImpl(filmStorage, userStorage, directorStorage, eventStorage);
+        userService = new UserServiceImpl(userStorage, eventStorage);
+        friendshipPathFinder = mock(FriendshipPathFinder.class);
+        friendService = new FriendServiceImpl(userStorage, friendshipStorage, new ReferenceDbStorage(jdbcTemplate),
+                eventStorage, mock(FriendSuggestionEngine.class), mock(FriendSuggestionCache.class),
+                friendshipPathFinder);
+        filmService = new FilmServiceImpl(filmStorage, eventStorage, new ReferenceDbStorage(jdbcTemplate));
         user = User.builder()
                 .id(1)
                 .email("email")
@@ -182,6 +197,23 @@ class UserDbStorageTest {
         assertEquals("Пользователь с id '1' не найден.", e.getMessage());
     }
 
+    @Test
+    @DisplayName("Тест проверки существования пользователей без их загрузки")
+    void testExistsById() {
+        userStorage.add(user);
+        userStorage.add(anotherUser);
+
+        assertThat(userStorage.existsById(user.getId())).isTrue();
+        assertThat(userStorage.existsById(99)).isFalse();
+        assertThat(userStorage.existAll(List.of(user.getId(), anotherUser.getId(), user.getId()))).isTrue();
+        assertThat(userStorage.existAll(List.of(user.getId(), 99L))).isFalse();
+        assertThat(userStorage.existAll(List.of())).isTrue();
+
+        userStorage.remove(user.getId());
+
+        assertThat(userStorage.existsById(user.getId())).isFalse();
+    }
+
     @Test
     @DisplayName("Тест удаления пользователя с несуществующим из БД")
     void testDeleteByWrongId() {
@@ -409,6 +441,18 @@ class UserDbStorageTest {
                 .isEmpty();
     }
 
+    @Test
+    @DisplayName("Тест поиска цепочки друзей, не уложившегося во время.")
+    void testFindPathTimedOut() {
+        userStorage.add(user);
+        userStorage.add(anotherUser);
+        when(friendshipPathFinder.findPath(user.getId(), anotherUser.getId(), 6))
+                .thenReturn(FriendshipPaths.Path.TIMED_OUT);
+
+        assertThrows(TimeLimitExceededException.class,
+                () -> friendService.findPath(user.getId(), anotherUser.getId(), 6));
+    }
+
     @Test
     @DisplayName("Тест получение ленты пользователя.")
     void testGetFeed() {
@@ -416,7 +460,7 @@ class UserDbStorageTest {
         userStorage.add(anotherUser);
         filmStorage.add(filmOne);
         filmService.addMarkToFilm(filmOne.getId(), user.getId(), 10);
-        userService.addFriend(user.getId(), anotherUser.getId());
+        friendService.addFriend(user.getId(), anotherUser.getId());
 
         Feed feedLike = Feed.builder()
                 .entityId(filmOne.getId())
@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionStalenessTest {
+
+    private final Object owner = new Object();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.unbindResourceIfPossible(owner);
+    }
+
+    @Test
+    @DisplayName("Вне транзакции отметка не ставится, и блокировка чтения занимается")
+    public void testOutsideTransaction() {
+        TransactionStaleness.markStale(owner);
+
+        assertThat(TransactionStaleness.isStale(owner)).isFalse();
+        final Lock readLock = TransactionStaleness.tryReadLock(owner, true, lock);
+        assertThat(readLock).isNotNull();
+        readLock.unlock();
+        assertThat(TransactionStaleness.tryReadLock(owner, false, lock)).isNull();
+    }
+
+    @Test
+    @DisplayName("Отметка транзакции снимается после ее завершения, а до этого блокировка не выдается")
+    public void testInsideTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        final int[] completions = new int[1];
+
+        TransactionStaleness.markStale(owner);
+        TransactionStaleness.markStale(owner);
+        TransactionStaleness.runAfterCompletion(() -> completions[0]++);
+
+        assertThat(TransactionStaleness.isStale(owner)).isTrue();
+        assertThat(TransactionStaleness.tryReadLock(owner, true, lock)).isNull();
+        assertThat(TransactionStaleness.readLock(owner, true, lock)).isNull();
+        assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSize(2);
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+
+        assertThat(TransactionStaleness.isStale(owner)).isFalse();
+        assertThat(completions[0]).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Блокировка без ожидания не выдается, пока структура занята изменением")
+    public void testWriteLocked() throws InterruptedException {
+        lock.writeLock().lock();
+        try {
+            final Lock[] readLock = new Lock[1];
+            final Thread reader = new Thread(() -> readLock[0] = TransactionStaleness.tryReadLock(owner, true, lock));
+            reader.start();
+            reader.join();
+
+            assertThat(readLock[0]).isNull();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -182,4 +182,20 @@ public class FilmValidationTest {
 
         assertTrue(dtoHasErrorMessage(query, "Необходимо указать текст для поиска"));
     }
+
+    @Test
+    @DisplayName("Проверка невозможности выполнить поиск по фильмам с неверным размером страницы и смещением")
+    public void checkPageInSearch() {
+        FilmSearchDto query = FilmSearchDto.builder()
+                .by(List.of("title"))
+                .query("name")
+                .limit(1001)
+                .offset(-1)
+                .build();
+
+        assertAll(
+                () -> assertTrue(dtoHasErrorMessage(query, "Количество фильмов на странице должно быть не больше 1000")),
+                () -> assertTrue(dtoHasErrorMessage(query, "Смещение не может быть отрицательным"))
+        );
+    }
 }